@@ -18,6 +18,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
+/*
+ * Every tick is a round trip to the Python helper, so mark the agent as blocking
+ * to keep it off the CPU-bound executor pool.
+ */
+@Blocking
 public class PyAgentImpl extends BaseAgent implements PyAgent {
     private static final Logger logger = LoggerFactory.getLogger(PyAgentImpl.class);
     private final AtomicInteger requestCount = new AtomicInteger(0);
@@ -28,12 +28,12 @@ import mil.sstaf.core.entity.Message;
 import mil.sstaf.core.features.BaseHandler;
 import mil.sstaf.core.features.FeatureConfiguration;
 import mil.sstaf.core.features.HandlerContent;
+import mil.sstaf.core.features.Handles;
 import mil.sstaf.core.features.ProcessingResult;
 import mil.sstaf.core.util.SSTAFException;
+import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.math3.random.MersenneTwister;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.*;
 
 
@@ -51,6 +51,8 @@ public class ANSURIIHandler extends BaseHandler implements ANSURIIAnthropometry
      */
 
     public static final String FEATURE_NAME = "ANSUR Anthropometry";
+    private static final List<String> RESOURCE_NAMES = List.of("/ansur/ANSUR II MALE Public.csv",
+            "/ansur/ANSUR II FEMALE Public.csv");
     private Map<ValueKey, Object> subjectMap;
     private double height_cm = -1;
     private double span_cm = -1;
@@ -73,20 +75,14 @@ public class ANSURIIHandler extends BaseHandler implements ANSURIIAnthropometry
 
             MersenneTwister rng = new MersenneTwister(configuration.getSeed());
 
-            List<String> resourceNames = List.of("/ansur/ANSUR II MALE Public.csv",
-                    "/ansur/ANSUR II FEMALE Public.csv");
-            List<InputStream> streams = new ArrayList<>(resourceNames.size());
-            for (String s : resourceNames) {
-                InputStream is;
-                try {
-                    is = getClass().getModule().getResourceAsStream(s);
-                } catch (IOException e) {
-
-                    throw new SSTAFException(e);
-                }
-                streams.add(is);
+            //
+            // The data files are parsed once and shared by every handler in the JVM.
+            //
+            List<List<CSVRecord>> recordSets = new ArrayList<>(RESOURCE_NAMES.size());
+            for (String s : RESOURCE_NAMES) {
+                recordSets.add(SubjectSelector.getRecords(getClass().getModule(), s));
             }
-            subjectMap = SubjectSelector.select(streams, filters, rng.nextLong());
+            subjectMap = SubjectSelector.selectFromRecords(recordSets, filters, rng.nextLong());
         }
 
     }
@@ -178,47 +174,42 @@ public class ANSURIIHandler extends BaseHandler implements ANSURIIAnthropometry
     }
 
     /**
-     * {@inheritDoc}
+     * Answers a request for one of the subject's values.
      */
-    @Override
-    public List<Class<? extends HandlerContent>> contentHandled() {
-        return List.of(GetValueMessage.class);
+    @Handles(GetValueMessage.class)
+    private ProcessingResult getValue(GetValueMessage msg, long scheduledTime_ms, long currentTime_ms,
+                                      Address from, long sequence, Address respondTo) {
+        Objects.requireNonNull(msg.key);
+
+        ValueKey key = msg.key;
+        GetValueResponse response = GetValueResponse.of(ValueKey.SUBJECT_ID, -1);
+        if (key.getType().equals(String.class)) {
+            Optional<String> ov = getStringValue(key);
+            if (ov.isPresent()) {
+                response = GetValueResponse.of(key, ov.get());
+            }
+        } else if (key.getType().equals(Double.class)) {
+            Optional<Double> ov = getDoubleValue(key);
+            if (ov.isPresent()) {
+                response = GetValueResponse.of(key, ov.get());
+            }
+        } else if (key.getType().equals(Integer.class)) {
+            Optional<Integer> ov = getIntegerValue(key);
+            if (ov.isPresent()) {
+                response = GetValueResponse.of(key, ov.get());
+            }
+        }
+
+        Message out = buildNormalResponse(response, sequence, respondTo);
+        return ProcessingResult.of(out);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public ProcessingResult process(HandlerContent arg, long scheduledTime_ms, long currentTime_ms, Address from,
-                                    long sequence, Address respondTo) {
-        if (arg instanceof GetValueMessage) {
-            GetValueMessage msg = (GetValueMessage) arg;
-            Objects.requireNonNull(msg.key);
-
-            ValueKey key = msg.key;
-            GetValueResponse response = GetValueResponse.of(ValueKey.SUBJECT_ID, -1);
-            if (key.getType().equals(String.class)) {
-                Optional<String> ov = getStringValue(key);
-                if (ov.isPresent()) {
-                    response = GetValueResponse.of(key, ov.get());
-                }
-            } else if (key.getType().equals(Double.class)) {
-                Optional<Double> ov = getDoubleValue(key);
-                if (ov.isPresent()) {
-                    response = GetValueResponse.of(key, ov.get());
-                }
-            } else if (key.getType().equals(Integer.class)) {
-                Optional<Integer> ov = getIntegerValue(key);
-                if (ov.isPresent()) {
-                    response = GetValueResponse.of(key, ov.get());
-                }
-            }
-
-            Message out = buildNormalResponse(response, sequence, respondTo);
-            return ProcessingResult.of(out);
-        } else {
-            throw new SSTAFException(arg.getClass().getName() + " is not supported");
-        }
+    protected ProcessingResult processUnsupported(HandlerContent arg, long id, Address respondTo) {
+        throw new SSTAFException(arg.getClass().getName() + " is not supported");
     }
 
     /**
@@ -30,12 +30,20 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Utility class for selecting a single ANSUR subject given a list
  * of {@code Contraint}s
  */
 public class SubjectSelector {
+
+    /*
+     * Parsed ANSUR data, keyed by module and resource name. The records are immutable
+     * and are shared by every handler in the JVM, including those in forked sessions.
+     */
+    private static final Map<String, List<CSVRecord>> datasets = new ConcurrentHashMap<>();
+
     /**
      * Selects a single subject from all ANSUR records.
      * <p>
@@ -56,6 +64,50 @@ public class SubjectSelector {
         return parseSubject(chosen);
     }
 
+    /**
+     * Selects a single subject from ANSUR records that have already been read.
+     *
+     * @param recordSets the records to select from, typically one list per data file
+     * @param filters    the constraints to apply
+     * @param randomSeed the seed for the random number generator
+     * @return a {@code Map} that contains all of the fields for the subject
+     */
+    static Map<ValueKey, Object> selectFromRecords(final List<List<CSVRecord>> recordSets,
+                                                   final List<Filter> filters,
+                                                   final long randomSeed) {
+        List<CSVRecord> matches = new ArrayList<>();
+        for (List<CSVRecord> records : recordSets) {
+            matches.addAll(filter(records, filters));
+        }
+        if (matches.isEmpty()) {
+            throw new SSTAFException("No subjects matched constraints of " + describe(filters));
+        }
+        CSVRecord chosen = getChosen(matches, randomSeed);
+        return parseSubject(chosen);
+    }
+
+    /**
+     * Provides the records in an ANSUR data file bundled in a module.
+     * <p>
+     * Each file is read once per JVM and the records are shared afterwards.
+     *
+     * @param module       the module that contains the resource
+     * @param resourceName the name of the resource
+     * @return the records, in file order
+     */
+    static List<CSVRecord> getRecords(final Module module, final String resourceName) {
+        return datasets.computeIfAbsent(module.getName() + ":" + resourceName, key -> {
+            try (InputStream is = module.getResourceAsStream(resourceName)) {
+                if (is == null) {
+                    throw new SSTAFException("Could not find ANSUR data " + resourceName);
+                }
+                return Collections.unmodifiableList(readRecords(is));
+            } catch (IOException e) {
+                throw new SSTAFException("Could not read ANSUR data " + resourceName, e);
+            }
+        });
+    }
+
     /**
      * Finds all {@code CSVRecord}s that match the criteria across multiple {@code InputStream}s.
      *
@@ -71,15 +123,19 @@ public class SubjectSelector {
             matches.addAll(csvRecords);
         }
         if (matches.isEmpty()) {
-            StringBuilder sb = new StringBuilder();
-            for (Filter f : filters) {
-                sb.append("[").append(f).append("] ");
-            }
-            throw new SSTAFException("No subjects matched constraints of " + sb);
+            throw new SSTAFException("No subjects matched constraints of " + describe(filters));
         }
         return matches;
     }
 
+    private static String describe(final List<Filter> filters) {
+        StringBuilder sb = new StringBuilder();
+        for (Filter f : filters) {
+            sb.append("[").append(f).append("] ");
+        }
+        return sb.toString();
+    }
+
     /**
      * Selects one subject record from a list of records that have met the selection criteria
      *
@@ -134,8 +190,40 @@ public class SubjectSelector {
      * @return a List of matching CSVRecords
      */
     static List<CSVRecord> findMatches(final InputStream inputStream, final List<Filter> filters) {
-        Objects.requireNonNull(inputStream, "inputStream ");
+        return filter(readRecords(inputStream), filters);
+    }
+
+    /**
+     * Selects the {@code CSVRecord}s that match all of the given {@code BaseFilter}s.
+     *
+     * @param records the records to examine
+     * @param filters the Constraints to use to filter the records
+     * @return a List of matching CSVRecords
+     */
+    static List<CSVRecord> filter(final List<CSVRecord> records, final List<Filter> filters) {
         List<CSVRecord> matches = new ArrayList<>();
+        for (final CSVRecord record : records) {
+            boolean itMatches = true;
+            for (final Filter filter : filters) {
+                itMatches = filter.matches(record);
+                if (!itMatches) break;
+            }
+            if (itMatches) {
+                matches.add(record);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Reads all of the {@code CSVRecord}s from an {@code InputStream}.
+     *
+     * @param inputStream the InputStream for the CSV data source
+     * @return the records, in file order
+     */
+    static List<CSVRecord> readRecords(final InputStream inputStream) {
+        Objects.requireNonNull(inputStream, "inputStream ");
+        List<CSVRecord> records = new ArrayList<>();
         CSVRecord dup = null;
         try {
             Reader reader = new InputStreamReader(inputStream);
@@ -144,21 +232,13 @@ public class SubjectSelector {
                             setIgnoreSurroundingSpaces(true).setIgnoreHeaderCase(true).build());
 
             for (final CSVRecord record: parser) {
-                boolean itMatches = true;
                 dup = record;
-                for (final Filter filter : filters) {
-                    itMatches = filter.matches(record);
-                    if (!itMatches) break;
-                }
-                if (itMatches) {
-                    matches.add(record);
-                }
+                records.add(record);
             }
         } catch (IOException e) {
             e.printStackTrace();
             throw new SSTAFException("Failed to read " + dup, e);
         }
-        return matches;
+        return records;
     }
 }
-
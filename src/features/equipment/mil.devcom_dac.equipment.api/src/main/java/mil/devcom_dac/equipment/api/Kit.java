@@ -147,6 +147,20 @@ public class Kit implements SoldierKit {
         return magazineMap.getOrDefault(magazineType, Collections.emptyList());
     }
 
+    /**
+     * Provides every magazine that is carried but not loaded in a gun.
+     *
+     * @return the magazines, grouped by magazine type
+     */
+    @JsonIgnore
+    public List<Magazine> getAllMagazines() {
+        List<Magazine> all = new ArrayList<>();
+        for (List<Magazine> magSet : new TreeMap<>(magazineMap).values()) {
+            all.addAll(magSet);
+        }
+        return all;
+    }
+
     @Override
     public double getMass() {
         double mass = 0.0;
@@ -17,6 +17,10 @@
 
 package mil.devcom_dac.equipment.handler;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import mil.devcom_dac.equipment.api.*;
 import mil.devcom_dac.equipment.messages.*;
 import mil.sstaf.blackboard.api.Blackboard;
@@ -29,7 +33,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.*;
 
-public class EquipmentHandler extends BaseHandler implements EquipmentManagement {
+public class EquipmentHandler extends BaseHandler implements EquipmentManagement, Snapshottable {
     public static final String FEATURE_NAME = "Kit Manager";
     public static final int MAJOR_VERSION = 0;
     public static final int MINOR_VERSION = 2;
@@ -59,12 +63,6 @@ public class EquipmentHandler extends BaseHandler implements EquipmentManagement
                 true, "Handler for military equipment loading");
     }
 
-    @Override
-    public List<Class<? extends HandlerContent>> contentHandled() {
-        return List.of(GetInventory.class, Shoot.class,
-                Reload.class, SetGun.class);
-    }
-
     @Override
     public void init() {
         super.init();
@@ -90,7 +88,108 @@ public class EquipmentHandler extends BaseHandler implements EquipmentManagement
         }
     }
 
-        /**
+    /**
+     * Saves the contents of the kit, including the load of every magazine, and the
+     * current gun.
+     *
+     * @param context the {@code SnapshotContext}
+     * @return the saved state
+     */
+    @Override
+    public JsonNode snapshot(final SnapshotContext context) {
+        ObjectNode state = context.getObjectMapper().createObjectNode();
+        state.put("currentGun", currentGun == null ? null : currentGun.getName());
+        state.put("cumulativeShots", cumulativeShots);
+        ArrayNode guns = state.putArray("guns");
+        for (Gun gun : new TreeMap<>(kit.getGuns()).values()) {
+            guns.addObject()
+                    .put("name", gun.getName())
+                    .put("emptyMass_kg", gun.getEmptyMass_kg())
+                    .put("magazineType", gun.getMagazineType())
+                    .set("magazine", writeMagazine(gun.getMagazine(), context));
+        }
+        ArrayNode packs = state.putArray("packs");
+        for (Pack pack : new TreeMap<>(kit.getPacks()).values()) {
+            packs.addObject()
+                    .put("name", pack.getName())
+                    .put("mass_kg", pack.getMass_kg());
+        }
+        ArrayNode magazines = state.putArray("magazines");
+        for (Magazine magazine : kit.getAllMagazines()) {
+            magazines.add(writeMagazine(magazine, context));
+        }
+        return state;
+    }
+
+    /**
+     * Replaces the kit built from the configuration with the saved kit.
+     *
+     * @param state   the saved state
+     * @param context the {@code SnapshotContext}
+     */
+    @Override
+    public void restore(final JsonNode state, final SnapshotContext context) {
+        List<Gun> guns = new ArrayList<>();
+        List<Magazine> loaded = new ArrayList<>();
+        for (JsonNode g : state.path("guns")) {
+            guns.add(Gun.builder()
+                    .name(g.path("name").asText())
+                    .emptyMass_kg(g.path("emptyMass_kg").asDouble())
+                    .magazineType(g.path("magazineType").asText())
+                    .build());
+            loaded.add(readMagazine(g.get("magazine")));
+        }
+        List<Pack> packs = new ArrayList<>();
+        for (JsonNode p : state.path("packs")) {
+            packs.add(Pack.builder()
+                    .name(p.path("name").asText())
+                    .mass_kg(p.path("mass_kg").asDouble())
+                    .build());
+        }
+        List<Magazine> magazines = new ArrayList<>();
+        for (JsonNode m : state.path("magazines")) {
+            magazines.add(readMagazine(m));
+        }
+
+        kit = Kit.builder().guns(guns).packs(packs).magazines(magazines).build();
+        for (int i = 0; i < guns.size(); ++i) {
+            if (loaded.get(i) != null) {
+                guns.get(i).loadMagazine(loaded.get(i));
+            }
+        }
+        String gunName = state.path("currentGun").isNull() ? null : state.path("currentGun").asText(null);
+        currentGun = gunName == null ? null : kit.getGunByName(gunName);
+        cumulativeShots = state.path("cumulativeShots").asInt();
+    }
+
+    private static JsonNode writeMagazine(final Magazine magazine, final SnapshotContext context) {
+        if (magazine == null) {
+            return NullNode.getInstance();
+        }
+        return context.getObjectMapper().createObjectNode()
+                .put("name", magazine.getName())
+                .put("magazineType", magazine.getMagazineType())
+                .put("emptyMass_kg", magazine.getEmptyMass_kg())
+                .put("perRoundMass_kg", magazine.getPerRoundMass_kg())
+                .put("capacity", magazine.getCapacity())
+                .put("currentLoad", magazine.getCurrentLoad());
+    }
+
+    private static Magazine readMagazine(final JsonNode node) {
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        return Magazine.builder()
+                .name(node.path("name").asText())
+                .magazineType(node.path("magazineType").asText())
+                .emptyMass_kg(node.path("emptyMass_kg").asDouble())
+                .perRoundMass_kg(node.path("perRoundMass_kg").asDouble())
+                .capacity(node.path("capacity").asInt())
+                .currentLoad(node.path("currentLoad").asInt())
+                .build();
+    }
+
+    /**
      * {@inheritDoc}
      */
     @Override
@@ -115,67 +214,71 @@ public class EquipmentHandler extends BaseHandler implements EquipmentManagement
         return returnValue;
     }
 
-@Override
-    public ProcessingResult process(HandlerContent arg, long scheduledTime_ms, long currentTime_ms, Address from, long id, Address respondTo) {
-        ProcessingResult rv;
-        if (arg instanceof Shoot) {
-            Shoot shootMessage = (Shoot) arg;
-            if (shootMessage.getGun() != null) {
-                setGun(shootMessage.getGun());
-            }
-            int numShot = currentGun.shoot(shootMessage.getNumToShoot());
-            int remaining = getRoundsInCurrentGun();
-            GunState response = GunState.builder()
-                    .numberShot(numShot)
-                    .roundsInCurrentGun(remaining)
-                    .currentGun(currentGun.getName())
-                    .build();
-
-            // If we are connected to a blackboard, add the shoot metrics.
-            if (blackboard != null) {
-                cumulativeShots += numShot;
-
-                GunMetric metric = GunMetric.builder().numberShot(cumulativeShots).build();
-
-                // Publish metrics
-                blackboard.addEntry(BK_SHOOT_METRICS, metric, currentTime_ms);
-            }
+    @Handles(Shoot.class)
+    private ProcessingResult shoot(Shoot shootMessage, long scheduledTime_ms, long currentTime_ms,
+                                   Address from, long id, Address respondTo) {
+        if (shootMessage.getGun() != null) {
+            setGun(shootMessage.getGun());
+        }
+        int numShot = currentGun.shoot(shootMessage.getNumToShoot());
+        int remaining = getRoundsInCurrentGun();
+        GunState response = GunState.builder()
+                .numberShot(numShot)
+                .roundsInCurrentGun(remaining)
+                .currentGun(currentGun.getName())
+                .build();
+
+        // If we are connected to a blackboard, add the shoot metrics.
+        if (blackboard != null) {
+            cumulativeShots += numShot;
+
+            GunMetric metric = GunMetric.builder().numberShot(cumulativeShots).build();
+
+            // Publish metrics
+            blackboard.addEntry(BK_SHOOT_METRICS, metric, currentTime_ms);
+        }
 
-            Message m = buildNormalResponse(response, id, respondTo);
-            rv = ProcessingResult.of(m);
-        } else if (arg instanceof GetInventory) {
-            Inventory ir = buildInventory();
-            Message m = buildNormalResponse(ir, id, respondTo);
-            rv = ProcessingResult.of(m);
-        } else if (arg instanceof Reload) {
-            Reload rm = (Reload) arg;
-            if (rm.getGun() != null) {
-                setGun(rm.getGun());
-            }
-            if (!reload(currentGun))
-                throw new SSTAFException("Gun " + currentGun.getName() + " reload failed, no magazine of type " +
-                        currentGun.getMagazineType() + " available.");
-
-            GunState gs = GunState.builder()
-                    .currentGun(currentGun.getName())
-                    .roundsInCurrentGun(getRoundsInCurrentGun())
-                    .build();
-            Message m = buildNormalResponse(gs, id, respondTo);
-            rv = ProcessingResult.of(m);
-        } else if (arg instanceof SetGun) {
-            SetGun sg = (SetGun)arg;
-            setGun(sg.getGun());
-            GunState gs = GunState.builder()
-                    .currentGun(currentGun.getName())
-                    .roundsInCurrentGun(getRoundsInCurrentGun())
-                    .build();
-            Message m = buildNormalResponse(gs, id, respondTo);
-            rv = ProcessingResult.of(m);
-        } else {
-            rv = buildUnsupportedMessageResponse(arg, id, respondTo, new Throwable());
+        Message m = buildNormalResponse(response, id, respondTo);
+        return ProcessingResult.of(m);
+    }
+
+    @Handles(GetInventory.class)
+    private ProcessingResult getInventory(GetInventory arg, long scheduledTime_ms, long currentTime_ms,
+                                          Address from, long id, Address respondTo) {
+        Inventory ir = buildInventory();
+        Message m = buildNormalResponse(ir, id, respondTo);
+        return ProcessingResult.of(m);
+    }
+
+    @Handles(Reload.class)
+    private ProcessingResult reload(Reload rm, long scheduledTime_ms, long currentTime_ms,
+                                    Address from, long id, Address respondTo) {
+        if (rm.getGun() != null) {
+            setGun(rm.getGun());
         }
-        return rv;
-}
+        if (!reload(currentGun))
+            throw new SSTAFException("Gun " + currentGun.getName() + " reload failed, no magazine of type " +
+                    currentGun.getMagazineType() + " available.");
+
+        GunState gs = GunState.builder()
+                .currentGun(currentGun.getName())
+                .roundsInCurrentGun(getRoundsInCurrentGun())
+                .build();
+        Message m = buildNormalResponse(gs, id, respondTo);
+        return ProcessingResult.of(m);
+    }
+
+    @Handles(SetGun.class)
+    private ProcessingResult setGun(SetGun sg, long scheduledTime_ms, long currentTime_ms,
+                                    Address from, long id, Address respondTo) {
+        setGun(sg.getGun());
+        GunState gs = GunState.builder()
+                .currentGun(currentGun.getName())
+                .roundsInCurrentGun(getRoundsInCurrentGun())
+                .build();
+        Message m = buildNormalResponse(gs, id, respondTo);
+        return ProcessingResult.of(m);
+    }
 
     private Inventory buildInventory() {
         var builder = Inventory.builder();
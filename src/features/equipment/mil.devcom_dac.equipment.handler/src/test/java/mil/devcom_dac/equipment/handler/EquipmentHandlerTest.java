@@ -1,5 +1,6 @@
 package mil.devcom_dac.equipment.handler;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import mil.devcom_dac.equipment.api.EquipmentConfiguration;
 import mil.devcom_dac.equipment.api.EquipmentManagement;
 import mil.devcom_dac.equipment.messages.*;
@@ -8,6 +9,8 @@ import mil.sstaf.core.entity.Address;
 import mil.sstaf.core.entity.EntityHandle;
 import mil.sstaf.core.features.Loaders;
 import mil.sstaf.core.features.ProcessingResult;
+import mil.sstaf.core.features.SnapshotContext;
+import mil.sstaf.core.features.Snapshottable;
 import mil.sstaf.core.json.JsonLoader;
 import mil.sstaf.core.util.Injector;
 import mil.sstaf.core.util.SSTAFException;
@@ -15,6 +18,7 @@ import org.junit.jupiter.api.*;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -152,6 +156,40 @@ public class EquipmentHandlerTest {
             assertEquals("M16A2", gs.getCurrentGun());
             assertEquals(0, gs.getRoundsInCurrentGun()); // Gun not loaded by default
         }
+
+        @Test
+        @DisplayName("Confirm that a snapshot carries the kit into another handler")
+        public void snapshotTest() {
+            equipmentManagement.process(Reload.builder().gun("M16A1").build(), 1000, 1000,
+                    Address.NOWHERE, 1, Address.NOWHERE);
+            equipmentManagement.process(Shoot.builder().numToShoot(5).build(), 1000, 1000,
+                    Address.NOWHERE, 2, Address.NOWHERE);
+            SnapshotContext context = new SnapshotContext(List.of());
+            JsonNode state = ((Snapshottable) equipmentManagement).snapshot(context);
+
+            EquipmentManagement copy = Loaders.load(EquipmentManagement.class, "Kit Manager", 0, 0)
+                    .orElseThrow();
+            copy.configure(new JsonLoader().load(Path.of(basepath.toString(), "TestConfig.json"),
+                    EquipmentConfiguration.class));
+            Injector.inject(copy, EntityHandle.makeDummyHandle());
+            copy.init();
+            ((Snapshottable) copy).restore(state, context);
+
+            Inventory expected = getInventory(equipmentManagement);
+            Inventory restored = getInventory(copy);
+            assertEquals("M16A1", restored.getCurrentGun());
+            assertEquals(25, restored.getRoundsInCurrentGun());
+            assertEquals(expected.getMagazinesPerType(), restored.getMagazinesPerType());
+            assertEquals(expected.getRoundsPerType(), restored.getRoundsPerType());
+            assertEquals(expected.getPacks(), restored.getPacks());
+            assertEquals(expected.getTotalCarriedMass(), restored.getTotalCarriedMass(), 1e-9);
+        }
+
+        private Inventory getInventory(EquipmentManagement em) {
+            ProcessingResult x = em.process(GetInventory.builder().build(), 1000, 1000,
+                    Address.NOWHERE, 3, Address.NOWHERE);
+            return (Inventory) x.messages.get(0).getContent();
+        }
     }
 
     @Nested
@@ -18,12 +18,11 @@
 package mil.sstaf.blackboard.inmem;
 
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import mil.sstaf.blackboard.api.*;
 import mil.sstaf.core.entity.Address;
-import mil.sstaf.core.entity.Message;
-import mil.sstaf.core.features.BaseHandler;
-import mil.sstaf.core.features.HandlerContent;
-import mil.sstaf.core.features.ProcessingResult;
+import mil.sstaf.core.features.*;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 
@@ -32,7 +31,7 @@ import java.util.*;
 /**
  * Simple in-memory Map-based implementation of the Blackboard
  */
-public class InMemBlackboard extends BaseHandler implements Blackboard {
+public class InMemBlackboard extends BaseHandler implements Blackboard, Snapshottable {
     public static final String FEATURE_NAME = "Blackboard";
     public static final int MAJOR_VERSION = 1;
     public static final int MINOR_VERSION = 0;
@@ -186,37 +185,62 @@ public class InMemBlackboard extends BaseHandler implements Blackboard {
         return Collections.unmodifiableMap(entryMap);
     }
 
+    /**
+     * Saves every entry, including its validity interval.
+     *
+     * @param context the {@code SnapshotContext}
+     * @return the entries
+     */
     @Override
-    public List<Class<? extends HandlerContent>> contentHandled() {
-        return List.of(AddEntryRequest.class, GetEntryRequest.class, RemoveEntryRequest.class);
+    public JsonNode snapshot(final SnapshotContext context) {
+        ArrayNode entries = context.getObjectMapper().createArrayNode();
+        new TreeMap<>(entryMap).forEach((key, e) -> entries.addObject()
+                .put("key", key)
+                .put("timestamp_ms", e.timestamp_ms)
+                .put("expiration_ms", e.expiration_ms)
+                .set("value", context.writeValue(e.value)));
+        return entries;
     }
 
+    /**
+     * Replaces the contents of the Blackboard with the saved entries.
+     *
+     * @param state   the saved entries
+     * @param context the {@code SnapshotContext}
+     */
     @Override
-    public ProcessingResult process(HandlerContent arg, long scheduledTime_ms, long currentTime_ms, Address from, long id, Address respondTo) {
-        Message output = null;
-        if (arg instanceof GetEntryRequest) {
-            GetEntryRequest message = (GetEntryRequest) arg;
-            Object value = internalGetEntry(message.key, message.time_ms);
-            GetEntryResponse response = new GetEntryResponse(value, message.key, message.time_ms, message.type);
-            output = buildNormalResponse(response, id, respondTo);
-        } else if (arg instanceof RemoveEntryRequest) {
-            RemoveEntryRequest rer = (RemoveEntryRequest) arg;
-            remove(rer.key);
-            RemoveEntryResponse response = new RemoveEntryResponse(entryMap.size());
-            output = buildNormalResponse(response, id, respondTo);
-        } else if (arg instanceof AddEntryRequest) {
-            AddEntryRequest aer = (AddEntryRequest) arg;
-            addEntry(aer.key, aer.value, aer.timestamp_ms, aer.expiration_ms);
-            AddEntryResponse response = new AddEntryResponse(entryMap.size());
-            output = buildNormalResponse(response, id, respondTo);
-        }
-        if (output == null) {
-            return buildUnsupportedMessageResponse(arg, id, respondTo, new UnsupportedOperationException());
-        } else {
-            return ProcessingResult.of(output);
+    public void restore(final JsonNode state, final SnapshotContext context) {
+        entryMap.clear();
+        for (JsonNode e : state) {
+            entryMap.put(e.path("key").asText(), new Entry(context.readValue(e.get("value")),
+                    e.path("timestamp_ms").asLong(), e.path("expiration_ms").asLong()));
         }
     }
 
+    @Handles(GetEntryRequest.class)
+    private ProcessingResult getEntry(GetEntryRequest message, long scheduledTime_ms, long currentTime_ms,
+                                      Address from, long id, Address respondTo) {
+        Object value = internalGetEntry(message.key, message.time_ms);
+        GetEntryResponse response = new GetEntryResponse(value, message.key, message.time_ms, message.type);
+        return ProcessingResult.of(buildNormalResponse(response, id, respondTo));
+    }
+
+    @Handles(RemoveEntryRequest.class)
+    private ProcessingResult removeEntry(RemoveEntryRequest rer, long scheduledTime_ms, long currentTime_ms,
+                                         Address from, long id, Address respondTo) {
+        remove(rer.key);
+        RemoveEntryResponse response = new RemoveEntryResponse(entryMap.size());
+        return ProcessingResult.of(buildNormalResponse(response, id, respondTo));
+    }
+
+    @Handles(AddEntryRequest.class)
+    private ProcessingResult addEntry(AddEntryRequest aer, long scheduledTime_ms, long currentTime_ms,
+                                      Address from, long id, Address respondTo) {
+        addEntry(aer.key, aer.value, aer.timestamp_ms, aer.expiration_ms);
+        AddEntryResponse response = new AddEntryResponse(entryMap.size());
+        return ProcessingResult.of(buildNormalResponse(response, id, respondTo));
+    }
+
     static class Entry {
 
         final long timestamp_ms;
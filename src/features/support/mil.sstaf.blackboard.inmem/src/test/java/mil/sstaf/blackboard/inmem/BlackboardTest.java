@@ -17,12 +17,14 @@
 
 package mil.sstaf.blackboard.inmem;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import lombok.experimental.SuperBuilder;
 import mil.sstaf.blackboard.api.*;
 import mil.sstaf.core.entity.*;
 import mil.sstaf.core.features.ExceptionContent;
 import mil.sstaf.core.features.Handler;
 import mil.sstaf.core.features.ProcessingResult;
+import mil.sstaf.core.features.SnapshotContext;
 import mil.sstaf.core.entity.Message;
 import mil.sstaf.core.util.Injector;
 import mil.sstaftest.util.BaseHandlerTest;
@@ -297,6 +299,30 @@ class BlackboardTest extends BaseHandlerTest<InMemBlackboard> {
             Message mr4 = pr4.messages.get(0);
             assertTrue(mr4 instanceof ErrorResponse);
         }
+
+        @Test
+        @DisplayName("Entries, including entity references, survive a snapshot and restore")
+        void snapshotAndRestoreWorks() {
+            FakeEntity fakeEntity = FakeEntity.builder().build();
+            SnapshotContext context = new SnapshotContext(List.of(fakeEntity.getHandle()));
+
+            InMemBlackboard original = new InMemBlackboard();
+            original.addEntry("answer", "I am the answer", toMillis(1.0), toMillis(10.0));
+            original.addEntry("count", 42, toMillis(2.0));
+            original.addEntry("owner", fakeEntity.getHandle(), 0);
+            JsonNode state = original.snapshot(context);
+
+            InMemBlackboard restored = new InMemBlackboard();
+            restored.addEntry("stale", "should be removed", 0);
+            restored.restore(state, context);
+
+            assertEquals(3, restored.getEntryMap().size());
+            assertEquals(Optional.of("I am the answer"), restored.getEntry("answer", toMillis(5.0), String.class));
+            assertTrue(restored.getEntry("answer", toMillis(11.0)).isEmpty());
+            assertEquals(Optional.of(42), restored.getEntry("count", toMillis(2.0), Integer.class));
+            assertSame(fakeEntity.getHandle(), restored.getEntry("owner", 0).orElseThrow());
+            assertTrue(restored.getEntry("stale", 0).isEmpty());
+        }
     }
 }
 
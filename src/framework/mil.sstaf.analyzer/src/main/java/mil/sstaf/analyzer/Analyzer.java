@@ -18,6 +18,9 @@
 package mil.sstaf.analyzer;
 
 import mil.sstaf.analyzer.messages.*;
+import mil.sstaf.core.metrics.Counter;
+import mil.sstaf.core.metrics.MetricSnapshot;
+import mil.sstaf.core.metrics.MetricsRegistry;
 import mil.sstaf.core.util.SSTAFException;
 import mil.sstaf.session.control.Session;
 import mil.sstaf.session.messages.BaseSessionCommand;
@@ -98,11 +101,33 @@ public class Analyzer {
                         .build();
             };
 
+            ProcessingStrategy runUntilProcessingStrategy = command -> {
+                RunUntil runUntil = (RunUntil) command;
+                return RunUntilResult.builder()
+                        .sessionRunResult(session.runUntil(runUntil.getEndTime_ms(),
+                                runUntil.getStep_ms(), runUntil.toResultFilter()))
+                        .build();
+            };
+
             ProcessingStrategy getEntitiesProcessingStrategy = command -> {
                 List<String> entityList = session.getEntityController().getEntityPaths();
                 return GetEntitiesResult.builder().entities(entityList).build();
             };
 
+            ProcessingStrategy getMetricsProcessingStrategy = command -> {
+                GetMetrics getMetrics = (GetMetrics) command;
+                String prefix = getMetrics.getPrefix() == null ? "" : getMetrics.getPrefix();
+                MetricsRegistry metrics = session.getEntityController().getMetrics();
+                if (metrics == null) {
+                    return GetMetricsResult.builder().metrics(List.of()).build();
+                }
+                List<MetricSnapshot> snapshots = metrics.snapshot(prefix);
+                if (getMetrics.isReset()) {
+                    metrics.reset(prefix);
+                }
+                return GetMetricsResult.builder().metrics(snapshots).build();
+            };
+
             ProcessingStrategy exitStrategy = command -> {
                 keepRunning.set(false);
                 return ExitResult.builder().exitTime(System.currentTimeMillis()).build();
@@ -110,10 +135,15 @@ public class Analyzer {
 
             Map<Class<? extends BaseAnalyzerCommand>, ProcessingStrategy> processingStrategyMap =
                     Map.of(Tick.class, tickProcessingStrategy,
+                            RunUntil.class, runUntilProcessingStrategy,
                             GetEntities.class, getEntitiesProcessingStrategy,
+                            GetMetrics.class, getMetricsProcessingStrategy,
                             CommandList.class, commandListProcessingStrategy,
                             Exit.class, exitStrategy);
 
+            MetricsRegistry registry = session.getEntityController().getMetrics();
+            Counter taskMetric = registry == null ? null : registry.counter("analyzer.tasks");
+
             isRunning.set(true);
             int rv = 0;
             int nulls=0;
@@ -135,6 +165,9 @@ public class Analyzer {
                             result = strategy.process(command);
                         }
                         taskCounter.incrementAndGet();
+                        if (taskMetric != null) {
+                            taskMetric.increment();
+                        }
                         result.setId(command.getId());
                         result.setProcessingTime_ms(System.currentTimeMillis() - startTime);
                         String output = serializer.apply(result);
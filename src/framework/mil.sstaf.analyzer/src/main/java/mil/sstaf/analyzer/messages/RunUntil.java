@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.analyzer.messages;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Singular;
+import lombok.experimental.SuperBuilder;
+import lombok.extern.jackson.Jacksonized;
+
+import mil.sstaf.session.messages.BaseSessionResult;
+import mil.sstaf.session.messages.CommandResult;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Advances the {@code Session} through a series of ticks that ends at {@code endTime_ms}.
+ * <p>
+ * If {@code step_ms} is positive the ticks are that far apart, otherwise the
+ * {@code Session} advances from event to event. Only the messages to the client whose
+ * entity path is listed in {@code entities} and whose content class simple name is listed
+ * in {@code contentTypes} are returned. An empty list accepts everything.
+ */
+@Jacksonized
+@SuperBuilder
+@JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, property = "class")
+@EqualsAndHashCode(callSuper = true)
+public class RunUntil extends BaseAnalyzerCommand {
+    @Getter
+    private long endTime_ms;
+    @Getter
+    private long step_ms;
+    @Getter
+    @Singular
+    private List<String> entities;
+    @Getter
+    @Singular
+    private List<String> contentTypes;
+
+    /**
+     * Builds the filter for the messages to the client from the entity and content type lists.
+     *
+     * @return the filter
+     */
+    public Predicate<BaseSessionResult> toResultFilter() {
+        return result -> {
+            if (!(result instanceof CommandResult)) {
+                return entities.isEmpty() && contentTypes.isEmpty();
+            }
+            CommandResult commandResult = (CommandResult) result;
+            if (!entities.isEmpty() && !entities.contains(commandResult.getEntityPath())) {
+                return false;
+            }
+            return contentTypes.isEmpty() || (commandResult.getContent() != null
+                    && contentTypes.contains(commandResult.getContent().getClass().getSimpleName()));
+        };
+    }
+}
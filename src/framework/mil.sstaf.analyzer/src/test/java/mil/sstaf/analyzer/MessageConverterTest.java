@@ -18,7 +18,11 @@
 package mil.sstaf.analyzer;
 
 import mil.sstaf.analyzer.messages.BaseAnalyzerCommand;
+import mil.sstaf.analyzer.messages.GetMetrics;
+import mil.sstaf.analyzer.messages.RunUntil;
 import mil.sstaf.analyzer.messages.Tick;
+import mil.sstaf.core.features.StringContent;
+import mil.sstaf.session.messages.CommandResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -51,6 +55,39 @@ public class MessageConverterTest {
             });
         }
 
+        @Test
+        @DisplayName("Confirm a RunUntil can be generated and filters results")
+        void runUntilTest() {
+            String json = "{ \"class\" : \"mil.sstaf.analyzer.messages.RunUntil\","
+                    + "\"endTime_ms\" : 60000, \"step_ms\" : 0,"
+                    + "\"entities\" : [ \"BLUE:Bob\" ] }";
+            BaseAnalyzerCommand thing = messageConverter.apply(json);
+            assertTrue(thing instanceof RunUntil);
+            RunUntil runUntil = (RunUntil) thing;
+            assertEquals(60000, runUntil.getEndTime_ms());
+            assertEquals(0, runUntil.getStep_ms());
+            assertTrue(runUntil.getContentTypes().isEmpty());
+
+            var filter = runUntil.toResultFilter();
+            assertTrue(filter.test(CommandResult.builder().entityPath("BLUE:Bob")
+                    .content(StringContent.of("yes")).build()));
+            assertFalse(filter.test(CommandResult.builder().entityPath("BLUE:Alice")
+                    .content(StringContent.of("no")).build()));
+        }
+
+        @Test
+        @DisplayName("Confirm a GetMetrics can be generated")
+        void getMetricsTest() {
+            BaseAnalyzerCommand thing = messageConverter.apply(
+                    "{ \"class\" : \"mil.sstaf.analyzer.messages.GetMetrics\", \"prefix\" : \"tick.\" }");
+            assertTrue(thing instanceof GetMetrics);
+            assertEquals("tick.", ((GetMetrics) thing).getPrefix());
+            assertFalse(((GetMetrics) thing).isReset());
+
+            thing = messageConverter.apply("{ \"class\" : \"mil.sstaf.analyzer.messages.GetMetrics\" }");
+            assertEquals("", ((GetMetrics) thing).getPrefix());
+        }
+
 
     }
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.benchmarks;
+
+import lombok.experimental.SuperBuilder;
+import mil.sstaf.core.entity.*;
+import mil.sstaf.core.features.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the message dispatch path through {@code BaseEntity.processMessages()}
+ * and {@code FeatureManager.process()}.
+ * <p>
+ * The figure of interest is the allocation per message, reported by the GC profiler as
+ * {@code gc.alloc.rate.norm}:
+ * <pre>
+ *     gradle :framework:mil.sstaf.core:jmh -PjmhArgs='DispatchAllocationBenchmark -prof gc'
+ * </pre>
+ * Run it on two revisions to compare them. When {@code respond} is false the handler returns
+ * {@code ProcessingResult.empty()}, so anything allocated is overhead of the framework. When
+ * it is true the handler also builds a response, which necessarily allocates the message
+ * itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@OperationsPerInvocation(DispatchAllocationBenchmark.BATCH)
+public class DispatchAllocationBenchmark {
+
+    static final int BATCH = 1000;
+
+    @Param({"false", "true"})
+    boolean respond;
+
+    private EchoUnit entity;
+    private Message[] messages;
+    private long time_ms;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        entity = EchoUnit.builder().name("Echo").respond(respond).build();
+        entity.init();
+        Unit sender = Unit.builder().name("Sender").build();
+        Address source = Address.makeExternalAddress(sender.getHandle());
+        Address destination = Address.makeExternalAddress(entity.getHandle());
+        StringContent content = StringContent.builder().value("ping").build();
+        messages = new Message[BATCH];
+        for (int i = 0; i < BATCH; ++i) {
+            messages[i] = EntityAction.builder()
+                    .source(source)
+                    .destination(destination)
+                    .respondTo(Address.NOWHERE)
+                    .sequenceNumber(i)
+                    .content(content)
+                    .build();
+        }
+        time_ms = 0;
+    }
+
+    @Benchmark
+    public long dispatch() {
+        for (Message message : messages) {
+            entity.receive(message);
+        }
+        return entity.processMessages(++time_ms);
+    }
+
+    /**
+     * A {@code Unit} with a single {@code Handler}.
+     */
+    @SuperBuilder
+    static class EchoUnit extends Unit {
+        private final boolean respond;
+
+        protected EchoUnit(EchoUnitBuilder<?, ?> builder) {
+            super(builder);
+            this.respond = builder.respond;
+            featureManager.register(new EchoHandler(respond));
+        }
+    }
+
+    /**
+     * Accepts {@code StringContent} and optionally replies to {@code NOWHERE}.
+     */
+    static class EchoHandler extends BaseHandler {
+        private final boolean respond;
+
+        EchoHandler(boolean respond) {
+            super("EchoHandler", 1, 0, 0, false, "Replies to StringContent");
+            this.respond = respond;
+        }
+
+        @Override
+        public List<Class<? extends HandlerContent>> contentHandled() {
+            return List.of(StringContent.class);
+        }
+
+        @Override
+        public ProcessingResult process(HandlerContent arg, long scheduledTime_ms, long currentTime_ms,
+                                        Address from, long id, Address respondTo) {
+            if (respond) {
+                return ProcessingResult.of(buildNormalResponse(arg, id, respondTo));
+            }
+            return ProcessingResult.empty();
+        }
+    }
+}
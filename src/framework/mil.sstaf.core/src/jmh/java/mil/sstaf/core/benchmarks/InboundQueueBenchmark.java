@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.benchmarks;
+
+import mil.sstaf.core.entity.*;
+import mil.sstaf.core.features.StringContent;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two-lane {@code InboundQueue} with the {@code PriorityQueue} ordered by
+ * {@code MessageQueueComparator} that it replaced.
+ * <p>
+ * Each invocation offers a batch of messages, as a routing pass would, and then polls
+ * them all, as {@code processMessages} would.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class InboundQueueBenchmark {
+
+    public enum QueueType {
+        PRIORITY_QUEUE, INBOUND_QUEUE
+    }
+
+    @Param({"PRIORITY_QUEUE", "INBOUND_QUEUE"})
+    QueueType queueType;
+
+    @Param({"16", "256", "4096"})
+    int messageCount;
+
+    @Param({"90", "50", "10"})
+    int actionPercent;
+
+    @Param({"8"})
+    int sourceCount;
+
+    private Message[] messages;
+    private Queue<Message> queue;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        List<Address> sources = new ArrayList<>(sourceCount);
+        for (int i = 0; i < sourceCount; ++i) {
+            Unit unit = Unit.builder().name("Source" + i).build();
+            sources.add(Address.makeAddress(unit.getHandle(), "Handler" + i));
+        }
+        Address destination = Address.makeExternalAddress(Unit.builder().name("Destination").build().getHandle());
+        long[] sequenceNumbers = new long[sourceCount];
+
+        messages = new Message[messageCount];
+        for (int i = 0; i < messageCount; ++i) {
+            int s = random.nextInt(sourceCount);
+            if (random.nextInt(100) < actionPercent) {
+                messages[i] = EntityAction.builder()
+                        .source(sources.get(s))
+                        .destination(destination)
+                        .respondTo(Address.NOWHERE)
+                        .sequenceNumber(sequenceNumbers[s]++)
+                        .content(StringContent.builder().value("action").build())
+                        .build();
+            } else {
+                messages[i] = EntityEvent.builder()
+                        .source(sources.get(s))
+                        .destination(destination)
+                        .respondTo(Address.NOWHERE)
+                        .sequenceNumber(sequenceNumbers[s]++)
+                        .eventTime_ms(random.nextInt(10_000))
+                        .content(StringContent.builder().value("event").build())
+                        .build();
+            }
+        }
+        queue = queueType == QueueType.PRIORITY_QUEUE
+                ? new PriorityQueue<>(new MessageQueueComparator())
+                : new InboundQueue();
+    }
+
+    @Benchmark
+    public void offerThenPoll(Blackhole blackhole) {
+        for (Message message : messages) {
+            queue.offer(message);
+        }
+        Message message;
+        while ((message = queue.poll()) != null) {
+            blackhole.consume(message);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.benchmarks;
+
+import mil.sstaf.core.features.Requires;
+import mil.sstaf.core.util.Injected;
+import mil.sstaf.core.util.Injector;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+import static mil.sstaf.core.util.ReflectionUtils.getAllFields;
+
+/**
+ * Measures the cost of injecting the owner, clock and random seed into a newly created
+ * feature, as {@code Resolver} and {@code EntityController} do for every {@code Feature}
+ * of every {@code Entity} at startup.
+ * <p>
+ * {@code SCAN} repeats the field scan that {@code Injector} performed before the injection
+ * points were cached: walk the class hierarchy, check the annotations on every field and
+ * write through {@code Field.set}. {@code CACHED} calls {@code Injector.injectAll}, which
+ * uses {@code InjectionMetadata}.
+ * <pre>
+ *     gradle :framework:mil.sstaf.core:jmh -PjmhArgs='InjectionBenchmark -prof gc'
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class InjectionBenchmark {
+
+    public enum Strategy {
+        SCAN, CACHED
+    }
+
+    @Param({"SCAN", "CACHED"})
+    Strategy strategy;
+
+    private Owner owner;
+    private Clock clock;
+    private Long seed;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        owner = new Owner();
+        clock = new Clock();
+        seed = 12345L;
+    }
+
+    @Benchmark
+    public Target inject() {
+        Target target = new Target();
+        if (strategy == Strategy.SCAN) {
+            scanAndInject(target, owner);
+            scanAndInject(target, clock);
+            scanAndInject(target, seed);
+        } else {
+            Injector.injectAll(target, owner, clock, seed);
+        }
+        return target;
+    }
+
+    private static void scanAndInject(final Object target, final Object implementation) {
+        getAllFields(target.getClass()).forEach(field -> {
+            if (field.getAnnotation(Injected.class) != null ||
+                    field.getAnnotation(Requires.class) != null) {
+                if (field.getType().isAssignableFrom(implementation.getClass())) {
+                    set(target, field, implementation);
+                }
+            }
+        });
+    }
+
+    private static void set(final Object target, final Field field, final Object implementation) {
+        try {
+            final boolean accessible = field.canAccess(target);
+            if (!accessible) {
+                field.setAccessible(true);
+            }
+            field.set(target, implementation);
+            field.setAccessible(accessible);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static class Owner {
+    }
+
+    public static class Clock {
+    }
+
+    /**
+     * Stands in for the framework's base feature, with injection points spread across a
+     * short class hierarchy and a typical number of uninjected fields.
+     */
+    public static class BaseTarget {
+        @Injected
+        private Owner owner;
+
+        @Injected
+        private Clock clock;
+
+        private String name = "base";
+        private int majorVersion = 1;
+        private int minorVersion = 0;
+        private boolean initialized = false;
+    }
+
+    public static class Target extends BaseTarget {
+        @Injected(name = "randomSeed")
+        private Long seed;
+
+        @Requires
+        private Runnable dependency;
+
+        private double speed;
+        private double heading;
+        private Object state;
+    }
+}
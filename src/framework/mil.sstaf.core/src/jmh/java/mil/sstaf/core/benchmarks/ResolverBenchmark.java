@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.benchmarks;
+
+import mil.sstaf.core.entity.EntityHandle;
+import mil.sstaf.core.features.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the startup cost of resolving the {@code Feature}s of one {@code Entity}, as
+ * {@code FeatureManager} does for every {@code Entity} when a scenario is built.
+ * <p>
+ * {@code RESOLVE} discards the cached {@code ResolutionPlan}s before each resolution, so
+ * every entity searches for implementations, scans {@code @Requires} fields and matches
+ * the feature cache. {@code REPLAY} keeps the plan recorded by the first entity and
+ * replays it for the rest.
+ * <pre>
+ *     gradle :framework:mil.sstaf.core:jmh -PjmhArgs='ResolverBenchmark -prof gc'
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ResolverBenchmark {
+
+    public enum Strategy {
+        RESOLVE, REPLAY
+    }
+
+    @Param({"RESOLVE", "REPLAY"})
+    Strategy strategy;
+
+    private List<FeatureSpecification> specifications;
+    private EntityHandle owner;
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Loaders.registerClass(Leader.class);
+        Loaders.registerClass(Sensor.class);
+        Loaders.registerClass(Mover.class);
+        Loaders.registerClass(Terrain.class);
+        Loaders.registerClass(Weather.class);
+        specifications = List.of(spec("Leader", 1), spec("Weather", 1));
+        owner = EntityHandle.makeDummyHandle();
+    }
+
+    @Benchmark
+    public List<Feature> resolve() {
+        if (strategy == Strategy.RESOLVE) {
+            Resolver.clearPlanCache();
+        }
+        Map<String, FeatureConfiguration> configurations = new HashMap<>();
+        for (String name : new String[]{"Leader", "Sensor", "Mover", "Terrain", "Weather"}) {
+            configurations.put(name, FeatureConfiguration.builder().build());
+        }
+        Resolver resolver = new Resolver(new ConcurrentHashMap<>(), configurations, owner, ++seed,
+                ModuleLayer.boot());
+        return resolver.loadAndResolveDependencies(specifications);
+    }
+
+    private static FeatureSpecification spec(final String name, final int majorVersion) {
+        return FeatureSpecification.builder()
+                .featureName(name)
+                .majorVersion(majorVersion)
+                .minorVersion(0)
+                .requireExact(false).build();
+    }
+
+    public static class Leader extends BaseFeature {
+        @Requires(name = "Sensor", majorVersion = 1)
+        private Sensor sensor;
+
+        @Requires(name = "Mover", majorVersion = 1)
+        private Mover mover;
+
+        public Leader() {
+            super("Leader", 1, 0, 0, false, "");
+        }
+    }
+
+    public static class Sensor extends BaseFeature {
+        @Requires(name = "Terrain", majorVersion = 1)
+        private Terrain terrain;
+
+        public Sensor() {
+            super("Sensor", 1, 0, 0, false, "");
+        }
+    }
+
+    public static class Mover extends BaseFeature {
+        @Requires(name = "Terrain", majorVersion = 1)
+        private Terrain terrain;
+
+        public Mover() {
+            super("Mover", 1, 0, 0, false, "");
+        }
+    }
+
+    public static class Terrain extends BaseFeature {
+        public Terrain() {
+            super("Terrain", 1, 0, 0, false, "");
+        }
+    }
+
+    public static class Weather extends BaseFeature {
+        @Requires(name = "Terrain", majorVersion = 1)
+        private Terrain terrain;
+
+        public Weather() {
+            super("Weather", 1, 0, 0, false, "");
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.entity;
+
+import jdk.jfr.*;
+
+/**
+ * JDK Flight Recorder event for one invocation of {@code Agent.tick()}.
+ */
+@Name("mil.sstaf.AgentTick")
+@Label("Agent Tick")
+@Category({"SSTAF", "Entity"})
+@Description("Execution of an Agent on a tick")
+@StackTrace(false)
+@Threshold("1 ms")
+final class AgentTickEvent extends Event {
+
+    @Label("Entity Path")
+    String entityPath;
+
+    @Label("Feature")
+    String feature;
+
+    @Label("Simulation Time (ms)")
+    long simulationTime_ms;
+}
@@ -19,12 +19,18 @@ package mil.sstaf.core.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
 import mil.sstaf.core.features.ExceptionContent;
 import mil.sstaf.core.features.FeatureConfiguration;
 import mil.sstaf.core.features.FeatureSpecification;
 import mil.sstaf.core.features.ProcessingResult;
+import mil.sstaf.core.features.SnapshotContext;
+import mil.sstaf.core.metrics.Gauge;
+import mil.sstaf.core.metrics.LatencyHistogram;
+import mil.sstaf.core.metrics.MetricsRegistry;
 import mil.sstaf.core.module.ModuleLayerDefinition;
 import mil.sstaf.core.util.Injected;
 import mil.sstaf.core.util.RNGUtilities;
@@ -85,7 +91,7 @@ public abstract class BaseEntity implements Entity {
     //
     @Builder.Default
     @JsonIgnore
-    protected Queue<Message> inboundQueue = null;
+    protected InboundQueue inboundQueue = null;
     @Builder.Default
     @JsonIgnore
     protected Queue<Message> outboundQueue = null;
@@ -119,6 +125,28 @@ public abstract class BaseEntity implements Entity {
     @JsonIgnore
     private AtomicLong msgCounter = null;
 
+    //
+    // When set, messages from this Entity are numbered by msgCounter rather than by the
+    // counter shared by all messages, so that the numbering does not depend on how the
+    // work of other entities was interleaved.
+    //
+    @Getter
+    @Setter
+    @Builder.Default
+    @JsonIgnore
+    private volatile boolean ownMessageSequence = false;
+
+    //
+    // Receive the inbound queue depth and the time spent processing messages on each
+    // tick, when metrics are being gathered.
+    //
+    @Builder.Default
+    @JsonIgnore
+    private Gauge inboundDepthGauge = null;
+    @Builder.Default
+    @JsonIgnore
+    private LatencyHistogram processTimeHistogram = null;
+
     @Getter
     @Builder.Default
     @JsonIgnore
@@ -155,7 +183,7 @@ public abstract class BaseEntity implements Entity {
             logger.debug("Entity '{}' constructed, features = {}", name,
                     featureManager.generateConfigurationReport());
         }
-        inboundQueue = new PriorityQueue<>(new MessageQueueComparator());
+        inboundQueue = new InboundQueue();
         outboundQueue = new ConcurrentLinkedQueue<>();
         msgCounter = new AtomicLong(0);
     }
@@ -167,7 +195,7 @@ public abstract class BaseEntity implements Entity {
         this.name = uuid.toString();
         this.randomGenerator = null;
         this.id = -666L;
-        inboundQueue = new PriorityQueue<>(new MessageQueueComparator());
+        inboundQueue = new InboundQueue();
         outboundQueue = new ConcurrentLinkedQueue<>();
         msgCounter = new AtomicLong(0);
     }
@@ -179,7 +207,7 @@ public abstract class BaseEntity implements Entity {
         this.id = id;
         this.handle = new EntityHandle(this);
         this.uuid = UUID.randomUUID();
-        inboundQueue = new PriorityQueue<>(new MessageQueueComparator());
+        inboundQueue = new InboundQueue();
         outboundQueue = new ConcurrentLinkedQueue<>();
         msgCounter = new AtomicLong(0);
     }
@@ -293,38 +321,53 @@ public abstract class BaseEntity implements Entity {
         initialized = true;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasAgents() {
+        return featureManager != null && featureManager.hasAgents();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasBlockingFeatures() {
+        return featureManager != null && featureManager.hasBlockingFeatures();
+    }
+
     /**
      * Returns the time of the next event in the queue.
      *
-     * @return Time of the next event or Double.POSITIVE_INFINITY if there is no event.
+     * @return Time of the next event or Long.MAX_VALUE if there is no event.
      */
-    private long getNextEventTime() {
-        Message message = inboundQueue.peek();
-        if (message instanceof EntityEvent) {
-            return ((EntityEvent) message).getEventTime_ms();
-        } else {
+    @Override
+    public long getNextEventTime() {
+        if (inboundQueue.getImmediateCount() > 0) {
             return Long.MAX_VALUE;
         }
+        return inboundQueue.getFirstEventTime();
     }
 
     /**
      * Polls the queue for the next event whose eventTime is less than or equal to the current simulation time.
      *
      * @param currentTime_ms the current simulation time
-     * @return An Optional that contains the Event or is empty if no events are found.
+     * @return the next {@code Message} or null if nothing is due.
      */
-    private Optional<Message> getNextMessage(final long currentTime_ms) {
+    private Message getNextMessage(final long currentTime_ms) {
         Message message = inboundQueue.peek();
         if (message == null) {
-            return Optional.empty();
+            return null;
         } else {
             if (message instanceof EntityEvent) {
                 if (((EntityEvent) message).getEventTime_ms() > currentTime_ms) {
-                    return Optional.empty();
+                    return null;
                 }
             }
         }
-        return Optional.ofNullable(inboundQueue.poll());
+        return inboundQueue.poll();
     }
 
     /**
@@ -366,14 +409,25 @@ public abstract class BaseEntity implements Entity {
     @Override
     public long processMessages(final long currentTime_ms) {
         checkInit();
-        logger.trace("Entity {}, starting tick at {}", getPath(), currentTime_ms);
-        Optional<Message> optMessage;
-        while ((optMessage = getNextMessage(currentTime_ms)).isPresent()) {
-            Message message = optMessage.get();
+        final boolean trace = logger.isTraceEnabled();
+        if (trace) {
+            logger.trace("Entity {}, starting tick at {}", getPath(), currentTime_ms);
+        }
+        final LatencyHistogram processTime = processTimeHistogram;
+        final long start_ns = processTime == null ? 0 : System.nanoTime();
+        if (inboundDepthGauge != null) {
+            inboundDepthGauge.set(inboundQueue.size());
+        }
+        Message message;
+        while ((message = getNextMessage(currentTime_ms)) != null) {
             try {
-                logger.trace("Entity {}, processing {} at {}", getPath(), message, currentTime_ms);
+                if (trace) {
+                    logger.trace("Entity {}, processing {} at {}", getPath(), message, currentTime_ms);
+                }
                 ProcessingResult pr = featureManager.process(message, currentTime_ms);
-                logger.trace("Entity {}, result was {}", getPath(), pr);
+                if (trace) {
+                    logger.trace("Entity {}, result was {}", getPath(), pr);
+                }
                 routeProcessingResults(pr);
             } catch (Exception e) {
                 logger.error("Entity {}: {}", name, e);
@@ -381,13 +435,41 @@ public abstract class BaseEntity implements Entity {
                 String errMsg = "Entity " + name + ": Error at time " + currentTime_ms + " ms, processing " + message;
                 sendErrorResponse(message.getSequenceNumber(), errMsg, e, message.getRespondTo());
             }
-            if (logger.isTraceEnabled()) {
+            if (trace) {
                 logger.trace("Entity {}, done processing message", getName());
             }
         }
+        if (processTime != null) {
+            processTime.record(System.nanoTime() - start_ns);
+        }
         return getNextEventTime();
     }
 
+    /**
+     * Sets the registry that receives the metrics of this {@code Entity} and its
+     * features. The depth of the inbound queue at the start of each tick and the time
+     * spent processing messages are recorded under
+     * {@code entity.inboundDepth.<force path>} and {@code entity.processTime.<force path>}.
+     * <p>
+     * This must be invoked after the {@code Entity} has been assigned to its force and
+     * before it is ticked.
+     *
+     * @param metrics the registry, or null to stop recording
+     */
+    public void setMetrics(final MetricsRegistry metrics) {
+        if (metrics == null) {
+            inboundDepthGauge = null;
+            processTimeHistogram = null;
+        } else {
+            String forcePath = handle.getForcePath();
+            inboundDepthGauge = metrics.gauge("entity.inboundDepth." + forcePath);
+            processTimeHistogram = metrics.histogram("entity.processTime." + forcePath);
+        }
+        if (featureManager != null) {
+            featureManager.setMetrics(metrics);
+        }
+    }
+
 
     /**
      * Routes any messages within processing results to either the inbound or outbound queues according to their
@@ -396,23 +478,32 @@ public abstract class BaseEntity implements Entity {
      * @param pr the ProcessingResult
      */
     private void routeProcessingResults(ProcessingResult pr) {
-        pr.messages.forEach(m -> {
+        final List<Message> messages = pr.messages;
+        final boolean trace = logger.isTraceEnabled();
+        for (int i = 0; i < messages.size(); ++i) {
+            final Message m = messages.get(i);
             if (m.getDestination().equals(Address.NOWHERE)) {
-                logger.trace("In {}, dropping message to NOWHERE from {}, contents = {}",
-                        getName(), m.getSource().handlerName, m.getContent());
+                if (trace) {
+                    logger.trace("In {}, dropping message to NOWHERE from {}, contents = {}",
+                            getName(), m.getSource().handlerName, m.getContent());
+                }
             } else if (m.getDestination().entityHandle.equals(this.handle)) {
-                logger.trace("In {}, submitting local message from {} to {}, contents = {}",
-                        getName(), m.getSource().handlerName, m.getDestination().handlerName, m.getContent());
+                if (trace) {
+                    logger.trace("In {}, submitting local message from {} to {}, contents = {}",
+                            getName(), m.getSource().handlerName, m.getDestination().handlerName, m.getContent());
+                }
                 inboundQueue.offer(m);
             } else {
-                logger.trace("In {}, submitting message from {} to {}:{}, contents = {}",
-                        getName(), m.getSource().handlerName,
-                        m.getDestination().entityHandle.getPath(),
-                        m.getDestination().handlerName,
-                        m.getContent());
+                if (trace) {
+                    logger.trace("In {}, submitting message from {} to {}:{}, contents = {}",
+                            getName(), m.getSource().handlerName,
+                            m.getDestination().entityHandle.getPath(),
+                            m.getDestination().handlerName,
+                            m.getContent());
+                }
                 outboundQueue.offer(m);
             }
-        });
+        }
     }
 
     /**
@@ -437,6 +528,51 @@ public abstract class BaseEntity implements Entity {
         outboundQueue.offer(out);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ObjectNode snapshot(final SnapshotContext context) {
+        checkInit();
+        ObjectNode node = context.getObjectMapper().createObjectNode();
+        node.put("path", handle.getForcePath());
+        node.put("messageCounter", msgCounter.get());
+        node.set("random", context.writeRandom(randomGenerator));
+        node.set("inbound", context.writeMessages(inboundQueue));
+        node.set("outbound", context.writeMessages(outboundQueue));
+        if (featureManager != null) {
+            node.set("features", featureManager.snapshot(context));
+        }
+        return node;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void restore(final JsonNode state, final SnapshotContext context) {
+        checkInit();
+        if (!handle.getForcePath().equals(state.path("path").asText())) {
+            throw new SSTAFException("Checkpoint state for " + state.path("path").asText()
+                    + " cannot be restored into " + handle.getForcePath());
+        }
+        msgCounter.set(state.path("messageCounter").asLong());
+        RandomGenerator restored = context.readRandom(state.get("random"));
+        if (restored != null) {
+            randomGenerator = restored;
+        }
+        inboundQueue.clear();
+        inboundQueue.addAll(context.readMessages(state.get("inbound")));
+        outboundQueue.clear();
+        outboundQueue.addAll(context.readMessages(state.get("outbound")));
+        if (featureManager != null && state.has("features")) {
+            featureManager.restore(state.get("features"), context);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Restored {} with {} inbound messages", name, inboundQueue.size());
+        }
+    }
+
     static class Dummy extends BaseEntity {
         @Override
         public String getPath() {
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.entity;
+
+import jdk.jfr.*;
+
+/**
+ * JDK Flight Recorder event for the dispatch of a message to a {@code Handler}.
+ * <p>
+ * The fields are only filled in when the event is going to be recorded, so the event
+ * costs two clock reads per message when enabled and nothing once the JIT has seen that
+ * it is disabled. Only dispatches that take longer than the threshold, 1 ms unless the
+ * recording settings say otherwise, are recorded.
+ */
+@Name("mil.sstaf.Dispatch")
+@Label("Handler Dispatch")
+@Category({"SSTAF", "Entity"})
+@Description("Processing of a message by a Handler")
+@StackTrace(false)
+@Threshold("1 ms")
+final class DispatchEvent extends Event {
+
+    @Label("Entity Path")
+    String entityPath;
+
+    @Label("Feature")
+    String feature;
+
+    @Label("Content Type")
+    String contentType;
+
+    @Label("Simulation Time (ms)")
+    long simulationTime_ms;
+}
@@ -17,6 +17,9 @@
 
 package mil.sstaf.core.entity;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import mil.sstaf.core.features.SnapshotContext;
+
 public interface Entity extends MessageDriven {
     /**
      * The delimiter to use between levels in the path.
@@ -46,6 +49,29 @@ public interface Entity extends MessageDriven {
 
     long runAgents(long currentTime_ms);
 
+    /**
+     * Answers whether any {@code Agent}s are registered with this {@code Entity}. An
+     * {@code Entity} with {@code Agent}s has work to do on every tick.
+     *
+     * @return true if at least one {@code Agent} is registered.
+     */
+    boolean hasAgents();
+
+    /**
+     * Answers whether any {@code Feature} in this {@code Entity} is marked as
+     * {@code Blocking}.
+     *
+     * @return true if processing this {@code Entity} may block on I/O.
+     */
+    boolean hasBlockingFeatures();
+
+    /**
+     * Provides the time of the next {@code EntityEvent} in the inbound queue.
+     *
+     * @return the time of the next event or {@code Long.MAX_VALUE} if there is no event.
+     */
+    long getNextEventTime();
+
     void init();
 
     boolean canHandle(Class<?> contentClass);
@@ -55,6 +81,23 @@ public interface Entity extends MessageDriven {
     void sendErrorResponse(long id, String message, Throwable exception,
                            Address destination);
 
+    /**
+     * Captures the dynamic state of this {@code Entity}: its queues, random number
+     * generator, message counter and the state of any {@code Snapshottable} features.
+     *
+     * @param context the {@code SnapshotContext}
+     * @return the state
+     */
+    JsonNode snapshot(SnapshotContext context);
+
+    /**
+     * Replaces the dynamic state of this initialized {@code Entity} with a saved state.
+     *
+     * @param state   the state produced by {@link #snapshot(SnapshotContext)}
+     * @param context the {@code SnapshotContext}
+     */
+    void restore(JsonNode state, SnapshotContext context);
+
 
 }
 
@@ -115,6 +115,16 @@ final public class EntityHandle implements Comparable<EntityHandle> {
         return wrapped.generateSequenceNumber();
     }
 
+    /**
+     * Answers whether messages from the wrapped {@code Entity} are numbered by its own
+     * counter.
+     *
+     * @return true if the {@code Entity} numbers its own messages
+     */
+    public boolean hasOwnMessageSequence() {
+        return wrapped instanceof BaseEntity && ((BaseEntity) wrapped).isOwnMessageSequence();
+    }
+
     /**
      * Provides the current path for this Entity.
      * <p>
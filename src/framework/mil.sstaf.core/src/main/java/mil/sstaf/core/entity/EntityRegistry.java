@@ -17,6 +17,8 @@
 
 package mil.sstaf.core.entity;
 
+import mil.sstaf.core.util.SSTAFException;
+
 import java.util.*;
 
 /**
@@ -34,6 +36,7 @@ public class EntityRegistry {
     private final Map<String, EntityHandle> pathToHandleMap = new HashMap<>();
     private final Map<Long, Entity> allEntities = new HashMap<>();
     private final List<Entity> simulationEntities = new ArrayList<>();
+    private final List<Entity> remoteEntities = new ArrayList<>();
     private Address clientAddress;
 
 
@@ -92,6 +95,38 @@ public class EntityRegistry {
     }
 
 
+    /**
+     * Registers a proxy for an {@code Entity} that is hosted by another process.
+     * <p>
+     * The proxy can be found by its handle, id and path like any other {@code Entity},
+     * so messages can be addressed to it, but it is not a simulation entity. This is
+     * invoked after {@link #compileEntityMaps()}.
+     *
+     * @param force the {@code Force} of the remote {@code Entity}
+     * @param proxy the proxy
+     */
+    public void registerRemoteEntity(final Force force, final Entity proxy) {
+        proxy.setForce(force);
+        EntityHandle entityHandle = proxy.getHandle();
+        String path = force.name() + Entity.ENTITY_PATH_DELIMITER + proxy.getPath();
+        if (pathToHandleMap.containsKey(path)) {
+            throw new SSTAFException("Remote entity " + path + " is already registered");
+        }
+        allEntities.put(proxy.getId(), proxy);
+        allEntityHandles.put(proxy.getId(), entityHandle);
+        pathToHandleMap.put(path, entityHandle);
+        remoteEntities.add(proxy);
+    }
+
+    /**
+     * Provides the proxies for entities hosted by other processes
+     *
+     * @return an unmodifiable collection of the proxies
+     */
+    public Collection<Entity> getRemoteEntities() {
+        return Collections.unmodifiableCollection(remoteEntities);
+    }
+
     /**
      * Provides the {@code Address} for the client proxy
      *
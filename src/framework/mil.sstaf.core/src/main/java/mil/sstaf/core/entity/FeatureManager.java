@@ -17,8 +17,13 @@
 
 package mil.sstaf.core.entity;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import mil.sstaf.core.configuration.SSTAFConfiguration;
 import mil.sstaf.core.features.*;
+import mil.sstaf.core.metrics.LatencyHistogram;
+import mil.sstaf.core.metrics.MetricsRegistry;
 import mil.sstaf.core.module.ModuleLayerDefinition;
 import mil.sstaf.core.module.ModuleLayerSupport;
 import mil.sstaf.core.util.*;
@@ -36,16 +41,42 @@ import java.util.concurrent.atomic.AtomicLong;
 public class FeatureManager {
 
     private static final Logger logger = LoggerFactory.getLogger(FeatureManager.class);
-    private final Map<FeatureSpecification, Feature> features = new HashMap<>();
+    //
+    // Kept in registration order, so that features are initialized and Agents are
+    // ticked in the same order on every run.
+    //
+    private final Map<FeatureSpecification, Feature> features = new LinkedHashMap<>();
     private final Map<Class<?>, Handler> contentToHandlerMap = new HashMap<>();
     private final Map<String, Handler> nameToHandlerMap = new HashMap<>();
-    private final Set<Agent> agents = new HashSet<>();
+    //
+    // The content classes accepted by each Handler and the names of every registered
+    // content class, both captured once at registration.
+    //
+    private final Map<Handler, Set<Class<?>>> handlerToContentMap = new IdentityHashMap<>();
+    private final Map<String, Class<?>> contentClassNames = new HashMap<>();
+    //
+    // Immutable dispatch table keyed by content class. Cleared whenever a Handler is
+    // registered so that stale routes are never served, and compiled again on first use.
+    //
+    private Map<Class<?>, Route> routes = null;
+    private final Set<Agent> agents = new LinkedHashSet<>();
+    //
+    // Reused on every tick to collect the Agent results before merging them.
+    //
+    private final List<ProcessingResult> agentResults = new ArrayList<>();
     //
     // Needed for return address in Agent messages.
     //
     private final EntityHandle owner;
     private final AtomicLong messageCounter = new AtomicLong(0);
     //
+    // Receives the latency of each Handler and Agent when set. The histograms are
+    // looked up once per Handler and shared by every Entity with the same feature.
+    //
+    private MetricsRegistry metrics = null;
+    private final Map<Handler, LatencyHistogram> handlerLatency = new IdentityHashMap<>();
+    private final Map<Agent, LatencyHistogram> agentLatency = new IdentityHashMap<>();
+    //
     // ModuleLayer support
     //
     ModuleLayer moduleLayer;
@@ -100,9 +131,7 @@ public class FeatureManager {
             Resolver resolver = new Resolver(this.features, configurations, owner,
                     RNGUtilities.generateSubSeed(generator), moduleLayer);
 
-            features.forEach(spec -> {
-                logger.debug("Resolving {}", spec);
-                Feature f = resolver.loadAndResolveDependencies(spec);
+            resolver.loadAndResolveDependencies(features).forEach(f -> {
                 logger.debug("Got {} / {}", f.getName(), f.getDescription());
                 if (f instanceof Agent) {
                     register((Agent) f);
@@ -192,9 +221,27 @@ public class FeatureManager {
                 return ProcessingResult.of(b.build());
             }
         } else {
-            logger.trace("Dispatching {} to {}", message, handler.getName());
-            return handler.process(content, scheduledTime_ms, currentTime_ms,
+            if (logger.isTraceEnabled()) {
+                logger.trace("Dispatching {} to {}", message, handler.getName());
+            }
+            DispatchEvent event = new DispatchEvent();
+            event.begin();
+            final LatencyHistogram latency = metrics == null ? null
+                    : handlerLatency.computeIfAbsent(handler, h -> metrics.histogram("handler.latency." + h.getName()));
+            final long start_ns = latency == null ? 0 : System.nanoTime();
+            ProcessingResult result = handler.process(content, scheduledTime_ms, currentTime_ms,
                     message.getSource(), message.getSequenceNumber(), message.getRespondTo());
+            if (latency != null) {
+                latency.record(System.nanoTime() - start_ns);
+            }
+            if (event.shouldCommit()) {
+                event.entityPath = getOwnerPath();
+                event.feature = handler.getName();
+                event.contentType = content.getClass().getName();
+                event.simulationTime_ms = currentTime_ms;
+                event.commit();
+            }
+            return result;
         }
     }
 
@@ -207,38 +254,20 @@ public class FeatureManager {
      */
     Handler getHandler(final Class<? extends HandlerContent> contentClass, final String handlerName) {
         Objects.requireNonNull(contentClass, "Content class was null");
-        Handler handler;
-        if (handlerName == null) {
-            logger.trace("In {}, selecting handler using class {}",
-                    owner.getPath(), contentClass.getName());
-            handler = contentToHandlerMap.get(contentClass);
-
-            if (handler == null) {
-                for (Class<?> key : contentToHandlerMap.keySet()) {
-                    if (key.getName().equals(contentClass.getName())) {
-                        logger.error("Duplicated class! {} key CL = {}, message CL = {} ",
-                                contentClass.getName(),
-                                key.getClassLoader(),
-                                contentClass.getClassLoader());
-                    }
-                }
-            }
-        } else {
-            logger.trace("In {}, selecting handler using destination name {}",
-                    owner.getPath(), handlerName);
-            handler = nameToHandlerMap.get(handlerName);
-            if (handler != null && !handler.contentHandled().contains(contentClass)) {
-                handler = null;
-                logger.debug("In {}, handler {} does not support {}",
-                        owner.getPath(), handlerName, contentClass.getName());
-            }
+        Map<Class<?>, Route> table = routes;
+        if (table == null) {
+            table = compileRoutes();
+            routes = table;
+        }
+        Route route = table.get(contentClass);
+        if (route == null) {
+            route = buildRoute(contentClass);
+        }
+        Handler handler = handlerName == null ? route.byType : route.byName.get(handlerName);
+        if (logger.isDebugEnabled()) {
+            logger.debug("In {}, selected {} to handle {}", owner.getPath(),
+                    handler == null ? "null" : handler.getName(), contentClass.getName());
         }
-        logger.debug("In {}, selected {} to handle {}", owner.getPath(),
-                handler == null ? "null" : handler.getName(), contentClass.getName());
-        logger.debug("In {}, module for message {}, classloader for module {}",
-                owner.getPath(),
-                contentClass.getModule().getName(),
-                contentClass.getModule().getClassLoader());
         return handler;
     }
 
@@ -296,6 +325,29 @@ public class FeatureManager {
         return contentToHandlerMap.containsKey(contentClass);
     }
 
+    /**
+     * Answers whether any {@code Agent}s have been registered.
+     *
+     * @return true if there is at least one {@code Agent}
+     */
+    public boolean hasAgents() {
+        return !agents.isEmpty();
+    }
+
+    /**
+     * Answers whether any registered {@code Feature} is annotated as {@code Blocking}.
+     *
+     * @return true if at least one {@code Feature} blocks on I/O
+     */
+    public boolean hasBlockingFeatures() {
+        for (Feature feature : features.values()) {
+            if (feature.getClass().isAnnotationPresent(Blocking.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Invokes all Agents at the current time.
      *
@@ -304,27 +356,68 @@ public class FeatureManager {
      */
     public ProcessingResult runAllAgents(final long currentTime_ms) {
         checkInit();
-        logger.trace("Entity {} entering runAllAgents", getOwnerName());
-        List<ProcessingResult> output = new ArrayList<>();
-        agents.forEach(agent -> {
-            logger.trace("Entity {} invoking agent {} at {}",
-                    getOwnerName(),
-                    agent.getClass().getName(), currentTime_ms);
+        final boolean trace = logger.isTraceEnabled();
+        if (trace) {
+            logger.trace("Entity {} entering runAllAgents", getOwnerName());
+        }
+        agentResults.clear();
+        for (Agent agent : agents) {
+            if (trace) {
+                logger.trace("Entity {} invoking agent {} at {}",
+                        getOwnerName(),
+                        agent.getClass().getName(), currentTime_ms);
+            }
+            AgentTickEvent event = new AgentTickEvent();
+            event.begin();
+            final LatencyHistogram latency = metrics == null ? null
+                    : agentLatency.computeIfAbsent(agent, a -> metrics.histogram("agent.latency." + a.getName()));
+            final long start_ns = latency == null ? 0 : System.nanoTime();
             ProcessingResult pr = agent.tick(currentTime_ms);
-            logger.trace("In Entity {}, agent {} returned {}",
-                    getOwnerName(),
-                    agent.getClass().getName(),
-                    pr);
-            output.add(pr);
-        });
-        logger.trace("Entity {} runAllAgents returning {}", getOwnerName(), output);
-        return ProcessingResult.merge(output);
+            if (latency != null) {
+                latency.record(System.nanoTime() - start_ns);
+            }
+            if (event.shouldCommit()) {
+                event.entityPath = getOwnerPath();
+                event.feature = agent.getName();
+                event.simulationTime_ms = currentTime_ms;
+                event.commit();
+            }
+            if (trace) {
+                logger.trace("In Entity {}, agent {} returned {}",
+                        getOwnerName(),
+                        agent.getClass().getName(),
+                        pr);
+            }
+            agentResults.add(pr);
+        }
+        if (trace) {
+            logger.trace("Entity {} runAllAgents returning {}", getOwnerName(), agentResults);
+        }
+        ProcessingResult merged = ProcessingResult.merge(agentResults);
+        agentResults.clear();
+        return merged;
+    }
+
+    /**
+     * Sets the registry that receives the latency of every {@code Handler} and
+     * {@code Agent}, under {@code handler.latency.<name>} and {@code agent.latency.<name>}.
+     *
+     * @param metrics the registry, or null to stop recording
+     */
+    void setMetrics(final MetricsRegistry metrics) {
+        this.metrics = metrics;
+        handlerLatency.clear();
+        agentLatency.clear();
     }
 
     private String getOwnerName() {
         return owner == null ? "NULL" : owner.getName();
     }
 
+    private String getOwnerPath() {
+        return owner == null ? "NULL" : owner.getForcePath();
+    }
+
     /**
      * Initialized the set of {@code MessageHandlers} and {@code TickAgents}
      * <p>
@@ -337,9 +430,7 @@ public class FeatureManager {
         injectAll(owner);
         features.values().forEach(feature -> {
             if (feature instanceof Handler) {
-                Handler handler = (Handler) feature;
-                handler.contentHandled().forEach(message -> contentToHandlerMap.put(message, handler));
-                nameToHandlerMap.putIfAbsent(handler.getName(), handler);
+                indexHandler((Handler) feature);
             }
             if (feature instanceof Agent) {
                 Agent agent = (Agent) feature;
@@ -347,6 +438,11 @@ public class FeatureManager {
             }
             feature.init();
         });
+        //
+        // Compile the dispatch table up front so that the first message of each type
+        // does not pay for building its route.
+        //
+        routes = compileRoutes();
         initialized = true;
     }
 
@@ -380,7 +476,23 @@ public class FeatureManager {
     public <T extends Handler> void register(final T handler) {
         Objects.requireNonNull(handler, "Handler cannot be null");
         register((Feature) handler);
-        handler.contentHandled().forEach(message -> contentToHandlerMap.put(message, handler));
+        indexHandler(handler);
+        routes = null;
+    }
+
+    /**
+     * Records the content classes and name of a Handler in the lookup tables
+     * used to build the dispatch routes.
+     *
+     * @param handler the Handler
+     */
+    private void indexHandler(final Handler handler) {
+        Set<Class<?>> content = new HashSet<>(handler.contentHandled());
+        handlerToContentMap.put(handler, content);
+        content.forEach(contentClass -> {
+            contentToHandlerMap.put(contentClass, handler);
+            contentClassNames.putIfAbsent(contentClass.getName(), contentClass);
+        });
         nameToHandlerMap.putIfAbsent(handler.getName(), handler);
     }
 
@@ -413,6 +525,67 @@ public class FeatureManager {
         features.putIfAbsent(ss, feature);
     }
 
+    /**
+     * Captures the state of every {@code Snapshottable} feature, keyed by feature name.
+     * Features that cannot be saved are listed by name.
+     *
+     * @param context the {@code SnapshotContext}
+     * @return the saved state
+     */
+    public ObjectNode snapshot(final SnapshotContext context) {
+        ObjectNode node = context.getObjectMapper().createObjectNode();
+        ObjectNode states = node.putObject("states");
+        ArrayNode unsaved = node.putArray("unsaved");
+        for (Feature feature : getDistinctFeatures()) {
+            if (feature instanceof Snapshottable) {
+                states.set(feature.getName(), ((Snapshottable) feature).snapshot(context));
+            } else {
+                unsaved.add(feature.getName());
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Restores the state of every {@code Snapshottable} feature.
+     *
+     * @param state   the state produced by {@link #snapshot(SnapshotContext)}
+     * @param context the {@code SnapshotContext}
+     */
+    public void restore(final JsonNode state, final SnapshotContext context) {
+        JsonNode states = state.path("states");
+        for (Feature feature : getDistinctFeatures()) {
+            if (feature instanceof Snapshottable) {
+                JsonNode featureState = states.get(feature.getName());
+                if (featureState == null) {
+                    logger.warn("No saved state for feature {} in {}", feature.getName(), getOwnerName());
+                } else {
+                    ((Snapshottable) feature).restore(featureState, context);
+                }
+            }
+        }
+        if (logger.isDebugEnabled() && state.path("unsaved").size() > 0) {
+            logger.debug("Features in {} restored to their initial state: {}", getOwnerName(), state.get("unsaved"));
+        }
+    }
+
+    /**
+     * Provides each registered {@code Feature} once, ordered by name.
+     *
+     * @return the features
+     */
+    private List<Feature> getDistinctFeatures() {
+        Set<Feature> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Feature> distinct = new ArrayList<>(features.size());
+        for (Feature feature : features.values()) {
+            if (seen.add(feature)) {
+                distinct.add(feature);
+            }
+        }
+        distinct.sort(Comparator.comparing(Feature::getName));
+        return distinct;
+    }
+
     public Optional<FeatureSpecification> getSpecificationForHandler(final Class<?> contentClass) {
         Handler handler = contentToHandlerMap.get(contentClass);
         if (handler == null) {
@@ -421,5 +594,73 @@ public class FeatureManager {
             return Optional.of(FeatureSpecification.from(handler));
         }
     }
-}
 
+    /**
+     * The Handlers that can receive one content class, either by type alone or
+     * through a named destination.
+     */
+    private static final class Route {
+        final Handler byType;
+        final Map<String, Handler> byName;
+
+        Route(final Handler byType, final Map<String, Handler> byName) {
+            this.byType = byType;
+            this.byName = byName;
+        }
+    }
+
+    /**
+     * Builds the route for every registered content class, so that dispatching a
+     * message costs a single lookup.
+     *
+     * @return the dispatch table
+     */
+    private Map<Class<?>, Route> compileRoutes() {
+        Set<Class<?>> contentClasses = new HashSet<>(contentToHandlerMap.keySet());
+        handlerToContentMap.values().forEach(contentClasses::addAll);
+        Map<Class<?>, Route> table = new HashMap<>();
+        for (Class<?> contentClass : contentClasses) {
+            table.put(contentClass, buildRoute(contentClass));
+        }
+        return Map.copyOf(table);
+    }
+
+    /**
+     * Builds the route for one content class from the registration tables.
+     *
+     * @param contentClass the content class
+     * @return the route
+     */
+    private Route buildRoute(final Class<?> contentClass) {
+        Handler byType = contentToHandlerMap.get(contentClass);
+        if (byType == null) {
+            //
+            // A class with the same name as a registered content class but a different
+            // identity was loaded through another module layer. It can't be handled here,
+            // and it is almost always a configuration error.
+            //
+            Class<?> registered = contentClassNames.get(contentClass.getName());
+            if (registered != null) {
+                logger.error("Duplicated class! {} key CL = {}, message CL = {} ",
+                        contentClass.getName(),
+                        registered.getClassLoader(),
+                        contentClass.getClassLoader());
+            }
+        }
+        Map<String, Handler> byName = new HashMap<>();
+        nameToHandlerMap.forEach((name, handler) -> {
+            Set<Class<?>> content = handlerToContentMap.get(handler);
+            if (content != null && content.contains(contentClass)) {
+                byName.put(name, handler);
+            }
+        });
+        if (logger.isDebugEnabled()) {
+            logger.debug("Routed {} from module {} to {} by type and {} by name",
+                    contentClass.getName(),
+                    contentClass.getModule().getName(),
+                    byType == null ? "null" : byType.getName(),
+                    byName.keySet());
+        }
+        return new Route(byType, byName.isEmpty() ? Map.of() : byName);
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.entity;
+
+import java.util.*;
+
+/**
+ * The inbound message queue for an {@code Entity}.
+ * <p>
+ * Messages come out of the queue in the order defined by {@code MessageQueueComparator}:
+ * all immediate messages before any {@code EntityEvent}, immediate messages ordered by
+ * source {@code Address} and then sequence number, and events ordered by event time,
+ * then source and sequence number.
+ * <p>
+ * Instead of a single heap that compares every pair of messages with the full comparator,
+ * the queue keeps two lanes:
+ * <ul>
+ * <li>
+ *     Immediate messages go into a FIFO lane per source. Messages from one source nearly
+ *     always arrive in sequence order, so an insert is a hash lookup and an append.
+ *     The sources that have pending messages are kept in a small heap ordered by
+ *     {@code Address.COMPARATOR}; sources are only compared when a lane becomes active.
+ * </li>
+ * <li>
+ *     Events go into a calendar of time slots keyed on {@code eventTime_ms}. Only events
+ *     that share a time slot are compared by source and sequence number.
+ * </li>
+ * </ul>
+ * <p>
+ * The queue is not thread-safe.
+ */
+public final class InboundQueue extends AbstractQueue<Message> {
+
+    private static final MessageQueueComparator MESSAGE_ORDER = new MessageQueueComparator();
+
+    private static final Comparator<Lane> LANE_ORDER = (lane1, lane2) -> {
+        if (lane1.source == null) {
+            return lane2.source == null ? 0 : 1;
+        } else if (lane2.source == null) {
+            return -1;
+        }
+        return Address.COMPARATOR.compare(lane1.source, lane2.source);
+    };
+
+    //
+    // Immediate lane
+    //
+    private final Map<Address, Lane> lanes = new HashMap<>();
+    private final PriorityQueue<Lane> activeLanes = new PriorityQueue<>(LANE_ORDER);
+    private int numImmediate = 0;
+
+    //
+    // Timed lane
+    //
+    private final TreeMap<Long, TimeSlot> calendar = new TreeMap<>();
+    private int numEvents = 0;
+
+    /**
+     * Adds a {@code Message} to the queue.
+     *
+     * @param message the message
+     * @return true
+     */
+    @Override
+    public boolean offer(final Message message) {
+        Objects.requireNonNull(message, "Message must not be null");
+        if (message instanceof EntityEvent) {
+            EntityEvent event = (EntityEvent) message;
+            calendar.computeIfAbsent(event.getEventTime_ms(), t -> new TimeSlot()).add(event);
+            ++numEvents;
+        } else {
+            Lane lane = lanes.computeIfAbsent(message.getSource(), Lane::new);
+            lane.add(message);
+            if (!lane.active) {
+                lane.active = true;
+                activeLanes.add(lane);
+            }
+            ++numImmediate;
+        }
+        return true;
+    }
+
+    /**
+     * Removes and returns the first {@code Message} in the queue.
+     *
+     * @return the message, or null if the queue is empty
+     */
+    @Override
+    public Message poll() {
+        if (numImmediate > 0) {
+            Lane lane = activeLanes.peek();
+            Message message = lane.messages.pollFirst();
+            if (lane.messages.isEmpty()) {
+                activeLanes.poll();
+                lane.active = false;
+            }
+            --numImmediate;
+            return message;
+        } else if (numEvents > 0) {
+            Map.Entry<Long, TimeSlot> first = calendar.firstEntry();
+            EntityEvent event = first.getValue().poll();
+            if (first.getValue().isEmpty()) {
+                calendar.pollFirstEntry();
+            }
+            --numEvents;
+            return event;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the first {@code Message} in the queue without removing it.
+     *
+     * @return the message, or null if the queue is empty
+     */
+    @Override
+    public Message peek() {
+        if (numImmediate > 0) {
+            return activeLanes.peek().messages.peekFirst();
+        } else if (numEvents > 0) {
+            return calendar.firstEntry().getValue().peek();
+        }
+        return null;
+    }
+
+    /**
+     * Provides the time of the earliest {@code EntityEvent}, regardless of any
+     * immediate messages ahead of it.
+     *
+     * @return the event time, or {@code Long.MAX_VALUE} if there are no events
+     */
+    public long getFirstEventTime() {
+        return numEvents > 0 ? calendar.firstKey() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Provides the number of immediate (non-event) messages in the queue.
+     *
+     * @return the number of immediate messages
+     */
+    public int getImmediateCount() {
+        return numImmediate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return numImmediate + numEvents;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        for (Lane lane : activeLanes) {
+            lane.messages.clear();
+            lane.active = false;
+        }
+        activeLanes.clear();
+        calendar.clear();
+        numImmediate = 0;
+        numEvents = 0;
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the queue, in the order that the
+     * messages would be polled. The iterator does not support removal.
+     *
+     * @return the iterator
+     */
+    @Override
+    public Iterator<Message> iterator() {
+        List<Message> snapshot = new ArrayList<>(size());
+        List<Lane> ordered = new ArrayList<>(activeLanes);
+        ordered.sort(LANE_ORDER);
+        for (Lane lane : ordered) {
+            snapshot.addAll(lane.messages);
+        }
+        for (TimeSlot slot : calendar.values()) {
+            slot.addTo(snapshot);
+        }
+        return Collections.unmodifiableList(snapshot).iterator();
+    }
+
+    /**
+     * The immediate messages from one source.
+     */
+    private static final class Lane {
+        final Address source;
+        final ArrayDeque<Message> messages = new ArrayDeque<>();
+        boolean active = false;
+
+        Lane(Address source) {
+            this.source = source;
+        }
+
+        void add(Message message) {
+            Message last = messages.peekLast();
+            if (last == null || last.getSequenceNumber() <= message.getSequenceNumber()) {
+                messages.addLast(message);
+            } else {
+                //
+                // Out of sequence, which is rare. Rebuild the lane in order.
+                //
+                List<Message> sorted = new ArrayList<>(messages.size() + 1);
+                sorted.addAll(messages);
+                int index = sorted.size();
+                while (index > 0 && sorted.get(index - 1).getSequenceNumber() > message.getSequenceNumber()) {
+                    --index;
+                }
+                sorted.add(index, message);
+                messages.clear();
+                messages.addAll(sorted);
+            }
+        }
+    }
+
+    /**
+     * The events due at one time, ordered by source and sequence number.
+     * Most slots only ever hold one event.
+     */
+    private static final class TimeSlot {
+        private final List<EntityEvent> events = new ArrayList<>(1);
+        private int head = 0;
+
+        void add(EntityEvent event) {
+            int index = events.size();
+            while (index > head && MESSAGE_ORDER.compare(events.get(index - 1), event) > 0) {
+                --index;
+            }
+            events.add(index, event);
+        }
+
+        EntityEvent peek() {
+            return events.get(head);
+        }
+
+        EntityEvent poll() {
+            return events.get(head++);
+        }
+
+        boolean isEmpty() {
+            return head == events.size();
+        }
+
+        void addTo(List<Message> out) {
+            out.addAll(events.subList(head, events.size()));
+        }
+    }
+}
@@ -19,6 +19,7 @@ package mil.sstaf.core.entity;
 
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * Interface for all object's that communicate via asynchronous {@code Message} objects.
@@ -79,6 +80,10 @@ public interface MessageDriven {
         private final AtomicLong counter;
         private final long upperValue;
         private final String name;
+        //
+        // The block of IDs reserved for work on the current thread, as {next, end}.
+        //
+        private final ThreadLocal<long[]> reservation = new ThreadLocal<>();
 
         private BlockCounter(final String name, final long lowerValue, final long upperValue) {
             this.name = name;
@@ -87,11 +92,58 @@ public interface MessageDriven {
         }
 
         public long getID() {
+            long[] block = reservation.get();
+            if (block != null && block[0] < block[1]) {
+                return block[0]++;
+            }
             if (counter.get() == upperValue - 1) {
                 throw new IllegalStateException(name + " entity id counter has exceeded maximum supported entity count");
             }
             return counter.getAndIncrement();
         }
+
+        /**
+         * Reserves a contiguous block of IDs.
+         * <p>
+         * Used with {@link #withReservation(long, long, Supplier)} so that objects built
+         * concurrently receive the same IDs they would if they were built one at a time.
+         *
+         * @param count the number of IDs to reserve
+         * @return the first ID in the block
+         */
+        public long reserve(final long count) {
+            long first = counter.getAndAdd(count);
+            if (first + count >= upperValue) {
+                throw new IllegalStateException(name + " entity id counter has exceeded maximum supported entity count");
+            }
+            return first;
+        }
+
+        /**
+         * Performs work on the current thread, drawing IDs from a reserved block.
+         * <p>
+         * If the work needs more IDs than were reserved, the remainder are taken from the
+         * shared counter.
+         *
+         * @param first the first ID in the block
+         * @param count the number of IDs in the block
+         * @param work  the work to perform
+         * @param <T>   the type of the result
+         * @return the result of the work
+         */
+        public <T> T withReservation(final long first, final long count, final Supplier<T> work) {
+            long[] previous = reservation.get();
+            reservation.set(new long[]{first, first + count});
+            try {
+                return work.get();
+            } finally {
+                if (previous == null) {
+                    reservation.remove();
+                } else {
+                    reservation.set(previous);
+                }
+            }
+        }
     }
 
 }
@@ -49,13 +49,15 @@ public class MessageQueueComparator implements Comparator<Message> {
         if (msg1 == null) return 1;
         else if (msg2 == null) return -1;
         else {
+            //
+            // Sequence numbers are only unique per source when entities number their
+            // own messages, so the source always decides first. Sources that compare
+            // equal, by entity ID and handler name, fall through to the sequence number.
+            //
             Address source1 = msg1.getSource();
             Address source2 = msg2.getSource();
-            if (source1 != null && source1.equals(source2)) {
-                return Long.compare(msg1.getSequenceNumber(), msg2.getSequenceNumber());
-            } else {
-                return Address.COMPARATOR.compare(source1, source2);
-            }
+            int c = source1 != null && source1.equals(source2) ? 0 : Address.COMPARATOR.compare(source1, source2);
+            return c != 0 ? c : Long.compare(msg1.getSequenceNumber(), msg2.getSequenceNumber());
         }
     }
 
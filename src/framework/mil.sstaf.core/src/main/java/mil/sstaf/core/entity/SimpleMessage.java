@@ -46,13 +46,28 @@ public abstract class SimpleMessage implements Message {
     protected final HandlerContent content;
 
     protected SimpleMessage(SimpleMessageBuilder<?,?> builder) {
-        sequenceNumber = counter.getAndIncrement();
+        sequenceNumber = nextSequenceNumber(builder.source);
         this.destination = builder.destination;
         this.source = builder.source;
         this.respondTo = builder.respondTo;
         this.content = builder.content;
     }
 
+    /**
+     * Numbers a new message. Messages from an {@code Entity} that numbers its own messages
+     * take the next value of its counter, so the numbers depend only on the order in which
+     * that {@code Entity} sends. All other messages share a single counter, which makes
+     * their numbers unique but dependent on thread timing.
+     *
+     * @param source the source of the message
+     * @return the sequence number
+     */
+    private static long nextSequenceNumber(final Address source) {
+        if (source != null && source.entityHandle != null && source.entityHandle.hasOwnMessageSequence()) {
+            return source.entityHandle.getMessageSequenceNumber();
+        }
+        return counter.getAndIncrement();
+    }
 
 }
 
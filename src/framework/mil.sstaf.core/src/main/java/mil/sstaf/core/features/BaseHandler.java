@@ -4,14 +4,24 @@ import mil.sstaf.core.entity.Address;
 import mil.sstaf.core.entity.ErrorResponse;
 import mil.sstaf.core.entity.Message;
 import mil.sstaf.core.entity.MessageResponse;
+import mil.sstaf.core.util.SSTAFException;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 
-import java.util.List;
-import java.util.Objects;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
 
 /**
  * Base class for {@code Handler}s and {@code Agent}s.
+ * <p>
+ * Subclasses can either override {@code process} and {@code contentHandled} or mark one
+ * method per content type with {@link Handles}. Annotated methods are bound once per class
+ * into a table indexed by content class, which {@code process} uses to dispatch each
+ * message and {@code contentHandled} reports.
  */
 public abstract class BaseHandler
         extends BaseFeature
@@ -19,6 +29,13 @@ public abstract class BaseHandler
 
     private static final Logger logger = LoggerFactory.getLogger(BaseHandler.class);
 
+    private static final ClassValue<DispatchTable> dispatchTables = new ClassValue<>() {
+        @Override
+        protected DispatchTable computeValue(final Class<?> type) {
+            return DispatchTable.build(type);
+        }
+    };
+
     private Address address = null;
 
     /**
@@ -52,6 +69,16 @@ public abstract class BaseHandler
         return address;
     }
 
+    /**
+     * Provides the {@code Address} used as the source of messages built by this {@code Handler}.
+     * The {@code Address} is created once in {@code init()} and shared by every message.
+     *
+     * @return the source {@code Address}
+     */
+    protected Address getSourceAddress() {
+        return address == null ? Address.makeAddress(this.ownerHandle, this.getName()) : address;
+    }
+
     /**
      * Provides a descriptive String that fully identifies the Handler
      *
@@ -80,11 +107,49 @@ public abstract class BaseHandler
     }
 
     /**
-     * {@inheritDoc}
+     * Provides the content classes named by the {@link Handles} methods of this {@code Handler}.
+     *
+     * @return a {@code List} of {@code Class} objects.
      */
     @Override
     public List<Class<? extends HandlerContent>> contentHandled() {
-        return List.of();
+        return dispatchTables.get(getClass()).contentHandled;
+    }
+
+    /**
+     * Dispatches the content to the {@link Handles} method for its class. Content without a
+     * matching method is passed to {@code processUnsupported}.
+     * <p>
+     * {@inheritDoc}
+     */
+    @Override
+    public ProcessingResult process(final HandlerContent arg, final long scheduledTime_ms, final long currentTime_ms,
+                                    final Address from, final long id, final Address respondTo) {
+        MethodHandle method = dispatchTables.get(getClass()).methods.get(arg.getClass());
+        if (method == null) {
+            return processUnsupported(arg, id, respondTo);
+        }
+        try {
+            return (ProcessingResult) method.invokeExact(this, arg, scheduledTime_ms, currentTime_ms,
+                    from, id, respondTo);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new SSTAFException("Failed to process " + arg.getClass().getName(), t);
+        }
+    }
+
+    /**
+     * Invoked by {@code process} for content that has no {@link Handles} method. By default,
+     * an unsupported message response is returned to the sender.
+     *
+     * @param arg       the message content
+     * @param id        the message sequence number
+     * @param respondTo to where to send the results.
+     * @return a {@code ProcessingResult}
+     */
+    protected ProcessingResult processUnsupported(final HandlerContent arg, final long id, final Address respondTo) {
+        return buildUnsupportedMessageResponse(arg, id, respondTo, new UnsupportedOperationException());
     }
 
     /**
@@ -105,7 +170,7 @@ public abstract class BaseHandler
         Objects.requireNonNull(exception, "exception");
         String desc = "Message class '" + unsupported.getClass() + "' is not supported.";
         var b = ErrorResponse.builder()
-                .source(Address.makeAddress(this.ownerHandle, this.getName()))
+                .source(getSourceAddress())
                 .destination(destination)
                 .messageID(sourceID)
                 .sequenceNumber(this.ownerHandle.getMessageSequenceNumber())
@@ -128,7 +193,7 @@ public abstract class BaseHandler
                                          final Address destination) {
         Objects.requireNonNull(destination, "Destination address must not be null");
         var b = ErrorResponse.builder()
-                .source(Address.makeAddress(this.ownerHandle, this.getName()))
+                .source(getSourceAddress())
                 .destination(destination)
                 .messageID(sourceID)
                 .sequenceNumber(this.ownerHandle.getMessageSequenceNumber())
@@ -149,13 +214,88 @@ public abstract class BaseHandler
     protected Message buildNormalResponse(HandlerContent response, final long sourceID, final Address destination) {
         Objects.requireNonNull(destination, "Destination address must not be null");
         var b = MessageResponse.builder()
-                .source(Address.makeAddress(this.ownerHandle, this.getName()))
+                .source(getSourceAddress())
                 .destination(destination)
                 .messageID(sourceID)
                 .sequenceNumber(this.ownerHandle.getMessageSequenceNumber())
                 .content(response);
         Message out = b.build();
-        logger.trace("Entity {} sending {}", ownerHandle.getName(), out);
+        if (logger.isTraceEnabled()) {
+            logger.trace("Entity {} sending {}", ownerHandle.getName(), out);
+        }
         return out;
     }
+
+    /**
+     * The {@link Handles} methods of one {@code BaseHandler} subclass, indexed by content class.
+     */
+    private static final class DispatchTable {
+        private static final MethodType DISPATCH_TYPE = MethodType.methodType(ProcessingResult.class,
+                BaseHandler.class, HandlerContent.class, long.class, long.class, Address.class,
+                long.class, Address.class);
+
+        final Map<Class<?>, MethodHandle> methods;
+        final List<Class<? extends HandlerContent>> contentHandled;
+
+        private DispatchTable(final Map<Class<?>, MethodHandle> methods,
+                              final List<Class<? extends HandlerContent>> contentHandled) {
+            this.methods = methods;
+            this.contentHandled = contentHandled;
+        }
+
+        /**
+         * Finds and binds the annotated methods of a class and its superclasses. A method
+         * in a subclass takes precedence over one in a superclass for the same content.
+         *
+         * @param type the {@code BaseHandler} subclass
+         * @return the {@code DispatchTable}
+         */
+        static DispatchTable build(final Class<?> type) {
+            Map<Class<?>, MethodHandle> methods = new HashMap<>();
+            List<Class<? extends HandlerContent>> content = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != BaseHandler.class; c = c.getSuperclass()) {
+                for (Method method : c.getDeclaredMethods()) {
+                    Handles handles = method.getAnnotation(Handles.class);
+                    if (handles == null || methods.containsKey(handles.value())) {
+                        continue;
+                    }
+                    validate(method, handles.value());
+                    methods.put(handles.value(), bind(method));
+                    content.add(handles.value());
+                }
+            }
+            content.sort(Comparator.comparing(Class::getName));
+            if (logger.isDebugEnabled()) {
+                logger.debug("Bound {} handler methods in {}", content.size(), type.getName());
+            }
+            return new DispatchTable(Map.copyOf(methods), List.copyOf(content));
+        }
+
+        private static void validate(final Method method, final Class<? extends HandlerContent> contentClass) {
+            Class<?>[] p = method.getParameterTypes();
+            boolean valid = !Modifier.isStatic(method.getModifiers())
+                    && ProcessingResult.class.isAssignableFrom(method.getReturnType())
+                    && p.length == 6
+                    && p[0].isAssignableFrom(contentClass)
+                    && p[1] == long.class && p[2] == long.class
+                    && p[3] == Address.class
+                    && p[4] == long.class
+                    && p[5] == Address.class;
+            if (!valid) {
+                throw new SSTAFException("Method " + method.getDeclaringClass().getName() + "." + method.getName()
+                        + " cannot handle " + contentClass.getName() + ". @Handles methods must have the"
+                        + " signature ProcessingResult m(Content, long, long, Address, long, Address)");
+            }
+        }
+
+        private static MethodHandle bind(final Method method) {
+            try {
+                method.setAccessible(true);
+                return MethodHandles.lookup().unreflect(method).asType(DISPATCH_TYPE);
+            } catch (IllegalAccessException | RuntimeException e) {
+                throw new SSTAFException("Unable to bind " + method.getDeclaringClass().getName()
+                        + "." + method.getName(), e);
+            }
+        }
+    }
 }
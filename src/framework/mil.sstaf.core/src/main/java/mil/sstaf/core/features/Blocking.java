@@ -0,0 +1,19 @@
+package mil.sstaf.core.features;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@code Feature} whose processing blocks on I/O, such as a round trip to
+ * a helper application through an {@code AppSession}.
+ * <p>
+ * The {@code EntityController} can use this to run entities that hold blocking
+ * features on virtual threads so that they do not pin a thread in the pool used
+ * for CPU-bound work.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Blocking {
+}
@@ -62,6 +62,7 @@ final class FeatureLoader<F extends Feature> {
      */
     synchronized static void registerClass(Class<?> cls) {
         registeredClasses.add(cls);
+        Resolver.clearPlanCache();
     }
 
     /**
@@ -69,6 +70,7 @@ final class FeatureLoader<F extends Feature> {
      */
     synchronized static void clearClassRegistry() {
         registeredClasses.clear();
+        Resolver.clearPlanCache();
     }
 
     /**
@@ -0,0 +1,31 @@
+package mil.sstaf.core.features;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method of a {@code BaseHandler} subclass as the processor for one message content type.
+ * <p>
+ * The annotated method must have the same parameters as {@code Handler.process}, except that
+ * the first parameter may be narrowed to the content type, and must return a
+ * {@code ProcessingResult}:
+ * <pre>
+ *     &#64;Handles(Shoot.class)
+ *     private ProcessingResult shoot(Shoot shoot, long scheduledTime_ms, long currentTime_ms,
+ *                                    Address from, long id, Address respondTo) { ... }
+ * </pre>
+ * {@code BaseHandler} binds the annotated methods once per class, dispatches to them from
+ * {@code process} and reports their content types from {@code contentHandled}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Handles {
+    /**
+     * Specifies the message content type processed by the annotated method.
+     *
+     * @return the content class
+     */
+    Class<? extends HandlerContent> value();
+}
@@ -23,7 +23,8 @@ public class ProcessingResult {
         this.messages = messages;
 
         long mt = Long.MAX_VALUE;
-        for (Message msg : messages) {
+        for (int i = 0; i < messages.size(); ++i) {
+            Message msg = messages.get(i);
             if (msg instanceof EntityEvent) {
                 EntityEvent event = (EntityEvent) msg;
                 mt = Long.min(mt, event.getEventTime_ms());
@@ -62,17 +63,43 @@ public class ProcessingResult {
 
     /**
      * Merge multiple {@code ProcessingResult}s into a single result.
+     * <p>
+     * The messages are kept in the order of the results and, within each result, in the
+     * order they were produced. Callers that need a reproducible order must pass the
+     * results in a reproducible order.
      *
      * @param results the {@code ProcessingReuslt}s to merge
      * @return a new unified {@code ProcessingResult}
      */
     public static ProcessingResult merge(final List<ProcessingResult> results) {
-        List<Message> accumulator = new ArrayList<>(results.size());
-        results.forEach(pr -> {
+        //
+        // Most merges have at most one result with messages in it, which
+        // can be returned as is.
+        //
+        ProcessingResult nonEmpty = null;
+        int total = 0;
+        for (int i = 0; i < results.size(); ++i) {
+            ProcessingResult pr = results.get(i);
+            if (pr != null && !pr.messages.isEmpty()) {
+                if (nonEmpty == null) {
+                    nonEmpty = pr;
+                }
+                total += pr.messages.size();
+            }
+        }
+        if (nonEmpty == null) {
+            return EMPTY_RESULT;
+        } else if (total == nonEmpty.messages.size()) {
+            return nonEmpty;
+        }
+
+        List<Message> accumulator = new ArrayList<>(total);
+        for (int i = 0; i < results.size(); ++i) {
+            ProcessingResult pr = results.get(i);
             if (pr != null) {
                 accumulator.addAll(pr.messages);
             }
-        });
+        }
         return ProcessingResult.of(accumulator);
     }
 
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.features;
+
+import mil.sstaf.core.util.InjectionMetadata.InjectionPoint;
+import mil.sstaf.core.util.SSTAFException;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A recorded resolution of a list of {@code FeatureSpecification}s.
+ * <p>
+ * While a {@code Resolver} searches for implementations and walks the {@code Requires}
+ * graph, a {@code Recorder} notes each instantiation, injection and configuration in the
+ * order they happen. Replaying the plan repeats those steps on new instances without any
+ * searching, so each later {@code Entity} with the same feature list is wired identically.
+ * Configuration steps are replayed in the original order so that configurations draw
+ * the same sequence of sub-seeds.
+ */
+final class ResolutionPlan {
+
+    private final List<Step> steps;
+    private final int numFeatures;
+    private final int[] results;
+
+    private ResolutionPlan(final List<Step> steps, final int numFeatures, final int[] results) {
+        this.steps = steps;
+        this.numFeatures = numFeatures;
+        this.results = results;
+    }
+
+    /**
+     * Provides the number of {@code Feature}s created when the plan is replayed.
+     *
+     * @return the number of {@code Feature}s
+     */
+    int getNumFeatures() {
+        return numFeatures;
+    }
+
+    /**
+     * Repeats the recorded steps.
+     *
+     * @param resolver the {@code Resolver} that supplies the owner and configurations
+     * @return the {@code Feature} for each of the original specifications, in order
+     */
+    List<Feature> replay(final Resolver resolver) {
+        Feature[] features = new Feature[numFeatures];
+        for (Step step : steps) {
+            switch (step.kind) {
+                case INSTANTIATE:
+                    features[step.target] = instantiate(step.constructor);
+                    break;
+                case INJECT:
+                    resolver.injectDependency(features[step.target], step.field, features[step.source]);
+                    break;
+                case INJECT_OWNER:
+                    resolver.injectOwner(features[step.target]);
+                    break;
+                case CONFIGURE_DEPENDENCY:
+                    resolver.configureDependency(features[step.target]);
+                    break;
+                case CONFIGURE:
+                    resolver.configureTopLevel(features[step.target]);
+                    break;
+            }
+        }
+        for (Feature feature : features) {
+            resolver.addToCache(feature);
+        }
+        List<Feature> out = new ArrayList<>(results.length);
+        for (int index : results) {
+            out.add(features[index]);
+        }
+        return out;
+    }
+
+    private static Feature instantiate(final Constructor<? extends Feature> constructor) {
+        try {
+            return constructor.newInstance();
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new SSTAFException("Could not instantiate " + constructor.getDeclaringClass().getName(), e);
+        }
+    }
+
+    private enum Kind {
+        INSTANTIATE, INJECT, INJECT_OWNER, CONFIGURE_DEPENDENCY, CONFIGURE
+    }
+
+    private static final class Step {
+        final Kind kind;
+        final int target;
+        final int source;
+        final InjectionPoint field;
+        final Constructor<? extends Feature> constructor;
+
+        Step(final Kind kind, final int target, final int source, final InjectionPoint field,
+             final Constructor<? extends Feature> constructor) {
+            this.kind = kind;
+            this.target = target;
+            this.source = source;
+            this.field = field;
+            this.constructor = constructor;
+        }
+    }
+
+    /**
+     * Collects the steps taken by a {@code Resolver}. If the resolver does anything that
+     * can't be repeated, such as reusing a {@code Feature} it did not create, the recording
+     * is abandoned and no plan is produced.
+     */
+    static final class Recorder {
+        private final List<Step> steps = new ArrayList<>();
+        private final Map<Feature, Integer> ids = new IdentityHashMap<>();
+        private final List<Integer> results = new ArrayList<>();
+        private boolean abandoned = false;
+
+        void instantiate(final Feature feature) {
+            if (abandoned) {
+                return;
+            }
+            try {
+                Constructor<? extends Feature> constructor = feature.getClass().getConstructor();
+                int id = ids.size();
+                ids.put(feature, id);
+                steps.add(new Step(Kind.INSTANTIATE, id, -1, null, constructor));
+            } catch (NoSuchMethodException | SecurityException e) {
+                abandoned = true;
+            }
+        }
+
+        void inject(final Feature target, final InjectionPoint field, final Feature source) {
+            add(Kind.INJECT, target, source, field);
+        }
+
+        void injectOwner(final Feature feature) {
+            add(Kind.INJECT_OWNER, feature, null, null);
+        }
+
+        void configureDependency(final Feature feature) {
+            add(Kind.CONFIGURE_DEPENDENCY, feature, null, null);
+        }
+
+        void configure(final Feature feature) {
+            add(Kind.CONFIGURE, feature, null, null);
+        }
+
+        void result(final Feature feature) {
+            Integer id = ids.get(feature);
+            if (id == null) {
+                abandoned = true;
+            } else {
+                results.add(id);
+            }
+        }
+
+        /**
+         * Produces the plan.
+         *
+         * @return the {@code ResolutionPlan}, or null if the recording was abandoned
+         */
+        ResolutionPlan toPlan() {
+            if (abandoned) {
+                return null;
+            }
+            int[] r = new int[results.size()];
+            for (int i = 0; i < r.length; ++i) {
+                r[i] = results.get(i);
+            }
+            return new ResolutionPlan(List.copyOf(steps), ids.size(), r);
+        }
+
+        private void add(final Kind kind, final Feature target, final Feature source, final InjectionPoint field) {
+            if (abandoned) {
+                return;
+            }
+            Integer t = ids.get(target);
+            Integer s = source == null ? Integer.valueOf(-1) : ids.get(source);
+            if (t == null || s == null) {
+                abandoned = true;
+            } else {
+                steps.add(new Step(kind, t, s, field, null));
+            }
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package mil.sstaf.core.features;
 
+import lombok.EqualsAndHashCode;
 import mil.sstaf.core.entity.EntityHandle;
+import mil.sstaf.core.util.InjectionMetadata;
+import mil.sstaf.core.util.InjectionMetadata.InjectionPoint;
 import mil.sstaf.core.util.Injector;
 import mil.sstaf.core.util.RNGUtilities;
 import mil.sstaf.core.configuration.SSTAFConfiguration;
@@ -11,7 +14,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -19,19 +21,26 @@ import java.util.concurrent.ConcurrentMap;
 
 import static mil.sstaf.core.features.Loaders.getHelpWithServices;
 import static mil.sstaf.core.features.Loaders.load;
-import static mil.sstaf.core.util.ReflectionUtils.getAllFields;
 
 /**
  * Recursively resolves {@code Feature} dependencies.
+ * <p>
+ * Resolving a list of specifications records a {@link ResolutionPlan}. Plans are cached by
+ * specification list and {@code ModuleLayer} so that later entities with the same features
+ * only instantiate, inject and configure, without searching for implementations. Only the
+ * shared root and boot layers are cached, since an {@code Entity} that defines its own module
+ * layer gets a new layer that no other {@code Entity} can reuse.
  */
 public class Resolver {
 
     private static final Logger logger = LoggerFactory.getLogger(Resolver.class);
+    private static final Map<PlanKey, ResolutionPlan> plans = new ConcurrentHashMap<>();
     private final Map<FeatureSpecification, Feature> featureCache;
     private final Map<String, ? extends FeatureConfiguration> configurations;
     private final RandomGenerator generator;
     private final EntityHandle owner;
     private final ModuleLayer moduleLayer;
+    private ResolutionPlan.Recorder recorder = null;
 
     /**
      * Constructor
@@ -76,6 +85,61 @@ public class Resolver {
     }
 
 
+    /**
+     * Discards all cached resolution plans. This must be invoked whenever the set of
+     * loadable classes changes.
+     */
+    public static void clearPlanCache() {
+        plans.clear();
+    }
+
+    /**
+     * Loads the {@code Feature}s for a list of specifications, along with all of their dependencies.
+     * <p>
+     * If the same list has already been resolved in the same {@code ModuleLayer}, the cached plan
+     * is replayed. Otherwise the specifications are resolved in order and the plan is recorded.
+     *
+     * @param specifications the specifications for the {@code Feature}s
+     * @return the {@code Feature} for each specification, in order
+     */
+    public List<Feature> loadAndResolveDependencies(final List<FeatureSpecification> specifications) {
+        if (!featureCache.isEmpty() || !isShared(moduleLayer)) {
+            List<Feature> out = new ArrayList<>(specifications.size());
+            specifications.forEach(spec -> out.add(loadAndResolveDependencies(spec)));
+            return out;
+        }
+
+        List<SpecKey> specKeys = new ArrayList<>(specifications.size());
+        specifications.forEach(spec -> specKeys.add(new SpecKey(spec)));
+        PlanKey key = new PlanKey(moduleLayer, specKeys);
+        ResolutionPlan plan = plans.get(key);
+        if (plan != null) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("{} - Replaying plan for {} features", owner.getPath(), plan.getNumFeatures());
+            }
+            return plan.replay(this);
+        }
+
+        List<Feature> out = new ArrayList<>(specifications.size());
+        recorder = new ResolutionPlan.Recorder();
+        try {
+            for (FeatureSpecification spec : specifications) {
+                Feature feature = loadAndResolveDependencies(spec);
+                recorder.result(feature);
+                out.add(feature);
+            }
+            plan = recorder.toPlan();
+        } finally {
+            recorder = null;
+        }
+        if (plan != null) {
+            plans.putIfAbsent(key, plan);
+        } else {
+            logger.debug("{} - Resolution could not be recorded as a plan", owner.getPath());
+        }
+        return out;
+    }
+
     /**
      * Loads a {@code Feature} and all of its dependencies from a specification
      * <p>
@@ -93,6 +157,9 @@ public class Resolver {
             Optional<Feature> optionalFeature = load(Feature.class, specification, owner, moduleLayer);
             if (optionalFeature.isPresent()) {
                 feature = optionalFeature.get();
+                if (recorder != null) {
+                    recorder.instantiate(feature);
+                }
                 featureCache.put(FeatureSpecification.from(feature), feature);
                 logger.debug("{} - Feature loaded and added to cache. {}", owner.getPath(), featureCache.keySet());
                 resolveDependencies(feature);
@@ -122,6 +189,18 @@ public class Resolver {
                 logger.trace("    {} = {}", entry.getKey().toString(), entry.getValue().toString());
             }
         }
+        if (recorder != null) {
+            recorder.configure(feature);
+        }
+        configureTopLevel(feature);
+    }
+
+    /**
+     * Configures a {@code Feature} that was requested directly, if a configuration was provided.
+     *
+     * @param feature the {@code Feature}
+     */
+    void configureTopLevel(final Feature feature) {
         logger.trace("{} - Configuring top-level Feature", feature.getName());
         Optional<? extends FeatureConfiguration> optConfig = getConfiguration(feature.getName());
         Class<? extends FeatureConfiguration> configClass = feature.getConfigurationClass();
@@ -134,6 +213,74 @@ public class Resolver {
         }
     }
 
+    /**
+     * Configures a {@code Feature} that was loaded to satisfy a {@code Requires} field, using
+     * a default configuration if none was provided.
+     *
+     * @param feature the {@code Feature}
+     */
+    void configureDependency(final Feature feature) {
+        Class<? extends FeatureConfiguration> fc = feature.getConfigurationClass();
+
+        Optional<? extends FeatureConfiguration> optConfig = getConfiguration(feature.getName());
+
+        optConfig.ifPresentOrElse(configuration -> {
+                    logger.trace("{} - Configuring {} with {}",
+                            owner.getPath(), feature.getName(), configuration);
+                    configureFeature(feature, fc, configuration);
+                },
+                () -> {
+                    logger.debug("{} - No configuration provided for {}, using default",
+                            owner.getPath(), feature.getName());
+
+                    try {
+                        Constructor<? extends FeatureConfiguration> constructor = fc.getConstructor();
+                        FeatureConfiguration config = constructor.newInstance();
+                        configureFeature(feature, fc, config);
+
+                    } catch (NoSuchMethodException |
+                            InvocationTargetException |
+                            InstantiationException |
+                            IllegalAccessException e) {
+                        e.printStackTrace();
+                    }
+                }
+        );
+    }
+
+    /**
+     * Injects the owner's {@code EntityHandle} into a {@code Feature}.
+     *
+     * @param feature the {@code Feature}
+     */
+    void injectOwner(final Feature feature) {
+        Injector.inject(feature, owner);
+    }
+
+    /**
+     * Injects a {@code Feature} into a {@code Requires} field of another.
+     *
+     * @param target    the {@code Feature} that holds the field
+     * @param field     the field
+     * @param toInject  the {@code Feature} to inject
+     */
+    void injectDependency(final Feature target, final InjectionPoint field, final Feature toInject) {
+        field.set(target, toInject);
+    }
+
+    /**
+     * Adds a {@code Feature} to the cache of loaded {@code Feature}s.
+     *
+     * @param feature the {@code Feature}
+     */
+    void addToCache(final Feature feature) {
+        featureCache.put(FeatureSpecification.from(feature), feature);
+    }
+
+    private static boolean isShared(final ModuleLayer layer) {
+        return layer == ModuleLayer.boot() || layer == SSTAFConfiguration.getInstance().getRootLayer();
+    }
+
     /**
      * Forces the {@code Feature} and {@code FeatureConfiguration} into agreement.
      *
@@ -170,56 +317,26 @@ public class Resolver {
     }
 
     /**
-     * Scans all Fields looking for @Requires associated with Feature references
+     * Provides the @Requires fields of a Feature that hold Feature references
      *
      * @param target the Feature to examine
-     * @return a List of Fields that are properly annotated.
+     * @return a List of the properly annotated injection points.
      */
-    private List<Field> getFieldsWithRequires(final Feature target) {
-        logger.debug("{} - Scanning fields for Requires annotations on Feature types", target.getName());
-        List<Field> requiresFields = new ArrayList<>();
-        for (Field field : getAllFields(target.getClass())) {
-            logger.trace("{} - Processing field {}", target.getName(), field.getName());
-
-            if (field.isAnnotationPresent(Requires.class)) {
-                logger.trace("{} - Processing Requires on field {}", target.getName(), field.getName());
-                Class<?> rawClass = field.getType();
-
-                if (Feature.class.isAssignableFrom(rawClass)) {
-                    requiresFields.add(field);
-
-                } else {
-                    logger.debug("Field {} is marked @Requires but the type is not a Feature type", field.getName());
-                }
+    private List<InjectionPoint> getFieldsWithRequires(final Feature target) {
+        List<InjectionPoint> requiresPoints = InjectionMetadata.of(target.getClass()).getRequiresPoints();
+        List<InjectionPoint> requiresFields = new ArrayList<>(requiresPoints.size());
+        for (InjectionPoint point : requiresPoints) {
+            if (Feature.class.isAssignableFrom(point.getType())) {
+                requiresFields.add(point);
             } else {
-                logger.trace("{} - Field {} is not annotated", target.getName(), field.getName());
+                logger.debug("Field {} is marked @Requires but the type is not a Feature type", point.getName());
             }
         }
-        logger.debug("{} - Found {} @Requires annotations, {}", target.getName(),
-                requiresFields.size(), requiresFields);
-        return requiresFields;
-    }
-
-    /**
-     * Checks whether a field has been set
-     *
-     * @param target the Feature in which to look
-     * @param field  the Field to check
-     * @return true if it has been set or the Field cannot be accessed.
-     */
-    private boolean isFieldSet(Feature target, Field field) {
-        try {
-            boolean accessible = field.canAccess(target);
-            if (!accessible) {
-                field.setAccessible(true);
-            }
-            Object contents = field.get(target);
-            field.setAccessible(accessible);
-            return contents != null;
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-            return true;
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} - Found {} @Requires annotations, {}", target.getName(),
+                    requiresFields.size(), requiresFields);
         }
+        return requiresFields;
     }
 
     private Feature findMatchInCache(FeatureSpecification desired,
@@ -249,14 +366,14 @@ public class Resolver {
                 owner.getPath(), target.getName());
         Map<FeatureSpecification, Feature> myCache = new HashMap<>(parentCache);
 
-        for (Field field : getFieldsWithRequires(target)) {
+        for (InjectionPoint field : getFieldsWithRequires(target)) {
             logger.trace("{}:{} - Processing Requires field {}",
                     owner.getPath(), target.getName(), field.getName());
 
-            Requires requires = field.getAnnotation(Requires.class);
+            Requires requires = field.getRequires();
             Class<?> rawClass = field.getType();
 
-            if (isFieldSet(target, field)) {
+            if (field.get(target) != null) {
                 logger.trace("{}:{} - Skipping field {} because it is already set",
                         owner.getPath(), target.getName(), field.getName());
             } else {
@@ -283,6 +400,10 @@ public class Resolver {
                                 + "', field '" + field.getName() + "'");
                     }
 
+                    if (recorder != null) {
+                        recorder.instantiate(newlyLoaded);
+                    }
+
                     //
                     // Since this is a new load, recurse to fill it in.
                     //
@@ -304,40 +425,12 @@ public class Resolver {
                     //
                     logger.trace("{}:{} - Injecting owner handle {}",
                             owner.getPath(), target.getName(), owner.getPath());
-                    Injector.inject(newlyLoaded, owner);
-                    //
-                    // TODO
-                    //
-                    Class<? extends FeatureConfiguration> fc = newlyLoaded.getConfigurationClass();
-
-                    Optional<? extends FeatureConfiguration> optConfig = getConfiguration(newlyLoaded.getName());
-
-                    optConfig.ifPresentOrElse(configuration -> {
-                                logger.trace("{}:{} - Configuring {} with {}",
-                                        owner.getPath(), target.getName(), newlyLoaded.getName(),
-                                        configuration);
-                                configureFeature(newlyLoaded, fc, configuration);
-                            },
-                            () -> {
-                                logger.debug("{}:{} - No configuration provided for {}, using default",
-                                        owner.getPath(), target.getName(), newlyLoaded.getName());
-
-                                try {
-                                    Constructor<? extends FeatureConfiguration> constructor = fc.getConstructor();
-                                    FeatureConfiguration config = constructor.newInstance();
-                                    configureFeature(newlyLoaded, fc, config);
-
-                                } catch (NoSuchMethodException |
-                                        InvocationTargetException |
-                                        InstantiationException |
-                                        IllegalAccessException e) {
-                                    e.printStackTrace();
-                                }
-
-
-                            }
-
-                    );
+                    injectOwner(newlyLoaded);
+                    configureDependency(newlyLoaded);
+                    if (recorder != null) {
+                        recorder.injectOwner(newlyLoaded);
+                        recorder.configureDependency(newlyLoaded);
+                    }
 
                     toInject = newlyLoaded;
                 }
@@ -346,7 +439,10 @@ public class Resolver {
                 //
                 logger.debug("{} - Injecting {} into field {}",
                         target.getName(), toInject.getName(), field.getName());
-                Injector.injectField(target, field, toInject);
+                if (recorder != null) {
+                    recorder.inject(target, field, toInject);
+                }
+                injectDependency(target, field, toInject);
             }
         }
         return myCache;
@@ -368,4 +464,38 @@ public class Resolver {
         }
         return found;
     }
+
+    /**
+     * Value key for a {@code FeatureSpecification}, which does not define equality itself.
+     */
+    @EqualsAndHashCode
+    private static final class SpecKey {
+        private final Class<? extends Feature> featureClass;
+        private final String featureName;
+        private final int majorVersion;
+        private final int minorVersion;
+        private final boolean requireExact;
+
+        private SpecKey(final FeatureSpecification spec) {
+            this.featureClass = spec.featureClass;
+            this.featureName = spec.featureName;
+            this.majorVersion = spec.majorVersion;
+            this.minorVersion = spec.minorVersion;
+            this.requireExact = spec.requireExact;
+        }
+    }
+
+    /**
+     * Key for a cached {@code ResolutionPlan}.
+     */
+    @EqualsAndHashCode
+    private static final class PlanKey {
+        private final ModuleLayer moduleLayer;
+        private final List<SpecKey> specifications;
+
+        private PlanKey(final ModuleLayer moduleLayer, final List<SpecKey> specifications) {
+            this.moduleLayer = moduleLayer;
+            this.specifications = specifications;
+        }
+    }
 }
@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.features;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import mil.sstaf.core.entity.*;
+import mil.sstaf.core.util.SSTAFException;
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Converts simulation state to and from the form saved in a checkpoint.
+ * <p>
+ * A checkpoint is restored into entities rebuilt from the same scenario, not into the
+ * objects that were saved. References to entities are therefore saved as the position of
+ * the {@code Entity} in a list that both sides construct the same way, and are resolved
+ * to the new {@code EntityHandle} on restore.
+ */
+public final class SnapshotContext {
+
+    private final ObjectMapper objectMapper;
+    private final List<EntityHandle> handles;
+    private final Map<EntityHandle, Integer> ordinals = new IdentityHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param handles the handles of all entities, in an order that is the same whenever
+     *                the scenario is built
+     */
+    public SnapshotContext(final List<EntityHandle> handles) {
+        this.objectMapper = new ObjectMapper();
+        this.handles = List.copyOf(handles);
+        for (int i = 0; i < this.handles.size(); ++i) {
+            ordinals.put(this.handles.get(i), i);
+        }
+    }
+
+    /**
+     * Provides the {@code ObjectMapper} used for the checkpoint.
+     *
+     * @return the {@code ObjectMapper}
+     */
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    /**
+     * Provides the entity handles, in checkpoint order.
+     *
+     * @return the handles
+     */
+    public List<EntityHandle> getHandles() {
+        return handles;
+    }
+
+    /**
+     * Saves a reference to an {@code Entity}.
+     *
+     * @param handle the {@code EntityHandle}, may be null
+     * @return the saved reference
+     */
+    public JsonNode writeHandle(final EntityHandle handle) {
+        if (handle == null) {
+            return NullNode.getInstance();
+        }
+        Integer ordinal = ordinals.get(handle);
+        if (ordinal == null) {
+            throw new SSTAFException("Entity " + handle.getForcePath() + " is not part of the checkpoint");
+        }
+        return objectMapper.getNodeFactory().numberNode(ordinal);
+    }
+
+    /**
+     * Resolves a saved reference to an {@code Entity}.
+     *
+     * @param node the saved reference
+     * @return the {@code EntityHandle}, or null
+     */
+    public EntityHandle readHandle(final JsonNode node) {
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        int ordinal = node.asInt();
+        if (ordinal < 0 || ordinal >= handles.size()) {
+            throw new SSTAFException("Checkpoint refers to entity " + ordinal + " but there are only "
+                    + handles.size());
+        }
+        return handles.get(ordinal);
+    }
+
+    /**
+     * Saves an {@code Address}.
+     *
+     * @param address the {@code Address}, may be null
+     * @return the saved {@code Address}
+     */
+    public JsonNode writeAddress(final Address address) {
+        if (address == null) {
+            return NullNode.getInstance();
+        }
+        ObjectNode node = objectMapper.createObjectNode();
+        node.set("entity", writeHandle(address.entityHandle));
+        node.put("handler", address.handlerName);
+        return node;
+    }
+
+    /**
+     * Resolves a saved {@code Address}.
+     *
+     * @param node the saved {@code Address}
+     * @return the {@code Address}, or null
+     */
+    public Address readAddress(final JsonNode node) {
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        EntityHandle handle = readHandle(node.get("entity"));
+        String handlerName = node.path("handler").isNull() ? null : node.path("handler").asText(null);
+        Address address = Address.builder().entityHandle(handle).handlerName(handlerName).build();
+        if (address.equals(Address.NOWHERE)) {
+            return Address.NOWHERE;
+        } else if (address.equals(Address.CLIENT)) {
+            return Address.CLIENT;
+        }
+        return address;
+    }
+
+    /**
+     * Saves an arbitrary value together with its class. {@code EntityHandle}s are saved
+     * as references; anything else must be serializable by Jackson.
+     *
+     * @param value the value, may be null
+     * @return the saved value
+     */
+    public JsonNode writeValue(final Object value) {
+        if (value == null) {
+            return NullNode.getInstance();
+        }
+        ObjectNode node = objectMapper.createObjectNode();
+        if (value instanceof EntityHandle) {
+            node.set("handle", writeHandle((EntityHandle) value));
+        } else {
+            node.put("class", value.getClass().getName());
+            try {
+                node.set("value", objectMapper.valueToTree(value));
+            } catch (IllegalArgumentException e) {
+                throw new SSTAFException("Could not save value of " + value.getClass().getName(), e);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Restores a value saved by {@link #writeValue(Object)}.
+     *
+     * @param node the saved value
+     * @return the value, or null
+     */
+    public Object readValue(final JsonNode node) {
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        if (node.has("handle")) {
+            return readHandle(node.get("handle"));
+        }
+        String className = node.path("class").asText();
+        try {
+            Class<?> type = Class.forName(className);
+            return objectMapper.treeToValue(node.get("value"), type);
+        } catch (ClassNotFoundException | IOException e) {
+            throw new SSTAFException("Could not restore value of " + className, e);
+        }
+    }
+
+    /**
+     * Saves a {@code Message}, including its content.
+     *
+     * @param message the {@code Message}
+     * @return the saved {@code Message}
+     */
+    public JsonNode writeMessage(final Message message) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("type", message.getClass().getSimpleName());
+        node.set("source", writeAddress(message.getSource()));
+        node.set("destination", writeAddress(message.getDestination()));
+        node.set("respondTo", writeAddress(message.getRespondTo()));
+        node.set("content", writeValue(message.getContent()));
+        if (message instanceof EntityEvent) {
+            node.put("eventTime_ms", ((EntityEvent) message).getEventTime_ms());
+        } else if (message instanceof MessageResponse) {
+            node.put("messageID", ((MessageResponse) message).getMessageID());
+        }
+        return node;
+    }
+
+    /**
+     * Restores a {@code Message}. The restored {@code Message} receives a new sequence
+     * number, so messages must be restored in the order they were queued.
+     *
+     * @param node the saved {@code Message}
+     * @return the {@code Message}
+     */
+    public Message readMessage(final JsonNode node) {
+        String type = node.path("type").asText();
+        Address source = readAddress(node.get("source"));
+        Address destination = readAddress(node.get("destination"));
+        Address respondTo = readAddress(node.get("respondTo"));
+        HandlerContent content = (HandlerContent) readValue(node.get("content"));
+        switch (type) {
+            case "EntityAction":
+                return EntityAction.builder().source(source).destination(destination)
+                        .respondTo(respondTo).content(content).build();
+            case "EntityEvent":
+                return EntityEvent.builder().source(source).destination(destination)
+                        .respondTo(respondTo).content(content)
+                        .eventTime_ms(node.path("eventTime_ms").asLong()).build();
+            case "MessageResponse":
+                return MessageResponse.builder().source(source).destination(destination)
+                        .respondTo(respondTo).content(content)
+                        .messageID(node.path("messageID").asLong()).build();
+            case "ErrorResponse":
+                return ErrorResponse.builder().source(source).destination(destination)
+                        .respondTo(respondTo).content(content)
+                        .messageID(node.path("messageID").asLong()).build();
+            default:
+                throw new SSTAFException("Cannot restore message of type '" + type + "'");
+        }
+    }
+
+    /**
+     * Saves a sequence of {@code Message}s in order.
+     *
+     * @param messages the messages
+     * @return the saved messages
+     */
+    public ArrayNode writeMessages(final Iterable<? extends Message> messages) {
+        ArrayNode array = objectMapper.createArrayNode();
+        for (Message message : messages) {
+            array.add(writeMessage(message));
+        }
+        return array;
+    }
+
+    /**
+     * Restores a sequence of {@code Message}s in order.
+     *
+     * @param node the saved messages
+     * @return the messages
+     */
+    public List<Message> readMessages(final JsonNode node) {
+        List<Message> messages = new ArrayList<>();
+        if (node != null) {
+            for (JsonNode element : node) {
+                messages.add(readMessage(element));
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Saves the complete state of a random number generator. The generator must be
+     * {@code Serializable}, as the commons-math generators are.
+     *
+     * @param randomGenerator the generator
+     * @return the saved state
+     */
+    public JsonNode writeRandom(final RandomGenerator randomGenerator) {
+        if (randomGenerator == null) {
+            return NullNode.getInstance();
+        }
+        if (!(randomGenerator instanceof Serializable)) {
+            throw new SSTAFException("Cannot save state of " + randomGenerator.getClass().getName());
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(randomGenerator);
+        } catch (IOException e) {
+            throw new SSTAFException("Could not save state of " + randomGenerator.getClass().getName(), e);
+        }
+        return objectMapper.getNodeFactory().binaryNode(bytes.toByteArray());
+    }
+
+    /**
+     * Restores a random number generator saved by {@link #writeRandom(RandomGenerator)}.
+     *
+     * @param node the saved state
+     * @return a generator that continues the saved sequence, or null
+     */
+    public RandomGenerator readRandom(final JsonNode node) {
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(node.binaryValue()))) {
+            return (RandomGenerator) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            throw new SSTAFException("Could not restore random number generator", e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.features;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Implemented by {@code Feature}s whose state can be saved in a checkpoint.
+ * <p>
+ * When a checkpoint is restored, the entities are rebuilt and initialized from the
+ * scenario as usual, and then each {@code Snapshottable} feature is handed the state
+ * it saved. A feature that does not implement this interface keeps the state it had
+ * after {@code init()}.
+ * <p>
+ * The {@code SnapshotContext} converts values, entity references, addresses and random
+ * number generators to and from their saved form.
+ */
+public interface Snapshottable {
+
+    /**
+     * Captures the state of the feature.
+     *
+     * @param context the {@code SnapshotContext}
+     * @return the state
+     */
+    JsonNode snapshot(SnapshotContext context);
+
+    /**
+     * Replaces the state of the feature with a saved state.
+     * <p>
+     * This is invoked after {@code init()}.
+     *
+     * @param state   the state produced by {@link #snapshot(SnapshotContext)}
+     * @param context the {@code SnapshotContext}
+     */
+    void restore(JsonNode state, SnapshotContext context);
+}
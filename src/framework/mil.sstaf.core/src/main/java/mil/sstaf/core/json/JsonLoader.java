@@ -128,6 +128,44 @@ public class JsonLoader {
         }
     }
 
+    /**
+     * Reads a file and resolves its references without building any objects.
+     * <p>
+     * This allows a caller to build parts of a large tree independently, using
+     * {@link #getObjectMapper()}.
+     *
+     * @param filePath the file to read
+     * @return the resolved tree
+     */
+    public ObjectNode loadTree(Path filePath) {
+        Path pathToFile;
+        if (filePath.isAbsolute()) {
+            pathToFile = filePath.normalize();
+        } else {
+            pathToFile = Path.of(System.getProperty("user.dir"), filePath.toString()).normalize().toAbsolutePath();
+        }
+        try {
+            JsonNode jsonNode = objectMapper.readTree(pathToFile.toFile());
+            if (!jsonNode.isObject()) {
+                throw new SSTAFException("JSON did not define an object");
+            }
+            ObjectNode topNode = (ObjectNode) jsonNode;
+            new ReferenceResolver(topNode, pathToFile, objectMapper).processTree();
+            return topNode;
+        } catch (IOException e) {
+            throw new SSTAFException("Could not load JSON from '" + pathToFile + "'", e);
+        }
+    }
+
+    /**
+     * Provides the {@code ObjectMapper} used by this loader.
+     *
+     * @return the {@code ObjectMapper}
+     */
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
     public <T> T load(Path filePath, Class<T> asClass) {
         Path pathToFile;
         if (filePath.isAbsolute()) {
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that only goes up. Increments from many threads do not contend.
+ */
+public final class Counter implements Metric {
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Constructor
+     *
+     * @param name the name of the counter
+     */
+    Counter(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Adds one to the count.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Adds to the count.
+     *
+     * @param delta the amount to add
+     */
+    public void add(final long delta) {
+        count.add(delta);
+    }
+
+    /**
+     * Provides the count.
+     *
+     * @return the count
+     */
+    public long get() {
+        return count.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Type getType() {
+        return Type.COUNTER;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MetricSnapshot snapshot() {
+        return MetricSnapshot.builder().name(name).type(Type.COUNTER).value(get()).build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        count.reset();
+    }
+}
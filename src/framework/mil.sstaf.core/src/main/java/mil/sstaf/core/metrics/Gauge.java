@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A value that is set from time to time, such as the depth of a queue. The largest
+ * value set since the last reset is kept as well.
+ */
+public final class Gauge implements Metric {
+
+    private final String name;
+    private final AtomicLong value = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param name the name of the gauge
+     */
+    Gauge(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Sets the value.
+     *
+     * @param newValue the value
+     */
+    public void set(final long newValue) {
+        value.set(newValue);
+        long current = max.get();
+        while (newValue > current && !max.compareAndSet(current, newValue)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Provides the value last set.
+     *
+     * @return the value
+     */
+    public long get() {
+        return value.get();
+    }
+
+    /**
+     * Provides the largest value set since the last reset.
+     *
+     * @return the largest value
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Type getType() {
+        return Type.GAUGE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MetricSnapshot snapshot() {
+        return MetricSnapshot.builder().name(name).type(Type.GAUGE).value(get()).max(getMax()).build();
+    }
+
+    /**
+     * Clears the largest value. The current value is kept, since it still describes
+     * the thing being measured.
+     */
+    @Override
+    public void reset() {
+        max.set(value.get());
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds, from which percentiles can be read.
+ * <p>
+ * The buckets are log-linear, in the manner of HdrHistogram: each power of two is split
+ * into 32 buckets of equal width, so every value is placed in a bucket no wider than
+ * 1/32 of the value, and values below 64 are counted exactly. The buckets cover values
+ * up to 2^43 ns, about two and a half hours; larger values are counted in the top bucket.
+ * A histogram takes about 10 KB whatever the number of values recorded.
+ * <p>
+ * Recording does not lock, so any number of threads may record into the same histogram.
+ * A snapshot taken while values are being recorded may include some of them and not
+ * others.
+ */
+public final class LatencyHistogram implements Metric {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 42;
+
+    /**
+     * The largest value that can be told apart from larger values.
+     */
+    public static final long HIGHEST_TRACKABLE_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(0);
+
+    /**
+     * Constructor
+     *
+     * @param name the name of the histogram
+     */
+    LatencyHistogram(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as zero.
+     *
+     * @param value_ns the value, in nanoseconds
+     */
+    public void record(final long value_ns) {
+        final long value = value_ns < 0 ? 0 : Math.min(value_ns, HIGHEST_TRACKABLE_VALUE);
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        long current = min.get();
+        while (value < current && !min.compareAndSet(current, value)) {
+            current = min.get();
+        }
+        current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Provides the number of values recorded.
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Provides the smallest value recorded.
+     *
+     * @return the smallest value, or zero if nothing has been recorded
+     */
+    public long getMin() {
+        long value = min.get();
+        return value == Long.MAX_VALUE ? 0 : value;
+    }
+
+    /**
+     * Provides the largest value recorded.
+     *
+     * @return the largest value, or zero if nothing has been recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Provides the mean of the values recorded.
+     *
+     * @return the mean, or zero if nothing has been recorded
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Provides the value below which a given percentage of the recorded values fall.
+     * The result is the highest value of the bucket that holds the percentile, so it is
+     * at most 1/32 larger than the exact percentile, and never larger than the largest
+     * value recorded.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the value, or zero if nothing has been recorded
+     */
+    public long getValueAtPercentile(final double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100, was " + percentile);
+        }
+        long[] copy = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            seen += copy[i];
+            if (seen >= target) {
+                return Math.min(highestValueAt(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Type getType() {
+        return Type.HISTOGRAM;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MetricSnapshot snapshot() {
+        return MetricSnapshot.builder()
+                .name(name)
+                .type(Type.HISTOGRAM)
+                .value(getCount())
+                .min(getMin())
+                .max(getMax())
+                .mean(getMean())
+                .p50(getValueAtPercentile(50.0))
+                .p90(getValueAtPercentile(90.0))
+                .p99(getValueAtPercentile(99.0))
+                .p999(getValueAtPercentile(99.9))
+                .build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        min.set(Long.MAX_VALUE);
+        max.set(0);
+    }
+
+    /**
+     * Finds the bucket for a value.
+     *
+     * @param value a value between zero and {@code HIGHEST_TRACKABLE_VALUE}
+     * @return the index of the bucket
+     */
+    static int indexOf(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * Provides the smallest value counted in a bucket.
+     *
+     * @param index the index of the bucket
+     * @return the smallest value
+     */
+    static long lowestValueAt(final int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        return (long) (index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT) << shift;
+    }
+
+    /**
+     * Provides the largest value counted in a bucket.
+     *
+     * @param index the index of the bucket
+     * @return the largest value
+     */
+    static long highestValueAt(final int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        return lowestValueAt(index) + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.metrics;
+
+/**
+ * A named measurement held by a {@code MetricsRegistry}.
+ */
+public interface Metric {
+
+    /**
+     * The kinds of {@code Metric}.
+     */
+    enum Type {
+        COUNTER,
+        GAUGE,
+        HISTOGRAM
+    }
+
+    /**
+     * Provides the name of the {@code Metric}.
+     *
+     * @return the name
+     */
+    String getName();
+
+    /**
+     * Provides the kind of the {@code Metric}.
+     *
+     * @return the type
+     */
+    Type getType();
+
+    /**
+     * Captures the current value of the {@code Metric}.
+     *
+     * @return the snapshot
+     */
+    MetricSnapshot snapshot();
+
+    /**
+     * Returns the {@code Metric} to its initial state.
+     */
+    void reset();
+}
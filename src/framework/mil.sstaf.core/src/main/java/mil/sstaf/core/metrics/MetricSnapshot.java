@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.metrics;
+
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.jackson.Jacksonized;
+
+/**
+ * The value of a {@code Metric} at one moment, in a form that can be sent to a client.
+ * <p>
+ * Which fields are filled in depends on the type of the {@code Metric}. Histogram
+ * values are in nanoseconds.
+ */
+@Jacksonized
+@Builder
+@Getter
+@ToString
+@EqualsAndHashCode
+public final class MetricSnapshot {
+
+    private final String name;
+
+    private final Metric.Type type;
+
+    /**
+     * The count of a counter, the current value of a gauge or the number of values in a
+     * histogram.
+     */
+    private final long value;
+
+    /**
+     * The smallest value in a histogram.
+     */
+    private final long min;
+
+    /**
+     * The largest value set on a gauge or recorded in a histogram.
+     */
+    private final long max;
+
+    /**
+     * The mean of the values in a histogram.
+     */
+    private final double mean;
+
+    /**
+     * The median of the values in a histogram.
+     */
+    private final long p50;
+
+    /**
+     * The 90th percentile of the values in a histogram.
+     */
+    private final long p90;
+
+    /**
+     * The 99th percentile of the values in a histogram.
+     */
+    private final long p99;
+
+    /**
+     * The 99.9th percentile of the values in a histogram.
+     */
+    private final long p999;
+}
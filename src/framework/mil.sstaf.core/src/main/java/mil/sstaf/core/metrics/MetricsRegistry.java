@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * A set of named {@code Metric}s.
+ * <p>
+ * A {@code Metric} is created the first time it is asked for and the same instance is
+ * returned from then on, so the code that feeds a {@code Metric} can look it up once and
+ * keep it. Names are dot-separated, most general part first, for example
+ * {@code entity.processTime.BLUE:Alpha:Bob}, so that related metrics can be selected
+ * by prefix.
+ */
+public final class MetricsRegistry {
+
+    private final ConcurrentMap<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Provides a {@code Counter}, creating it if needed.
+     *
+     * @param name the name of the {@code Counter}
+     * @return the {@code Counter}
+     */
+    public Counter counter(final String name) {
+        return get(name, Counter.class, Counter::new);
+    }
+
+    /**
+     * Provides a {@code Gauge}, creating it if needed.
+     *
+     * @param name the name of the {@code Gauge}
+     * @return the {@code Gauge}
+     */
+    public Gauge gauge(final String name) {
+        return get(name, Gauge.class, Gauge::new);
+    }
+
+    /**
+     * Provides a {@code LatencyHistogram}, creating it if needed.
+     *
+     * @param name the name of the {@code LatencyHistogram}
+     * @return the {@code LatencyHistogram}
+     */
+    public LatencyHistogram histogram(final String name) {
+        return get(name, LatencyHistogram.class, LatencyHistogram::new);
+    }
+
+    /**
+     * Looks up a {@code Metric} without creating it.
+     *
+     * @param name the name of the {@code Metric}
+     * @return the {@code Metric}, if it exists
+     */
+    public Optional<Metric> find(final String name) {
+        return Optional.ofNullable(metrics.get(name));
+    }
+
+    /**
+     * Captures the current values of the metrics whose names start with a prefix, in
+     * order of name.
+     *
+     * @param prefix the prefix, or an empty string for all metrics
+     * @return the snapshots
+     */
+    public List<MetricSnapshot> snapshot(final String prefix) {
+        Objects.requireNonNull(prefix, "prefix");
+        List<Metric> selected = new ArrayList<>();
+        for (Metric metric : metrics.values()) {
+            if (metric.getName().startsWith(prefix)) {
+                selected.add(metric);
+            }
+        }
+        selected.sort((a, b) -> a.getName().compareTo(b.getName()));
+        List<MetricSnapshot> snapshots = new ArrayList<>(selected.size());
+        for (Metric metric : selected) {
+            snapshots.add(metric.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Returns the metrics whose names start with a prefix to their initial state. The
+     * metrics stay registered.
+     *
+     * @param prefix the prefix, or an empty string for all metrics
+     */
+    public void reset(final String prefix) {
+        Objects.requireNonNull(prefix, "prefix");
+        for (Metric metric : metrics.values()) {
+            if (metric.getName().startsWith(prefix)) {
+                metric.reset();
+            }
+        }
+    }
+
+    /**
+     * Provides the number of metrics.
+     *
+     * @return the number of metrics
+     */
+    public int size() {
+        return metrics.size();
+    }
+
+    private <T extends Metric> T get(final String name, final Class<T> type, final Function<String, T> factory) {
+        Objects.requireNonNull(name, "name");
+        Metric metric = metrics.get(name);
+        if (metric == null) {
+            metric = metrics.computeIfAbsent(name, factory);
+        }
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric '" + name + "' is a " + metric.getType()
+                    + ", not a " + type.getSimpleName());
+        }
+        return type.cast(metric);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.module;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Holds the {@code ModuleLayer}s created while it is in use, so that entities with the
+ * same {@code ModuleLayerDefinition} share one layer and therefore one copy of each class.
+ * <p>
+ * Sharing is opt-in. A cache is made current for a piece of work with
+ * {@link ModuleLayerSupport#withCache(ModuleLayerCache, java.util.function.Supplier)}
+ * and is typically owned by one runner or scenario, so the layers, and the class loaders
+ * behind them, can be collected once the owner is done with them. Features that keep
+ * state in static fields share that state between all users of the cache.
+ * <p>
+ * Layers are keyed by parent layer, parent loader, the module paths in order and the
+ * root modules.
+ */
+public final class ModuleLayerCache {
+
+    private final Map<List<Object>, ModuleLayer> layers = new ConcurrentHashMap<>();
+
+    /**
+     * Provides the layer for a key, creating it if necessary.
+     *
+     * @param key     the key
+     * @param factory creates the layer
+     * @return the layer
+     */
+    ModuleLayer computeIfAbsent(final List<Object> key, final Function<List<Object>, ModuleLayer> factory) {
+        return layers.computeIfAbsent(key, factory);
+    }
+
+    /**
+     * Provides the number of layers in the cache.
+     *
+     * @return the number of layers
+     */
+    public int size() {
+        return layers.size();
+    }
+
+    /**
+     * Removes every layer from the cache.
+     */
+    public void clear() {
+        layers.clear();
+    }
+}
@@ -28,10 +28,53 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
 
 public class ModuleLayerSupport {
     private static final Logger logger = LoggerFactory.getLogger(ModuleLayerSupport.class);
 
+    /*
+     * The cache in use on this thread, if any. Without one every definition gets
+     * a new layer.
+     */
+    private static final ThreadLocal<ModuleLayerCache> currentCache = new ThreadLocal<>();
+
+    /**
+     * Performs work on the current thread with a {@code ModuleLayerCache} in use, so that
+     * the layers it creates are shared through the cache.
+     *
+     * @param cache the cache, or null to create a new layer for every definition
+     * @param work  the work to perform
+     * @param <T>   the type of the result
+     * @return the result of the work
+     */
+    public static <T> T withCache(final ModuleLayerCache cache, final Supplier<T> work) {
+        ModuleLayerCache previous = currentCache.get();
+        if (cache == null) {
+            currentCache.remove();
+        } else {
+            currentCache.set(cache);
+        }
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                currentCache.remove();
+            } else {
+                currentCache.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Provides the {@code ModuleLayerCache} in use on the current thread.
+     *
+     * @return the cache, or null if there is none
+     */
+    public static ModuleLayerCache getCache() {
+        return currentCache.get();
+    }
 
     public static ModuleLayer makeModuleLayer(ModuleLayer parentLayer,
                                               ModuleLayerDefinition def,
@@ -70,23 +113,40 @@ public class ModuleLayerSupport {
                     throw new SSTAFException("Module path '" + p + "' does not exist.");
                 }
             }
-            try {
-                logger.debug("Creating new module layer. Parent ClassLoader is {}", parentLoader);
-                Path[] pathArray = new Path[paths.size()];
-                paths.toArray(pathArray);
-                if (logger.isDebugEnabled()) {
-                    logger.debug("paths are {}", Arrays.toString(pathArray));
-                    logger.debug("modules are {}", def.getModules());
-                }
-                ModuleFinder moduleFinder = ModuleFinder.of(pathArray);
-                Configuration configuration = Configuration.resolveAndBind(moduleFinder,
-                        List.of(parentLayer.configuration()),
-                        ModuleFinder.of(), def.getModules());
-                moduleLayer = parentLayer.defineModulesWithOneLoader(configuration, parentLoader);
-                logger.debug("moduleLayer is {}", moduleLayer);
-            } catch (FindException findException) {
-                throw new SSTAFException("Could not find a module given paths " + paths, findException);
+            ModuleLayerCache cache = currentCache.get();
+            if (cache == null) {
+                moduleLayer = defineModuleLayer(parentLayer, paths, def.getModules(), parentLoader);
+            } else {
+                List<Object> key = Arrays.asList(parentLayer, parentLoader, List.copyOf(paths),
+                        Set.copyOf(def.getModules()));
+                moduleLayer = cache.computeIfAbsent(key,
+                        k -> defineModuleLayer(parentLayer, paths, def.getModules(), parentLoader));
+            }
+        }
+        return moduleLayer;
+    }
+
+    private static ModuleLayer defineModuleLayer(ModuleLayer parentLayer,
+                                                 List<Path> paths,
+                                                 Set<String> modules,
+                                                 ClassLoader parentLoader) {
+        ModuleLayer moduleLayer;
+        try {
+            logger.debug("Creating new module layer. Parent ClassLoader is {}", parentLoader);
+            Path[] pathArray = new Path[paths.size()];
+            paths.toArray(pathArray);
+            if (logger.isDebugEnabled()) {
+                logger.debug("paths are {}", Arrays.toString(pathArray));
+                logger.debug("modules are {}", modules);
             }
+            ModuleFinder moduleFinder = ModuleFinder.of(pathArray);
+            Configuration configuration = Configuration.resolveAndBind(moduleFinder,
+                    List.of(parentLayer.configuration()),
+                    ModuleFinder.of(), modules);
+            moduleLayer = parentLayer.defineModulesWithOneLoader(configuration, parentLoader);
+            logger.debug("moduleLayer is {}", moduleLayer);
+        } catch (FindException findException) {
+            throw new SSTAFException("Could not find a module given paths " + paths, findException);
         }
         return moduleLayer;
     }
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.util;
+
+import mil.sstaf.core.features.Requires;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static mil.sstaf.core.util.ReflectionUtils.getAllFields;
+
+/**
+ * The injection points of a class, found once and shared by every instance.
+ * <p>
+ * Every field marked {@link Injected} or {@link Requires}, including inherited fields,
+ * is bound to a getter and setter {@code MethodHandle} when the class is first examined.
+ * Injection then costs a type check and a handle invocation, with no field scanning or
+ * toggling of accessibility.
+ */
+public final class InjectionMetadata {
+
+    private static final ClassValue<InjectionMetadata> metadata = new ClassValue<>() {
+        @Override
+        protected InjectionMetadata computeValue(final Class<?> type) {
+            return new InjectionMetadata(type);
+        }
+    };
+
+    private final List<InjectionPoint> injectionPoints;
+    private final List<InjectionPoint> requiresPoints;
+    //
+    // The injection points that accept an implementation class, found on first use. This is
+    // a plain map rather than a ClassValue so that the entries are owned by this metadata and
+    // are collected with the class they describe, rather than being attached to the
+    // implementation class, which would keep this class and its loader reachable forever.
+    //
+    private final Map<Class<?>, List<InjectionPoint>> accepting = new ConcurrentHashMap<>();
+
+    private InjectionMetadata(final Class<?> type) {
+        List<InjectionPoint> all = new ArrayList<>();
+        List<InjectionPoint> requires = new ArrayList<>();
+        for (Field field : getAllFields(type)) {
+            Injected injected = field.getAnnotation(Injected.class);
+            Requires req = field.getAnnotation(Requires.class);
+            if (injected != null || req != null) {
+                InjectionPoint point = new InjectionPoint(field, injected, req);
+                all.add(point);
+                if (req != null) {
+                    requires.add(point);
+                }
+            }
+        }
+        injectionPoints = List.copyOf(all);
+        requiresPoints = List.copyOf(requires);
+    }
+
+    /**
+     * Provides the metadata for a class.
+     *
+     * @param type the {@code Class}
+     * @return the {@code InjectionMetadata}
+     */
+    public static InjectionMetadata of(final Class<?> type) {
+        return metadata.get(type);
+    }
+
+    /**
+     * Provides every field marked with {@code Injected} or {@code Requires}, in the order
+     * reported by {@code ReflectionUtils.getAllFields}.
+     *
+     * @return the injection points
+     */
+    public List<InjectionPoint> getInjectionPoints() {
+        return injectionPoints;
+    }
+
+    /**
+     * Provides the fields marked with {@code Requires}.
+     *
+     * @return the injection points
+     */
+    public List<InjectionPoint> getRequiresPoints() {
+        return requiresPoints;
+    }
+
+    /**
+     * Provides the injection points whose type can hold an instance of the specified class.
+     *
+     * @param implementationClass the {@code Class} of the object to inject
+     * @return the injection points
+     */
+    public List<InjectionPoint> getPointsAccepting(final Class<?> implementationClass) {
+        List<InjectionPoint> points = accepting.get(implementationClass);
+        if (points == null) {
+            points = accepting.computeIfAbsent(implementationClass, this::findPointsAccepting);
+        }
+        return points;
+    }
+
+    private List<InjectionPoint> findPointsAccepting(final Class<?> implementationClass) {
+        List<InjectionPoint> points = new ArrayList<>(2);
+        for (InjectionPoint point : injectionPoints) {
+            if (point.accepts(implementationClass)) {
+                points.add(point);
+            }
+        }
+        return points.isEmpty() ? List.of() : List.copyOf(points);
+    }
+
+    /**
+     * Provides the injection point for a field.
+     *
+     * @param field the {@code Field}
+     * @return the injection point, or null if the field is not marked for injection
+     */
+    public InjectionPoint find(final Field field) {
+        for (InjectionPoint point : injectionPoints) {
+            if (point.getField().equals(field)) {
+                return point;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A single field into which an object can be injected.
+     */
+    public static final class InjectionPoint {
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+        private final Field field;
+        private final Injected injected;
+        private final Requires requires;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final RuntimeException bindFailure;
+
+        private InjectionPoint(final Field field, final Injected injected, final Requires requires) {
+            this.field = field;
+            this.injected = injected;
+            this.requires = requires;
+            MethodHandle g = null;
+            MethodHandle s = null;
+            RuntimeException failure = null;
+            try {
+                field.setAccessible(true);
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                g = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+                s = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+            } catch (IllegalAccessException | RuntimeException e) {
+                //
+                // Typically the package has not been opened to mil.sstaf.core. Report it
+                // when the field is used, as reflective injection would have.
+                //
+                failure = new SSTAFException("Cannot access field " + field.getName() + " of "
+                        + field.getDeclaringClass().getName(), e);
+            }
+            this.getter = g;
+            this.setter = s;
+            this.bindFailure = failure;
+        }
+
+        /**
+         * Provides the field.
+         *
+         * @return the {@code Field}
+         */
+        public Field getField() {
+            return field;
+        }
+
+        /**
+         * Provides the declared type of the field.
+         *
+         * @return the type
+         */
+        public Class<?> getType() {
+            return field.getType();
+        }
+
+        /**
+         * Tests whether the field can hold an instance of a class.
+         *
+         * @param implementationClass the {@code Class} of the object to inject
+         * @return true if the field's type is assignable from the class
+         */
+        public boolean accepts(final Class<?> implementationClass) {
+            return field.getType().isAssignableFrom(implementationClass);
+        }
+
+        /**
+         * Provides the field's name.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return field.getName();
+        }
+
+        /**
+         * Provides the {@code Injected} annotation on the field.
+         *
+         * @return the annotation, or null if the field is not marked {@code Injected}
+         */
+        public Injected getInjected() {
+            return injected;
+        }
+
+        /**
+         * Provides the {@code Requires} annotation on the field.
+         *
+         * @return the annotation, or null if the field is not marked {@code Requires}
+         */
+        public Requires getRequires() {
+            return requires;
+        }
+
+        /**
+         * Reads the field.
+         *
+         * @param target the object that holds the field
+         * @return the value of the field
+         */
+        public Object get(final Object target) {
+            if (getter == null) {
+                throw bindFailure;
+            }
+            try {
+                return (Object) getter.invokeExact(target);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new SSTAFException(t);
+            }
+        }
+
+        /**
+         * Writes the field.
+         *
+         * @param target the object that holds the field
+         * @param value  the value to write
+         */
+        public void set(final Object target, final Object value) {
+            if (setter == null) {
+                throw bindFailure;
+            }
+            try {
+                setter.invokeExact(target, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new SSTAFException(t);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return field.getDeclaringClass().getSimpleName() + "." + field.getName();
+        }
+    }
+}
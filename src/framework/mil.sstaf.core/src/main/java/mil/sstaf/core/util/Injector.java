@@ -17,19 +17,18 @@
 
 package mil.sstaf.core.util;
 
-import mil.sstaf.core.features.Requires;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 
 import java.lang.reflect.Field;
-import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
-import static mil.sstaf.core.util.ReflectionUtils.getAllFields;
-
 /**
  * Utility class for performing dependency injection. Given the very limited use-cases for DI in SSTAF,
  * this was much simpler than using Guice or Spring.
+ * <p>
+ * The injection points of each class are found once and cached in {@link InjectionMetadata}.
  */
 public class Injector {
     private static final Logger logger = LoggerFactory.getLogger(Injector.class);
@@ -43,6 +42,11 @@ public class Injector {
      * @param <T>            the type of the implementation
      */
     public static <T> void injectField(final Object target, final Field field, final T implementation) {
+        InjectionMetadata.InjectionPoint point = InjectionMetadata.of(target.getClass()).find(field);
+        if (point != null) {
+            point.set(target, implementation);
+            return;
+        }
         try {
             final boolean accessible = field.canAccess(target);
             if (!accessible) {
@@ -69,17 +73,11 @@ public class Injector {
     public static <T> void inject(final Object target, final T implementation) {
         Objects.requireNonNull(target, "Target is null");
         Objects.requireNonNull(implementation, "Implementation is null");
-        Class<?> c = target.getClass();
-
-        getAllFields(c).forEach(field -> {
-            if (field.getAnnotation(Injected.class) != null ||
-                    field.getAnnotation(Requires.class) != null) {
-                Class<?> type = field.getType();
-                if (type.isAssignableFrom(implementation.getClass())) {
-                    injectField(target, field, implementation);
-                }
-            }
-        });
+        List<InjectionMetadata.InjectionPoint> points =
+                InjectionMetadata.of(target.getClass()).getPointsAccepting(implementation.getClass());
+        for (int i = 0; i < points.size(); ++i) {
+            points.get(i).set(target, implementation);
+        }
     }
 
 
@@ -95,17 +93,14 @@ public class Injector {
         Objects.requireNonNull(target, "Target is null");
         Objects.requireNonNull(fieldName, "Field name is null");
         Objects.requireNonNull(implementation, "Implementation is null");
-        Class<?> c = target.getClass();
-        getAllFields(c).forEach(field -> {
-            Injected injected = field.getAnnotation(Injected.class);
+        for (InjectionMetadata.InjectionPoint point :
+                InjectionMetadata.of(target.getClass()).getPointsAccepting(implementation.getClass())) {
+            Injected injected = point.getInjected();
             if (injected != null && injected.name().equals(fieldName)) {
-                Class<?> type = field.getType();
-                if (type.isAssignableFrom(implementation.getClass())) {
-                    logger.trace("Injecting {} into {}", implementation, field.getName());
-                    injectField(target, field, implementation);
-                }
+                logger.trace("Injecting {} into {}", implementation, point.getName());
+                point.set(target, implementation);
             }
-        });
+        }
     }
 
 
@@ -116,10 +111,12 @@ public class Injector {
      * @param implementations the objects ot be injected.
      */
     public static void injectAll(final Object target, final Object... implementations) {
-        Arrays.asList(implementations).forEach(implementation -> {
-            logger.trace("Injecting {} into {}", implementation, target);
+        for (Object implementation : implementations) {
+            if (logger.isTraceEnabled()) {
+                logger.trace("Injecting {} into {}", implementation, target);
+            }
             if (implementation != null) inject(target, implementation);
-        });
+        }
     }
 
 }
@@ -35,12 +35,14 @@ module mil.sstaf.core {
     exports mil.sstaf.core.features;
     exports mil.sstaf.core.configuration;
     exports mil.sstaf.core.module;
+    exports mil.sstaf.core.metrics;
 
     requires transitive commons.math3; // For RandomGenerator
     requires transitive com.fasterxml.jackson.databind;
     requires transitive lombok;
 
     requires org.slf4j;
+    requires jdk.jfr;
 
     uses Feature;
     uses Handler;
@@ -53,5 +55,6 @@ module mil.sstaf.core {
     opens mil.sstaf.core.entity to com.fasterxml.jackson.databind;
     opens mil.sstaf.core.features to com.fasterxml.jackson.databind;
     opens mil.sstaf.core.json to com.fasterxml.jackson.databind;
+    opens mil.sstaf.core.metrics to com.fasterxml.jackson.databind;
 }
 
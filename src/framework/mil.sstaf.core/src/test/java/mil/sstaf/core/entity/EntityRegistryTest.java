@@ -17,6 +17,7 @@
 
 package mil.sstaf.core.entity;
 
+import mil.sstaf.core.util.SSTAFException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -155,6 +156,26 @@ public class EntityRegistryTest {
             Optional<EntityHandle> optNobody = entityRegistry.getHandle(314L);
             Assertions.assertFalse(optNobody.isPresent());
         }
+
+        @Test
+        @DisplayName("Confirm that a remote entity can be found but is not a simulation entity")
+        void testEntityRegistry7 () {
+            EntityRegistry entityRegistry = new EntityRegistry();
+            DummyEntity bob = new DummyEntity("Bob", 123);
+            entityRegistry.registerEntity(Force.BLUE, bob);
+            entityRegistry.compileEntityMaps();
+
+            DummyEntity remote = new DummyEntity("Barney", 789);
+            entityRegistry.registerRemoteEntity(Force.RED, remote);
+            assertEquals(Force.RED, remote.getForce());
+            assertEquals(2, entityRegistry.getAllEntities().size());
+            assertEquals(1, entityRegistry.getSimulationEntities().size());
+            assertTrue(entityRegistry.getRemoteEntities().contains(remote));
+            assertEquals(remote.getHandle(), entityRegistry.getHandle("RED:Barney").orElseThrow());
+            assertTrue(entityRegistry.getEntity(789L).isPresent());
+            assertThrows(SSTAFException.class,
+                    () -> entityRegistry.registerRemoteEntity(Force.BLUE, new DummyEntity("Bob", 124)));
+        }
     }
 
     static class DummyEntity extends BaseEntity {
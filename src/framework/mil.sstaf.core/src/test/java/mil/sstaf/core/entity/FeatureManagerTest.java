@@ -283,6 +283,25 @@ class FeatureManagerTest {
                     () -> featureManager.getHandler(null, "Handler1"));
         }
 
+        @Test
+        @DisplayName("Confirm that routes reflect handlers registered after a lookup")
+        void routesFollowRegistration() {
+            FeatureManager featureManager = fakeEntity.getFeatureManager();
+            Injector.inject(featureManager, eh);
+            final Handler h1 = new Handler1();
+            final Handler h2 = new Handler2();
+            featureManager.register(h1);
+            assertNull(featureManager.getHandler(IntContent.class, null));
+            assertNull(featureManager.getHandler(IntContent.class, "Handler2"));
+
+            featureManager.register(h2);
+            assertEquals(h2, featureManager.getHandler(IntContent.class, null));
+            assertEquals(h2, featureManager.getHandler(IntContent.class, "Handler2"));
+            assertNull(featureManager.getHandler(IntContent.class, "Handler1"));
+            assertNull(featureManager.getHandler(StringContent.class, "Handler2"));
+            assertNull(featureManager.getHandler(StringContent.class, "NoSuchHandler"));
+        }
+
         @Test
         void unregisteredClassYieldsEmptyOptional() {
             FeatureManager featureManager = fakeEntity.getFeatureManager();
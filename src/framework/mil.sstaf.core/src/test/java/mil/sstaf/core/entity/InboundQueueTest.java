@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.entity;
+
+import mil.sstaf.core.features.StringContent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InboundQueueTest {
+
+    private final List<Address> sources = new ArrayList<>();
+    private final Map<Address, Long> sequenceNumbers = new HashMap<>();
+    private Address destination;
+    private Random random;
+
+    @BeforeEach
+    void setup() {
+        random = new Random(1234);
+        for (int i = 0; i < 4; ++i) {
+            Entity entity = TestEntity.builder().build();
+            entity.setForce(Force.BLUE);
+            sources.add(Address.makeExternalAddress(entity.getHandle()));
+            sources.add(Address.makeAddress(entity.getHandle(), "Handler" + i));
+        }
+        sources.add(Address.makeInternalAddress("Local"));
+        Entity target = TestEntity.builder().build();
+        target.setForce(Force.RED);
+        destination = Address.makeExternalAddress(target.getHandle());
+    }
+
+    private Message makeMessage() {
+        Address source = sources.get(random.nextInt(sources.size()));
+        long sequenceNumber = sequenceNumbers.merge(source, 1L, Long::sum);
+        if (random.nextBoolean()) {
+            return EntityAction.builder()
+                    .source(source)
+                    .destination(destination)
+                    .respondTo(Address.NOWHERE)
+                    .sequenceNumber(sequenceNumber)
+                    .content(StringContent.builder().value("action").build())
+                    .build();
+        } else {
+            return EntityEvent.builder()
+                    .source(source)
+                    .destination(destination)
+                    .respondTo(Address.NOWHERE)
+                    .sequenceNumber(sequenceNumber)
+                    .eventTime_ms(random.nextInt(20) * 100L)
+                    .content(StringContent.builder().value("event").build())
+                    .build();
+        }
+    }
+
+    private List<Message> drain(Queue<Message> queue) {
+        List<Message> out = new ArrayList<>();
+        Message message;
+        while ((message = queue.poll()) != null) {
+            out.add(message);
+        }
+        return out;
+    }
+
+    @Test
+    @DisplayName("Confirm that messages are polled in the same order as the PriorityQueue")
+    void testMatchesPriorityQueue() {
+        InboundQueue inbound = new InboundQueue();
+        PriorityQueue<Message> reference = new PriorityQueue<>(new MessageQueueComparator());
+        for (int i = 0; i < 500; ++i) {
+            Message message = makeMessage();
+            inbound.offer(message);
+            reference.offer(message);
+        }
+        assertEquals(reference.size(), inbound.size());
+        assertEquals(drain(reference), drain(inbound));
+        assertTrue(inbound.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Confirm that interleaved offers and polls match the PriorityQueue")
+    void testInterleaved() {
+        InboundQueue inbound = new InboundQueue();
+        PriorityQueue<Message> reference = new PriorityQueue<>(new MessageQueueComparator());
+        for (int i = 0; i < 2000; ++i) {
+            if (random.nextInt(3) == 0) {
+                assertSame(reference.peek(), inbound.peek());
+                assertSame(reference.poll(), inbound.poll());
+            } else {
+                Message message = makeMessage();
+                inbound.offer(message);
+                reference.offer(message);
+            }
+        }
+        assertEquals(drain(reference), drain(inbound));
+    }
+
+    @Test
+    @DisplayName("Confirm that messages arriving out of sequence are reordered")
+    void testOutOfSequence() {
+        InboundQueue inbound = new InboundQueue();
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 20; ++i) {
+            messages.add(EntityAction.builder()
+                    .source(sources.get(0))
+                    .destination(destination)
+                    .respondTo(Address.NOWHERE)
+                    .sequenceNumber(i)
+                    .content(StringContent.builder().value("action").build())
+                    .build());
+        }
+        List<Message> shuffled = new ArrayList<>(messages);
+        Collections.shuffle(shuffled, random);
+        shuffled.forEach(inbound::offer);
+        assertEquals(messages, drain(inbound));
+    }
+
+    @Test
+    @DisplayName("Confirm that the iterator, clear() and the first event time behave")
+    void testIteratorAndClear() {
+        InboundQueue inbound = new InboundQueue();
+        assertEquals(Long.MAX_VALUE, inbound.getFirstEventTime());
+        long firstEventTime = Long.MAX_VALUE;
+        for (int i = 0; i < 100; ++i) {
+            Message message = makeMessage();
+            if (message instanceof EntityEvent) {
+                firstEventTime = Math.min(firstEventTime, ((EntityEvent) message).getEventTime_ms());
+            }
+            inbound.offer(message);
+        }
+        assertEquals(firstEventTime, inbound.getFirstEventTime());
+
+        List<Message> iterated = new ArrayList<>(inbound);
+        assertEquals(100, inbound.size());
+        assertEquals(iterated, drain(inbound));
+
+        for (int i = 0; i < 10; ++i) {
+            inbound.offer(makeMessage());
+        }
+        inbound.clear();
+        assertEquals(0, inbound.size());
+        assertEquals(0, inbound.getImmediateCount());
+        assertNull(inbound.peek());
+        assertNull(inbound.poll());
+    }
+}
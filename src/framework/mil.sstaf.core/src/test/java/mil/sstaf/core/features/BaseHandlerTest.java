@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.features;
+
+import mil.sstaf.core.entity.Address;
+import mil.sstaf.core.util.SSTAFException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BaseHandlerTest {
+
+    @Test
+    @DisplayName("Confirm that contentHandled is derived from the @Handles methods")
+    void testContentHandled() {
+        AnnotatedHandler handler = new AnnotatedHandler();
+        assertEquals(List.of(IntContent.class, StringContent.class), handler.contentHandled());
+        assertEquals(List.of(IntContent.class, LongContent.class, StringContent.class),
+                new ExtendedHandler().contentHandled());
+    }
+
+    @Test
+    @DisplayName("Confirm that content is dispatched to the method for its class")
+    void testDispatch() {
+        AnnotatedHandler handler = new AnnotatedHandler();
+        handler.process(StringContent.of("s"), 10, 20, Address.NOWHERE, 1, Address.NOWHERE);
+        assertEquals("string 10 20", handler.last);
+        handler.process(IntContent.builder().value(3).build(), 30, 40, Address.NOWHERE, 2, Address.NOWHERE);
+        assertEquals("int 3", handler.last);
+        handler.process(LongContent.builder().longValue(4L).build(), 0, 0, Address.NOWHERE, 3, Address.NOWHERE);
+        assertEquals("unsupported LongContent", handler.last);
+    }
+
+    @Test
+    @DisplayName("Confirm that a subclass method takes precedence and inherited methods still dispatch")
+    void testInheritance() {
+        ExtendedHandler handler = new ExtendedHandler();
+        handler.process(StringContent.of("s"), 0, 0, Address.NOWHERE, 1, Address.NOWHERE);
+        assertEquals("extended string", handler.last);
+        handler.process(IntContent.builder().value(5).build(), 0, 0, Address.NOWHERE, 2, Address.NOWHERE);
+        assertEquals("int 5", handler.last);
+        handler.process(LongContent.builder().longValue(6L).build(), 0, 0, Address.NOWHERE, 3, Address.NOWHERE);
+        assertEquals("long 6", handler.last);
+    }
+
+    @Test
+    @DisplayName("Confirm that exceptions thrown by a handler method are not wrapped")
+    void testExceptionPropagates() {
+        AnnotatedHandler handler = new AnnotatedHandler();
+        SSTAFException ex = assertThrows(SSTAFException.class,
+                () -> handler.process(StringContent.of("fail"), 0, 0, Address.NOWHERE, 1, Address.NOWHERE));
+        assertEquals("Failed on purpose", ex.getMessage());
+    }
+
+    @Test
+    @DisplayName("Confirm that a method with the wrong signature is rejected")
+    void testInvalidSignature() {
+        assertThrows(SSTAFException.class, () -> new BrokenHandler().contentHandled());
+    }
+
+    static class AnnotatedHandler extends BaseHandler {
+        String last;
+
+        AnnotatedHandler() {
+            super("Annotated", 0, 0, 0, false, "Handler with @Handles methods");
+        }
+
+        @Handles(StringContent.class)
+        private ProcessingResult string(StringContent content, long scheduledTime_ms, long currentTime_ms,
+                                        Address from, long id, Address respondTo) {
+            if ("fail".equals(content.getValue())) {
+                throw new SSTAFException("Failed on purpose");
+            }
+            last = "string " + scheduledTime_ms + " " + currentTime_ms;
+            return ProcessingResult.empty();
+        }
+
+        @Handles(IntContent.class)
+        ProcessingResult integer(HandlerContent content, long scheduledTime_ms, long currentTime_ms,
+                                 Address from, long id, Address respondTo) {
+            last = "int " + ((IntContent) content).getValue();
+            return ProcessingResult.empty();
+        }
+
+        @Override
+        protected ProcessingResult processUnsupported(HandlerContent arg, long id, Address respondTo) {
+            last = "unsupported " + arg.getClass().getSimpleName();
+            return ProcessingResult.empty();
+        }
+    }
+
+    static class ExtendedHandler extends AnnotatedHandler {
+        @Handles(StringContent.class)
+        private ProcessingResult extendedString(StringContent content, long scheduledTime_ms, long currentTime_ms,
+                                                Address from, long id, Address respondTo) {
+            last = "extended string";
+            return ProcessingResult.empty();
+        }
+
+        @Handles(LongContent.class)
+        private ProcessingResult longValue(LongContent content, long scheduledTime_ms, long currentTime_ms,
+                                           Address from, long id, Address respondTo) {
+            last = "long " + content.getLongValue();
+            return ProcessingResult.empty();
+        }
+    }
+
+    static class BrokenHandler extends BaseHandler {
+        BrokenHandler() {
+            super("Broken", 0, 0, 0, false, "Handler with a malformed @Handles method");
+        }
+
+        @Handles(StringContent.class)
+        private ProcessingResult string(StringContent content) {
+            return ProcessingResult.empty();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.features;
+
+import mil.sstaf.core.entity.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProcessingResultTest {
+
+    private Message makeEvent(long time_ms) {
+        return EntityEvent.builder()
+                .source(Address.makeInternalAddress("Source"))
+                .destination(Address.NOWHERE)
+                .respondTo(Address.NOWHERE)
+                .eventTime_ms(time_ms)
+                .content(StringContent.builder().value("event").build())
+                .build();
+    }
+
+    @Test
+    @DisplayName("Confirm that merging empty results yields the empty result")
+    void testMergeEmpty() {
+        assertSame(ProcessingResult.empty(), ProcessingResult.merge(List.of()));
+        assertSame(ProcessingResult.empty(),
+                ProcessingResult.merge(Arrays.asList(ProcessingResult.empty(), null, ProcessingResult.empty())));
+    }
+
+    @Test
+    @DisplayName("Confirm that a single non-empty result is returned without copying")
+    void testMergeSingle() {
+        ProcessingResult pr = ProcessingResult.of(makeEvent(100));
+        assertSame(pr, ProcessingResult.merge(List.of(ProcessingResult.empty(), pr, ProcessingResult.empty())));
+    }
+
+    @Test
+    @DisplayName("Confirm that several results are combined in order")
+    void testMergeSeveral() {
+        Message m1 = makeEvent(300);
+        Message m2 = makeEvent(100);
+        Message m3 = makeEvent(200);
+        ProcessingResult merged = ProcessingResult.merge(Arrays.asList(
+                ProcessingResult.of(m1), null, ProcessingResult.of(List.of(m2, m3))));
+        assertEquals(List.of(m1, m2, m3), merged.messages);
+        assertEquals(100, merged.nextEventTime_ms);
+    }
+}
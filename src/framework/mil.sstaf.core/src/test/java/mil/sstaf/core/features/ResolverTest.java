@@ -27,6 +27,7 @@ import mil.sstaf.core.util.SSTAFException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -73,6 +74,60 @@ class ResolverTest {
         Assertions.assertDoesNotThrow(jamesBond::init);
     }
 
+    @Test
+    void replayedPlanWiresAndConfiguresLikeTheOriginal() {
+
+        FeatureLoader.registerClass(JamesBond.class);
+        FeatureLoader.registerClass(AlphaProvider.class);
+        FeatureLoader.registerClass(BravoProvider.class);
+        FeatureLoader.registerClass(CharlieProvider.class);
+        FeatureLoader.registerClass(DeltaProvider.class);
+        FeatureLoader.registerClass(EchoProvider.class);
+
+        FeatureSpecification jbSpec = FeatureSpecification.builder()
+                .featureName("James Bond")
+                .majorVersion(7)
+                .minorVersion(0)
+                .requireExact(false).build();
+        FeatureSpecification deltaSpec = FeatureSpecification.builder()
+                .featureName("Delta")
+                .majorVersion(8)
+                .minorVersion(0)
+                .requireExact(false).build();
+
+        Entity testEntity = TestEntity.makeTestEntity();
+        List<Map<String, FeatureConfiguration>> configs = new ArrayList<>();
+        List<Map<FeatureSpecification, Feature>> caches = new ArrayList<>();
+        List<List<Feature>> results = new ArrayList<>();
+        for (int i = 0; i < 2; ++i) {
+            Map<String, FeatureConfiguration> config = new HashMap<>();
+            for (String name : new String[]{"James Bond", "Alpha", "Bravo", "Charlie"}) {
+                config.put(name, FeatureConfiguration.builder().build());
+            }
+            for (String name : new String[]{"Delta", "Echo"}) {
+                config.put(name, ValueConfiguration.builder().myValue(17).build());
+            }
+            ConcurrentMap<FeatureSpecification, Feature> featureCache = new ConcurrentHashMap<>();
+            Resolver resolver = new Resolver(featureCache, config, testEntity.getHandle(), 31415, ModuleLayer.boot());
+            results.add(resolver.loadAndResolveDependencies(List.of(jbSpec, deltaSpec)));
+            configs.add(config);
+            caches.add(featureCache);
+        }
+
+        List<Feature> first = results.get(0);
+        List<Feature> second = results.get(1);
+        Assertions.assertEquals(2, second.size());
+        Assertions.assertNotSame(first.get(0), second.get(0));
+        Assertions.assertInstanceOf(JamesBond.class, second.get(0));
+        Assertions.assertInstanceOf(DeltaProvider.class, second.get(1));
+        Assertions.assertEquals(caches.get(0).size(), caches.get(1).size());
+        Assertions.assertTrue(caches.get(1).containsValue(second.get(1)));
+        Assertions.assertDoesNotThrow(((Agent) second.get(0))::init);
+        for (String name : configs.get(0).keySet()) {
+            Assertions.assertEquals(configs.get(0).get(name).getSeed(), configs.get(1).get(name).getSeed(), name);
+        }
+    }
+
     static class JamesBond extends BaseAgent {
 
         private FeatureConfiguration configuration;
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    @DisplayName("Confirm that every value falls within its bucket and the buckets leave no gaps")
+    void bucketsCoverAllValues() {
+        for (long value = 0; value <= LatencyHistogram.HIGHEST_TRACKABLE_VALUE;
+             value = value < 1000 ? value + 1 : value + value / 7) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(index < LatencyHistogram.BUCKET_COUNT);
+            assertTrue(LatencyHistogram.lowestValueAt(index) <= value);
+            assertTrue(LatencyHistogram.highestValueAt(index) >= value);
+            assertTrue(LatencyHistogram.highestValueAt(index) - LatencyHistogram.lowestValueAt(index)
+                    <= value / 32);
+        }
+        for (int index = 1; index < LatencyHistogram.BUCKET_COUNT; ++index) {
+            assertEquals(LatencyHistogram.highestValueAt(index - 1) + 1, LatencyHistogram.lowestValueAt(index));
+        }
+        assertEquals(LatencyHistogram.HIGHEST_TRACKABLE_VALUE,
+                LatencyHistogram.highestValueAt(LatencyHistogram.BUCKET_COUNT - 1));
+    }
+
+    @Test
+    @DisplayName("Confirm that percentiles are within the bucket precision")
+    void percentilesAreAccurate() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        assertEquals(0, histogram.getValueAtPercentile(50.0));
+        for (long value = 1; value <= 10000; ++value) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(10000, histogram.getCount());
+        assertEquals(1000, histogram.getMin());
+        assertEquals(10000000, histogram.getMax());
+        assertEquals(5000500.0, histogram.getMean(), 1e-6);
+        for (double percentile : new double[]{50.0, 90.0, 99.0, 99.9}) {
+            double exact = percentile / 100.0 * 10000000;
+            long reported = histogram.getValueAtPercentile(percentile);
+            assertTrue(reported >= exact && reported <= exact * (1 + 1.0 / 32), percentile + " -> " + reported);
+        }
+        assertEquals(10000000, histogram.getValueAtPercentile(100.0));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(101.0));
+    }
+
+    @Test
+    @DisplayName("Confirm that values out of range are clamped and reset clears everything")
+    void clampsAndResets() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.getMin());
+        assertEquals(LatencyHistogram.HIGHEST_TRACKABLE_VALUE, histogram.getMax());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(99.0));
+    }
+
+    @Test
+    @DisplayName("Confirm that concurrent recording loses no values")
+    void concurrentRecording() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; ++t) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100000; ++i) {
+                        histogram.record(i % 500);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(400000, histogram.getCount());
+        assertEquals(499, histogram.getMax());
+        assertEquals(499, histogram.getValueAtPercentile(100.0));
+        MetricSnapshot snapshot = histogram.snapshot();
+        assertEquals(Metric.Type.HISTOGRAM, snapshot.getType());
+        assertEquals(400000, snapshot.getValue());
+    }
+}
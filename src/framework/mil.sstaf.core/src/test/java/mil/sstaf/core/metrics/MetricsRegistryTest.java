@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsRegistryTest {
+
+    @Test
+    @DisplayName("Confirm that a metric is created once and keeps its type")
+    void metricsAreShared() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter counter = registry.counter("messages.routed");
+        assertSame(counter, registry.counter("messages.routed"));
+        assertTrue(registry.find("messages.routed").isPresent());
+        assertFalse(registry.find("messages.dropped").isPresent());
+        assertThrows(IllegalArgumentException.class, () -> registry.histogram("messages.routed"));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    @DisplayName("Confirm that snapshots and resets select by prefix")
+    void snapshotByPrefix() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("tick.count").add(3);
+        registry.histogram("tick.time").record(1500);
+        Gauge gauge = registry.gauge("entity.inboundDepth.BLUE:Bob");
+        gauge.set(7);
+        gauge.set(2);
+
+        List<MetricSnapshot> ticks = registry.snapshot("tick.");
+        assertEquals(List.of("tick.count", "tick.time"),
+                ticks.stream().map(MetricSnapshot::getName).collect(Collectors.toList()));
+        assertEquals(3, ticks.get(0).getValue());
+        assertEquals(1, ticks.get(1).getValue());
+        assertEquals(1500, ticks.get(1).getMax());
+
+        MetricSnapshot depth = registry.snapshot("entity.").get(0);
+        assertEquals(Metric.Type.GAUGE, depth.getType());
+        assertEquals(2, depth.getValue());
+        assertEquals(7, depth.getMax());
+
+        registry.reset("tick.");
+        assertEquals(0, registry.counter("tick.count").get());
+        assertEquals(0, registry.histogram("tick.time").getCount());
+        assertEquals(7, gauge.getMax());
+        registry.reset("");
+        assertEquals(2, gauge.get());
+        assertEquals(2, gauge.getMax());
+        assertEquals(3, registry.snapshot("").size());
+    }
+
+    @Test
+    @DisplayName("Confirm that a snapshot survives a round trip through JSON")
+    void snapshotJson() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.histogram("handler.latency.Test").record(42);
+        MetricSnapshot snapshot = registry.snapshot("").get(0);
+        ObjectMapper objectMapper = new ObjectMapper();
+        String json = objectMapper.writeValueAsString(snapshot);
+        assertEquals(snapshot, objectMapper.readValue(json, MetricSnapshot.class));
+    }
+}
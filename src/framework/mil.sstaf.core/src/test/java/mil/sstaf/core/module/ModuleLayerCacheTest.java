@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.module;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModuleLayerCacheTest {
+
+    @Test
+    @DisplayName("Confirm that no cache is in use unless one is installed")
+    void testNoCacheByDefault() {
+        assertNull(ModuleLayerSupport.getCache());
+    }
+
+    @Test
+    @DisplayName("Confirm that a cache is only in use for the work it is installed for")
+    void testCacheIsScoped() {
+        ModuleLayerCache outer = new ModuleLayerCache();
+        ModuleLayerCache inner = new ModuleLayerCache();
+        ModuleLayerSupport.withCache(outer, () -> {
+            assertSame(outer, ModuleLayerSupport.getCache());
+            ModuleLayerSupport.withCache(inner, () -> {
+                assertSame(inner, ModuleLayerSupport.getCache());
+                return null;
+            });
+            assertSame(outer, ModuleLayerSupport.getCache());
+            ModuleLayerSupport.withCache(null, () -> {
+                assertNull(ModuleLayerSupport.getCache());
+                return null;
+            });
+            assertSame(outer, ModuleLayerSupport.getCache());
+            return null;
+        });
+        assertNull(ModuleLayerSupport.getCache());
+    }
+
+    @Test
+    @DisplayName("Confirm that a cache returns the layer it created for a key")
+    void testLayersAreShared() {
+        ModuleLayerCache cache = new ModuleLayerCache();
+        List<Object> key = List.of(ModuleLayer.boot(), List.of(), "modules");
+        ModuleLayer first = cache.computeIfAbsent(key, k -> ModuleLayer.boot());
+        assertSame(first, cache.computeIfAbsent(key, k -> fail("Layer created twice")));
+        assertEquals(1, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("Confirm that a definition without modules reuses the parent layer")
+    void testEmptyDefinitionReusesParent() {
+        ModuleLayerCache cache = new ModuleLayerCache();
+        ModuleLayer layer = ModuleLayerSupport.withCache(cache, () -> ModuleLayerSupport.makeModuleLayer(
+                ModuleLayer.boot(), null, ClassLoader.getSystemClassLoader()));
+        assertSame(ModuleLayer.boot(), layer);
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.core.util;
+
+import mil.sstaf.core.features.Requires;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InjectionMetadataTest {
+
+    @Test
+    @DisplayName("Confirm that metadata is computed once per class")
+    void testCached() {
+        assertSame(InjectionMetadata.of(Child.class), InjectionMetadata.of(Child.class));
+        assertNotSame(InjectionMetadata.of(Child.class), InjectionMetadata.of(Parent.class));
+    }
+
+    @Test
+    @DisplayName("Confirm that annotated fields are found in subclass and superclass")
+    void testInjectionPoints() {
+        InjectionMetadata metadata = InjectionMetadata.of(Child.class);
+        assertEquals(List.of("name", "dependency", "count"), names(metadata.getInjectionPoints()));
+        assertEquals(List.of("dependency"), names(metadata.getRequiresPoints()));
+        assertNotNull(metadata.getRequiresPoints().get(0).getRequires());
+        assertNull(metadata.getRequiresPoints().get(0).getInjected());
+    }
+
+    @Test
+    @DisplayName("Confirm that points are selected by the type of the implementation")
+    void testPointsAccepting() {
+        InjectionMetadata metadata = InjectionMetadata.of(Child.class);
+        assertEquals(List.of("name", "dependency"), names(metadata.getPointsAccepting(String.class)));
+        assertEquals(List.of("dependency", "count"), names(metadata.getPointsAccepting(Integer.class)));
+        assertEquals(List.of("dependency"), names(metadata.getPointsAccepting(Thread.class)));
+        assertTrue(InjectionMetadata.of(Parent.class).getPointsAccepting(Thread.class).isEmpty());
+        InjectionMetadata.InjectionPoint count = metadata.getInjectionPoints().get(2);
+        assertTrue(count.accepts(Integer.class));
+        assertFalse(count.accepts(String.class));
+    }
+
+    @Test
+    @DisplayName("Confirm that private fields can be read and written through the bound handles")
+    void testGetAndSet() {
+        Child child = new Child();
+        InjectionMetadata metadata = InjectionMetadata.of(Child.class);
+        InjectionMetadata.InjectionPoint count = metadata.getInjectionPoints().get(2);
+        assertNull(count.get(child));
+        count.set(child, 42);
+        assertEquals(42, count.get(child));
+        assertEquals(42, child.getCount());
+        assertSame(count, metadata.find(count.getField()));
+    }
+
+    private static List<String> names(List<InjectionMetadata.InjectionPoint> points) {
+        return points.stream().map(InjectionMetadata.InjectionPoint::getName).collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("Confirm that injecting into a class does not keep its class loader alive")
+    void testLoaderCollected() throws Exception {
+        WeakReference<ClassLoader> loader = injectInIsolatedLoader();
+        for (int i = 0; i < 20 && loader.get() != null; ++i) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertNull(loader.get());
+    }
+
+    private static WeakReference<ClassLoader> injectInIsolatedLoader() throws Exception {
+        ClassLoader isolated = new IsolatingLoader(Isolated.class.getName());
+        Class<?> type = isolated.loadClass(Isolated.class.getName());
+        assertNotSame(Isolated.class, type);
+        Constructor<?> constructor = type.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        Object target = constructor.newInstance();
+        Injector.inject(target, "injected");
+        assertEquals(List.of("value"), names(InjectionMetadata.of(type).getPointsAccepting(String.class)));
+        return new WeakReference<>(isolated);
+    }
+
+    /**
+     * Defines one class itself instead of delegating, as a module layer loader does for
+     * the features it holds.
+     */
+    private static final class IsolatingLoader extends ClassLoader {
+        private final String isolatedName;
+
+        private IsolatingLoader(final String isolatedName) {
+            super(InjectionMetadataTest.class.getClassLoader());
+            this.isolatedName = isolatedName;
+        }
+
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(isolatedName)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> c = findLoadedClass(name);
+                if (c == null) {
+                    String resource = name.replace('.', '/') + ".class";
+                    try (InputStream in = getParent().getResourceAsStream(resource)) {
+                        if (in == null) {
+                            throw new ClassNotFoundException(name);
+                        }
+                        byte[] bytes = in.readAllBytes();
+                        c = defineClass(name, bytes, 0, bytes.length);
+                    } catch (IOException e) {
+                        throw new ClassNotFoundException(name, e);
+                    }
+                }
+                return c;
+            }
+        }
+    }
+
+    private static class Isolated {
+        @Injected
+        private String value;
+    }
+
+    private static class Parent {
+        @Injected
+        private Integer count;
+
+        private String notInjected;
+
+        Integer getCount() {
+            return count;
+        }
+    }
+
+    private static class Child extends Parent {
+        @Injected(name = "label")
+        private String name;
+
+        @Requires
+        private Object dependency;
+
+        private Object alsoNotInjected;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.benchmarks;
+
+import mil.sstaf.core.entity.BaseEntity;
+import mil.sstaf.core.entity.Force;
+import mil.sstaf.core.entity.Unit;
+import mil.sstaf.core.features.StringContent;
+import mil.sstaf.session.control.DispatchMode;
+import mil.sstaf.session.control.EntityController;
+import mil.sstaf.session.messages.Event;
+import mil.sstaf.session.messages.SessionTickResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-tick cost of the {@code invokeAll} and partitioned dispatch modes
+ * as the number of entities and executor threads grows.
+ * <p>
+ * Every entity has one event due on each tick, so the benchmark measures dispatch
+ * overhead plus a small, uniform amount of work per entity.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    int entityCount;
+
+    @Param({"1", "4", "16"})
+    int executorThreads;
+
+    @Param({"INVOKE_ALL", "PARTITIONED"})
+    DispatchMode dispatchMode;
+
+    private EntityController entityController;
+    private List<String> paths;
+    private long time_ms;
+
+    @Setup(Level.Trial)
+    public void setupController() {
+        List<BaseEntity> units = new ArrayList<>(entityCount);
+        paths = new ArrayList<>(entityCount);
+        for (int i = 0; i < entityCount; ++i) {
+            String name = "U" + i;
+            units.add(Unit.builder().name(name).build());
+            paths.add(name);
+        }
+        entityController = EntityController.builder()
+                .entities(Map.of(Force.BLUE, units))
+                .executorThreads(executorThreads)
+                .dispatchMode(dispatchMode)
+                .build();
+        time_ms = 0;
+    }
+
+    @Setup(Level.Invocation)
+    public void submitEvents() {
+        ++time_ms;
+        for (String path : paths) {
+            entityController.submitEvent(Event.builder()
+                    .recipientPath(path)
+                    .eventTime_ms(time_ms)
+                    .content(StringContent.builder().value("ping").build())
+                    .build());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        entityController.shutdown();
+    }
+
+    @Benchmark
+    public SessionTickResult tickAllDue() {
+        return entityController.tick(time_ms);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.benchmarks;
+
+import lombok.experimental.SuperBuilder;
+import mil.sstaf.core.entity.Address;
+import mil.sstaf.core.entity.BaseEntity;
+import mil.sstaf.core.entity.Force;
+import mil.sstaf.core.entity.Unit;
+import mil.sstaf.core.features.*;
+import mil.sstaf.session.control.EntityController;
+import mil.sstaf.session.control.ExecutorStrategy;
+import mil.sstaf.session.messages.SessionTickResult;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures tick throughput for a mix of blocking and CPU-bound agents under each
+ * {@code ExecutorStrategy}.
+ * <p>
+ * The blocking agent stands in for {@code PyAgentImpl}: every tick sleeps for a fixed
+ * round-trip latency, as if waiting on {@code AppSession.invoke}. The CPU-bound agent
+ * burns a fixed amount of CPU. With a fixed platform pool the blocking agents hold
+ * pool threads while they wait, so the CPU-bound agents queue behind them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MixedAgentBenchmark {
+
+    @Param({"PLATFORM", "VIRTUAL", "HYBRID"})
+    ExecutorStrategy executorStrategy;
+
+    @Param({"256"})
+    int entityCount;
+
+    @Param({"10", "50"})
+    int blockingPercent;
+
+    @Param({"4"})
+    int executorThreads;
+
+    @Param({"2"})
+    long roundTrip_ms;
+
+    @Param({"20000"})
+    long cpuTokens;
+
+    private EntityController entityController;
+    private long time_ms;
+
+    @Setup(Level.Trial)
+    public void setupController() {
+        List<BaseEntity> units = new ArrayList<>(entityCount);
+        int numBlocking = entityCount * blockingPercent / 100;
+        for (int i = 0; i < entityCount; ++i) {
+            units.add(AgentUnit.builder()
+                    .name("U" + i)
+                    .blocking(i < numBlocking)
+                    .roundTrip_ms(roundTrip_ms)
+                    .cpuTokens(cpuTokens)
+                    .build());
+        }
+        entityController = EntityController.builder()
+                .entities(Map.of(Force.BLUE, units))
+                .executorThreads(executorThreads)
+                .executorStrategy(executorStrategy)
+                .build();
+        time_ms = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        entityController.shutdown();
+    }
+
+    @Benchmark
+    public SessionTickResult tick() {
+        time_ms += 1000;
+        return entityController.tick(time_ms);
+    }
+
+    /**
+     * A {@code Unit} that carries one simulated agent.
+     */
+    @SuperBuilder
+    static class AgentUnit extends Unit {
+        private final boolean blocking;
+        private final long roundTrip_ms;
+        private final long cpuTokens;
+
+        protected AgentUnit(AgentUnitBuilder<?, ?> builder) {
+            super(builder);
+            this.blocking = builder.blocking;
+            this.roundTrip_ms = builder.roundTrip_ms;
+            this.cpuTokens = builder.cpuTokens;
+            Agent agent = blocking ? new SimulatedPythonAgent(roundTrip_ms) : new SimulatedJavaAgent(cpuTokens);
+            featureManager.register(agent);
+        }
+    }
+
+    /**
+     * Waits on a simulated external application on every tick.
+     */
+    @Blocking
+    static class SimulatedPythonAgent extends BaseAgent {
+        private final long roundTrip_ms;
+
+        SimulatedPythonAgent(long roundTrip_ms) {
+            super("SimulatedPythonAgent", 1, 0, 0, false, "Blocks for a fixed time on every tick");
+            this.roundTrip_ms = roundTrip_ms;
+        }
+
+        @Override
+        public ProcessingResult tick(long currentTime_ms) {
+            try {
+                Thread.sleep(roundTrip_ms);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ProcessingResult.empty();
+        }
+
+        @Override
+        public List<Class<? extends HandlerContent>> contentHandled() {
+            return List.of();
+        }
+
+        @Override
+        public ProcessingResult process(HandlerContent arg, long scheduledTime_ms, long currentTime_ms,
+                                        Address from, long id, Address respondTo) {
+            return ProcessingResult.empty();
+        }
+    }
+
+    /**
+     * Burns a fixed amount of CPU on every tick.
+     */
+    static class SimulatedJavaAgent extends BaseAgent {
+        private final long cpuTokens;
+
+        SimulatedJavaAgent(long cpuTokens) {
+            super("SimulatedJavaAgent", 1, 0, 0, false, "Consumes a fixed amount of CPU on every tick");
+            this.cpuTokens = cpuTokens;
+        }
+
+        @Override
+        public ProcessingResult tick(long currentTime_ms) {
+            Blackhole.consumeCPU(cpuTokens);
+            return ProcessingResult.empty();
+        }
+
+        @Override
+        public List<Class<? extends HandlerContent>> contentHandled() {
+            return List.of();
+        }
+
+        @Override
+        public ProcessingResult process(HandlerContent arg, long scheduledTime_ms, long currentTime_ms,
+                                        Address from, long id, Address respondTo) {
+            return ProcessingResult.empty();
+        }
+    }
+}
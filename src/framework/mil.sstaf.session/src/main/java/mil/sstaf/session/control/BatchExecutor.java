@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import mil.sstaf.core.util.SSTAFException;
+
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Runs a numbered batch of independent simulations on a fixed pool of threads.
+ * <p>
+ * Tasks are created lazily and at most two per thread are outstanding at any time, so
+ * the memory used by a batch is bounded by the pool size rather than the batch size.
+ * Results are passed to the consumer on the calling thread, in the order the tasks
+ * finish.
+ */
+final class BatchExecutor {
+
+    private BatchExecutor() {
+    }
+
+    /**
+     * Runs the batch.
+     *
+     * @param count       the number of tasks
+     * @param parallelism the number of threads
+     * @param task        creates and runs the task with the given number
+     * @param consumer    receives each result
+     * @param <T>         the type of the results
+     */
+    static <T> void run(final int count, final int parallelism,
+                        final IntFunction<T> task, final Consumer<T> consumer) {
+        int threads = Math.max(1, Math.min(parallelism, count));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+        int submitted = 0;
+        try {
+            while (submitted < count && submitted < 2 * threads) {
+                submit(completionService, task, submitted++);
+            }
+            for (int done = 0; done < count; ++done) {
+                T result = completionService.take().get();
+                if (submitted < count) {
+                    submit(completionService, task, submitted++);
+                }
+                consumer.accept(result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+            throw new SSTAFException("Interrupted while running batch", e);
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SSTAFException("Could not run batch", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static <T> void submit(final CompletionService<T> completionService,
+                                   final IntFunction<T> task, final int index) {
+        completionService.submit(() -> task.apply(index));
+    }
+}
@@ -0,0 +1,503 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import mil.sstaf.core.entity.*;
+import mil.sstaf.core.util.SSTAFException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Advances groups of entities through their events concurrently, as far as the lookahead
+ * of the other groups allows, while producing exactly the results of advancing the whole
+ * simulation from event to event.
+ * <p>
+ * Advancing from event to event executes a sequence of global steps, one at each booked
+ * event time. At each step every {@code Entity} with work due processes its messages, and
+ * the messages it sends are delivered after the step. An immediate message, or an event
+ * dated no later than the step that sent it, is therefore processed at the next global
+ * step, whichever {@code Entity} that step belongs to.
+ * <p>
+ * The scheduler divides the entities into {@code LookaheadPartition}s, each with its own
+ * {@code EventCalendar}, and runs in rounds. In each round it computes, for every partition,
+ * a lower bound on the time at which it can next send a message, taking into account the
+ * messages it may receive from the others. A partition may execute the steps it has booked
+ * before the earliest time at which a message from another partition could reach it. Each
+ * partition runs its steps on its own thread, delivering messages within the partition as
+ * it goes; messages to other partitions are delivered at the end of the round.
+ * <p>
+ * A partition that has received an immediate message, or an event that is already due, is
+ * pending. It cannot step again until the time of the next global step is known, that is,
+ * until no partition can execute a step between the one that sent the message and the next
+ * one already executed or booked. Messages of that kind from other partitions are held
+ * until the same holds for the receiving partition.
+ * <p>
+ * The scheduler is driven by the {@code EntityController} between ticks and only while no
+ * {@code Entity} has {@code Agent}s, since those run on every global step.
+ */
+final class ConservativeScheduler extends RunAheadScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConservativeScheduler.class);
+
+    private final List<Partition> partitions = new ArrayList<>();
+    private final Map<Entity, Partition> membership = new IdentityHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param registry the registry used to find the destinations of messages
+     * @param entities the simulation entities
+     * @param specs    the partitions, an {@code Entity} belongs to the first that lists it
+     */
+    ConservativeScheduler(final EntityRegistry registry, final Collection<? extends Entity> entities,
+                          final List<LookaheadPartition> specs) {
+        super(registry);
+        for (Map.Entry<LookaheadPartition, List<Entity>> entry : assign(entities, specs).entrySet()) {
+            Partition partition = new Partition(entry.getKey().getName(), entry.getKey().getLookahead_ms());
+            partition.members.addAll(entry.getValue());
+            entry.getValue().forEach(entity -> membership.put(entity, partition));
+            partitions.add(partition);
+        }
+        if (logger.isInfoEnabled()) {
+            for (Partition partition : partitions) {
+                logger.info("Partition {} has {} entities and a lookahead of {} ms", partition.name,
+                        partition.members.size(), partition.lookahead_ms);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int getPartitionCount() {
+        return partitions.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Outcome run(final EventCalendar calendar, final long from_ms, final long end_ms,
+                final ExecutorService executor) {
+        for (Partition partition : partitions) {
+            partition.begin(calendar.extract(partition.members), from_ms);
+        }
+        TreeSet<Long> executed = new TreeSet<>();
+        TreeMap<Long, List<Message>> toClient = new TreeMap<>();
+        int rounds = 0;
+        try {
+            while (true) {
+                int n = partitions.size();
+                long[] next = new long[n];
+                boolean[] resolved = new boolean[n];
+
+                //
+                // Deliver the held messages that can no longer be overtaken. Each delivery
+                // may let other partitions resolve, so repeat until nothing moves.
+                //
+                boolean delivered = false;
+                long g0;
+                long[] horizon;
+                boolean moved;
+                do {
+                    g0 = computeNextSteps(executed, next, resolved);
+                    horizon = computeHorizons(next);
+                    moved = false;
+                    for (int i = 0; i < n; ++i) {
+                        moved |= partitions.get(i).releaseHeld(horizon[i]);
+                    }
+                    delivered |= moved;
+                } while (moved);
+
+                if (g0 >= end_ms) {
+                    //
+                    // Nothing is left to do before the end. Whatever is still held is
+                    // processed by the tick at the end time.
+                    //
+                    break;
+                }
+
+                List<Callable<Void>> tasks = new ArrayList<>(n);
+                for (int i = 0; i < n; ++i) {
+                    Partition partition = partitions.get(i);
+                    //
+                    // The earliest known step is always safe, whatever the lookahead.
+                    //
+                    long bound_ms = Math.min(Math.min(Math.max(horizon[i], g0 + 1), end_ms),
+                            saturatedAdd(partition.getHeldMin(), 1));
+                    if (next[i] < bound_ms && (resolved[i] || !partition.isPending())) {
+                        final long first_ms = resolved[i] ? next[i] : Long.MIN_VALUE;
+                        final long limit_ms = bound_ms;
+                        tasks.add(() -> {
+                            partition.advance(first_ms, limit_ms, registry, membership);
+                            return null;
+                        });
+                    }
+                }
+                if (tasks.isEmpty() && !delivered) {
+                    throw new SSTAFException("Conservative scheduler stalled at " + g0);
+                }
+                runAll(tasks, executor);
+                ++rounds;
+
+                for (Partition partition : partitions) {
+                    executed.addAll(partition.executed);
+                    partition.executed.clear();
+                    for (Map.Entry<Long, List<Message>> entry : partition.toClient.entrySet()) {
+                        toClient.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).addAll(entry.getValue());
+                    }
+                    partition.toClient.clear();
+                }
+                for (Partition partition : partitions) {
+                    for (Transfer transfer : partition.outgoing) {
+                        transfer.receiver.accept(transfer);
+                    }
+                    partition.outgoing.clear();
+                }
+            }
+        } finally {
+            for (Partition partition : partitions) {
+                partition.releaseAll();
+                calendar.merge(partition.calendar);
+            }
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Executed {} steps between {} and {} in {} rounds", executed.size(), from_ms, end_ms, rounds);
+        }
+
+        List<Message> messages = orderForClient(toClient);
+        long last_ms = executed.isEmpty() ? from_ms : Math.max(from_ms, executed.last());
+        return new Outcome(last_ms, executed.size(), messages);
+    }
+
+    /**
+     * Determines the time of the next step of every partition.
+     * <p>
+     * A partition that is not pending steps at its earliest booking. A pending partition
+     * can be resolved if it has been pending no longer than any other and every other
+     * partition is booked after that time; it steps at the next global step, which is the
+     * earliest step executed or booked after it became pending. Otherwise the only known
+     * bound is the millisecond after it became pending.
+     *
+     * @param executed the times of the steps executed so far
+     * @param next     receives the next step times
+     * @param resolved receives whether each pending partition was resolved
+     * @return the time of the earliest known step
+     */
+    private long computeNextSteps(final TreeSet<Long> executed, final long[] next, final boolean[] resolved) {
+        long minBooking = Long.MAX_VALUE;
+        long minSince = Long.MAX_VALUE;
+        for (Partition partition : partitions) {
+            if (partition.isPending()) {
+                minSince = Math.min(minSince, partition.since_ms);
+            } else {
+                minBooking = Math.min(minBooking, partition.calendar.getEarliestBooking());
+            }
+        }
+        long g0 = minBooking;
+        for (int i = 0; i < next.length; ++i) {
+            Partition partition = partitions.get(i);
+            resolved[i] = false;
+            if (!partition.isPending()) {
+                next[i] = partition.calendar.getEarliestBooking();
+            } else if (partition.since_ms == minSince && minSince < minBooking) {
+                long step_ms = Long.MAX_VALUE;
+                Long after = executed.higher(minSince);
+                if (after != null) {
+                    step_ms = after;
+                }
+                for (Partition other : partitions) {
+                    step_ms = Math.min(step_ms, other.calendar.getNextEventTime(minSince));
+                }
+                next[i] = step_ms;
+                resolved[i] = true;
+                g0 = Math.min(g0, step_ms);
+            } else {
+                next[i] = saturatedAdd(partition.since_ms, 1);
+            }
+        }
+        return g0;
+    }
+
+    /**
+     * Determines, for every partition, the earliest time at which a message from another
+     * partition could arrive.
+     *
+     * @param next the next step time of every partition
+     * @return the horizons
+     */
+    private long[] computeHorizons(final long[] next) {
+        int n = next.length;
+        long[] lower = new long[n];
+        for (int i = 0; i < n; ++i) {
+            //
+            // Held messages are processed no earlier than the millisecond after they were sent.
+            //
+            lower[i] = Math.min(next[i], saturatedAdd(partitions.get(i).getHeldMin(), 1));
+        }
+        //
+        // A partition can send no earlier than it can receive. The weights are
+        // non-negative, so this settles within n passes.
+        //
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < n; ++i) {
+                for (int j = 0; j < n; ++j) {
+                    if (i != j) {
+                        long arrival = saturatedAdd(lower[j], partitions.get(j).lookahead_ms);
+                        if (arrival < lower[i]) {
+                            lower[i] = arrival;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+        long[] horizon = new long[n];
+        for (int i = 0; i < n; ++i) {
+            horizon[i] = Long.MAX_VALUE;
+            for (int j = 0; j < n; ++j) {
+                if (i != j) {
+                    horizon[i] = Math.min(horizon[i], saturatedAdd(lower[j], partitions.get(j).lookahead_ms));
+                }
+            }
+        }
+        return horizon;
+    }
+
+    /**
+     * A message sent from one partition to another.
+     */
+    private static final class Transfer {
+        final long sent_ms;
+        final Entity destination;
+        final Partition receiver;
+        final Message message;
+
+        Transfer(final long sent_ms, final Entity destination, final Partition receiver, final Message message) {
+            this.sent_ms = sent_ms;
+            this.destination = destination;
+            this.receiver = receiver;
+            this.message = message;
+        }
+
+        long getArrival_ms() {
+            return message instanceof EntityEvent ? ((EntityEvent) message).getEventTime_ms() : sent_ms;
+        }
+    }
+
+    /**
+     * The entities of one {@code LookaheadPartition} and their progress through a run.
+     * A partition is only touched by one thread at a time.
+     */
+    private static final class Partition {
+        final String name;
+        final long lookahead_ms;
+        final List<Entity> members = new ArrayList<>();
+        final List<Long> executed = new ArrayList<>();
+        final TreeMap<Long, List<Message>> toClient = new TreeMap<>();
+        final List<Transfer> outgoing = new ArrayList<>();
+        final List<Transfer> held = new ArrayList<>();
+        EventCalendar calendar;
+        long clock_ms;
+        long since_ms;
+
+        Partition(final String name, final long lookahead_ms) {
+            this.name = name;
+            this.lookahead_ms = lookahead_ms;
+        }
+
+        void begin(final EventCalendar calendar, final long from_ms) {
+            this.calendar = calendar;
+            this.clock_ms = from_ms;
+            this.since_ms = from_ms;
+            executed.clear();
+            toClient.clear();
+            outgoing.clear();
+            held.clear();
+        }
+
+        /**
+         * Reports whether the partition has work that waits for the next global step.
+         *
+         * @return true if the partition is pending
+         */
+        boolean isPending() {
+            return calendar.hasImmediate() || calendar.getEarliestBooking() <= since_ms;
+        }
+
+        long getHeldMin() {
+            long min = Long.MAX_VALUE;
+            for (Transfer transfer : held) {
+                min = Math.min(min, transfer.sent_ms);
+            }
+            return min;
+        }
+
+        /**
+         * Accepts a message from another partition at the end of a round.
+         *
+         * @param transfer the message
+         */
+        void accept(final Transfer transfer) {
+            long arrival_ms = transfer.getArrival_ms();
+            if (arrival_ms > transfer.sent_ms) {
+                if (since_ms >= arrival_ms) {
+                    throw new SSTAFException("Partition " + name + " reached " + since_ms
+                            + " before receiving an event for " + arrival_ms);
+                }
+                transfer.destination.receive(transfer.message);
+                calendar.onDelivered(transfer.destination, transfer.message);
+            } else {
+                if (clock_ms > transfer.sent_ms) {
+                    throw new SSTAFException("Partition " + name + " reached " + clock_ms
+                            + " before receiving a message sent at " + transfer.sent_ms);
+                }
+                held.add(transfer);
+            }
+        }
+
+        /**
+         * Delivers the earliest held messages once the partition has no booking at or before
+         * the time they were sent and no other partition can still reach it by then.
+         *
+         * @param horizon_ms the earliest arrival of a message from another partition
+         * @return true if messages were delivered
+         */
+        boolean releaseHeld(final long horizon_ms) {
+            long min = getHeldMin();
+            if (min == Long.MAX_VALUE || min >= horizon_ms) {
+                return false;
+            }
+            boolean waiting = isPending() ? since_ms < min : calendar.getEarliestBooking() <= min;
+            if (waiting) {
+                return false;
+            }
+            Iterator<Transfer> it = held.iterator();
+            while (it.hasNext()) {
+                Transfer transfer = it.next();
+                if (transfer.sent_ms == min) {
+                    transfer.destination.receive(transfer.message);
+                    calendar.onDelivered(transfer.destination, transfer.message);
+                    it.remove();
+                }
+            }
+            since_ms = Math.max(since_ms, min);
+            return true;
+        }
+
+        /**
+         * Delivers every held message, at the end of a run.
+         */
+        void releaseAll() {
+            for (Transfer transfer : held) {
+                transfer.destination.receive(transfer.message);
+                calendar.onDelivered(transfer.destination, transfer.message);
+            }
+            held.clear();
+        }
+
+        /**
+         * Executes the steps of this partition for one round.
+         *
+         * @param first_ms   the time of the step that resolves a pending partition, or
+         *                   {@code Long.MIN_VALUE} to start with the earliest booking
+         * @param bound_ms   the time before which steps may be executed
+         * @param registry   the registry used to find destinations
+         * @param membership the partition of every simulation {@code Entity}
+         */
+        void advance(final long first_ms, final long bound_ms, final EntityRegistry registry,
+                     final Map<Entity, Partition> membership) {
+            if (first_ms != Long.MIN_VALUE) {
+                step(first_ms, registry, membership);
+            }
+            long next_ms;
+            while (!isPending() && (next_ms = calendar.getEarliestBooking()) < bound_ms) {
+                step(next_ms, registry, membership);
+            }
+        }
+
+        private void step(final long currentTime_ms, final EntityRegistry registry,
+                          final Map<Entity, Partition> membership) {
+            List<Entity> due = calendar.takeDue(currentTime_ms);
+            for (Entity entity : due) {
+                try {
+                    calendar.schedule(entity, entity.processMessages(currentTime_ms));
+                } catch (RuntimeException e) {
+                    //
+                    // The partition has run ahead of the other partitions, so the tick
+                    // cannot be completed consistently once an entity fails.
+                    //
+                    throw new SSTAFException("Partition " + name + " failed processing " + entity.getName()
+                            + " at " + currentTime_ms, e);
+                }
+            }
+            for (Entity entity : due) {
+                for (Message message : entity.takeOutbound()) {
+                    route(message, currentTime_ms, registry, membership);
+                }
+            }
+            clock_ms = currentTime_ms;
+            since_ms = Math.max(since_ms, currentTime_ms);
+            executed.add(currentTime_ms);
+        }
+
+        private void route(final Message message, final long currentTime_ms, final EntityRegistry registry,
+                           final Map<Entity, Partition> membership) {
+            Address destination = message.getDestination();
+            if (destination == null || destination.equals(Address.NOWHERE)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Dropping message from {} to {}", message.getSource(), destination);
+                }
+                return;
+            }
+            if (destination.equals(Address.CLIENT)) {
+                toClient.computeIfAbsent(currentTime_ms, k -> new ArrayList<>()).add(message);
+                return;
+            }
+            Entity target = registry.getEntityByHandle(destination.entityHandle).orElse(null);
+            if (target == null) {
+                return;
+            }
+            Partition receiver = membership.get(target);
+            if (receiver == null) {
+                throw new SSTAFException("Message from " + message.getSource() + " to " + target.getName()
+                        + " cannot be delivered in CONSERVATIVE mode, only simulation entities may be addressed");
+            }
+            if (receiver == this) {
+                target.receive(message);
+                calendar.onDelivered(target, message);
+            } else {
+                Transfer transfer = new Transfer(currentTime_ms, target, receiver, message);
+                if (transfer.getArrival_ms() < saturatedAdd(currentTime_ms, lookahead_ms)) {
+                    throw new SSTAFException("Partition " + name + " sent a message from " + message.getSource()
+                            + " at " + currentTime_ms + " for " + transfer.getArrival_ms()
+                            + ", within its lookahead of " + lookahead_ms + " ms");
+                }
+                outgoing.add(transfer);
+            }
+        }
+    }
+}
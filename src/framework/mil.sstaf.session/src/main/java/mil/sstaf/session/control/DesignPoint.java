@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * One combination of parameter values in an {@code ExperimentDesign}.
+ */
+@Getter
+@ToString
+public final class DesignPoint {
+
+    /**
+     * The position of the point in the design, from zero.
+     */
+    private final int index;
+
+    /**
+     * The value of each parameter, by parameter name, in parameter order.
+     */
+    private final Map<String, JsonNode> values;
+
+    DesignPoint(final int index, final Map<String, JsonNode> values) {
+        this.index = index;
+        this.values = Collections.unmodifiableMap(values);
+    }
+}
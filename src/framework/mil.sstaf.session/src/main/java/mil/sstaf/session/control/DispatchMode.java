@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+/**
+ * Selects how the {@code EntityController} hands per-entity work to its executor.
+ */
+public enum DispatchMode {
+    /**
+     * Submits one {@code Callable} per {@code Entity} using {@code ExecutorService.invokeAll()}.
+     */
+    INVOKE_ALL,
+    /**
+     * Groups entities into chunks balanced by their measured processing cost and
+     * submits one task per chunk.
+     */
+    PARTITIONED,
+    /**
+     * Divides the entities into {@code LookaheadPartition}s that advance through their
+     * events independently, each as far as the lookahead of the others allows, and
+     * synchronize only when a partition cannot safely go further. The results are the
+     * same as advancing from event to event with {@code INVOKE_ALL}.
+     */
+    CONSERVATIVE,
+    /**
+     * Divides the entities into {@code LookaheadPartition}s that advance through their
+     * events speculatively and roll back when a message arrives for a time they have
+     * already passed. Entities may only send each other events dated after the step that
+     * sends them, and every feature must be {@code Snapshottable}. The results are the
+     * same as advancing from event to event with {@code INVOKE_ALL}.
+     */
+    OPTIMISTIC
+}
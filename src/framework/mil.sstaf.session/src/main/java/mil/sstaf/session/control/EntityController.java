@@ -17,7 +17,12 @@
 
 package mil.sstaf.session.control;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
@@ -26,7 +31,11 @@ import lombok.extern.jackson.Jacksonized;
 import mil.sstaf.blackboard.api.AddEntryRequest;
 import mil.sstaf.core.entity.*;
 import mil.sstaf.core.features.HandlerContent;
-import mil.sstaf.core.json.JsonLoader;
+import mil.sstaf.core.features.SnapshotContext;
+import mil.sstaf.core.metrics.Counter;
+import mil.sstaf.core.metrics.Gauge;
+import mil.sstaf.core.metrics.LatencyHistogram;
+import mil.sstaf.core.metrics.MetricsRegistry;
 import mil.sstaf.core.util.Injector;
 import mil.sstaf.core.util.RNGUtilities;
 import mil.sstaf.core.util.SSTAFException;
@@ -35,9 +44,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 
 /**
@@ -50,6 +65,8 @@ public final class EntityController extends BaseEntity {
 
     public static final String SYSTEM_ENTITY_CONTROLLER = "SYSTEM:EntityController";
 
+    private static final int CHECKPOINT_FORMAT = 1;
+
     private static final Logger logger = LoggerFactory.getLogger(EntityController.class);
 
     @Getter
@@ -57,19 +74,143 @@ public final class EntityController extends BaseEntity {
 
     @Getter
     private final int executorThreads;
+
+    @Getter
+    private final DispatchMode dispatchMode;
+
+    @Getter
+    private ExecutorStrategy executorStrategy;
+
+    //
+    // Groups of entities advanced independently in CONSERVATIVE and OPTIMISTIC mode.
+    //
+    @Getter
+    private final List<LookaheadPartition> partitions;
+
+    //
+    // How far past the global virtual time a partition may run in OPTIMISTIC mode,
+    // zero for no limit.
+    //
+    @Getter
+    private final long optimismWindow_ms;
+
+    //
+    // When set, entities are prepared one at a time on the constructing thread.
+    //
+    @Getter
+    private final boolean serialStartup;
+
+    //
+    // When set, every Entity numbers its own messages, so that the results do not depend
+    // on the number of executor threads or on thread timing.
+    //
+    @Getter
+    private final boolean deterministic;
+
+    //
+    // When set, the controller and its entities record metrics in a MetricsRegistry.
+    //
+    @Getter
+    private final boolean collectMetrics;
+
+    @Getter
+    @JsonIgnore
+    @Builder.Default
+    private StartupTimings startupTimings = null;
+
+    //
+    // The scenario this controller was loaded from, used to build forks.
+    //
+    @JsonIgnore
+    @Builder.Default
+    private ScenarioLoader.Scenario scenario = null;
     //
     // Executor
     //
+    @JsonIgnore
     @Builder.Default
     private Collection<RunAgentsCallable> runAgentsTasks = null;
+    @JsonIgnore
     @Builder.Default
-    private Collection<ProcessEventsCallable> processEventsTasks = null;
+    private Map<Entity, ProcessEventsCallable> processEventsTasks = null;
+    @JsonIgnore
     @Builder.Default
     private ExecutorService executorService = null;
+    @JsonIgnore
+    @Builder.Default
+    private ExecutorService blockingExecutorService = null;
+    @JsonIgnore
+    @Builder.Default
+    private ExecutorLease executorLease = null;
+    @JsonIgnore
+    @Builder.Default
+    private Set<Entity> blockingEntities = null;
+    @JsonIgnore
+    @Builder.Default
+    private PartitionedDispatcher partitionedDispatcher = null;
+    @JsonIgnore
+    @Builder.Default
+    private List<Entity> agentEntities = null;
+    @JsonIgnore
+    @Builder.Default
+    private RunAheadScheduler runAheadScheduler = null;
+
+    //
+    // Connection to the controllers in other processes, when the scenario is federated.
+    //
+    @JsonIgnore
+    @Builder.Default
+    private Federate federate = null;
+
+    //
+    // Calendar of pending work, used to dispatch only the entities that have something to do.
+    //
+    @JsonIgnore
+    @Builder.Default
+    private EventCalendar eventCalendar = null;
+
+    //
+    // Moves messages between entities.
+    //
+    @JsonIgnore
+    @Builder.Default
+    private MessageRouter messageRouter = null;
+
+    @Getter
+    @JsonIgnore
+    @Builder.Default
+    private RoutingStatistics routingStatistics = null;
+
+    //
+    // Tick phase durations and routing counts from this controller, and queue depths,
+    // processing times and handler latencies from the entities. The controller feeds
+    // the tick.agents, tick.controller, tick.events, tick.route and tick.time histograms,
+    // the tick.count, messages.routed, messages.dropped and messages.toClient counters
+    // and the session.proxyQueueDepth gauge. Null unless collectMetrics is set.
+    //
+    @Getter
+    @JsonIgnore
+    @Builder.Default
+    private MetricsRegistry metrics = null;
+
+    //
+    // The controller's metrics, resolved once when the registry is created.
+    //
+    @JsonIgnore
+    @Builder.Default
+    private TickMetrics tickMetrics = null;
+
+    //
+    // Records every routed message, when started.
+    //
+    @JsonIgnore
+    @Builder.Default
+    private FlightRecorder flightRecorder = null;
 
     //
     // EntityRegistry
     //
+    @JsonIgnore
     @Builder.Default
     private EntityRegistry registry = null;
 
@@ -77,6 +218,7 @@ public final class EntityController extends BaseEntity {
     // ClientProxy - used for interaction with the Session. Enables
     // Entity behavior without exposing Entities through the Session.
     //
+    @JsonIgnore
     @Builder.Default
     private ClientProxy clientProxy = null;
 
@@ -97,14 +239,28 @@ public final class EntityController extends BaseEntity {
         super(builder);
         // Replace the user-space id with a system-space id.
         this.executorThreads = builder.executorThreads == 0 ? Runtime.getRuntime().availableProcessors() : builder.executorThreads;
+        this.dispatchMode = builder.dispatchMode == null ? DispatchMode.INVOKE_ALL : builder.dispatchMode;
+        this.executorStrategy = builder.executorStrategy == null ? ExecutorStrategy.PLATFORM : builder.executorStrategy;
+        this.serialStartup = builder.serialStartup;
+        this.deterministic = builder.deterministic;
+        this.collectMetrics = builder.collectMetrics;
+        this.partitions = builder.partitions == null ? List.of() : List.copyOf(builder.partitions);
+        if (builder.optimismWindow_ms < 0) {
+            throw new IllegalArgumentException("optimismWindow_ms must not be negative");
+        }
+        this.optimismWindow_ms = builder.optimismWindow_ms;
         this.id = BlockCounter.systemCounter.getID();
         this.clientProxy = ClientProxy.builder().build();
         this.entities = builder.entities;
         this.handle.setForce(Force.SYSTEM);
         this.runAgentsTasks = new ArrayList<>();
-        this.processEventsTasks = new ArrayList<>();
+        this.agentEntities = new ArrayList<>();
+        this.processEventsTasks = new HashMap<>();
+        this.blockingEntities = new HashSet<>();
+        this.eventCalendar = new EventCalendar();
         this.nextEventTime_ms = Long.MAX_VALUE;
 
+        long start_ns = System.nanoTime();
         this.registry = new EntityRegistry();
         this.registry.setClientAddress(clientProxy.getHandle());
         this.registry.registerEntities(entities);
@@ -112,12 +268,42 @@ public final class EntityController extends BaseEntity {
         this.registry.registerEntity(Force.SYSTEM, clientProxy);
 
         this.registry.compileEntityMaps();
+        if (deterministic) {
+            registry.getAllEntities().forEach(this::useOwnMessageSequence);
+        }
+        if (collectMetrics) {
+            this.metrics = new MetricsRegistry();
+            this.tickMetrics = new TickMetrics(metrics);
+            registry.getAllEntities().forEach(entity -> {
+                if (entity instanceof BaseEntity) {
+                    ((BaseEntity) entity).setMetrics(metrics);
+                }
+            });
+        }
+        this.messageRouter = new MessageRouter(registry, clientProxy, executorThreads);
+        long registered_ns = System.nanoTime();
 
-        this.registry.getSimulationEntities().forEach(entity -> {
-            prepareEntity(entity);
-            runAgentsTasks.add(new RunAgentsCallable(entity));
-            processEventsTasks.add(new ProcessEventsCallable(entity));
+        List<Entity> simulationEntities = new ArrayList<>(registry.getSimulationEntities());
+        boolean parallelPrepare = prepareEntities(simulationEntities);
+        long prepared_ns = System.nanoTime();
+
+        simulationEntities.forEach(entity -> {
+            if (entity.hasAgents()) {
+                runAgentsTasks.add(new RunAgentsCallable(entity));
+                agentEntities.add(entity);
+            }
+            processEventsTasks.put(entity, new ProcessEventsCallable(entity));
+            eventCalendar.register(entity);
+            if (entity.hasBlockingFeatures()) {
+                blockingEntities.add(entity);
+            }
         });
+        if (dispatchMode == DispatchMode.CONSERVATIVE) {
+            this.runAheadScheduler = new ConservativeScheduler(registry, simulationEntities, partitions);
+        } else if (dispatchMode == DispatchMode.OPTIMISTIC) {
+            this.runAheadScheduler = new OptimisticScheduler(registry, simulationEntities, partitions,
+                    optimismWindow_ms, () -> makeSnapshotContext(getCheckpointEntities()));
+        }
 
         this.clientProxy.setForce(Force.SYSTEM);
         this.clientProxy.setName("ClientProxy");
@@ -128,11 +314,7 @@ public final class EntityController extends BaseEntity {
          * Features running in the EntityController probably need access to the registry.
          */
         this.featureManager.injectAll(registry);
-        if (this.executorThreads > 1) {
-            this.executorService = Executors.newFixedThreadPool(this.executorThreads);
-        } else {
-            this.executorService = Executors.newSingleThreadExecutor();
-        }
+        createExecutors();
 
         //
         // Create and register a Handler to process messages addressed
@@ -141,24 +323,287 @@ public final class EntityController extends BaseEntity {
         EntityControllerHandler ech = new EntityControllerHandler(this);
         this.featureManager.register(ech);
         init();
+
+        this.startupTimings = StartupTimings.builder()
+                .registerTime_ns(registered_ns - start_ns)
+                .prepareTime_ns(prepared_ns - registered_ns)
+                .finishTime_ns(System.nanoTime() - prepared_ns)
+                .entityCount(simulationEntities.size())
+                .parallelPrepare(parallelPrepare)
+                .build();
+        if (logger.isInfoEnabled()) {
+            logger.info("EntityController constructed: {}", startupTimings);
+        }
     }
 
+    /**
+     * Loads an {@code EntityController} and its entities from a file.
+     * <p>
+     * The top-level entities of each force are built concurrently when the file
+     * allows it. See {@link ScenarioLoader}.
+     *
+     * @param file the scenario file
+     * @return the {@code EntityController}
+     */
     public static EntityController from(File file) {
-        Path p = Path.of(file.getPath());
-        JsonLoader jsonLoader = new JsonLoader();
-        return jsonLoader.load(p, EntityController.class);
+        return ScenarioLoader.load(Path.of(file.getPath()));
+    }
+
+    /**
+     * Replaces the startup timings, so that a loader can add the phases that happen
+     * before construction.
+     *
+     * @param startupTimings the timings
+     */
+    void setStartupTimings(final StartupTimings startupTimings) {
+        this.startupTimings = startupTimings;
+    }
+
+    /**
+     * Records the scenario this controller was loaded from.
+     *
+     * @param scenario the scenario
+     */
+    void setScenario(final ScenarioLoader.Scenario scenario) {
+        this.scenario = scenario;
+    }
+
+    /**
+     * Makes an {@code Entity} number its own messages.
+     *
+     * @param entity the {@code Entity}
+     */
+    private void useOwnMessageSequence(final Entity entity) {
+        if (entity instanceof BaseEntity) {
+            ((BaseEntity) entity).setOwnMessageSequence(true);
+        } else {
+            logger.warn("Entity {} cannot number its own messages, results may depend on thread timing",
+                    entity.getName());
+        }
     }
 
+    /**
+     * Releases the executors. They are shut down once no other controller shares them.
+     */
     public void shutdown() {
-        this.executorService.shutdown();
+        if (federate != null) {
+            federate.close();
+        }
+        stopFlightRecorder();
+        if (executorLease != null) {
+            executorLease.release();
+            executorLease = null;
+        }
+    }
+
+    /**
+     * Starts recording every routed message to a binary log, replacing any recording in
+     * progress. The log holds the most recent {@code capacity} messages and is brought up
+     * to date at the end of every tick. It can be decoded with {@code FlightLogReader}.
+     * This must not be invoked while a tick is in progress.
+     *
+     * @param file     the log file, replaced if it exists
+     * @param capacity the number of messages the log holds
+     */
+    public void startFlightRecorder(final Path file, final long capacity) {
+        Objects.requireNonNull(file, "file");
+        stopFlightRecorder();
+        flightRecorder = new FlightRecorder(file, capacity);
+        flightRecorder.describe(registry.getAllEntities());
+        messageRouter.setRecorder(flightRecorder);
+    }
+
+    /**
+     * Stops recording routed messages and closes the log. Does nothing if no recording
+     * is in progress.
+     */
+    public void stopFlightRecorder() {
+        if (flightRecorder != null) {
+            messageRouter.setRecorder(null);
+            flightRecorder.close();
+            flightRecorder = null;
+        }
+    }
+
+    /**
+     * Replaces the executors with ones that implement the specified strategy.
+     * <p>
+     * The previous executors are shut down. This must not be invoked while a tick
+     * is in progress.
+     *
+     * @param executorStrategy the new strategy
+     */
+    public void setExecutorStrategy(final ExecutorStrategy executorStrategy) {
+        Objects.requireNonNull(executorStrategy, "executorStrategy");
+        if (executorStrategy != this.executorStrategy) {
+            logger.info("Changing executor strategy from {} to {}", this.executorStrategy, executorStrategy);
+            shutdown();
+            this.executorStrategy = executorStrategy;
+            createExecutors();
+        }
+    }
+
+    /**
+     * Creates the executors for the current {@code ExecutorStrategy}.
+     * <p>
+     * For {@code HYBRID}, entities with {@code Blocking} features are sent to a
+     * virtual-thread-per-task executor and everything else stays on the platform pool.
+     * For the other strategies a single executor serves all entities.
+     */
+    private void createExecutors() {
+        switch (executorStrategy) {
+            case VIRTUAL:
+                this.executorService = Executors.newVirtualThreadPerTaskExecutor();
+                this.blockingExecutorService = this.executorService;
+                break;
+            case HYBRID:
+                this.executorService = createPlatformPool();
+                this.blockingExecutorService = Executors.newVirtualThreadPerTaskExecutor();
+                break;
+            case PLATFORM:
+            default:
+                this.executorService = createPlatformPool();
+                this.blockingExecutorService = this.executorService;
+                break;
+        }
+        this.executorLease = new ExecutorLease(executorService, blockingExecutorService);
+        createDispatcher();
+        if (logger.isInfoEnabled()) {
+            logger.info("Using {} executor strategy, {} entities with blocking features",
+                    executorStrategy, blockingEntities.size());
+        }
+    }
+
+    /**
+     * Creates the {@code PartitionedDispatcher} for the current executors.
+     */
+    private void createDispatcher() {
+        if (blockingExecutorService == executorService) {
+            this.partitionedDispatcher = new PartitionedDispatcher(executorService, executorThreads);
+        } else {
+            this.partitionedDispatcher = new PartitionedDispatcher(executorService, executorThreads,
+                    blockingExecutorService, blockingEntities::contains);
+        }
+    }
+
+    /**
+     * Replaces the executors of this controller with those of another, so that both
+     * dispatch their entities to the same threads.
+     * <p>
+     * The shared executors are shut down when the last controller using them is shut
+     * down. Controllers that share executors may tick concurrently, provided the ticks
+     * are not themselves running on the shared executors.
+     *
+     * @param other the controller whose executors are to be used
+     */
+    void shareExecutors(final EntityController other) {
+        if (other.executorLease == null) {
+            throw new SSTAFException("EntityController has been shut down");
+        }
+        if (other.executorLease == executorLease) {
+            return;
+        }
+        shutdown();
+        this.executorStrategy = other.executorStrategy;
+        this.executorService = other.executorService;
+        this.blockingExecutorService = other.blockingExecutorService;
+        this.executorLease = other.executorLease.acquire();
+        createDispatcher();
+    }
+
+    private ExecutorService createPlatformPool() {
+        if (this.executorThreads > 1) {
+            return Executors.newFixedThreadPool(this.executorThreads);
+        } else {
+            return Executors.newSingleThreadExecutor();
+        }
+    }
+
+    /**
+     * Submits the tasks to the executors and returns their {@code Future}s in task order.
+     * <p>
+     * When all entities share one executor this is {@code invokeAll()}. Otherwise each
+     * task goes to the executor for its {@code Entity}; the caller waits on the
+     * {@code Future}s.
+     *
+     * @param tasks the tasks to run
+     * @return the futures for the tasks
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private List<Future<Long>> invokeTasks(final Collection<? extends EntityCallable> tasks)
+            throws InterruptedException {
+        if (blockingExecutorService == executorService) {
+            return executorService.invokeAll(tasks);
+        }
+        List<Future<Long>> futures = new ArrayList<>(tasks.size());
+        for (EntityCallable task : tasks) {
+            ExecutorService target = blockingEntities.contains(task.entity) ? blockingExecutorService : executorService;
+            futures.add(target.submit(task));
+        }
+        return futures;
+    }
+
+    /**
+     * Performs final preparations on all simulation entities.
+     * <p>
+     * The seeds and registration sequence numbers are drawn from this controller in
+     * entity order before any entity is prepared, so the result does not depend on
+     * whether the entities are prepared one at a time or concurrently.
+     *
+     * @param simulationEntities the entities to prepare
+     * @return true if the entities were prepared concurrently
+     */
+    private boolean prepareEntities(final List<Entity> simulationEntities) {
+        int n = simulationEntities.size();
+        long[] subSeeds = new long[n];
+        long[] sequenceNumbers = new long[n];
+        for (int i = 0; i < n; ++i) {
+            subSeeds[i] = RNGUtilities.generateSubSeed(randomGenerator);
+            sequenceNumbers[i] = generateSequenceNumber();
+        }
+
+        if (serialStartup || executorThreads < 2 || n < 2) {
+            for (int i = 0; i < n; ++i) {
+                prepareEntity(simulationEntities.get(i), subSeeds[i], sequenceNumbers[i]);
+            }
+            return false;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            final int index = i;
+            tasks.add(() -> {
+                prepareEntity(simulationEntities.get(index), subSeeds[index], sequenceNumbers[index]);
+                return null;
+            });
+        }
+        ExecutorService startupExecutor = createPlatformPool();
+        try {
+            for (Future<Void> future : startupExecutor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SSTAFException("Interrupted while preparing entities", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SSTAFException("Could not prepare entities", e.getCause());
+        } finally {
+            startupExecutor.shutdown();
+        }
+        return true;
     }
 
     /**
      * Performs final preparations on the Entity
      *
-     * @param entity the Entity to prepare
+     * @param entity         the Entity to prepare
+     * @param subSeed        the seed for the Entity
+     * @param sequenceNumber the sequence number for the registration message
      */
-    private void prepareEntity(Entity entity) {
+    private void prepareEntity(Entity entity, long subSeed, long sequenceNumber) {
         if (logger.isInfoEnabled()) {
             logger.info("Configuring {}", entity.getName());
         }
@@ -166,7 +611,6 @@ public final class EntityController extends BaseEntity {
         //
         // Need to set the seed for each entity here before init()ing
         //
-        long subSeed = RNGUtilities.generateSubSeed(randomGenerator);
         logger.debug("Setting seed in {} to {}", entity.getName(), subSeed);
         Injector.inject(entity, "randomSeed", subSeed);
         entity.injectInFeatures(registry);
@@ -183,7 +627,7 @@ public final class EntityController extends BaseEntity {
             EntityAction entityAction = EntityAction.builder()
                     .destination(Address.makeExternalAddress(entity.getHandle()))
                     .source(Address.makeExternalAddress(getHandle()))
-                    .sequenceNumber(generateSequenceNumber())
+                    .sequenceNumber(sequenceNumber)
                     .respondTo(Address.NOWHERE).content(content).build();
             entity.receive(entityAction);
         }
@@ -201,6 +645,167 @@ public final class EntityController extends BaseEntity {
         }
     }
 
+    /**
+     * Writes a checkpoint of the simulation state.
+     * <p>
+     * The checkpoint holds the state captured by {@link #captureState()} as
+     * gzip-compressed JSON. It must be taken between ticks.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the checkpoint cannot be written
+     */
+    void writeCheckpoint(final OutputStream out) throws IOException {
+        ObjectNode root = captureState();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            new ObjectMapper().writeValue(gzip, root);
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("Wrote checkpoint of {} entities at {}", root.path("entities").size(), lastTickTime_ms);
+        }
+    }
+
+    /**
+     * Replaces the simulation state with a checkpoint.
+     * <p>
+     * The controller must have been built from the same scenario as the one that wrote
+     * the checkpoint.
+     *
+     * @param in the stream to read from
+     * @throws IOException if the checkpoint cannot be read
+     */
+    void readCheckpoint(final InputStream in) throws IOException {
+        JsonNode root;
+        try (GZIPInputStream gzip = new GZIPInputStream(in)) {
+            root = new ObjectMapper().readTree(gzip);
+        }
+        replaceState(root);
+        if (logger.isInfoEnabled()) {
+            logger.info("Restored checkpoint of {} entities at {}", root.path("entities").size(), lastTickTime_ms);
+        }
+    }
+
+    /**
+     * Captures the simulation state: the clock, the state of every {@code Entity} and the
+     * state of every {@code Snapshottable} feature.
+     *
+     * @return the state
+     */
+    ObjectNode captureState() {
+        List<Entity> all = getCheckpointEntities();
+        SnapshotContext context = makeSnapshotContext(all);
+        ObjectNode root = context.getObjectMapper().createObjectNode();
+        root.put("format", CHECKPOINT_FORMAT);
+        ArrayNode paths = root.putArray("entities");
+        ArrayNode states = root.putArray("states");
+        for (Entity entity : all) {
+            paths.add(entity.getHandle().getForcePath());
+            states.add(entity.snapshot(context));
+        }
+        return root;
+    }
+
+    /**
+     * Replaces the simulation state with one produced by {@link #captureState()}.
+     * <p>
+     * The controller must have been built from the same scenario as the one that
+     * captured the state.
+     *
+     * @param root the state
+     */
+    void replaceState(final JsonNode root) {
+        List<Entity> all = getCheckpointEntities();
+        SnapshotContext context = makeSnapshotContext(all);
+        if (root.path("format").asInt() != CHECKPOINT_FORMAT) {
+            throw new SSTAFException("Unsupported checkpoint format " + root.path("format"));
+        }
+        JsonNode paths = root.path("entities");
+        JsonNode states = root.path("states");
+        if (paths.size() != all.size() || states.size() != all.size()) {
+            throw new SSTAFException("Checkpoint has " + paths.size() + " entities but the scenario has "
+                    + all.size());
+        }
+        for (int i = 0; i < all.size(); ++i) {
+            String path = all.get(i).getHandle().getForcePath();
+            if (!path.equals(paths.get(i).asText())) {
+                throw new SSTAFException("Checkpoint was not written by this scenario, found "
+                        + paths.get(i).asText() + " where " + path + " was expected");
+            }
+        }
+        for (int i = 0; i < all.size(); ++i) {
+            all.get(i).restore(states.get(i), context);
+        }
+        this.eventCalendar = new EventCalendar();
+        registry.getSimulationEntities().forEach(eventCalendar::register);
+    }
+
+    /**
+     * Creates an independent copy of this controller and its entities.
+     * <p>
+     * The copy is built from the scenario this controller was loaded from and then given
+     * the current state, as if a checkpoint had been written and restored without going
+     * through a file. The resolved scenario and the reference data that features cache
+     * are shared with the copy; everything that changes as the simulation runs is copied.
+     * The copy shares the executors of this controller.
+     * <p>
+     * This must be invoked between ticks.
+     *
+     * @return the copy
+     */
+    EntityController fork() {
+        if (scenario == null) {
+            throw new SSTAFException("EntityController was not loaded from a scenario file and cannot be forked");
+        }
+        long start_ns = System.nanoTime();
+        ObjectNode state = captureState();
+        EntityController branch = ScenarioLoader.build(scenario, 0);
+        branch.replaceState(state);
+        branch.shareExecutors(this);
+        if (logger.isInfoEnabled()) {
+            logger.info("Forked {} entities at {} in {} ms", state.path("entities").size(), lastTickTime_ms,
+                    (System.nanoTime() - start_ns) / 1_000_000);
+        }
+        return branch;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ObjectNode snapshot(final SnapshotContext context) {
+        ObjectNode node = super.snapshot(context);
+        node.put("lastTickTime_ms", lastTickTime_ms);
+        node.put("nextEventTime_ms", nextEventTime_ms);
+        return node;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void restore(final JsonNode state, final SnapshotContext context) {
+        super.restore(state, context);
+        lastTickTime_ms = state.path("lastTickTime_ms").asLong();
+        nextEventTime_ms = state.path("nextEventTime_ms").asLong(Long.MAX_VALUE);
+    }
+
+    /**
+     * Provides every registered {@code Entity}, including the system entities, ordered by
+     * id. The order is the same whenever the scenario is built.
+     *
+     * @return the entities
+     */
+    private List<Entity> getCheckpointEntities() {
+        List<Entity> all = new ArrayList<>(registry.getAllEntities());
+        all.sort(Comparator.comparingLong(Entity::getId));
+        return all;
+    }
+
+    private static SnapshotContext makeSnapshotContext(final List<Entity> entities) {
+        List<EntityHandle> handles = new ArrayList<>(entities.size());
+        entities.forEach(entity -> handles.add(entity.getHandle()));
+        return new SnapshotContext(handles);
+    }
+
     /**
      * Accepts a {@code BaseSessionCommand} from the client and routes it for processing.
      *
@@ -228,7 +833,17 @@ public final class EntityController extends BaseEntity {
      * @return SSTAFResults generated from outbound internal messages
      */
     public List<BaseSessionResult> getMessagesToSession() {
-        List<Message> messages = clientProxy.takeInbound();
+        return convertMessages(clientProxy.takeInbound());
+    }
+
+    /**
+     * Converts the responses among the messages to the client into results for the
+     * {@code Session}. Other messages are dropped.
+     *
+     * @param messages the messages to the client
+     * @return the results
+     */
+    private List<BaseSessionResult> convertMessages(final List<Message> messages) {
         List<BaseSessionResult> output = new ArrayList<>();
         messages.forEach(message -> {
             if (message instanceof MessageResponse) {
@@ -253,22 +868,106 @@ public final class EntityController extends BaseEntity {
      * Processes all the actions and events up to the specified simulation time.
      * <p>
      * This is the central method in the Soldier and Squad Trade-space Analysis Framework.
+     * <p>
+     * Only entities that have work due are dispatched. Entities with {@code Agent}s run
+     * on every tick, other entities are processed only when the {@code EventCalendar}
+     * shows a pending action or an event due at or before the current time.
      *
      * @param currentTime_ms the current simulation time.
      * @return the time of the next added event
      */
     public SessionTickResult tick(long currentTime_ms) {
+        return toSessionTickResult(advance(currentTime_ms));
+    }
+
+    /**
+     * Executes a tick but leaves the messages to the client unconverted.
+     * <p>
+     * The conversion only reads the messages, so {@link #toSessionTickResult(TickOutput)}
+     * may run on another thread while the next tick executes.
+     * <p>
+     * In a federation led by this controller the tick is executed by every federate.
+     * <p>
+     * In {@code CONSERVATIVE} and {@code OPTIMISTIC} mode the tick also executes every event
+     * booked between the last tick and the current time, exactly as if the simulation had
+     * been ticked at each of those events in turn. The messages to the client from all of
+     * them are returned in order.
+     *
+     * @param currentTime_ms the current simulation time
+     * @return the next event time and the messages to the client
+     */
+    TickOutput advance(final long currentTime_ms) {
+        if (federate != null && federate.isLead()) {
+            TickOutput output = federate.advance(currentTime_ms);
+            nextEventTime_ms = output.nextEventTime_ms;
+            return output;
+        }
+        if (runAheadScheduler == null) {
+            return step(currentTime_ms);
+        }
+        List<Message> toClient = new ArrayList<>();
+        while (nextEventTime_ms > lastTickTime_ms && nextEventTime_ms < currentTime_ms) {
+            if (canRunAhead()) {
+                RunAheadScheduler.Outcome outcome = runAheadScheduler.run(eventCalendar,
+                        lastTickTime_ms, currentTime_ms, executorService);
+                lastTickTime_ms = outcome.lastStep_ms;
+                toClient.addAll(outcome.messagesToClient);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Ran ahead {} steps to {}", outcome.steps, lastTickTime_ms);
+                }
+                break;
+            }
+            toClient.addAll(step(nextEventTime_ms).messagesToClient);
+        }
+        TickOutput last = step(currentTime_ms);
+        toClient.addAll(last.messagesToClient);
+        return new TickOutput(last.nextEventTime_ms, toClient);
+    }
+
+    /**
+     * Reports whether the entities can be handed to the {@code RunAheadScheduler}.
+     * That requires that nothing is waiting for this controller or from the client and
+     * that no {@code Entity} has {@code Agent}s, since those run on every tick.
+     *
+     * @return true if the scheduler can run
+     */
+    private boolean canRunAhead() {
+        return agentEntities.isEmpty() && !hasAgents() && inboundQueue.isEmpty()
+                && clientProxy.getQueueDepth() == 0 && runAheadScheduler.canRun(eventCalendar, lastTickTime_ms);
+    }
+
+    /**
+     * Provides the scheduler used in {@code CONSERVATIVE} and {@code OPTIMISTIC} mode.
+     *
+     * @return the scheduler, or null in the other modes
+     */
+    RunAheadScheduler getRunAheadScheduler() {
+        return runAheadScheduler;
+    }
+
+    /**
+     * Executes a single tick at the specified time.
+     *
+     * @param currentTime_ms the current simulation time
+     * @return the next event time and the messages to the client
+     */
+    TickOutput step(final long currentTime_ms) {
         logger.debug("Executing tick at {}", currentTime_ms);
 
-        List<Future<Long>> nextTimes1;
+        final long tickStart_ns = System.nanoTime();
         lastTickTime_ms = currentTime_ms;
-        try {
-            runAgentsTasks.forEach(task -> task.setCurrentTime(currentTime_ms));
-            nextTimes1 = executorService.invokeAll(runAgentsTasks);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-            nextTimes1 = List.of();
+        messageRouter.resetStatistics();
+        final TickMetrics tm = tickMetrics;
+        if (tm != null) {
+            tm.proxyQueueDepth.set(clientProxy.getQueueDepth());
+        }
+        if (flightRecorder != null) {
+            flightRecorder.beginTick(currentTime_ms);
         }
+        TickPhaseEvent agentsEvent = new TickPhaseEvent();
+        agentsEvent.begin();
+        long agentsNextTime_ms = runAgentsPhase(currentTime_ms);
+        endPhase(agentsEvent, "agents", tm == null ? null : tm.agentsTime, currentTime_ms, agentEntities.size(), tickStart_ns);
 
         routeMessages();
 
@@ -276,29 +975,133 @@ public final class EntityController extends BaseEntity {
         // Entity controller runs in reverse. First messages are received and processed,
         // then Agents wrap up global tasks and push outcomes and global state
         //
+        final long controllerStart_ns = System.nanoTime();
+        TickPhaseEvent controllerEvent = new TickPhaseEvent();
+        controllerEvent.begin();
         this.processMessages(currentTime_ms);
         this.runAgents(currentTime_ms);
+        endPhase(controllerEvent, "controller", tm == null ? null : tm.controllerTime, currentTime_ms, 1, controllerStart_ns);
         routeMessages();
 
-        List<Future<Long>> nextTimes2;
-        try {
-            processEventsTasks.forEach(task -> task.setCurrentTime_ms(currentTime_ms));
-            nextTimes2 = executorService.invokeAll(processEventsTasks);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-            nextTimes2 = List.of();
-        }
+        final long eventsStart_ns = System.nanoTime();
+        TickPhaseEvent eventsEvent = new TickPhaseEvent();
+        eventsEvent.begin();
+        int dueCount = processEventsPhase(currentTime_ms);
+        endPhase(eventsEvent, "events", tm == null ? null : tm.eventsTime, currentTime_ms, dueCount, eventsStart_ns);
 
         routeMessages();
 
-        List<BaseSessionResult> toSession = getMessagesToSession();
-        nextEventTime_ms = Long.min(getMinTime(nextTimes1), getMinTime(nextTimes2));
+        List<Message> toClient = clientProxy.takeInbound();
+        nextEventTime_ms = Long.min(agentsNextTime_ms, eventCalendar.getNextEventTime(lastTickTime_ms));
+
+        routingStatistics = messageRouter.getStatistics();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Routing at {}: {}", currentTime_ms, routingStatistics);
+        }
+        if (tm != null) {
+            tm.ticks.increment();
+            tm.routeTime.record(routingStatistics.getRoutingTime_ns());
+            tm.routed.add(routingStatistics.getMessageCount());
+            tm.dropped.add(routingStatistics.getDroppedCount());
+            tm.toClient.add(toClient.size());
+            tm.tickTime.record(System.nanoTime() - tickStart_ns);
+        }
+        if (flightRecorder != null) {
+            flightRecorder.flush();
+        }
+
+        return new TickOutput(nextEventTime_ms, toClient);
+    }
+
+    private void endPhase(final TickPhaseEvent event, final String phase, final LatencyHistogram histogram,
+                          final long currentTime_ms, final int entityCount, final long start_ns) {
+        if (histogram != null) {
+            histogram.record(System.nanoTime() - start_ns);
+        }
+        if (event.shouldCommit()) {
+            event.entityPath = getPath();
+            event.phase = phase;
+            event.simulationTime_ms = currentTime_ms;
+            event.entityCount = entityCount;
+            event.commit();
+        }
+    }
 
-        return SessionTickResult.builder().nextEventTime_ms(nextEventTime_ms)
-                .messagesToClient(toSession)
+    /**
+     * Converts the output of {@link #advance(long)} into the result for the client.
+     *
+     * @param output the output of the tick
+     * @return the {@code SessionTickResult}
+     */
+    SessionTickResult toSessionTickResult(final TickOutput output) {
+        return SessionTickResult.builder().nextEventTime_ms(output.nextEventTime_ms)
+                .messagesToClient(convertMessages(output.messagesToClient))
                 .build();
     }
 
+    /**
+     * Runs the {@code Agent}s in every {@code Entity} that has them.
+     *
+     * @param currentTime_ms the current simulation time
+     * @return the earliest next event time reported by the entities
+     */
+    private long runAgentsPhase(final long currentTime_ms) {
+        if (dispatchMode == DispatchMode.PARTITIONED) {
+            return partitionedDispatcher.dispatch(agentEntities, Entity::runAgents,
+                    currentTime_ms, currentTime_ms, null);
+        } else {
+            List<Future<Long>> nextTimes;
+            try {
+                runAgentsTasks.forEach(task -> task.setCurrentTime(currentTime_ms));
+                nextTimes = invokeTasks(runAgentsTasks);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SSTAFException("Interrupted while running agents", e);
+            }
+            return getMinTime(nextTimes);
+        }
+    }
+
+    /**
+     * Processes messages in every {@code Entity} that has work due and books
+     * the next event times in the {@code EventCalendar}.
+     *
+     * @param currentTime_ms the current simulation time
+     * @return the number of entities that had work due
+     */
+    private int processEventsPhase(final long currentTime_ms) {
+        List<Entity> due = eventCalendar.takeDue(currentTime_ms);
+        if (dispatchMode == DispatchMode.PARTITIONED) {
+            long[] results = new long[due.size()];
+            partitionedDispatcher.dispatch(due, Entity::processMessages,
+                    currentTime_ms, currentTime_ms, results);
+            for (int i = 0; i < results.length; ++i) {
+                if (results[i] == PartitionedDispatcher.FAILED) {
+                    eventCalendar.register(due.get(i));
+                } else {
+                    eventCalendar.schedule(due.get(i), results[i]);
+                }
+            }
+        } else {
+            List<ProcessEventsCallable> dueTasks = new ArrayList<>(due.size());
+            for (Entity entity : due) {
+                ProcessEventsCallable task = processEventsTasks.get(entity);
+                task.setCurrentTime_ms(currentTime_ms);
+                dueTasks.add(task);
+            }
+
+            List<Future<Long>> nextTimes;
+            try {
+                nextTimes = invokeTasks(dueTasks);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SSTAFException("Interrupted while processing events", e);
+            }
+            bookNextTimes(dueTasks, nextTimes);
+        }
+        return due.size();
+    }
+
     /**
      * Ticks the simulation again using the last tick time.
      * <p>
@@ -348,6 +1151,27 @@ public final class EntityController extends BaseEntity {
         return minTime_ms;
     }
 
+    /**
+     * Books the next event times returned by the processing tasks into the {@code EventCalendar}.
+     *
+     * @param tasks the tasks that were executed
+     * @param times the futures for the processing tasks, in the same order as the tasks
+     */
+    private void bookNextTimes(List<ProcessEventsCallable> tasks, List<Future<Long>> times) {
+        for (int i = 0; i < times.size(); ++i) {
+            try {
+                eventCalendar.schedule(tasks.get(i).entity, times.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SSTAFException("Interrupted while processing events", e);
+            } catch (ExecutionException e) {
+                logger.error("Processing events failed for {}", tasks.get(i).entity.getPath(), e.getCause());
+                // Re-book whatever is left in the queue so the work is not lost.
+                eventCalendar.register(tasks.get(i).entity);
+            }
+        }
+    }
+
     /**
      * Resolves a path to find the EntityHandle
      *
@@ -360,44 +1184,89 @@ public final class EntityController extends BaseEntity {
     }
 
     /**
-     * Takes messages from a MessageDriven object and routes them to the specified
-     * recipients.
-     *
-     * @param routeFrom the MessageDriven instance from which to task the messages.
+     * Routes all messages from all entities
      */
-    private void routeFromMessageDriven(final Entity routeFrom) {
-        List<Message> messages = routeFrom.takeOutbound();
+    void routeMessages() {
         if (logger.isDebugEnabled()) {
-            logger.debug("Routing messages from {}, got {} messages to route", routeFrom.getName(), messages.size());
+            logger.debug("Routing messages");
         }
-        messages.forEach(message -> {
-            if (message == null) {
-                logger.warn("Message is null");
-            } else if (message.getDestination() == null) {
-                logger.warn("Message destination is null, source = {}, content = {}", message.getSource(), message.getContent());
-            } else if (message.getDestination().equals(Address.NOWHERE)) {
-                logger.debug("Dropping message from {} to NOWHERE, contents = {}", message.getSource(), message.getContent().getClass());
-            } else if (message.getDestination().equals(Address.CLIENT)) {
-                logger.debug("Routing from {} to the client, contents = {}", message.getSource(),  message.getContent().getClass());
-                clientProxy.receive(message);
-            } else {
-                logger.debug("Routing from {} to {}, contents = {}", message.getSource(), message.getDestination().entityHandle.getName(), message.getContent().getClass());
-                Optional<Entity> optionalEntity = registry.getEntityByHandle(message.getDestination().entityHandle);
-                optionalEntity.ifPresent(entity -> entity.receive(message));
+        if (runAheadScheduler == null) {
+            messageRouter.route(executorService, eventCalendar::onDelivered);
+        } else {
+            messageRouter.route(executorService, (entity, message) -> {
+                runAheadScheduler.checkDelivery(entity, message, lastTickTime_ms);
+                eventCalendar.onDelivered(entity, message);
+            });
+        }
+    }
+
+    /**
+     * Provides the earliest time at which an {@code Entity} of this controller has work
+     * booked after the last tick.
+     *
+     * @return the time, or {@code Long.MAX_VALUE} if nothing is booked
+     */
+    long getCalendarNextEventTime() {
+        return eventCalendar.getNextEventTime(lastTickTime_ms);
+    }
+
+    /**
+     * Provides the {@code EntityRegistry}.
+     *
+     * @return the registry
+     */
+    EntityRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Connects this controller to a federation. The proxies of the entities hosted by the
+     * other federates are registered, so that messages can be addressed to them.
+     *
+     * @param federate the {@code Federate}
+     * @param proxies  the proxies of the remote entities
+     */
+    void attachFederate(final Federate federate, final List<RemoteEntity> proxies) {
+        if (this.federate != null) {
+            throw new IllegalStateException("EntityController " + getName() + " is already federated");
+        }
+        if (runAheadScheduler != null) {
+            throw new IllegalStateException("Dispatch mode " + dispatchMode + " does not support federation");
+        }
+        for (RemoteEntity proxy : proxies) {
+            proxy.init();
+            registry.registerRemoteEntity(proxy.getRemoteForce(), proxy);
+            if (deterministic) {
+                useOwnMessageSequence(proxy);
             }
-        });
+        }
+        this.messageRouter = new MessageRouter(registry, clientProxy, executorThreads);
+        if (flightRecorder != null) {
+            flightRecorder.describe(proxies);
+            messageRouter.setRecorder(flightRecorder);
+        }
+        this.federate = federate;
     }
 
     /**
-     * Routes all messages from all entities
+     * Delivers a {@code Message} received from another federate. Messages for entities
+     * hosted by a third federate are handed to their {@code RemoteEntity} proxies, which
+     * hold them until the next tick barrier. Messages for unknown entities are dropped.
+     *
+     * @param message the {@code Message}
      */
-    private void routeMessages() {
-        if (logger.isDebugEnabled()) {
-            logger.debug("Routing messages");
+    void deliverRemote(final Message message) {
+        Entity destination = message.getDestination() == null ? null
+                : registry.getEntityByHandle(message.getDestination().entityHandle).orElse(null);
+        if (destination == null) {
+            logger.warn("Dropping message from another federate with unknown destination, contents = {}",
+                    message.getContent() == null ? null : message.getContent().getClass());
+            return;
+        }
+        destination.receive(message);
+        if (!(destination instanceof RemoteEntity)) {
+            eventCalendar.onDelivered(destination, message);
         }
-        var allEntities = registry.getAllEntities();
-        // split for debugging
-        allEntities.forEach(this::routeFromMessageDriven);
     }
 
     public BaseSessionResult convertMessageToResult(final MessageResponse response) {
@@ -488,14 +1357,96 @@ public final class EntityController extends BaseEntity {
     }
 
     /**
-     *
+     * The unconverted outcome of a tick.
+     */
+    static final class TickOutput {
+        final long nextEventTime_ms;
+        final List<Message> messagesToClient;
+
+        TickOutput(final long nextEventTime_ms, final List<Message> messagesToClient) {
+            this.nextEventTime_ms = nextEventTime_ms;
+            this.messagesToClient = messagesToClient;
+        }
+    }
+
+    /**
+     * The metrics fed by every tick, looked up once so that a tick does no registry lookups.
+     */
+    private static final class TickMetrics {
+        final Gauge proxyQueueDepth;
+        final Counter ticks;
+        final Counter routed;
+        final Counter dropped;
+        final Counter toClient;
+        final LatencyHistogram agentsTime;
+        final LatencyHistogram controllerTime;
+        final LatencyHistogram eventsTime;
+        final LatencyHistogram routeTime;
+        final LatencyHistogram tickTime;
+
+        TickMetrics(final MetricsRegistry metrics) {
+            proxyQueueDepth = metrics.gauge("session.proxyQueueDepth");
+            ticks = metrics.counter("tick.count");
+            routed = metrics.counter("messages.routed");
+            dropped = metrics.counter("messages.dropped");
+            toClient = metrics.counter("messages.toClient");
+            agentsTime = metrics.histogram("tick.agents");
+            controllerTime = metrics.histogram("tick.controller");
+            eventsTime = metrics.histogram("tick.events");
+            routeTime = metrics.histogram("tick.route");
+            tickTime = metrics.histogram("tick.time");
+        }
+    }
+
+    /**
+     * The executors of one or more controllers, shut down when the last of them is
+     * released.
+     */
+    private static final class ExecutorLease {
+        private final ExecutorService executorService;
+        private final ExecutorService blockingExecutorService;
+        private final AtomicInteger users = new AtomicInteger(1);
+
+        ExecutorLease(final ExecutorService executorService, final ExecutorService blockingExecutorService) {
+            this.executorService = executorService;
+            this.blockingExecutorService = blockingExecutorService;
+        }
+
+        ExecutorLease acquire() {
+            users.incrementAndGet();
+            return this;
+        }
+
+        void release() {
+            if (users.decrementAndGet() == 0) {
+                executorService.shutdown();
+                if (blockingExecutorService != executorService) {
+                    blockingExecutorService.shutdown();
+                }
+            }
+        }
+    }
+
+    /**
+     * Base for the per-entity tasks, exposes the {@code Entity} so the task can be
+     * sent to the right executor.
      */
-    private static class RunAgentsCallable implements Callable<Long> {
+    private abstract static class EntityCallable implements Callable<Long> {
         final Entity entity;
+
+        EntityCallable(Entity entity) {
+            this.entity = entity;
+        }
+    }
+
+    /**
+     *
+     */
+    private static class RunAgentsCallable extends EntityCallable {
         long currentTime_ms;
 
         RunAgentsCallable(Entity entity) {
-            this.entity = entity;
+            super(entity);
         }
 
         void setCurrentTime(final long currentTime_ms) {
@@ -513,12 +1464,11 @@ public final class EntityController extends BaseEntity {
         }
     }
 
-    private static class ProcessEventsCallable implements Callable<Long> {
-        final Entity entity;
+    private static class ProcessEventsCallable extends EntityCallable {
         long currentTime_ms;
 
         ProcessEventsCallable(Entity entity) {
-            this.entity = entity;
+            super(entity);
         }
 
         void setCurrentTime_ms(final long currentTime_ms) {
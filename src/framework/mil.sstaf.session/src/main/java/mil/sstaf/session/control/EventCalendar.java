@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import mil.sstaf.core.entity.Entity;
+import mil.sstaf.core.entity.EntityEvent;
+import mil.sstaf.core.entity.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Global calendar of pending work for the simulation entities.
+ * <p>
+ * The calendar records, for each registered {@code Entity}, the time of its earliest
+ * pending {@code EntityEvent} and whether it has immediate {@code EntityAction}s waiting.
+ * {@code Entity} instances that have {@code Agent}s are due on every tick. The
+ * {@code EntityController} uses the calendar to dispatch only those entities that have
+ * work to do at the current time.
+ * <p>
+ * The calendar is maintained by the {@code EntityController} as it routes messages
+ * and collects processing results. It is not thread-safe and must only be used from
+ * the controller thread.
+ */
+final class EventCalendar {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventCalendar.class);
+
+    private static final Comparator<Booking> BOOKING_ORDER = Comparator
+            .comparingLong((Booking b) -> b.time_ms)
+            .thenComparingLong(b -> b.slot.entity.getId());
+
+    private final Map<Entity, Slot> slots = new HashMap<>();
+    private final PriorityQueue<Booking> timeline = new PriorityQueue<>(BOOKING_ORDER);
+    private final List<Slot> agentSlots = new ArrayList<>();
+    private final Set<Slot> immediate = new HashSet<>();
+
+    /**
+     * Adds an {@code Entity} to the calendar and books any work already in its inbound queue.
+     *
+     * @param entity the {@code Entity}
+     */
+    void register(final Entity entity) {
+        Objects.requireNonNull(entity, "entity");
+        Slot slot = slots.computeIfAbsent(entity, Slot::new);
+        if (entity.hasAgents() && !agentSlots.contains(slot)) {
+            agentSlots.add(slot);
+        }
+        if (entity.getInboundQueueDepth() > 0) {
+            long next = entity.getNextEventTime();
+            if (next == Long.MAX_VALUE) {
+                immediate.add(slot);
+            } else {
+                book(slot, next);
+            }
+        }
+    }
+
+    /**
+     * Records that a {@code Message} was delivered to an {@code Entity}.
+     * <p>
+     * Deliveries to entities that are not registered, such as the system entities, are ignored.
+     *
+     * @param entity  the receiving {@code Entity}
+     * @param message the delivered {@code Message}
+     */
+    void onDelivered(final Entity entity, final Message message) {
+        Slot slot = slots.get(entity);
+        if (slot != null) {
+            if (message instanceof EntityEvent) {
+                book(slot, ((EntityEvent) message).getEventTime_ms());
+            } else {
+                immediate.add(slot);
+            }
+        }
+    }
+
+    /**
+     * Books the next event time reported by an {@code Entity} after processing.
+     *
+     * @param entity     the {@code Entity}
+     * @param nextTime_ms the time of the next event, or {@code Long.MAX_VALUE} if there is none
+     */
+    void schedule(final Entity entity, final long nextTime_ms) {
+        Slot slot = slots.get(entity);
+        if (slot != null) {
+            book(slot, nextTime_ms);
+        }
+    }
+
+    /**
+     * Removes and returns all entities that have work due at or before the specified time.
+     * <p>
+     * Entities with {@code Agent}s are always included. The returned list is ordered by
+     * {@code Entity} id so that dispatch order is repeatable.
+     *
+     * @param currentTime_ms the current simulation time
+     * @return the due entities
+     */
+    List<Entity> takeDue(final long currentTime_ms) {
+        Set<Slot> due = new HashSet<>(agentSlots);
+        due.addAll(immediate);
+        immediate.clear();
+
+        Booking head;
+        while ((head = timeline.peek()) != null && head.time_ms <= currentTime_ms) {
+            timeline.poll();
+            if (head.isCurrent()) {
+                head.slot.booked_ms = Long.MAX_VALUE;
+                due.add(head.slot);
+            }
+        }
+
+        List<Entity> entities = new ArrayList<>(due.size());
+        for (Slot slot : due) {
+            entities.add(slot.entity);
+        }
+        entities.sort(Comparator.comparingLong(Entity::getId));
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} of {} entities due at {}", entities.size(), slots.size(), currentTime_ms);
+        }
+        return entities;
+    }
+
+    /**
+     * Provides the earliest booked event time that is later than the specified time.
+     *
+     * @param after_ms the time after which events are considered pending
+     * @return the next event time or {@code Long.MAX_VALUE} if nothing is booked
+     */
+    long getNextEventTime(final long after_ms) {
+        Booking head;
+        while ((head = timeline.peek()) != null && !head.isCurrent()) {
+            timeline.poll();
+        }
+        if (head == null) {
+            return Long.MAX_VALUE;
+        } else if (head.time_ms > after_ms) {
+            return head.time_ms;
+        } else {
+            //
+            // Rare case, an event dated at or before the last tick was delivered
+            // after dispatch. It is due on the next tick but is not a future event.
+            //
+            long min = Long.MAX_VALUE;
+            for (Booking b : timeline) {
+                if (b.isCurrent() && b.time_ms > after_ms) {
+                    min = Math.min(min, b.time_ms);
+                }
+            }
+            return min;
+        }
+    }
+
+    /**
+     * Provides the time of the earliest booked event, including events that are already due.
+     *
+     * @return the earliest booking or {@code Long.MAX_VALUE} if nothing is booked
+     */
+    long getEarliestBooking() {
+        Booking head;
+        while ((head = timeline.peek()) != null && !head.isCurrent()) {
+            timeline.poll();
+        }
+        return head == null ? Long.MAX_VALUE : head.time_ms;
+    }
+
+    /**
+     * Reports whether any {@code Entity} has immediate messages waiting.
+     *
+     * @return true if there are immediate messages
+     */
+    boolean hasImmediate() {
+        return !immediate.isEmpty();
+    }
+
+    /**
+     * Moves the specified entities and their pending work to a new calendar.
+     * <p>
+     * Entities that are not registered here are ignored. The moved entities can be
+     * returned with {@link #merge(EventCalendar)}.
+     *
+     * @param entities the entities to move
+     * @return a calendar that holds only the moved entities
+     */
+    EventCalendar extract(final Collection<? extends Entity> entities) {
+        EventCalendar part = new EventCalendar();
+        Set<Slot> moved = new HashSet<>();
+        for (Entity entity : entities) {
+            Slot slot = slots.remove(entity);
+            if (slot != null) {
+                moved.add(slot);
+                part.slots.put(entity, slot);
+                if (agentSlots.remove(slot)) {
+                    part.agentSlots.add(slot);
+                }
+                if (immediate.remove(slot)) {
+                    part.immediate.add(slot);
+                }
+            }
+        }
+        Iterator<Booking> it = timeline.iterator();
+        while (it.hasNext()) {
+            Booking booking = it.next();
+            if (moved.contains(booking.slot)) {
+                it.remove();
+                if (booking.isCurrent()) {
+                    part.timeline.offer(booking);
+                }
+            }
+        }
+        return part;
+    }
+
+    /**
+     * Moves every {@code Entity} and its pending work from another calendar into this one.
+     * The other calendar is left empty.
+     *
+     * @param part the calendar to absorb
+     */
+    void merge(final EventCalendar part) {
+        slots.putAll(part.slots);
+        agentSlots.addAll(part.agentSlots);
+        immediate.addAll(part.immediate);
+        for (Booking booking : part.timeline) {
+            if (booking.isCurrent()) {
+                timeline.offer(booking);
+            }
+        }
+        part.slots.clear();
+        part.agentSlots.clear();
+        part.immediate.clear();
+        part.timeline.clear();
+    }
+
+    /**
+     * Provides the number of registered entities.
+     *
+     * @return the number of entities
+     */
+    int size() {
+        return slots.size();
+    }
+
+    private void book(final Slot slot, final long time_ms) {
+        if (time_ms != Long.MAX_VALUE && time_ms < slot.booked_ms) {
+            slot.booked_ms = time_ms;
+            timeline.offer(new Booking(time_ms, slot));
+        }
+    }
+
+    /**
+     * Per-entity calendar state. Only the earliest booking is current, later
+     * bookings are superseded and dropped lazily.
+     */
+    private static final class Slot {
+        final Entity entity;
+        long booked_ms = Long.MAX_VALUE;
+
+        Slot(Entity entity) {
+            this.entity = entity;
+        }
+    }
+
+    private static final class Booking {
+        final long time_ms;
+        final Slot slot;
+
+        Booking(long time_ms, Slot slot) {
+            this.time_ms = time_ms;
+            this.slot = slot;
+        }
+
+        boolean isCurrent() {
+            return slot.booked_ms == time_ms;
+        }
+    }
+}
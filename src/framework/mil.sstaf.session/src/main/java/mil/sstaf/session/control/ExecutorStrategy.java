@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+/**
+ * Selects the threads on which the {@code EntityController} runs per-entity work.
+ */
+public enum ExecutorStrategy {
+    /**
+     * Runs all work on a fixed pool of platform threads sized by {@code executorThreads}.
+     */
+    PLATFORM,
+    /**
+     * Runs every task on its own virtual thread.
+     */
+    VIRTUAL,
+    /**
+     * Runs entities that have {@code Blocking} features on virtual threads and
+     * all other entities on a fixed pool of platform threads sized by
+     * {@code executorThreads}.
+     */
+    HYBRID
+}
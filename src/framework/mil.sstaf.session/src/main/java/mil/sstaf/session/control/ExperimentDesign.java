@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Getter;
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The set of design points to evaluate in a {@code ParameterSweep}.
+ * <p>
+ * Points are computed on demand from their index, so a design does not hold its points
+ * in memory.
+ */
+public abstract class ExperimentDesign {
+
+    @Getter
+    private final List<SweepParameter> parameters;
+
+    private ExperimentDesign(final List<SweepParameter> parameters) {
+        if (parameters.isEmpty()) {
+            throw new IllegalArgumentException("A design needs at least one parameter");
+        }
+        this.parameters = List.copyOf(parameters);
+    }
+
+    /**
+     * Creates a full-factorial design, every combination of the parameters' levels. The
+     * last parameter varies fastest.
+     *
+     * @param parameters the parameters, which must all have levels
+     * @return the design
+     */
+    public static ExperimentDesign grid(final List<SweepParameter> parameters) {
+        return new Grid(parameters);
+    }
+
+    /**
+     * Creates a Latin hypercube design. The range of each parameter is divided into
+     * {@code samples} equal strata and each stratum is sampled exactly once, with the
+     * strata of different parameters paired at random.
+     *
+     * @param parameters the parameters
+     * @param samples    the number of design points
+     * @param seed       the seed for the pairing and the positions within strata
+     * @return the design
+     */
+    public static ExperimentDesign latinHypercube(final List<SweepParameter> parameters,
+                                                  final int samples, final long seed) {
+        return new LatinHypercube(parameters, samples, seed);
+    }
+
+    /**
+     * Provides the number of design points.
+     *
+     * @return the number of points
+     */
+    public abstract int size();
+
+    /**
+     * Provides a design point.
+     *
+     * @param index the position of the point, from zero
+     * @return the point
+     */
+    public abstract DesignPoint get(int index);
+
+    private static final class Grid extends ExperimentDesign {
+        private final int size;
+
+        Grid(final List<SweepParameter> parameters) {
+            super(parameters);
+            long n = 1;
+            for (SweepParameter parameter : parameters) {
+                if (!parameter.isDiscrete()) {
+                    throw new IllegalArgumentException("Parameter " + parameter.getName()
+                            + " has a range but no levels and cannot be used in a grid");
+                }
+                n *= parameter.getLevels().size();
+                if (n > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Grid has too many points");
+                }
+            }
+            this.size = (int) n;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public DesignPoint get(final int index) {
+            List<SweepParameter> parameters = getParameters();
+            JsonNode[] chosen = new JsonNode[parameters.size()];
+            int remainder = index;
+            for (int i = parameters.size() - 1; i >= 0; --i) {
+                List<JsonNode> levels = parameters.get(i).getLevels();
+                chosen[i] = levels.get(remainder % levels.size());
+                remainder /= levels.size();
+            }
+            Map<String, JsonNode> values = new LinkedHashMap<>();
+            for (int i = 0; i < chosen.length; ++i) {
+                values.put(parameters.get(i).getName(), chosen[i]);
+            }
+            return new DesignPoint(index, values);
+        }
+    }
+
+    private static final class LatinHypercube extends ExperimentDesign {
+        //
+        // positions[p][i] is the position of point i within the range of parameter p
+        //
+        private final double[][] positions;
+
+        LatinHypercube(final List<SweepParameter> parameters, final int samples, final long seed) {
+            super(parameters);
+            if (samples < 1) {
+                throw new IllegalArgumentException("samples must be at least 1");
+            }
+            RandomGenerator rng = new MersenneTwister(seed);
+            positions = new double[parameters.size()][samples];
+            int[] strata = new int[samples];
+            for (int p = 0; p < parameters.size(); ++p) {
+                for (int i = 0; i < samples; ++i) {
+                    strata[i] = i;
+                }
+                for (int i = samples - 1; i > 0; --i) {
+                    int j = rng.nextInt(i + 1);
+                    int swap = strata[i];
+                    strata[i] = strata[j];
+                    strata[j] = swap;
+                }
+                for (int i = 0; i < samples; ++i) {
+                    positions[p][i] = (strata[i] + rng.nextDouble()) / samples;
+                }
+            }
+        }
+
+        @Override
+        public int size() {
+            return positions[0].length;
+        }
+
+        @Override
+        public DesignPoint get(final int index) {
+            List<SweepParameter> parameters = getParameters();
+            Map<String, JsonNode> values = new LinkedHashMap<>();
+            for (int p = 0; p < parameters.size(); ++p) {
+                values.put(parameters.get(p).getName(), parameters.get(p).valueAt(positions[p][index]));
+            }
+            return new DesignPoint(index, values);
+        }
+    }
+}
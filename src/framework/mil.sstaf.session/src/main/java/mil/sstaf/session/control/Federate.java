@@ -0,0 +1,468 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import mil.sstaf.core.entity.Entity;
+import mil.sstaf.core.entity.EntityEvent;
+import mil.sstaf.core.entity.EntityHandle;
+import mil.sstaf.core.entity.Force;
+import mil.sstaf.core.entity.Message;
+import mil.sstaf.core.util.SSTAFException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static mil.sstaf.session.control.FederationProtocol.*;
+
+/**
+ * Connects an {@code EntityController} to the controllers in other processes, so that
+ * the entities of one scenario can be spread across several JVMs.
+ * <p>
+ * One federate is the lead. It is built around the {@code EntityController} that the
+ * {@code Session} drives, listens for the others and assigns them ranks as they join.
+ * Every federate registers a {@code RemoteEntity} proxy for each simulation entity hosted
+ * elsewhere, so entities and the client address remote entities by path as usual.
+ * <p>
+ * A tick of the lead is a barrier for the federation. The lead sends the tick time to
+ * every follower together with the messages for its entities, executes the tick locally
+ * while the followers do the same, and then collects from each follower its next event
+ * time, its messages to the client and its messages to entities hosted elsewhere. Messages
+ * between federates are therefore delivered after the tick in which they were sent, as if
+ * they had been routed in the last routing pass of the tick. Messages for the lead are
+ * delivered at once; those for followers, including messages from one follower to
+ * another, are held by the lead and travel with the next tick. The next event time
+ * reported to the client is the earliest over the whole federation.
+ * <p>
+ * If any federate fails a tick, the lead closes the federation. The followers that are
+ * still executing the tick cannot be resynchronized, so later ticks fail at once rather
+ * than reading their stale replies.
+ * <p>
+ * Message content crosses process boundaries as JSON, so it must be serializable by
+ * Jackson and must not hold {@code EntityHandle}s. The {@code CONSERVATIVE} and
+ * {@code OPTIMISTIC} dispatch modes are not supported.
+ */
+public final class Federate implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(Federate.class);
+
+    private final EntityController controller;
+    private final FederationProtocol protocol;
+    private final int rank;
+    private final List<String> names;
+    private final List<Link> links;
+    private final List<RemoteEntity> proxies = new ArrayList<>();
+    private final List<List<Message>> pending = new ArrayList<>();
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private Federate(final EntityController controller, final int rank, final List<String> names,
+                     final List<List<String>> directory, final List<Link> links) {
+        this.controller = controller;
+        this.protocol = new FederationProtocol(controller.getRegistry());
+        this.rank = rank;
+        this.names = List.copyOf(names);
+        this.links = links;
+        for (int r = 0; r < directory.size(); ++r) {
+            pending.add(new ArrayList<>());
+            if (r != rank) {
+                for (String forcePath : directory.get(r)) {
+                    proxies.add(makeProxy(forcePath, r));
+                }
+            }
+        }
+        controller.attachFederate(this, proxies);
+        if (logger.isInfoEnabled()) {
+            logger.info("Federate {} joined as rank {} of {} with {} remote entities", names.get(rank), rank,
+                    names.size(), proxies.size());
+        }
+    }
+
+    /**
+     * Starts a federation and waits for the followers to join.
+     *
+     * @param controller the {@code EntityController} of the lead
+     * @param server     the socket the followers connect to
+     * @param followers  the number of followers
+     * @return the lead {@code Federate}
+     */
+    public static Federate lead(final EntityController controller, final ServerSocket server, final int followers) {
+        Objects.requireNonNull(controller, "controller");
+        Objects.requireNonNull(server, "server");
+        if (followers < 1) {
+            throw new IllegalArgumentException("A federation needs at least one follower");
+        }
+        List<Link> links = new ArrayList<>(followers);
+        List<String> names = new ArrayList<>();
+        List<List<String>> directory = new ArrayList<>();
+        names.add(controller.getName());
+        directory.add(getLocalPaths(controller));
+        try {
+            for (int r = 1; r <= followers; ++r) {
+                Link link = new Link(server.accept(), r);
+                links.add(link);
+                Frame hello = link.receive(HELLO);
+                DataInputStream in = hello.body();
+                int version = in.readInt();
+                if (version != VERSION) {
+                    throw new SSTAFException("Federate at " + link.socket.getRemoteSocketAddress()
+                            + " speaks protocol version " + version + ", expected " + VERSION);
+                }
+                link.name = in.readUTF();
+                names.add(link.name);
+                directory.add(readPaths(in));
+                if (logger.isInfoEnabled()) {
+                    logger.info("Federate {} at {} has {} entities", link.name,
+                            link.socket.getRemoteSocketAddress(), directory.get(r).size());
+                }
+            }
+            for (Link link : links) {
+                link.send(DIRECTORY, payload(out -> {
+                    out.writeInt(link.rank);
+                    out.writeInt(names.size());
+                    for (int r = 0; r < names.size(); ++r) {
+                        out.writeUTF(names.get(r));
+                        writePaths(out, directory.get(r));
+                    }
+                }));
+            }
+            return new Federate(controller, 0, names, directory, links);
+        } catch (IOException | RuntimeException e) {
+            links.forEach(Link::close);
+            throw e instanceof RuntimeException ? (RuntimeException) e
+                    : new SSTAFException("Could not form federation", e);
+        }
+    }
+
+    /**
+     * Joins a federation as a follower. The follower then waits for ticks in {@link #serve()}.
+     *
+     * @param controller the {@code EntityController} of the follower
+     * @param host       the host of the lead
+     * @param port       the port of the lead
+     * @return the follower {@code Federate}
+     */
+    public static Federate join(final EntityController controller, final String host, final int port) {
+        Objects.requireNonNull(controller, "controller");
+        Link link = null;
+        try {
+            link = new Link(new Socket(host, port), 0);
+            List<String> paths = getLocalPaths(controller);
+            link.send(HELLO, payload(out -> {
+                out.writeInt(VERSION);
+                out.writeUTF(controller.getName());
+                writePaths(out, paths);
+            }));
+            DataInputStream in = link.receive(DIRECTORY).body();
+            int rank = in.readInt();
+            int count = in.readInt();
+            List<String> names = new ArrayList<>(count);
+            List<List<String>> directory = new ArrayList<>(count);
+            for (int r = 0; r < count; ++r) {
+                names.add(in.readUTF());
+                directory.add(readPaths(in));
+            }
+            link.name = names.get(0);
+            return new Federate(controller, rank, names, directory, List.of(link));
+        } catch (IOException | RuntimeException e) {
+            if (link != null) {
+                link.close();
+            }
+            throw e instanceof RuntimeException ? (RuntimeException) e
+                    : new SSTAFException("Could not join federation at " + host + ":" + port, e);
+        }
+    }
+
+    /**
+     * Provides the rank of this federate. The lead has rank zero.
+     *
+     * @return the rank
+     */
+    public int getRank() {
+        return rank;
+    }
+
+    /**
+     * Provides the number of federates, including the lead.
+     *
+     * @return the number of federates
+     */
+    public int getFederateCount() {
+        return names.size();
+    }
+
+    /**
+     * Reports whether this federate is the lead.
+     *
+     * @return true for the lead
+     */
+    public boolean isLead() {
+        return rank == 0;
+    }
+
+    /**
+     * Executes ticks as the lead requests them, until the lead shuts the federation down.
+     * If a tick fails, the failure is reported to the lead and rethrown.
+     */
+    public void serve() {
+        if (isLead()) {
+            throw new IllegalStateException("The lead federate is driven by its EntityController");
+        }
+        Link lead = links.get(0);
+        try {
+            while (true) {
+                Frame frame = lead.receive();
+                if (frame.type == SHUTDOWN) {
+                    logger.info("Federation shut down by {}", lead.name);
+                    return;
+                } else if (frame.type != TICK) {
+                    throw new SSTAFException("Unexpected frame type " + frame.type + " from " + lead.name);
+                }
+                DataInputStream in = frame.body();
+                long currentTime_ms = in.readLong();
+                byte[] reply;
+                try {
+                    for (Message message : protocol.readMessages(in)) {
+                        controller.deliverRemote(message);
+                    }
+                    EntityController.TickOutput output = controller.step(currentTime_ms);
+                    List<Message> outbound = new ArrayList<>();
+                    for (RemoteEntity proxy : proxies) {
+                        outbound.addAll(proxy.drain());
+                    }
+                    reply = payload(out -> {
+                        out.writeLong(currentTime_ms);
+                        out.writeLong(output.nextEventTime_ms);
+                        protocol.writeMessages(out, output.messagesToClient);
+                        protocol.writeMessages(out, outbound);
+                    });
+                } catch (RuntimeException e) {
+                    logger.error("Tick at {} failed", currentTime_ms, e);
+                    lead.send(FAILED, payload(out -> out.writeUTF(String.valueOf(e.getMessage()))));
+                    throw e;
+                }
+                lead.send(DONE, reply);
+            }
+        } catch (IOException e) {
+            throw new SSTAFException("Lost connection to lead federate " + lead.name, e);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Executes a tick across the federation. Invoked by the {@code EntityController} of the lead.
+     *
+     * @param currentTime_ms the current simulation time
+     * @return the earliest next event time in the federation and the messages to the client
+     * @throws IllegalStateException if the federation was closed by an earlier failure
+     */
+    EntityController.TickOutput advance(final long currentTime_ms) {
+        if (closed.get()) {
+            throw new IllegalStateException("Federation led by " + names.get(0) + " has been closed");
+        }
+        try {
+            //
+            // Commands and events submitted since the last tick are forwarded with this one.
+            //
+            controller.routeMessages();
+            collectForwarded(Long.MAX_VALUE);
+            for (Link link : links) {
+                List<Message> batch = pending.get(link.rank);
+                link.send(TICK, payload(out -> {
+                    out.writeLong(currentTime_ms);
+                    protocol.writeMessages(out, batch);
+                }));
+                batch.clear();
+            }
+
+            EntityController.TickOutput local = controller.step(currentTime_ms);
+            List<Message> toClient = new ArrayList<>(local.messagesToClient);
+            long next_ms = local.nextEventTime_ms;
+            for (Link link : links) {
+                Frame frame = link.receive();
+                if (frame.type == FAILED) {
+                    throw new SSTAFException("Federate " + link.name + " failed the tick at " + currentTime_ms
+                            + ": " + frame.body().readUTF());
+                } else if (frame.type != DONE) {
+                    throw new SSTAFException("Unexpected frame type " + frame.type + " from " + link.name);
+                }
+                DataInputStream in = frame.body();
+                long time_ms = in.readLong();
+                if (time_ms != currentTime_ms) {
+                    throw new SSTAFException("Federate " + link.name + " completed the tick at " + time_ms
+                            + " instead of " + currentTime_ms);
+                }
+                next_ms = Math.min(next_ms, in.readLong());
+                toClient.addAll(protocol.readMessages(in));
+                for (Message message : protocol.readMessages(in)) {
+                    controller.deliverRemote(message);
+                }
+            }
+            next_ms = Math.min(next_ms, controller.getCalendarNextEventTime());
+            next_ms = Math.min(next_ms, collectForwarded(currentTime_ms));
+            return new EntityController.TickOutput(next_ms, toClient);
+        } catch (IOException e) {
+            close();
+            throw new SSTAFException("Federation tick at " + currentTime_ms + " failed", e);
+        } catch (RuntimeException e) {
+            //
+            // Replies to this tick may still be on their way from the other followers.
+            //
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Moves the messages held by the proxies to the batches for their federates.
+     *
+     * @param after_ms the time after which events count as future events
+     * @return the earliest future event time among the moved messages
+     */
+    private long collectForwarded(final long after_ms) {
+        long next_ms = Long.MAX_VALUE;
+        for (RemoteEntity proxy : proxies) {
+            for (Message message : proxy.drain()) {
+                pending.get(proxy.getRank()).add(message);
+                if (message instanceof EntityEvent) {
+                    long time_ms = ((EntityEvent) message).getEventTime_ms();
+                    if (time_ms > after_ms) {
+                        next_ms = Math.min(next_ms, time_ms);
+                    }
+                }
+            }
+        }
+        return next_ms;
+    }
+
+    /**
+     * Ends the federation. The lead tells the followers to stop serving.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (isLead()) {
+            for (Link link : links) {
+                try {
+                    link.send(SHUTDOWN, new byte[0]);
+                } catch (IOException e) {
+                    logger.warn("Could not shut down federate {}: {}", link.name, e.getMessage());
+                }
+            }
+        }
+        links.forEach(Link::close);
+    }
+
+    private static List<String> getLocalPaths(final EntityController controller) {
+        List<String> paths = new ArrayList<>();
+        for (EntityHandle handle : controller.getSimulationEntityHandles()) {
+            paths.add(handle.getForcePath());
+        }
+        Collections.sort(paths);
+        return paths;
+    }
+
+    private static RemoteEntity makeProxy(final String forcePath, final int rank) {
+        int split = forcePath.indexOf(Entity.ENTITY_PATH_DELIMITER);
+        if (split < 0) {
+            throw new SSTAFException("Remote entity path '" + forcePath + "' has no force");
+        }
+        String path = forcePath.substring(split + Entity.ENTITY_PATH_DELIMITER.length());
+        return RemoteEntity.builder()
+                .name(path.substring(path.lastIndexOf(Entity.ENTITY_PATH_DELIMITER) + 1))
+                .remotePath(path)
+                .remoteForce(Force.valueOf(forcePath.substring(0, split)))
+                .rank(rank)
+                .build();
+    }
+
+    /**
+     * Runs a follower in its own process.
+     * <p>
+     * Usage: {@code Federate <scenario file> <lead host> <lead port>}
+     *
+     * @param args the command line arguments
+     */
+    public static void main(final String[] args) {
+        if (args.length != 3) {
+            System.err.println("Usage: Federate <scenario file> <lead host> <lead port>");
+            System.exit(1);
+        }
+        EntityController controller = EntityController.from(new File(args[0]));
+        try (Federate federate = join(controller, args[1], Integer.parseInt(args[2]))) {
+            federate.serve();
+        } finally {
+            controller.shutdown();
+        }
+    }
+
+    /**
+     * A connection to another federate.
+     */
+    private static final class Link {
+        final Socket socket;
+        final int rank;
+        final DataInputStream in;
+        final DataOutputStream out;
+        String name;
+
+        Link(final Socket socket, final int rank) throws IOException {
+            this.socket = socket;
+            this.rank = rank;
+            this.name = String.valueOf(socket.getRemoteSocketAddress());
+            socket.setTcpNoDelay(true);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        void send(final byte type, final byte[] payload) throws IOException {
+            writeFrame(out, type, payload);
+            out.flush();
+        }
+
+        Frame receive() throws IOException {
+            return readFrame(in);
+        }
+
+        Frame receive(final byte expected) throws IOException {
+            Frame frame = readFrame(in);
+            if (frame.type != expected) {
+                throw new SSTAFException("Expected frame type " + expected + " from " + name
+                        + " but received " + frame.type);
+            }
+            return frame;
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.debug("Error closing connection to {}: {}", name, e.getMessage());
+            }
+        }
+    }
+}
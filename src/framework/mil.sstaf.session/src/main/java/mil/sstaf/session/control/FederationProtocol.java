@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import mil.sstaf.core.entity.*;
+import mil.sstaf.core.features.HandlerContent;
+import mil.sstaf.core.util.SSTAFException;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The framed binary protocol spoken between {@code Federate}s.
+ * <p>
+ * Every frame is a four-byte payload length, a one-byte frame type and the payload. The
+ * payloads are written with {@code DataOutputStream}, so numbers are big-endian and strings
+ * are modified UTF-8. The frames are:
+ * <ul>
+ * <li>{@code HELLO}: the protocol version, the name of the joining federate and the
+ *     force paths of its simulation entities.</li>
+ * <li>{@code DIRECTORY}: the rank assigned to the joining federate, then the name and
+ *     entity paths of every federate in rank order.</li>
+ * <li>{@code TICK}: the tick time and the messages for the entities of the follower.</li>
+ * <li>{@code DONE}: the tick time, the next event time of the follower, its messages to
+ *     the client and its messages to entities hosted elsewhere.</li>
+ * <li>{@code FAILED}: a description of the failure of a tick.</li>
+ * <li>{@code SHUTDOWN}: an empty frame that ends the federation.</li>
+ * </ul>
+ * A {@code Message} is written as its kind, its source, destination and reply addresses,
+ * the event time or message id where the kind has one, and its content as class-tagged
+ * JSON. Entities are identified by force path, since handles and ids are local to a
+ * process. The client is identified by a tag of its own, so that a reply to the client
+ * goes to the client proxy of the process that receives it.
+ */
+final class FederationProtocol {
+
+    static final int VERSION = 1;
+
+    static final byte HELLO = 1;
+    static final byte DIRECTORY = 2;
+    static final byte TICK = 3;
+    static final byte DONE = 4;
+    static final byte FAILED = 5;
+    static final byte SHUTDOWN = 6;
+
+    /**
+     * The largest payload accepted, to catch a corrupt stream before allocating.
+     */
+    static final int MAX_PAYLOAD = 1 << 28;
+
+    private static final byte ACTION = 1;
+    private static final byte EVENT = 2;
+    private static final byte RESPONSE = 3;
+    private static final byte ERROR = 4;
+
+    private static final byte NO_ADDRESS = 0;
+    private static final byte NOWHERE_ADDRESS = 1;
+    private static final byte CLIENT_ADDRESS = 2;
+    private static final byte ENTITY_ADDRESS = 3;
+    private static final byte HANDLER_ADDRESS = 4;
+
+    private final EntityRegistry registry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Constructor
+     *
+     * @param registry the registry used to resolve the force paths of entities
+     */
+    FederationProtocol(final EntityRegistry registry) {
+        this.registry = Objects.requireNonNull(registry, "registry");
+    }
+
+    /**
+     * Writes the payload of a frame.
+     */
+    @FunctionalInterface
+    interface PayloadWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Builds the payload of a frame.
+     *
+     * @param writer writes the payload
+     * @return the payload
+     * @throws IOException if the payload could not be written
+     */
+    static byte[] payload(final PayloadWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a frame. The stream is not flushed.
+     *
+     * @param out     the stream
+     * @param type    the frame type
+     * @param payload the payload
+     * @throws IOException if the frame could not be written
+     */
+    static void writeFrame(final DataOutputStream out, final byte type, final byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.writeByte(type);
+        out.write(payload);
+    }
+
+    /**
+     * Reads a frame.
+     *
+     * @param in the stream
+     * @return the frame
+     * @throws IOException if the frame could not be read
+     */
+    static Frame readFrame(final DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_PAYLOAD) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        byte type = in.readByte();
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Frame(type, payload);
+    }
+
+    /**
+     * Writes a list of force paths.
+     *
+     * @param out   the stream
+     * @param paths the paths
+     * @throws IOException if the paths could not be written
+     */
+    static void writePaths(final DataOutputStream out, final List<String> paths) throws IOException {
+        out.writeInt(paths.size());
+        for (String path : paths) {
+            out.writeUTF(path);
+        }
+    }
+
+    /**
+     * Reads a list of force paths.
+     *
+     * @param in the stream
+     * @return the paths
+     * @throws IOException if the paths could not be read
+     */
+    static List<String> readPaths(final DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> paths = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            paths.add(in.readUTF());
+        }
+        return paths;
+    }
+
+    /**
+     * Writes a sequence of messages in order.
+     *
+     * @param out      the stream
+     * @param messages the messages
+     * @throws IOException if the messages could not be written
+     */
+    void writeMessages(final DataOutputStream out, final List<Message> messages) throws IOException {
+        out.writeInt(messages.size());
+        for (Message message : messages) {
+            writeMessage(out, message);
+        }
+    }
+
+    /**
+     * Reads a sequence of messages in order. The messages receive new sequence numbers
+     * in the same order, so the order among the messages from each source is kept.
+     *
+     * @param in the stream
+     * @return the messages
+     * @throws IOException if the messages could not be read
+     */
+    List<Message> readMessages(final DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            messages.add(readMessage(in));
+        }
+        return messages;
+    }
+
+    /**
+     * Writes a {@code Message}.
+     *
+     * @param out     the stream
+     * @param message the {@code Message}
+     * @throws IOException if the {@code Message} could not be written
+     */
+    void writeMessage(final DataOutputStream out, final Message message) throws IOException {
+        if (message instanceof ErrorResponse) {
+            out.writeByte(ERROR);
+        } else if (message instanceof MessageResponse) {
+            out.writeByte(RESPONSE);
+        } else if (message instanceof EntityEvent) {
+            out.writeByte(EVENT);
+        } else if (message instanceof EntityAction) {
+            out.writeByte(ACTION);
+        } else {
+            throw new SSTAFException("Cannot send message of type " + message.getClass().getName()
+                    + " to another federate");
+        }
+        writeAddress(out, message.getSource());
+        writeAddress(out, message.getDestination());
+        writeAddress(out, message.getRespondTo());
+        if (message instanceof EntityEvent) {
+            out.writeLong(((EntityEvent) message).getEventTime_ms());
+        } else if (message instanceof MessageResponse) {
+            out.writeLong(((MessageResponse) message).getMessageID());
+        }
+        if (message.getContent() == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] content = objectMapper.writeValueAsBytes(message.getContent());
+            out.writeInt(content.length);
+            out.write(content);
+        }
+    }
+
+    /**
+     * Reads a {@code Message}. A destination that is not known in this process is read
+     * as null.
+     *
+     * @param in the stream
+     * @return the {@code Message}
+     * @throws IOException if the {@code Message} could not be read
+     */
+    Message readMessage(final DataInputStream in) throws IOException {
+        byte kind = in.readByte();
+        Address source = readAddress(in);
+        Address destination = readAddress(in);
+        Address respondTo = readAddress(in);
+        long value = kind == ACTION ? 0 : in.readLong();
+        HandlerContent content = null;
+        int length = in.readInt();
+        if (length >= 0) {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            content = objectMapper.readValue(bytes, HandlerContent.class);
+        }
+        if (source == null) {
+            source = Address.NOWHERE;
+        }
+        switch (kind) {
+            case ACTION:
+                return EntityAction.builder().source(source).destination(destination)
+                        .respondTo(respondTo).content(content).build();
+            case EVENT:
+                return EntityEvent.builder().source(source).destination(destination)
+                        .respondTo(respondTo).content(content).eventTime_ms(value).build();
+            case RESPONSE:
+                return MessageResponse.builder().source(source).destination(destination)
+                        .respondTo(respondTo).content(content).messageID(value).build();
+            case ERROR:
+                return ErrorResponse.builder().source(source).destination(destination)
+                        .respondTo(respondTo).content(content).messageID(value).build();
+            default:
+                throw new IOException("Unknown message kind " + kind);
+        }
+    }
+
+    private void writeAddress(final DataOutputStream out, final Address address) throws IOException {
+        Address client = registry.getClientAddress();
+        if (address == null) {
+            out.writeByte(NO_ADDRESS);
+        } else if (address.equals(Address.NOWHERE)) {
+            out.writeByte(NOWHERE_ADDRESS);
+        } else if (address.equals(Address.CLIENT)
+                || (client != null && address.entityHandle != null && address.entityHandle.equals(client.entityHandle))) {
+            out.writeByte(CLIENT_ADDRESS);
+        } else if (address.entityHandle == null) {
+            out.writeByte(HANDLER_ADDRESS);
+            writeHandlerName(out, address.handlerName);
+        } else {
+            out.writeByte(ENTITY_ADDRESS);
+            out.writeUTF(address.entityHandle.getForcePath());
+            writeHandlerName(out, address.handlerName);
+        }
+    }
+
+    private Address readAddress(final DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NO_ADDRESS:
+                return null;
+            case NOWHERE_ADDRESS:
+                return Address.NOWHERE;
+            case CLIENT_ADDRESS:
+                return registry.getClientAddress();
+            case HANDLER_ADDRESS:
+                return Address.builder().entityHandle(null).handlerName(readHandlerName(in)).build();
+            case ENTITY_ADDRESS:
+                String path = in.readUTF();
+                String handlerName = readHandlerName(in);
+                return registry.getHandle(path)
+                        .map(handle -> Address.builder().entityHandle(handle).handlerName(handlerName).build())
+                        .orElse(null);
+            default:
+                throw new IOException("Unknown address tag " + tag);
+        }
+    }
+
+    private static void writeHandlerName(final DataOutputStream out, final String handlerName) throws IOException {
+        out.writeBoolean(handlerName != null);
+        if (handlerName != null) {
+            out.writeUTF(handlerName);
+        }
+    }
+
+    private static String readHandlerName(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * A frame read from a {@code Federate}.
+     */
+    static final class Frame {
+        final byte type;
+        final byte[] payload;
+
+        Frame(final byte type, final byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+
+        DataInputStream body() {
+            return new DataInputStream(new ByteArrayInputStream(payload));
+        }
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import lombok.Getter;
+import mil.sstaf.core.util.SSTAFException;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Decodes the binary log written by the flight recorder of an {@code EntityController}.
+ * <p>
+ * The records still held in the log are returned in routing order: by tick, then by
+ * routing pass, then by source and position in its outbound queue. Entity ids and
+ * content type ids are replaced by the paths and class names from the dictionary in the
+ * log.
+ * <p>
+ * The reader can also be run from the command line:
+ * <pre>
+ *   FlightLogReader &lt;log&gt; [--from ms] [--to ms] [--entity path] [--type class]
+ *                   [--kind kind] [--outcome outcome] [--limit n]
+ * </pre>
+ * which prints the matching records one per line. The tick times are inclusive. An
+ * entity matches if it is the source or the destination, by force path or by path.
+ */
+public final class FlightLogReader {
+
+    private static final String[] KINDS = {"UNKNOWN", "ACTION", "EVENT", "RESPONSE", "ERROR", "OTHER"};
+    private static final String[] OUTCOMES = {"UNKNOWN", "DELIVERED", "TO_CLIENT", "DROPPED"};
+
+    private final Path file;
+    private final long written;
+    private final List<Record> records;
+
+    private FlightLogReader(final Path file, final long written, final List<Record> records) {
+        this.file = file;
+        this.written = written;
+        this.records = records;
+    }
+
+    /**
+     * Reads a log.
+     *
+     * @param file the log file
+     * @return the reader
+     */
+    public static FlightLogReader open(final Path file) {
+        Objects.requireNonNull(file, "file");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, FlightRecorder.HEADER_SIZE);
+            if (header.getLong(0) != FlightRecorder.MAGIC) {
+                throw new SSTAFException(file + " is not a flight recorder log");
+            }
+            int version = header.getInt(8);
+            int recordSize = header.getInt(12);
+            if (version != FlightRecorder.VERSION || recordSize != FlightRecorder.RECORD_SIZE) {
+                throw new SSTAFException("Unsupported flight recorder log version " + version + " in " + file);
+            }
+            long capacity = header.getLong(FlightRecorder.CAPACITY_OFFSET);
+            long written = header.getLong(FlightRecorder.WRITTEN_OFFSET);
+            long dictionaryOffset = header.getLong(FlightRecorder.DICTIONARY_OFFSET);
+            int dictionaryLength = header.getInt(FlightRecorder.DICTIONARY_LENGTH_OFFSET);
+
+            Map<Long, String> entities = new HashMap<>();
+            Map<Integer, String> types = new HashMap<>();
+            ByteBuffer dictionary = ByteBuffer.allocate(dictionaryLength);
+            while (dictionary.hasRemaining()) {
+                if (channel.read(dictionary, dictionaryOffset + dictionary.position()) < 0) {
+                    throw new SSTAFException("Flight recorder dictionary in " + file + " is truncated");
+                }
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(dictionary.array()));
+            if (dictionaryLength > 0) {
+                int entityCount = in.readInt();
+                for (int i = 0; i < entityCount; ++i) {
+                    entities.put(in.readLong(), in.readUTF());
+                }
+                int typeCount = in.readInt();
+                for (int i = 0; i < typeCount; ++i) {
+                    types.put(in.readInt(), in.readUTF());
+                }
+            }
+
+            MappedByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, FlightRecorder.HEADER_SIZE,
+                    capacity * FlightRecorder.RECORD_SIZE);
+            long count = Math.min(written, capacity);
+            List<Record> records = new ArrayList<>((int) count);
+            for (long n = written - count; n < written; ++n) {
+                records.add(decode(log, (int) ((n % capacity) * FlightRecorder.RECORD_SIZE), entities, types));
+            }
+            sortRuns(records);
+            return new FlightLogReader(file, written, records);
+        } catch (IOException e) {
+            throw new SSTAFException("Could not read flight recorder log " + file, e);
+        }
+    }
+
+    /**
+     * Provides the log file.
+     *
+     * @return the file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Provides the number of records written to the log, including those that have
+     * since been overwritten.
+     *
+     * @return the number of records written
+     */
+    public long getWrittenCount() {
+        return written;
+    }
+
+    /**
+     * Provides the records still held in the log, in routing order.
+     *
+     * @return the records
+     */
+    public List<Record> getRecords() {
+        return Collections.unmodifiableList(records);
+    }
+
+    /**
+     * Provides the records that match a filter, in routing order.
+     *
+     * @param filter the filter
+     * @return the matching records
+     */
+    public List<Record> read(final Predicate<Record> filter) {
+        List<Record> matches = new ArrayList<>();
+        for (Record record : records) {
+            if (filter.test(record)) {
+                matches.add(record);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Makes a filter that accepts records from ticks in a range.
+     *
+     * @param from_ms the first tick time
+     * @param to_ms   the last tick time
+     * @return the filter
+     */
+    public static Predicate<Record> ticks(final long from_ms, final long to_ms) {
+        return record -> record.getTick_ms() >= from_ms && record.getTick_ms() <= to_ms;
+    }
+
+    /**
+     * Makes a filter that accepts records of messages to or from an {@code Entity}.
+     *
+     * @param path the force path or path of the {@code Entity}
+     * @return the filter
+     */
+    public static Predicate<Record> entity(final String path) {
+        return record -> matchesPath(record.getSource(), path) || matchesPath(record.getDestination(), path);
+    }
+
+    /**
+     * Makes a filter that accepts records of messages with a type of content.
+     *
+     * @param type the simple or fully qualified class name of the content
+     * @return the filter
+     */
+    public static Predicate<Record> contentType(final String type) {
+        return record -> record.getContentType() != null && (record.getContentType().equals(type)
+                || record.getContentType().endsWith("." + type) || record.getContentType().endsWith("$" + type));
+    }
+
+    private static boolean matchesPath(final String recorded, final String path) {
+        return recorded.equals(path) || recorded.endsWith(":" + path);
+    }
+
+    private static Record decode(final ByteBuffer log, final int position, final Map<Long, String> entities,
+                                 final Map<Integer, String> types) {
+        long sourceId = log.getLong(position + 24);
+        long destinationId = log.getLong(position + 32);
+        int kind = log.get(position + 54) & 0xff;
+        int outcome = log.get(position + 55) & 0xff;
+        return new Record(
+                log.getLong(position),
+                log.getShort(position + 52) & 0xffff,
+                log.getLong(position + 40),
+                log.getLong(position + 8),
+                log.getLong(position + 16),
+                sourceId,
+                describe(sourceId, entities),
+                destinationId,
+                describe(destinationId, entities),
+                types.get(log.getInt(position + 48)),
+                kind < KINDS.length ? KINDS[kind] : KINDS[0],
+                outcome < OUTCOMES.length ? OUTCOMES[outcome] : OUTCOMES[0]);
+    }
+
+    private static String describe(final long id, final Map<Long, String> entities) {
+        if (id == FlightRecorder.CLIENT) {
+            return "CLIENT";
+        } else if (id == FlightRecorder.NOWHERE) {
+            return "NOWHERE";
+        } else if (id == FlightRecorder.NO_ENTITY) {
+            return "-";
+        }
+        return entities.getOrDefault(id, "#" + id);
+    }
+
+    /**
+     * Puts the records of each tick in routing order. The rings are spilled at the end of
+     * each tick, so the records of a tick are contiguous in the log but the rings of the
+     * routing tasks are interleaved.
+     */
+    private static void sortRuns(final List<Record> records) {
+        Comparator<Record> order = Comparator.comparingInt(Record::getPass).thenComparingLong(Record::getOrder);
+        int start = 0;
+        for (int i = 1; i <= records.size(); ++i) {
+            if (i == records.size() || records.get(i).getTick_ms() != records.get(start).getTick_ms()) {
+                records.subList(start, i).sort(order);
+                start = i;
+            }
+        }
+    }
+
+    /**
+     * Prints the records of a log that match the filters given on the command line.
+     *
+     * @param args the log file followed by the filters
+     */
+    public static void main(final String[] args) {
+        if (args.length < 1 || args.length % 2 == 0) {
+            System.err.println("Usage: FlightLogReader <log> [--from ms] [--to ms] [--entity path] [--type class]"
+                    + " [--kind kind] [--outcome outcome] [--limit n]");
+            System.exit(1);
+        }
+        Predicate<Record> filter = record -> true;
+        long from_ms = Long.MIN_VALUE;
+        long to_ms = Long.MAX_VALUE;
+        long limit = Long.MAX_VALUE;
+        for (int i = 1; i < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--from":
+                    from_ms = Long.parseLong(value);
+                    break;
+                case "--to":
+                    to_ms = Long.parseLong(value);
+                    break;
+                case "--entity":
+                    filter = filter.and(entity(value));
+                    break;
+                case "--type":
+                    filter = filter.and(contentType(value));
+                    break;
+                case "--kind":
+                    filter = filter.and(record -> record.getKind().equalsIgnoreCase(value));
+                    break;
+                case "--outcome":
+                    filter = filter.and(record -> record.getOutcome().equalsIgnoreCase(value));
+                    break;
+                case "--limit":
+                    limit = Long.parseLong(value);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(1);
+            }
+        }
+        FlightLogReader reader = open(Path.of(args[0]));
+        List<Record> matches = reader.read(filter.and(ticks(from_ms, to_ms)));
+        System.out.println(matches.size() + " of " + reader.getRecords().size() + " records ("
+                + reader.getWrittenCount() + " written)");
+        matches.stream().limit(limit).forEach(System.out::println);
+    }
+
+    /**
+     * A decoded record of a routed message.
+     */
+    @Getter
+    public static final class Record {
+        /**
+         * Time of the tick in which the message was routed.
+         */
+        private final long tick_ms;
+        /**
+         * Routing pass within the tick, starting at one.
+         */
+        private final int pass;
+        /**
+         * Position in the routing order, the rank of the source in the high word and the
+         * position in its outbound queue in the low word.
+         */
+        private final long order;
+        private final long sequenceNumber;
+        /**
+         * Event time, or {@code Long.MIN_VALUE} if the message is not an event.
+         */
+        private final long eventTime_ms;
+        private final long sourceId;
+        private final String source;
+        private final long destinationId;
+        private final String destination;
+        /**
+         * Class name of the content, or null if the message had none.
+         */
+        private final String contentType;
+        private final String kind;
+        private final String outcome;
+
+        Record(final long tick_ms, final int pass, final long order, final long sequenceNumber,
+               final long eventTime_ms, final long sourceId, final String source, final long destinationId,
+               final String destination, final String contentType, final String kind, final String outcome) {
+            this.tick_ms = tick_ms;
+            this.pass = pass;
+            this.order = order;
+            this.sequenceNumber = sequenceNumber;
+            this.eventTime_ms = eventTime_ms;
+            this.sourceId = sourceId;
+            this.source = source;
+            this.destinationId = destinationId;
+            this.destination = destination;
+            this.contentType = contentType;
+            this.kind = kind;
+            this.outcome = outcome;
+        }
+
+        /**
+         * Reports whether the message was an event.
+         *
+         * @return true for an event
+         */
+        public boolean isEvent() {
+            return eventTime_ms != Long.MIN_VALUE;
+        }
+
+        @Override
+        public String toString() {
+            return "tick=" + tick_ms + " pass=" + pass + " " + kind + " " + outcome + " " + source + " -> "
+                    + destination + " seq=" + sequenceNumber
+                    + (isEvent() ? " eventTime=" + eventTime_ms : "")
+                    + " content=" + contentType;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import mil.sstaf.core.entity.*;
+import mil.sstaf.core.util.SSTAFException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records every message routed by a {@code MessageRouter} to a binary log, for
+ * diagnosing long runs after the fact.
+ * <p>
+ * Each routing task appends fixed-size records to a ring buffer of its own, so recording
+ * needs no locks and allocates nothing. A ring is spilled to the log when it fills and
+ * at the end of every tick. The log is a memory-mapped file that holds the most recent
+ * {@code capacity} records in a circular region, so it can be left running for the
+ * whole of a long run. The ids of the entities and content types used in the records
+ * are written to a dictionary after the circular region whenever new ones appear, so
+ * the log can be decoded by {@link FlightLogReader} even if the run ends abruptly.
+ * <p>
+ * The log starts with a header of {@value #HEADER_SIZE} bytes:
+ * <pre>
+ *   long magic, int version, int record size, long capacity, long records written,
+ *   long dictionary offset, int dictionary length
+ * </pre>
+ * followed by the records. Each record holds the tick time, sequence number, event time
+ * ({@code Long.MIN_VALUE} for a message that is not an event), source and destination
+ * entity ids, position in the routing order, content type id, routing pass within the
+ * tick, message kind and routing outcome.
+ * <p>
+ * The recorder is driven by the thread that drives the {@code EntityController}; only
+ * the recording itself happens on the routing threads.
+ */
+final class FlightRecorder implements AutoCloseable {
+
+    static final long MAGIC = 0x5353544146464c52L; // "SSTAFFLR"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 56;
+
+    //
+    // Header fields
+    //
+    static final int CAPACITY_OFFSET = 16;
+    static final int WRITTEN_OFFSET = 24;
+    static final int DICTIONARY_OFFSET = 32;
+    static final int DICTIONARY_LENGTH_OFFSET = 40;
+
+    //
+    // Ids of addresses that are not entities
+    //
+    static final long NO_ENTITY = -1;
+    static final long CLIENT = -2;
+    static final long NOWHERE = -3;
+
+    //
+    // Message kinds
+    //
+    static final byte ACTION = 1;
+    static final byte EVENT = 2;
+    static final byte RESPONSE = 3;
+    static final byte ERROR = 4;
+    static final byte OTHER = 5;
+
+    //
+    // Routing outcomes
+    //
+    static final byte DELIVERED = 1;
+    static final byte TO_CLIENT = 2;
+    static final byte DROPPED = 3;
+
+    /**
+     * Number of records in each ring.
+     */
+    static final int RING_SIZE = 4096;
+
+    private static final int LONGS_PER_RECORD = 7;
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecorder.class);
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer log;
+    private final long capacity;
+    private final long dictionaryOffset;
+    private final AtomicLong written = new AtomicLong();
+    private final List<Ring> rings = new ArrayList<>();
+
+    private final Map<Long, String> entityPaths = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Integer> contentTypes = new ConcurrentHashMap<>();
+    private final AtomicInteger nextContentType = new AtomicInteger(1);
+    private volatile boolean dictionaryChanged = true;
+
+    private long tick_ms = Long.MIN_VALUE;
+    private int pass = 0;
+    private boolean closed = false;
+
+    /**
+     * Constructor
+     *
+     * @param file     the log file, replaced if it exists
+     * @param capacity the number of records the log holds before the oldest are overwritten
+     */
+    FlightRecorder(final Path file, final long capacity) {
+        if (capacity < 1 || capacity > (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE) {
+            throw new IllegalArgumentException("Flight recorder capacity must be between 1 and "
+                    + (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE + " records");
+        }
+        this.file = file;
+        this.capacity = capacity;
+        this.dictionaryOffset = HEADER_SIZE + capacity * RECORD_SIZE;
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.log = channel.map(FileChannel.MapMode.READ_WRITE, 0, dictionaryOffset);
+        } catch (IOException e) {
+            throw new SSTAFException("Could not create flight recorder log " + file, e);
+        }
+        log.putLong(0, MAGIC);
+        log.putInt(8, VERSION);
+        log.putInt(12, RECORD_SIZE);
+        log.putLong(CAPACITY_OFFSET, capacity);
+        log.putLong(WRITTEN_OFFSET, 0);
+        log.putLong(DICTIONARY_OFFSET, dictionaryOffset);
+        log.putInt(DICTIONARY_LENGTH_OFFSET, 0);
+        logger.info("Recording messages to {}, {} records", file, capacity);
+    }
+
+    /**
+     * Provides the log file.
+     *
+     * @return the file
+     */
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Provides the number of records written so far, including any that have been
+     * overwritten.
+     *
+     * @return the number of records
+     */
+    long getRecordCount() {
+        return written.get();
+    }
+
+    /**
+     * Adds the paths of entities to the dictionary.
+     *
+     * @param entities the entities
+     */
+    void describe(final Iterable<? extends Entity> entities) {
+        for (Entity entity : entities) {
+            entityPaths.put(entity.getId(), entity.getHandle().getForcePath());
+        }
+        dictionaryChanged = true;
+    }
+
+    /**
+     * Starts recording a tick.
+     *
+     * @param currentTime_ms the time of the tick
+     */
+    void beginTick(final long currentTime_ms) {
+        //
+        // Repeated ticks at the same time continue the numbering of the passes, so that
+        // the routing order can be recovered from the records.
+        //
+        if (currentTime_ms != tick_ms) {
+            tick_ms = currentTime_ms;
+            pass = 0;
+        }
+    }
+
+    /**
+     * Starts recording a routing pass and provides the rings for its tasks. Each task
+     * must record only to its own ring.
+     *
+     * @param tasks the number of routing tasks
+     * @return the rings, one per task
+     */
+    List<Ring> beginPass(final int tasks) {
+        ++pass;
+        while (rings.size() < tasks) {
+            rings.add(new Ring());
+        }
+        for (int i = 0; i < tasks; ++i) {
+            rings.get(i).begin(tick_ms, pass);
+        }
+        return rings;
+    }
+
+    /**
+     * Spills every ring to the log and brings the header and dictionary up to date.
+     * This must not be invoked while messages are being routed.
+     */
+    void flush() {
+        for (Ring ring : rings) {
+            ring.spill();
+        }
+        log.putLong(WRITTEN_OFFSET, written.get());
+        if (dictionaryChanged) {
+            writeDictionary();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        flush();
+        log.force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new SSTAFException("Could not close flight recorder log " + file, e);
+        }
+        logger.info("Recorded {} messages to {}", written.get(), file);
+    }
+
+    private int getContentType(final Message message) {
+        if (message.getContent() == null) {
+            return 0;
+        }
+        Class<?> type = message.getContent().getClass();
+        Integer id = contentTypes.get(type);
+        if (id == null) {
+            id = contentTypes.computeIfAbsent(type, t -> {
+                dictionaryChanged = true;
+                return nextContentType.getAndIncrement();
+            });
+        }
+        return id;
+    }
+
+    private static long getEntityId(final Address address) {
+        if (address == null) {
+            return NO_ENTITY;
+        } else if (address.equals(Address.CLIENT)) {
+            return CLIENT;
+        } else if (address.equals(Address.NOWHERE)) {
+            return NOWHERE;
+        } else if (address.entityHandle == null) {
+            return NO_ENTITY;
+        }
+        return address.entityHandle.getId();
+    }
+
+    private static byte getKind(final Message message) {
+        if (message instanceof ErrorResponse) {
+            return ERROR;
+        } else if (message instanceof MessageResponse) {
+            return RESPONSE;
+        } else if (message instanceof EntityEvent) {
+            return EVENT;
+        } else if (message instanceof EntityAction) {
+            return ACTION;
+        }
+        return OTHER;
+    }
+
+    private void writeDictionary() {
+        dictionaryChanged = false;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            Map<Long, String> paths = Map.copyOf(entityPaths);
+            out.writeInt(paths.size());
+            for (Map.Entry<Long, String> entry : paths.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+            Map<Class<?>, Integer> types = Map.copyOf(contentTypes);
+            out.writeInt(types.size());
+            for (Map.Entry<Class<?>, Integer> entry : types.entrySet()) {
+                out.writeInt(entry.getValue());
+                out.writeUTF(entry.getKey().getName());
+            }
+        } catch (IOException e) {
+            throw new SSTAFException("Could not build flight recorder dictionary", e);
+        }
+        try {
+            channel.write(ByteBuffer.wrap(bytes.toByteArray()), dictionaryOffset);
+            channel.truncate(dictionaryOffset + bytes.size());
+        } catch (IOException e) {
+            throw new SSTAFException("Could not write flight recorder dictionary to " + file, e);
+        }
+        log.putInt(DICTIONARY_LENGTH_OFFSET, bytes.size());
+    }
+
+    /**
+     * The records of one routing task. A ring is written by a single thread at a time
+     * and spilled to the log when it fills.
+     */
+    final class Ring {
+        private final long[] records = new long[RING_SIZE * LONGS_PER_RECORD];
+        private int count = 0;
+        private long ringTick_ms;
+        private int ringPass;
+
+        private void begin(final long tick_ms, final int pass) {
+            this.ringTick_ms = tick_ms;
+            this.ringPass = pass;
+        }
+
+        /**
+         * Records a routed message.
+         *
+         * @param message the message
+         * @param order   the position of the message in the routing order
+         * @param outcome the outcome of routing
+         */
+        void record(final Message message, final long order, final byte outcome) {
+            if (count == RING_SIZE) {
+                spill();
+            }
+            int i = count++ * LONGS_PER_RECORD;
+            records[i] = ringTick_ms;
+            records[i + 1] = message.getSequenceNumber();
+            records[i + 2] = message instanceof EntityEvent
+                    ? ((EntityEvent) message).getEventTime_ms() : Long.MIN_VALUE;
+            records[i + 3] = getEntityId(message.getSource());
+            records[i + 4] = getEntityId(message.getDestination());
+            records[i + 5] = order;
+            records[i + 6] = ((long) getContentType(message) << 32) | ((long) (ringPass & 0xffff) << 16)
+                    | ((getKind(message) & 0xff) << 8) | (outcome & 0xff);
+        }
+
+        private void spill() {
+            if (count == 0) {
+                return;
+            }
+            long first = written.getAndAdd(count);
+            for (int r = 0; r < count; ++r) {
+                int i = r * LONGS_PER_RECORD;
+                int position = (int) (HEADER_SIZE + ((first + r) % capacity) * RECORD_SIZE);
+                log.putLong(position, records[i]);
+                log.putLong(position + 8, records[i + 1]);
+                log.putLong(position + 16, records[i + 2]);
+                log.putLong(position + 24, records[i + 3]);
+                log.putLong(position + 32, records[i + 4]);
+                log.putLong(position + 40, records[i + 5]);
+                log.putInt(position + 48, (int) (records[i + 6] >>> 32));
+                log.putShort(position + 52, (short) (records[i + 6] >>> 16));
+                log.put(position + 54, (byte) (records[i + 6] >>> 8));
+                log.put(position + 55, (byte) records[i + 6]);
+            }
+            count = 0;
+        }
+    }
+}
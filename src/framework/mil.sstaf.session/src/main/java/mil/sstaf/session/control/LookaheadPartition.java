@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.jackson.Jacksonized;
+import mil.sstaf.core.entity.Entity;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A group of entities that is advanced as a unit by the {@code CONSERVATIVE} and
+ * {@code OPTIMISTIC} dispatch modes.
+ * <p>
+ * The members are given as force paths, such as {@code BLUE:Alpha}. A member includes the
+ * {@code Entity} with that path and every {@code Entity} below it. Entities that are not
+ * members of any partition are placed in a default partition with no lookahead.
+ * <p>
+ * The lookahead is a promise about the messages that the members send to entities in other
+ * partitions: every such message is an {@code EntityEvent} dated at least
+ * {@code lookahead_ms} after the time at which it was sent. Immediate messages count as
+ * events with no delay, so a partition that sends them to other partitions must have a
+ * lookahead of zero. Messages within a partition are not restricted. A message that breaks
+ * the promise stops the tick with an {@code SSTAFException}, since the other partitions
+ * may already have advanced past it.
+ * <p>
+ * The {@code OPTIMISTIC} mode ignores the lookahead, since it rolls a partition back
+ * instead of holding it.
+ */
+@Getter
+@ToString
+public final class LookaheadPartition {
+
+    private final String name;
+    private final List<String> members;
+    private final long lookahead_ms;
+
+    /**
+     * Constructor
+     *
+     * @param name         the name of the partition
+     * @param members      the force paths of the member entities
+     * @param lookahead_ms the minimum delay of the messages sent to other partitions
+     */
+    @Builder
+    @Jacksonized
+    private LookaheadPartition(final String name, final List<String> members, final long lookahead_ms) {
+        this.name = Objects.requireNonNull(name, "name");
+        this.members = members == null ? List.of() : List.copyOf(members);
+        if (lookahead_ms < 0) {
+            throw new IllegalArgumentException("Partition " + name + " has a negative lookahead");
+        }
+        this.lookahead_ms = lookahead_ms;
+    }
+
+    /**
+     * Reports whether an {@code Entity} is a member of this partition.
+     *
+     * @param entity the {@code Entity}
+     * @return true if the {@code Entity} or one of its parents is listed as a member
+     */
+    boolean contains(final Entity entity) {
+        String path = entity.getHandle().getForcePath();
+        for (String member : members) {
+            if (path.equals(member) || path.startsWith(member + Entity.ENTITY_PATH_DELIMITER)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import mil.sstaf.core.entity.*;
+import mil.sstaf.core.util.SSTAFException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Moves messages from the outbound queues of all entities to the inbound queues of their
+ * destinations.
+ * <p>
+ * Routing is done in three steps:
+ * <ol>
+ * <li>
+ *     The sources are split into ranges that are drained concurrently. Each message is
+ *     stamped with the rank of its source and its position in that source's queue and is
+ *     appended to the multi-producer, single-consumer inbox of its destination.
+ * </li>
+ * <li>
+ *     The destinations are sharded. Each shard is drained by a single task, so each
+ *     destination has exactly one writer. Every inbox is sorted using the
+ *     {@code MessageQueueComparator}, with ties broken by the source rank and position,
+ *     before the messages are handed to {@code receive()}. The order of delivery is
+ *     therefore the same no matter how the sources were interleaved.
+ * </li>
+ * <li>
+ *     The delivered messages are reported to a callback on the calling thread, so that
+ *     state that is not thread-safe, such as the {@code EventCalendar}, is updated serially.
+ * </li>
+ * </ol>
+ * Small scenarios are routed on the calling thread using the same steps, since the cost of
+ * handing off the work would exceed the cost of doing it.
+ * <p>
+ * The router must be driven from a single thread.
+ */
+final class MessageRouter {
+
+    /**
+     * Minimum number of sources before routing is spread across the executor.
+     */
+    static final int PARALLEL_THRESHOLD = 256;
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageRouter.class);
+
+    private static final MessageQueueComparator MESSAGE_ORDER = new MessageQueueComparator();
+
+    private static final Comparator<Envelope> DELIVERY_ORDER = (e1, e2) -> {
+        int c = MESSAGE_ORDER.compare(e1.message, e2.message);
+        return c != 0 ? c : Long.compare(e1.order, e2.order);
+    };
+
+    private final EntityRegistry registry;
+    private final Entity[] sources;
+    private final Map<Entity, Inbox> inboxes;
+    private final Inbox clientInbox;
+    private final List<List<Inbox>> shards;
+    private final int parallelism;
+    private final Queue<Envelope> unregistered = new ConcurrentLinkedQueue<>();
+
+    //
+    // Statistics for the current tick
+    //
+    private final LongAdder messageCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder clientCount = new LongAdder();
+    private long routingTime_ns = 0;
+    private int passes = 0;
+    private int parallelPasses = 0;
+
+    //
+    // Records every routed message when set.
+    //
+    private FlightRecorder recorder = null;
+
+    /**
+     * Constructor
+     *
+     * @param registry    the registry that holds all entities that send or receive messages
+     * @param client      the {@code Entity} that receives messages addressed to the client
+     * @param parallelism the number of workers available to route messages
+     */
+    MessageRouter(final EntityRegistry registry, final Entity client, final int parallelism) {
+        this.registry = Objects.requireNonNull(registry, "registry");
+        Objects.requireNonNull(client, "client");
+        this.parallelism = Math.max(1, parallelism);
+        this.sources = registry.getAllEntities().toArray(new Entity[0]);
+        this.inboxes = new IdentityHashMap<>(sources.length);
+        this.shards = new ArrayList<>(this.parallelism);
+        for (int i = 0; i < this.parallelism; ++i) {
+            shards.add(new ArrayList<>());
+        }
+        int index = 0;
+        for (Entity entity : sources) {
+            Inbox inbox = new Inbox(entity);
+            inboxes.put(entity, inbox);
+            shards.get(index++ % this.parallelism).add(inbox);
+        }
+        Inbox existing = inboxes.get(client);
+        if (existing == null) {
+            existing = new Inbox(client);
+            inboxes.put(client, existing);
+            shards.get(index % this.parallelism).add(existing);
+        }
+        this.clientInbox = existing;
+    }
+
+    /**
+     * Routes every message waiting in an outbound queue.
+     *
+     * @param executor    the {@code Executor} to use for parallel routing, or null to route on this thread
+     * @param onDelivered invoked on this thread for each message delivered to an {@code Entity}
+     *                    other than the client
+     */
+    void route(final Executor executor, final BiConsumer<Entity, Message> onDelivered) {
+        final long start = System.nanoTime();
+        final boolean parallel = executor != null && parallelism > 1 && sources.length >= PARALLEL_THRESHOLD;
+        final RoutePassEvent event = new RoutePassEvent();
+        final long messagesBefore = event.isEnabled() ? messageCount.sum() : 0;
+        final long droppedBefore = event.isEnabled() ? droppedCount.sum() : 0;
+        event.begin();
+
+        //
+        // Step 1 - drain the sources into the destination inboxes.
+        //
+        final int numRanges = parallel ? Math.min(sources.length, parallelism * 4) : 1;
+        final List<Runnable> drainTasks = new ArrayList<>(numRanges);
+        final List<FlightRecorder.Ring> rings = recorder == null ? null : recorder.beginPass(numRanges);
+        for (int r = 0; r < numRanges; ++r) {
+            final int begin = (int) ((long) sources.length * r / numRanges);
+            final int end = (int) ((long) sources.length * (r + 1) / numRanges);
+            final FlightRecorder.Ring ring = rings == null ? null : rings.get(r);
+            drainTasks.add(() -> drainSources(begin, end, ring));
+        }
+        runAll(drainTasks, parallel ? executor : null);
+
+        //
+        // Step 2 - deliver, one writer per destination.
+        //
+        final List<Runnable> deliverTasks = new ArrayList<>(shards.size());
+        for (List<Inbox> shard : shards) {
+            deliverTasks.add(() -> deliverShard(shard));
+        }
+        runAll(deliverTasks, parallel ? executor : null);
+
+        //
+        // Step 3 - report deliveries serially.
+        //
+        for (List<Inbox> shard : shards) {
+            for (Inbox inbox : shard) {
+                if (!inbox.delivered.isEmpty()) {
+                    if (inbox != clientInbox) {
+                        for (Message message : inbox.delivered) {
+                            onDelivered.accept(inbox.entity, message);
+                        }
+                    }
+                    inbox.delivered.clear();
+                }
+            }
+        }
+        deliverUnregistered(onDelivered);
+
+        if (event.shouldCommit()) {
+            event.messageCount = messageCount.sum() - messagesBefore;
+            event.droppedCount = droppedCount.sum() - droppedBefore;
+            event.parallel = parallel;
+            event.commit();
+        }
+
+        routingTime_ns += System.nanoTime() - start;
+        ++passes;
+        if (parallel) {
+            ++parallelPasses;
+        }
+    }
+
+    /**
+     * Sets the {@code FlightRecorder} that records every routed message.
+     *
+     * @param recorder the recorder, or null to stop recording
+     */
+    void setRecorder(final FlightRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Clears the statistics at the start of a tick.
+     */
+    void resetStatistics() {
+        messageCount.reset();
+        droppedCount.reset();
+        clientCount.reset();
+        routingTime_ns = 0;
+        passes = 0;
+        parallelPasses = 0;
+    }
+
+    /**
+     * Provides the statistics gathered since the last reset.
+     *
+     * @return the routing statistics
+     */
+    RoutingStatistics getStatistics() {
+        return RoutingStatistics.builder()
+                .messageCount(messageCount.sum())
+                .droppedCount(droppedCount.sum())
+                .clientCount(clientCount.sum())
+                .routingTime_ns(routingTime_ns)
+                .passes(passes)
+                .parallelPasses(parallelPasses)
+                .build();
+    }
+
+    private void drainSources(final int begin, final int end, final FlightRecorder.Ring ring) {
+        long count = 0;
+        long dropped = 0;
+        long toClient = 0;
+        for (int rank = begin; rank < end; ++rank) {
+            final Entity source = sources[rank];
+            final List<Message> messages;
+            try {
+                messages = source.takeOutbound();
+            } catch (Exception e) {
+                logger.error("Could not take outbound messages from {}", source.getName(), e);
+                continue;
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Routing messages from {}, got {} messages to route", source.getName(), messages.size());
+            }
+            for (int position = 0; position < messages.size(); ++position) {
+                final Message message = messages.get(position);
+                final long order = ((long) rank << 32) | position;
+                ++count;
+                if (message == null) {
+                    logger.warn("Message is null");
+                    ++dropped;
+                } else if (message.getDestination() == null) {
+                    logger.warn("Message destination is null, source = {}, content = {}", message.getSource(), message.getContent());
+                    ++dropped;
+                    if (ring != null) {
+                        ring.record(message, order, FlightRecorder.DROPPED);
+                    }
+                } else if (message.getDestination().equals(Address.NOWHERE)) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Dropping message from {} to NOWHERE, contents = {}", message.getSource(), message.getContent().getClass());
+                    }
+                    ++dropped;
+                    if (ring != null) {
+                        ring.record(message, order, FlightRecorder.DROPPED);
+                    }
+                } else {
+                    if (message.getDestination().equals(Address.CLIENT)) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Routing from {} to the client, contents = {}", message.getSource(), message.getContent().getClass());
+                        }
+                        clientInbox.queue.offer(new Envelope(message, order));
+                        ++toClient;
+                        if (ring != null) {
+                            ring.record(message, order, FlightRecorder.TO_CLIENT);
+                        }
+                    } else {
+                        Entity destination = registry.getEntityByHandle(message.getDestination().entityHandle).orElse(null);
+                        if (destination == null) {
+                            ++dropped;
+                            if (ring != null) {
+                                ring.record(message, order, FlightRecorder.DROPPED);
+                            }
+                        } else {
+                            if (ring != null) {
+                                ring.record(message, order, destination == clientInbox.entity
+                                        ? FlightRecorder.TO_CLIENT : FlightRecorder.DELIVERED);
+                            }
+                            if (logger.isDebugEnabled()) {
+                                logger.debug("Routing from {} to {}, contents = {}", message.getSource(), destination.getName(), message.getContent().getClass());
+                            }
+                            Inbox inbox = inboxes.get(destination);
+                            if (inbox == null) {
+                                unregistered.offer(new Envelope(message, order));
+                            } else {
+                                inbox.queue.offer(new Envelope(message, order));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        messageCount.add(count);
+        droppedCount.add(dropped);
+        clientCount.add(toClient);
+    }
+
+    private static void deliverShard(final List<Inbox> shard) {
+        List<Envelope> pending = new ArrayList<>();
+        for (Inbox inbox : shard) {
+            Envelope envelope;
+            while ((envelope = inbox.queue.poll()) != null) {
+                pending.add(envelope);
+            }
+            if (!pending.isEmpty()) {
+                pending.sort(DELIVERY_ORDER);
+                for (Envelope e : pending) {
+                    try {
+                        inbox.entity.receive(e.message);
+                        inbox.delivered.add(e.message);
+                    } catch (Exception ex) {
+                        logger.error("Could not deliver message to {}", inbox.entity.getName(), ex);
+                    }
+                }
+                pending.clear();
+            }
+        }
+    }
+
+    /**
+     * Delivers messages to entities that were not known when the router was created.
+     * These are rare, so they are handled serially.
+     */
+    private void deliverUnregistered(final BiConsumer<Entity, Message> onDelivered) {
+        if (unregistered.isEmpty()) {
+            return;
+        }
+        List<Envelope> pending = new ArrayList<>(unregistered);
+        unregistered.clear();
+        pending.sort(DELIVERY_ORDER);
+        for (Envelope e : pending) {
+            registry.getEntityByHandle(e.message.getDestination().entityHandle).ifPresent(destination -> {
+                destination.receive(e.message);
+                onDelivered.accept(destination, e.message);
+            });
+        }
+    }
+
+    private static void runAll(final List<Runnable> tasks, final Executor executor) {
+        if (executor == null || tasks.size() == 1) {
+            tasks.forEach(Runnable::run);
+            return;
+        }
+        final CountDownLatch latch = new CountDownLatch(tasks.size());
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        for (Runnable task : tasks) {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SSTAFException("Interrupted while routing messages", e);
+        }
+        //
+        // A failed task leaves messages undelivered, so the routing pass fails.
+        //
+        if (failure.get() != null) {
+            throw new SSTAFException("Routing messages failed", failure.get());
+        }
+    }
+
+    /**
+     * A message with its position in the serial routing order.
+     */
+    private static final class Envelope {
+        final Message message;
+        final long order;
+
+        Envelope(Message message, long order) {
+            this.message = message;
+            this.order = order;
+        }
+    }
+
+    /**
+     * The messages waiting for one destination. Any number of threads may offer
+     * to the queue, only the shard that owns the inbox drains it.
+     */
+    private static final class Inbox {
+        final Entity entity;
+        final Queue<Envelope> queue = new ConcurrentLinkedQueue<>();
+        final List<Message> delivered = new ArrayList<>();
+
+        Inbox(Entity entity) {
+            this.entity = entity;
+        }
+    }
+}
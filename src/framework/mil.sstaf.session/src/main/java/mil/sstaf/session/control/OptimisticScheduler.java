@@ -0,0 +1,622 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import mil.sstaf.core.entity.*;
+import mil.sstaf.core.features.SnapshotContext;
+import mil.sstaf.core.util.SSTAFException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * Advances groups of entities through their events speculatively, rolling a group back
+ * when a message arrives for a time it has already passed, while producing exactly the
+ * results of advancing the whole simulation from event to event.
+ * <p>
+ * The scheduler requires that every message between simulation entities is an
+ * {@code EntityEvent} dated after the step that sends it. An {@code Entity} then steps
+ * exactly at the times of its own events, and what it does depends only on the events it
+ * receives, not on the steps of other entities. Each {@code LookaheadPartition} can
+ * therefore run ahead on its own {@code EventCalendar} and be corrected later.
+ * <p>
+ * The scheduler runs in rounds. In each round every partition executes the steps it has
+ * booked before the bound, on its own thread, and delivers the messages within the
+ * partition as it goes. At the end of the round each partition that stepped takes a
+ * checkpoint of its members through {@code Entity.snapshot()}, and the messages between
+ * partitions are delivered. A message for a time the receiving partition has already
+ * passed is a straggler: the partition is restored to its latest checkpoint before that
+ * time and the messages it sent at or after that time are cancelled, which may in turn
+ * roll back the partitions that received them. The steps between the checkpoint and the
+ * straggler are executed again, but since they have the same inputs as before, the
+ * messages they send are not sent a second time.
+ * <p>
+ * At the start of every round the scheduler computes the global virtual time, the earliest
+ * time at which any partition can still send a message, and discards the checkpoints and
+ * records that no rollback can reach. The run ends once no partition has a step booked
+ * before the end time. The bound of a round is the end time or, if an optimism window is
+ * set, the window past the global virtual time, whichever comes first.
+ * <p>
+ * The scheduler is driven by the {@code EntityController} between ticks and only while no
+ * {@code Entity} has {@code Agent}s, since those run on every global step. Features that are
+ * not {@code Snapshottable} cannot be rolled back and stop the tick with an
+ * {@code SSTAFException}.
+ */
+final class OptimisticScheduler extends RunAheadScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(OptimisticScheduler.class);
+
+    private final List<Partition> partitions = new ArrayList<>();
+    private final Map<Entity, Partition> membership = new IdentityHashMap<>();
+    private final long window_ms;
+    private final Supplier<SnapshotContext> contextSupplier;
+    private long rollbackCount;
+
+    /**
+     * Constructor
+     *
+     * @param registry        the registry used to find the destinations of messages
+     * @param entities        the simulation entities
+     * @param specs           the partitions, an {@code Entity} belongs to the first that lists it
+     * @param window_ms       how far past the global virtual time a partition may run, or
+     *                        zero for no limit
+     * @param contextSupplier provides the {@code SnapshotContext} for the checkpoints of a run
+     */
+    OptimisticScheduler(final EntityRegistry registry, final Collection<? extends Entity> entities,
+                        final List<LookaheadPartition> specs, final long window_ms,
+                        final Supplier<SnapshotContext> contextSupplier) {
+        super(registry);
+        if (window_ms < 0) {
+            throw new IllegalArgumentException("Optimism window must not be negative");
+        }
+        this.window_ms = window_ms;
+        this.contextSupplier = Objects.requireNonNull(contextSupplier, "contextSupplier");
+        for (Map.Entry<LookaheadPartition, List<Entity>> entry : assign(entities, specs).entrySet()) {
+            Partition partition = new Partition(entry.getKey().getName());
+            partition.members.addAll(entry.getValue());
+            entry.getValue().forEach(entity -> membership.put(entity, partition));
+            partitions.add(partition);
+        }
+        if (logger.isInfoEnabled()) {
+            for (Partition partition : partitions) {
+                logger.info("Partition {} has {} entities", partition.name, partition.members.size());
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int getPartitionCount() {
+        return partitions.size();
+    }
+
+    /**
+     * Provides the number of rollbacks since the scheduler was created.
+     *
+     * @return the number of rollbacks
+     */
+    long getRollbackCount() {
+        return rollbackCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Messages between simulation entities must be events dated after the tick, as they
+     * must be in a run.
+     */
+    @Override
+    void checkDelivery(final Entity destination, final Message message, final long currentTime_ms) {
+        if (message.getSource() == null || message.getSource().entityHandle == null
+                || !membership.containsKey(destination)) {
+            return;
+        }
+        Entity source = registry.getEntityByHandle(message.getSource().entityHandle).orElse(null);
+        if (source != null && membership.containsKey(source)) {
+            checkDated(message, destination, currentTime_ms);
+        }
+    }
+
+    /**
+     * Rejects a message between simulation entities unless it is an event dated after
+     * the step that sends it.
+     *
+     * @param message        the message
+     * @param target         the receiving {@code Entity}
+     * @param currentTime_ms the time of the step
+     */
+    private static void checkDated(final Message message, final Entity target, final long currentTime_ms) {
+        if (!(message instanceof EntityEvent) || ((EntityEvent) message).getEventTime_ms() <= currentTime_ms) {
+            throw new SSTAFException("Message from " + message.getSource() + " to " + target.getName()
+                    + " at " + currentTime_ms + " cannot be delivered in OPTIMISTIC mode, only events"
+                    + " dated after the step that sends them are allowed");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Every step is dated after the last tick, so the run cannot start while a message
+     * is waiting for the next global step.
+     */
+    @Override
+    boolean canRun(final EventCalendar calendar, final long from_ms) {
+        return !calendar.hasImmediate() && calendar.getEarliestBooking() > from_ms;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Outcome run(final EventCalendar calendar, final long from_ms, final long end_ms,
+                final ExecutorService executor) {
+        SnapshotContext context = contextSupplier.get();
+        for (Partition partition : partitions) {
+            partition.begin(calendar.extract(partition.members), from_ms, context);
+        }
+        long initialRollbacks = rollbackCount;
+        int rounds = 0;
+        try {
+            while (true) {
+                long next_ms = Long.MAX_VALUE;
+                long gvt_ms = Long.MAX_VALUE;
+                for (Partition partition : partitions) {
+                    next_ms = Math.min(next_ms, partition.calendar.getEarliestBooking());
+                    gvt_ms = Math.min(gvt_ms, partition.getEarliestSend());
+                }
+                if (next_ms >= end_ms) {
+                    break;
+                }
+                for (Partition partition : partitions) {
+                    partition.collectFossils(gvt_ms);
+                }
+
+                final long bound_ms = window_ms > 0 ? Math.min(end_ms, saturatedAdd(gvt_ms, window_ms)) : end_ms;
+                List<Callable<Void>> tasks = new ArrayList<>();
+                for (Partition partition : partitions) {
+                    if (partition.calendar.getEarliestBooking() < bound_ms) {
+                        tasks.add(() -> {
+                            partition.advance(bound_ms, registry, membership, context);
+                            return null;
+                        });
+                    }
+                }
+                runAll(tasks, executor);
+                ++rounds;
+
+                //
+                // Deliver in a fixed order. A rollback cancels the transfers that have not
+                // been delivered yet as well as those that have.
+                //
+                List<Transfer> transfers = new ArrayList<>();
+                for (Partition partition : partitions) {
+                    transfers.addAll(partition.outgoing);
+                    partition.outgoing.clear();
+                }
+                for (Transfer transfer : transfers) {
+                    if (!transfer.cancelled) {
+                        deliver(transfer, context);
+                    }
+                }
+            }
+        } finally {
+            for (Partition partition : partitions) {
+                partition.finish();
+                calendar.merge(partition.calendar);
+            }
+        }
+
+        TreeSet<Long> executed = new TreeSet<>();
+        TreeMap<Long, List<Message>> toClient = new TreeMap<>();
+        for (Partition partition : partitions) {
+            executed.addAll(partition.executed);
+            for (Map.Entry<Long, List<Message>> entry : partition.toClient.entrySet()) {
+                toClient.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).addAll(entry.getValue());
+            }
+            partition.executed.clear();
+            partition.toClient.clear();
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Executed {} steps between {} and {} in {} rounds with {} rollbacks", executed.size(),
+                    from_ms, end_ms, rounds, rollbackCount - initialRollbacks);
+        }
+
+        List<Message> messages = orderForClient(toClient);
+        long last_ms = executed.isEmpty() ? from_ms : Math.max(from_ms, executed.last());
+        return new Outcome(last_ms, executed.size(), messages);
+    }
+
+    /**
+     * Delivers a message from another partition, first rolling the receiver back if it
+     * has already passed the arrival time.
+     *
+     * @param transfer the message
+     * @param context  the {@code SnapshotContext}
+     */
+    private void deliver(final Transfer transfer, final SnapshotContext context) {
+        Partition receiver = transfer.receiver;
+        long arrival_ms = transfer.getArrival_ms();
+        if (arrival_ms < receiver.replayUntil_ms) {
+            discard(receiver, arrival_ms, null, context);
+        }
+        transfer.destination.receive(transfer.message);
+        receiver.calendar.onDelivered(transfer.destination, transfer.message);
+        transfer.delivered = true;
+        receiver.received.add(new Reception(transfer, receiver.getLatestCheckpoint().sequence));
+    }
+
+    /**
+     * Discards everything a partition has done at or after the specified time.
+     * <p>
+     * If the partition has already stepped at that time, it is restored to its latest
+     * checkpoint before it. The steps, messages to the client and transfers recorded from
+     * that time on are dropped, and the transfers that were delivered are removed from
+     * their receivers in turn.
+     *
+     * @param partition the partition
+     * @param time_ms   the earliest time to discard
+     * @param excluded  a transfer to the partition that has been cancelled, or null
+     * @param context   the {@code SnapshotContext}
+     */
+    private void discard(final Partition partition, final long time_ms, final Transfer excluded,
+                         final SnapshotContext context) {
+        if (time_ms <= partition.clock_ms) {
+            partition.rollback(time_ms, excluded, context);
+            ++rollbackCount;
+        } else if (excluded != null) {
+            partition.withdraw(excluded);
+        }
+        partition.replayUntil_ms = Math.min(partition.replayUntil_ms, time_ms);
+        partition.executed.tailSet(time_ms, true).clear();
+        partition.toClient.tailMap(time_ms, true).clear();
+
+        List<Transfer> retracted = new ArrayList<>();
+        Iterator<Transfer> it = partition.sent.iterator();
+        while (it.hasNext()) {
+            Transfer transfer = it.next();
+            if (transfer.sent_ms >= time_ms) {
+                it.remove();
+                transfer.cancelled = true;
+                if (transfer.delivered) {
+                    retracted.add(transfer);
+                }
+            }
+        }
+        for (Transfer transfer : retracted) {
+            discard(transfer.receiver, transfer.getArrival_ms(), transfer, context);
+        }
+    }
+
+    /**
+     * A message sent from one partition to another.
+     */
+    private static final class Transfer {
+        final long sent_ms;
+        final Entity destination;
+        final Partition receiver;
+        final Message message;
+        boolean delivered;
+        boolean cancelled;
+
+        Transfer(final long sent_ms, final Entity destination, final Partition receiver, final Message message) {
+            this.sent_ms = sent_ms;
+            this.destination = destination;
+            this.receiver = receiver;
+            this.message = message;
+        }
+
+        long getArrival_ms() {
+            return ((EntityEvent) message).getEventTime_ms();
+        }
+    }
+
+    /**
+     * The delivery of a {@code Transfer}, tagged with the checkpoint that was the latest
+     * when it was delivered. A rollback to that checkpoint or an earlier one delivers the
+     * message again.
+     */
+    private static final class Reception {
+        final Transfer transfer;
+        long sequence;
+
+        Reception(final Transfer transfer, final long sequence) {
+            this.transfer = transfer;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * The saved state of the members of a partition after its steps up to a time.
+     * The inbound messages are kept as they are, so that the restored messages are
+     * the same objects and keep their order.
+     */
+    private static final class Checkpoint {
+        final long clock_ms;
+        final long sequence;
+        final List<JsonNode> states;
+        final List<List<Message>> inbound;
+
+        Checkpoint(final long clock_ms, final long sequence, final List<JsonNode> states,
+                   final List<List<Message>> inbound) {
+            this.clock_ms = clock_ms;
+            this.sequence = sequence;
+            this.states = states;
+            this.inbound = inbound;
+        }
+    }
+
+    /**
+     * The entities of one {@code LookaheadPartition} and their progress through a run.
+     * A partition is only touched by one thread at a time.
+     */
+    private static final class Partition {
+        final String name;
+        final List<Entity> members = new ArrayList<>();
+        final TreeSet<Long> executed = new TreeSet<>();
+        final TreeMap<Long, List<Message>> toClient = new TreeMap<>();
+        final List<Transfer> outgoing = new ArrayList<>();
+        final List<Transfer> sent = new ArrayList<>();
+        final List<Reception> received = new ArrayList<>();
+        final List<Checkpoint> checkpoints = new ArrayList<>();
+        EventCalendar calendar;
+        long clock_ms;
+        //
+        // Steps before this time have been executed before, and the messages they sent
+        // to other partitions and to the client are still valid.
+        //
+        long replayUntil_ms;
+        long nextSequence;
+
+        Partition(final String name) {
+            this.name = name;
+        }
+
+        void begin(final EventCalendar calendar, final long from_ms, final SnapshotContext context) {
+            this.calendar = calendar;
+            this.clock_ms = from_ms;
+            this.replayUntil_ms = saturatedAdd(from_ms, 1);
+            finish();
+            executed.clear();
+            toClient.clear();
+            checkpoint(context);
+        }
+
+        /**
+         * Releases the records of a run.
+         */
+        void finish() {
+            outgoing.clear();
+            sent.clear();
+            received.clear();
+            checkpoints.clear();
+        }
+
+        Checkpoint getLatestCheckpoint() {
+            return checkpoints.get(checkpoints.size() - 1);
+        }
+
+        /**
+         * Provides the earliest time at which the partition can send a message that has
+         * not been sent before.
+         *
+         * @return the earliest send time
+         */
+        long getEarliestSend() {
+            return Math.max(calendar.getEarliestBooking(), replayUntil_ms);
+        }
+
+        /**
+         * Discards the checkpoints and records that no rollback can reach. Every message
+         * still to be sent arrives after the global virtual time, so only the latest
+         * checkpoint at or before it is needed.
+         *
+         * @param gvt_ms the global virtual time
+         */
+        void collectFossils(final long gvt_ms) {
+            int keep = 0;
+            for (int i = 0; i < checkpoints.size(); ++i) {
+                if (checkpoints.get(i).clock_ms <= gvt_ms) {
+                    keep = i;
+                }
+            }
+            checkpoints.subList(0, keep).clear();
+            long oldest = checkpoints.get(0).sequence;
+            sent.removeIf(transfer -> transfer.sent_ms <= gvt_ms);
+            received.removeIf(reception -> reception.sequence < oldest);
+        }
+
+        /**
+         * Saves the state of the members.
+         *
+         * @param context the {@code SnapshotContext}
+         */
+        void checkpoint(final SnapshotContext context) {
+            List<JsonNode> states = new ArrayList<>(members.size());
+            List<List<Message>> inbound = new ArrayList<>(members.size());
+            for (Entity entity : members) {
+                JsonNode state = entity.snapshot(context);
+                JsonNode unsaved = state.path("features").path("unsaved");
+                if (unsaved.size() > 0) {
+                    throw new SSTAFException("Entity " + entity.getName() + " cannot be rolled back, features "
+                            + unsaved + " are not Snapshottable");
+                }
+                List<Message> queued = entity.takeInbound();
+                queued.forEach(entity::receive);
+                states.add(state);
+                inbound.add(queued);
+            }
+            checkpoints.add(new Checkpoint(clock_ms, nextSequence++, states, inbound));
+        }
+
+        /**
+         * Restores the latest checkpoint before a time and delivers again the messages
+         * received since it was taken.
+         *
+         * @param time_ms  the time of the straggler
+         * @param excluded a cancelled transfer that must not be restored, or null
+         * @param context  the {@code SnapshotContext}
+         */
+        void rollback(final long time_ms, final Transfer excluded, final SnapshotContext context) {
+            int index = checkpoints.size() - 1;
+            while (index >= 0 && checkpoints.get(index).clock_ms >= time_ms) {
+                --index;
+            }
+            if (index < 0) {
+                throw new SSTAFException("Partition " + name + " has no checkpoint before " + time_ms);
+            }
+            Checkpoint target = checkpoints.get(index);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Rolling partition {} back from {} to {} for {}", name, clock_ms,
+                        target.clock_ms, time_ms);
+            }
+            for (int i = 0; i < members.size(); ++i) {
+                Entity entity = members.get(i);
+                entity.restore(target.states.get(i), context);
+                entity.takeInbound();
+                for (Message message : target.inbound.get(i)) {
+                    if (excluded == null || message != excluded.message) {
+                        entity.receive(message);
+                    }
+                }
+            }
+            checkpoints.subList(index + 1, checkpoints.size()).clear();
+            clock_ms = target.clock_ms;
+
+            Iterator<Reception> it = received.iterator();
+            while (it.hasNext()) {
+                Reception reception = it.next();
+                Transfer transfer = reception.transfer;
+                if (transfer == excluded) {
+                    it.remove();
+                } else if (reception.sequence >= target.sequence) {
+                    transfer.destination.receive(transfer.message);
+                    reception.sequence = target.sequence;
+                }
+            }
+            rebuildCalendar();
+        }
+
+        /**
+         * Removes a cancelled transfer that has not been processed yet.
+         *
+         * @param excluded the transfer
+         */
+        void withdraw(final Transfer excluded) {
+            received.removeIf(reception -> reception.transfer == excluded);
+            for (Message message : excluded.destination.takeInbound()) {
+                if (message != excluded.message) {
+                    excluded.destination.receive(message);
+                }
+            }
+            rebuildCalendar();
+        }
+
+        private void rebuildCalendar() {
+            calendar = new EventCalendar();
+            members.forEach(calendar::register);
+        }
+
+        /**
+         * Executes the steps of this partition before the bound and saves its state.
+         *
+         * @param bound_ms   the time before which steps may be executed
+         * @param registry   the registry used to find destinations
+         * @param membership the partition of every simulation {@code Entity}
+         * @param context    the {@code SnapshotContext}
+         */
+        void advance(final long bound_ms, final EntityRegistry registry,
+                     final Map<Entity, Partition> membership, final SnapshotContext context) {
+            boolean stepped = false;
+            long next_ms;
+            while ((next_ms = calendar.getEarliestBooking()) < bound_ms) {
+                step(next_ms, registry, membership);
+                stepped = true;
+            }
+            if (stepped) {
+                checkpoint(context);
+            }
+        }
+
+        private void step(final long currentTime_ms, final EntityRegistry registry,
+                          final Map<Entity, Partition> membership) {
+            boolean replay = currentTime_ms < replayUntil_ms;
+            List<Entity> due = calendar.takeDue(currentTime_ms);
+            for (Entity entity : due) {
+                try {
+                    calendar.schedule(entity, entity.processMessages(currentTime_ms));
+                } catch (RuntimeException e) {
+                    //
+                    // A failed step cannot be rolled back consistently, so the tick fails.
+                    //
+                    throw new SSTAFException("Partition " + name + " failed processing " + entity.getName()
+                            + " at " + currentTime_ms, e);
+                }
+            }
+            for (Entity entity : due) {
+                for (Message message : entity.takeOutbound()) {
+                    route(message, currentTime_ms, replay, registry, membership);
+                }
+            }
+            clock_ms = currentTime_ms;
+            replayUntil_ms = Math.max(replayUntil_ms, saturatedAdd(currentTime_ms, 1));
+            executed.add(currentTime_ms);
+        }
+
+        private void route(final Message message, final long currentTime_ms, final boolean replay,
+                           final EntityRegistry registry, final Map<Entity, Partition> membership) {
+            Address destination = message.getDestination();
+            if (destination == null || destination.equals(Address.NOWHERE)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Dropping message from {} to {}", message.getSource(), destination);
+                }
+                return;
+            }
+            if (destination.equals(Address.CLIENT)) {
+                if (!replay) {
+                    toClient.computeIfAbsent(currentTime_ms, k -> new ArrayList<>()).add(message);
+                }
+                return;
+            }
+            Entity target = registry.getEntityByHandle(destination.entityHandle).orElse(null);
+            if (target == null) {
+                return;
+            }
+            Partition receiver = membership.get(target);
+            if (receiver == null) {
+                throw new SSTAFException("Message from " + message.getSource() + " to " + target.getName()
+                        + " cannot be delivered in OPTIMISTIC mode, only simulation entities may be addressed");
+            }
+            checkDated(message, target, currentTime_ms);
+            if (receiver == this) {
+                target.receive(message);
+                calendar.onDelivered(target, message);
+            } else if (!replay) {
+                Transfer transfer = new Transfer(currentTime_ms, target, receiver, message);
+                sent.add(transfer);
+                outgoing.add(transfer);
+            }
+        }
+    }
+}
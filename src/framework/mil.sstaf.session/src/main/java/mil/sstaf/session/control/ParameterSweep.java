@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.Builder;
+import lombok.Getter;
+import mil.sstaf.core.util.SSTAFException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs a scenario at every point of an {@code ExperimentDesign}.
+ * <p>
+ * The scenario file is read and resolved once. For each run, the resolved tree is
+ * copied and the design point's values are written into the feature configurations it
+ * names, so no variant is ever written to disk. The variants are built and run on a
+ * pool of {@code parallelism} threads; only the runs in progress hold a scenario tree
+ * or a simulation in memory. See {@link BatchExecutor}.
+ * <p>
+ * Each point can be replicated. When a master seed is given, replication {@code r} of
+ * every point uses the same seed, derived as in {@code ReplicationRunner}, so that
+ * differences between points are not masked by differences between random streams.
+ * Without a master seed there is one replication per point and the scenario's own seed
+ * is used.
+ */
+@Getter
+public final class ParameterSweep {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParameterSweep.class);
+
+    private final Path scenarioFile;
+    private final ExperimentDesign design;
+    private final int replications;
+    private final Long masterSeed;
+    private final int parallelism;
+    private final int threadsPerRun;
+    private final SessionConfiguration sessionConfiguration;
+
+    /**
+     * Constructor
+     *
+     * @param scenarioFile         the base scenario
+     * @param design               the design points to run
+     * @param replications         the number of replications of each point, default one
+     * @param masterSeed           the seed from which replication seeds are derived, or null
+     * @param parallelism          the number of runs at once, or zero for one per processor
+     * @param threadsPerRun        the executor threads for each {@code EntityController}, or zero to
+     *                             use the value in the scenario
+     * @param sessionConfiguration the configuration for each {@code Session}, or null for the default
+     */
+    @Builder
+    private ParameterSweep(final Path scenarioFile, final ExperimentDesign design, final Integer replications,
+                           final Long masterSeed, final Integer parallelism, final Integer threadsPerRun,
+                           final SessionConfiguration sessionConfiguration) {
+        this.scenarioFile = Objects.requireNonNull(scenarioFile, "scenarioFile");
+        this.design = Objects.requireNonNull(design, "design");
+        this.replications = replications == null ? 1 : replications;
+        if (this.replications < 1) {
+            throw new IllegalArgumentException("replications must be at least 1");
+        }
+        if (this.replications > 1 && masterSeed == null) {
+            throw new IllegalArgumentException("A master seed is needed to replicate design points");
+        }
+        this.masterSeed = masterSeed;
+        this.parallelism = parallelism == null || parallelism < 1
+                ? Runtime.getRuntime().availableProcessors() : parallelism;
+        this.threadsPerRun = threadsPerRun == null ? 1 : Math.max(0, threadsPerRun);
+        this.sessionConfiguration = sessionConfiguration == null
+                ? SessionConfiguration.builder().build() : sessionConfiguration;
+    }
+
+    /**
+     * Runs the sweep and collects the results.
+     *
+     * @param outputs drives one run and extracts its outputs by name
+     * @return the summary
+     */
+    public SweepSummary run(final Function<Session, ? extends Map<String, ?>> outputs) {
+        return run(outputs, result -> {
+        });
+    }
+
+    /**
+     * Runs the sweep, passing each result to a listener as it finishes.
+     * <p>
+     * The {@code Session} passed to {@code outputs} is closed when the function returns.
+     * A run that throws is recorded with its exception and does not stop the others.
+     *
+     * @param outputs  drives one run and extracts its outputs by name
+     * @param listener receives each result, on the calling thread
+     * @return the summary
+     */
+    public SweepSummary run(final Function<Session, ? extends Map<String, ?>> outputs,
+                            final Consumer<SweepResult> listener) {
+        Objects.requireNonNull(outputs, "outputs");
+        Objects.requireNonNull(listener, "listener");
+
+        long start_ns = System.nanoTime();
+        ScenarioLoader.Scenario scenario = ScenarioLoader.read(scenarioFile);
+        long[] seeds = masterSeed == null ? null : ReplicationRunner.deriveSeeds(masterSeed, replications);
+        long runs = (long) design.size() * replications;
+        if (runs > Integer.MAX_VALUE) {
+            throw new SSTAFException("Sweep has too many runs: " + runs);
+        }
+
+        SweepSummary summary = new SweepSummary(design);
+        BatchExecutor.run((int) runs, parallelism, run -> {
+            DesignPoint point = design.get(run / replications);
+            int replication = run % replications;
+            Long seed = seeds == null ? null : seeds[replication];
+            return runPoint(scenario, point, replication, seed, outputs);
+        }, result -> {
+            summary.add(result);
+            listener.accept(result);
+        });
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Ran {} points of {} with {} replications in {} ms, {} failed", design.size(),
+                    scenarioFile, replications, (System.nanoTime() - start_ns) / 1_000_000,
+                    summary.getFailureCount());
+        }
+        return summary;
+    }
+
+    /**
+     * Builds and runs one design point.
+     */
+    private SweepResult runPoint(final ScenarioLoader.Scenario scenario, final DesignPoint point,
+                                 final int replication, final Long seed,
+                                 final Function<Session, ? extends Map<String, ?>> outputs) {
+        long start_ns = System.nanoTime();
+        SweepResult.SweepResultBuilder builder = SweepResult.builder()
+                .point(point)
+                .replication(replication)
+                .randomSeed(seed);
+        try (Session session = Session.of(sessionConfiguration,
+                ScenarioLoader.build(makeVariant(scenario, point, seed), 0))) {
+            builder.outputs(outputs.apply(session));
+        } catch (RuntimeException e) {
+            logger.warn("Design point {} replication {} failed", point.getIndex(), replication, e);
+            builder.error(e);
+        }
+        return builder.elapsedTime_ns(System.nanoTime() - start_ns).build();
+    }
+
+    /**
+     * Creates the scenario for a design point.
+     *
+     * @param scenario the base scenario, which is not modified
+     * @param point    the design point
+     * @param seed     the random seed, or null to keep the scenario's seed
+     * @return the variant
+     */
+    ScenarioLoader.Scenario makeVariant(final ScenarioLoader.Scenario scenario, final DesignPoint point,
+                                        final Long seed) {
+        ObjectNode root = scenario.root.deepCopy();
+        for (SweepParameter parameter : design.getParameters()) {
+            JsonNode value = point.getValues().get(parameter.getName());
+            if (apply(root, parameter, value) == 0) {
+                throw new SSTAFException("Parameter " + parameter.getName() + " does not match any configuration of '"
+                        + parameter.getFeatureName() + "'"
+                        + (parameter.getEntityName() == null ? "" : " in " + parameter.getEntityName()));
+            }
+        }
+        if (threadsPerRun > 0) {
+            root.put("executorThreads", threadsPerRun);
+        }
+        if (seed != null) {
+            root.put("randomSeed", seed);
+        }
+        return new ScenarioLoader.Scenario(scenario.path, root);
+    }
+
+    /**
+     * Writes a parameter value into every matching configuration beneath a node.
+     *
+     * @return the number of configurations changed
+     */
+    private static int apply(final JsonNode node, final SweepParameter parameter, final JsonNode value) {
+        int applied = 0;
+        if (node.isObject()) {
+            JsonNode configurations = node.get("configurations");
+            if (configurations != null && configurations.isObject()
+                    && configurations.has(parameter.getFeatureName())
+                    && (parameter.getEntityName() == null
+                    || parameter.getEntityName().equals(node.path("name").asText(null)))) {
+                set((ObjectNode) configurations, parameter, value);
+                ++applied;
+            }
+        }
+        for (JsonNode child : node) {
+            applied += apply(child, parameter, value);
+        }
+        return applied;
+    }
+
+    private static void set(final ObjectNode configurations, final SweepParameter parameter,
+                            final JsonNode value) {
+        if (parameter.getPointer().isEmpty()) {
+            configurations.set(parameter.getFeatureName(), value.deepCopy());
+            return;
+        }
+        JsonPointer pointer = JsonPointer.compile(parameter.getPointer());
+        JsonNode parent = configurations.get(parameter.getFeatureName()).at(pointer.head());
+        JsonPointer last = pointer.last();
+        if (parent.isObject()) {
+            ((ObjectNode) parent).set(last.getMatchingProperty(), value.deepCopy());
+        } else if (parent.isArray() && last.mayMatchElement() && last.getMatchingIndex() < parent.size()) {
+            ((ArrayNode) parent).set(last.getMatchingIndex(), value.deepCopy());
+        } else {
+            throw new SSTAFException("Cannot set " + parameter.getPointer() + " in the configuration of '"
+                    + parameter.getFeatureName() + "'");
+        }
+    }
+}
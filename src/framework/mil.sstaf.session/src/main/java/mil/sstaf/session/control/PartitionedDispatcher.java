@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import mil.sstaf.core.entity.Entity;
+import mil.sstaf.core.util.SSTAFException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.Predicate;
+
+/**
+ * Executes a per-entity phase of a tick in cost-balanced chunks.
+ * <p>
+ * Rather than creating one task and one {@code Future} per {@code Entity}, the dispatcher
+ * groups consecutive entities into chunks whose summed cost, measured on earlier ticks,
+ * is roughly equal. Each chunk runs as a single task. The earliest next-event time is
+ * reduced with a {@code LongAccumulator} and the per-entity results are written into a
+ * caller-supplied array, so the caller only waits once for the whole phase.
+ * <p>
+ * If a blocking {@code Executor} is provided, entities selected by the blocking predicate
+ * are not placed in chunks. Each one runs as its own task on the blocking {@code Executor}
+ * so that a slow round trip to an external application does not hold up a chunk.
+ * <p>
+ * The dispatcher must be driven from a single thread. Cost estimates are updated by the
+ * worker that owns the chunk and read by the driving thread after the phase completes.
+ */
+final class PartitionedDispatcher {
+
+    /**
+     * Result recorded for an {@code Entity} whose processing threw an exception.
+     */
+    static final long FAILED = Long.MIN_VALUE;
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionedDispatcher.class);
+
+    /**
+     * Number of chunks per worker. A few chunks per worker lets fast workers pick up
+     * slack when the estimates are off.
+     */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    /**
+     * Weight given to the newest measurement in the exponentially-weighted cost average.
+     */
+    private static final double COST_WEIGHT = 0.25;
+
+    private final Executor executor;
+    private final int parallelism;
+    private final Executor blockingExecutor;
+    private final Predicate<Entity> isBlocking;
+    private final Map<Entity, CostEstimate> costs = new HashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param executor    the {@code Executor} that runs the chunks
+     * @param parallelism the number of workers available in the {@code Executor}
+     */
+    PartitionedDispatcher(final Executor executor, final int parallelism) {
+        this(executor, parallelism, null, entity -> false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param executor         the {@code Executor} that runs the chunks
+     * @param parallelism      the number of workers available in the {@code Executor}
+     * @param blockingExecutor the {@code Executor} that runs blocking entities, or null to chunk everything
+     * @param isBlocking       selects the entities that run on the blocking {@code Executor}
+     */
+    PartitionedDispatcher(final Executor executor, final int parallelism,
+                          final Executor blockingExecutor, final Predicate<Entity> isBlocking) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+        this.parallelism = Math.max(1, parallelism);
+        this.blockingExecutor = blockingExecutor;
+        this.isBlocking = Objects.requireNonNull(isBlocking, "isBlocking");
+    }
+
+    /**
+     * Runs the phase for every {@code Entity} in the list and waits for completion.
+     *
+     * @param entities       the entities to process
+     * @param phase          the work to perform for each {@code Entity}
+     * @param currentTime_ms the current simulation time
+     * @param after_ms       only results later than this time contribute to the minimum
+     * @param results        if not null, receives the result for each {@code Entity} at the same index
+     * @return the earliest result later than {@code after_ms}, or {@code Long.MAX_VALUE}
+     * @throws SSTAFException if the calling thread is interrupted while waiting for the chunks
+     */
+    long dispatch(final List<? extends Entity> entities, final Phase phase,
+                  final long currentTime_ms, final long after_ms, final long[] results) {
+        final LongAccumulator minTime = new LongAccumulator(Long::min, Long.MAX_VALUE);
+        if (entities.isEmpty()) {
+            return Long.MAX_VALUE;
+        }
+
+        final CostEstimate[] estimates = new CostEstimate[entities.size()];
+        final List<int[]> chunks = partition(entities, estimates);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Dispatching {} entities in {} chunks", entities.size(), chunks.size());
+        }
+
+        int numOffloaded = 0;
+        final int[] offloaded = new int[entities.size()];
+        if (blockingExecutor != null) {
+            for (int i = 0; i < entities.size(); ++i) {
+                if (isOffloaded(entities.get(i))) {
+                    offloaded[numOffloaded++] = i;
+                }
+            }
+        }
+
+        final boolean inline = chunks.size() == 1;
+        final CountDownLatch latch = new CountDownLatch((inline ? 0 : chunks.size()) + numOffloaded);
+        for (int j = 0; j < numOffloaded; ++j) {
+            final int index = offloaded[j];
+            blockingExecutor.execute(() -> {
+                try {
+                    runEntity(entities, estimates, index, phase, currentTime_ms, after_ms, results, minTime);
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        if (inline) {
+            runChunk(entities, estimates, 0, entities.size(), phase, currentTime_ms, after_ms, results, minTime);
+        } else {
+            for (int[] chunk : chunks) {
+                executor.execute(() -> {
+                    try {
+                        runChunk(entities, estimates, chunk[0], chunk[1], phase,
+                                currentTime_ms, after_ms, results, minTime);
+                    } finally {
+                        latch.countDown();
+                    }
+                });
+            }
+        }
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SSTAFException("Interrupted while waiting for chunks", e);
+        }
+        return minTime.get();
+    }
+
+    /**
+     * Splits the list into contiguous ranges of roughly equal estimated cost.
+     * Entities that run on the blocking {@code Executor} add nothing to the cost
+     * of the chunk that spans them.
+     *
+     * @param entities  the entities to split
+     * @param estimates receives the {@code CostEstimate} for each {@code Entity}
+     * @return a list of {@code [begin, end)} index pairs, empty if every {@code Entity} is offloaded
+     */
+    List<int[]> partition(final List<? extends Entity> entities, final CostEstimate[] estimates) {
+        double known = 0.0;
+        int numKnown = 0;
+        int numLocal = 0;
+        final boolean[] local = new boolean[entities.size()];
+        for (int i = 0; i < entities.size(); ++i) {
+            CostEstimate estimate = costs.computeIfAbsent(entities.get(i), e -> new CostEstimate());
+            estimates[i] = estimate;
+            if (!isOffloaded(entities.get(i))) {
+                local[i] = true;
+                ++numLocal;
+                if (estimate.cost_ns > 0) {
+                    known += estimate.cost_ns;
+                    ++numKnown;
+                }
+            }
+        }
+        if (numLocal == 0) {
+            return List.of();
+        }
+        //
+        // Entities that have never been measured are assumed to be average.
+        //
+        final double fallback = numKnown == 0 ? 1.0 : known / numKnown;
+        double total = 0.0;
+        for (int i = 0; i < estimates.length; ++i) {
+            if (local[i]) {
+                total += estimates[i].cost_ns > 0 ? estimates[i].cost_ns : fallback;
+            }
+        }
+
+        int numChunks = Math.min(numLocal, parallelism == 1 ? 1 : parallelism * CHUNKS_PER_WORKER);
+        double target = total / numChunks;
+
+        List<int[]> chunks = new ArrayList<>(numChunks);
+        int begin = 0;
+        double accumulated = 0.0;
+        for (int i = 0; i < estimates.length; ++i) {
+            if (!local[i]) {
+                continue;
+            }
+            accumulated += estimates[i].cost_ns > 0 ? estimates[i].cost_ns : fallback;
+            if (accumulated >= target && chunks.size() < numChunks - 1) {
+                chunks.add(new int[]{begin, i + 1});
+                begin = i + 1;
+                accumulated = 0.0;
+            }
+        }
+        if (begin < estimates.length) {
+            chunks.add(new int[]{begin, estimates.length});
+        }
+        return chunks;
+    }
+
+    private boolean isOffloaded(final Entity entity) {
+        return blockingExecutor != null && isBlocking.test(entity);
+    }
+
+    private void runChunk(final List<? extends Entity> entities, final CostEstimate[] estimates,
+                          final int begin, final int end, final Phase phase,
+                          final long currentTime_ms, final long after_ms,
+                          final long[] results, final LongAccumulator minTime) {
+        for (int i = begin; i < end; ++i) {
+            if (!isOffloaded(entities.get(i))) {
+                runEntity(entities, estimates, i, phase, currentTime_ms, after_ms, results, minTime);
+            }
+        }
+    }
+
+    private static void runEntity(final List<? extends Entity> entities, final CostEstimate[] estimates,
+                                  final int index, final Phase phase,
+                                  final long currentTime_ms, final long after_ms,
+                                  final long[] results, final LongAccumulator minTime) {
+        Entity entity = entities.get(index);
+        long start = System.nanoTime();
+        long result;
+        try {
+            result = phase.run(entity, currentTime_ms);
+            if (result > after_ms) {
+                minTime.accumulate(result);
+            }
+        } catch (Exception e) {
+            logger.error("Processing failed for {}", entity.getName(), e);
+            result = FAILED;
+        }
+        estimates[index].update(System.nanoTime() - start);
+        if (results != null) {
+            results[index] = result;
+        }
+    }
+
+    /**
+     * The work performed on each {@code Entity} during a phase.
+     */
+    interface Phase {
+        long run(Entity entity, long currentTime_ms);
+    }
+
+    /**
+     * Exponentially-weighted average of the time taken to process one {@code Entity}.
+     */
+    static final class CostEstimate {
+        double cost_ns = 0.0;
+
+        void update(long elapsed_ns) {
+            cost_ns = cost_ns == 0.0 ? elapsed_ns : cost_ns + COST_WEIGHT * (elapsed_ns - cost_ns);
+        }
+    }
+}
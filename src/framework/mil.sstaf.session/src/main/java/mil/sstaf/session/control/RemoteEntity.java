@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import lombok.experimental.SuperBuilder;
+import mil.sstaf.core.entity.BaseEntity;
+import mil.sstaf.core.entity.Force;
+import mil.sstaf.core.entity.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Stands in for an {@code Entity} that is hosted by another {@code Federate}.
+ * <p>
+ * The proxy is registered under the path of the remote {@code Entity}, so that local
+ * entities and the client can address it as usual. It never processes the messages it
+ * receives; they are held until the {@code Federate} forwards them at the next tick barrier.
+ */
+@SuperBuilder
+final class RemoteEntity extends BaseEntity {
+
+    //
+    // The path of the remote Entity, without the force.
+    //
+    private final String remotePath;
+
+    //
+    // The force of the remote Entity.
+    //
+    private final Force remoteForce;
+
+    //
+    // The rank of the Federate that hosts the remote Entity.
+    //
+    private final int rank;
+
+    private final Queue<Message> forwarded = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public String getPath() {
+        return remotePath;
+    }
+
+    /**
+     * Provides the force of the remote {@code Entity}.
+     *
+     * @return the {@code Force}
+     */
+    Force getRemoteForce() {
+        return remoteForce;
+    }
+
+    /**
+     * Provides the rank of the {@code Federate} that hosts the remote {@code Entity}.
+     *
+     * @return the rank
+     */
+    int getRank() {
+        return rank;
+    }
+
+    /**
+     * Holds a message for forwarding. The router may deliver from several threads.
+     *
+     * @param message the {@code Message}
+     */
+    @Override
+    public void receive(final Message message) {
+        forwarded.offer(message);
+    }
+
+    /**
+     * Removes the messages held for forwarding.
+     *
+     * @return the messages, in the order they were received
+     */
+    List<Message> drain() {
+        List<Message> messages = new ArrayList<>();
+        Message message;
+        while ((message = forwarded.poll()) != null) {
+            messages.add(message);
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The outcome of one replication run by a {@code ReplicationRunner}.
+ *
+ * @param <R> the type of the value produced by the replication
+ */
+@Builder
+@Getter
+@ToString
+public final class ReplicationResult<R> {
+
+    /**
+     * The position of the replication, from zero.
+     */
+    private final int index;
+
+    /**
+     * The random seed given to the {@code EntityController}.
+     */
+    private final long randomSeed;
+
+    /**
+     * The value produced by the replication, or null if it failed.
+     */
+    private final R value;
+
+    /**
+     * The exception that ended the replication, or null if it succeeded.
+     */
+    private final Throwable error;
+
+    /**
+     * Time spent building and running the replication, in nanoseconds.
+     */
+    private final long elapsedTime_ns;
+
+    /**
+     * Reports whether the replication completed.
+     *
+     * @return true if the replication produced a value
+     */
+    public boolean isSuccessful() {
+        return error == null;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import lombok.Builder;
+import lombok.Getter;
+import mil.sstaf.core.module.ModuleLayerCache;
+import mil.sstaf.core.module.ModuleLayerSupport;
+import mil.sstaf.core.util.RNGUtilities;
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs independent replications of a scenario concurrently within one JVM.
+ * <p>
+ * The scenario file is read and its references resolved once. Each replication then
+ * builds its own {@code EntityController} from the resolved tree, with a random seed
+ * derived from the master seed, and is handed to the caller inside a {@code Session}.
+ * Classes and the reference data that features cache are loaded by the first
+ * replications and reused by the rest. By default each replication defines its own
+ * module layers, so features that keep state in static fields do not share it between
+ * replications. With {@code shareModuleLayers} set, the replications of one run share
+ * their module layers through a {@code ModuleLayerCache} that is released when the
+ * run ends.
+ * <p>
+ * The seed of replication {@code i} depends only on the master seed and {@code i}, so
+ * a replication can be repeated on its own by building the scenario with that seed.
+ * <p>
+ * Replications run on a pool of {@code parallelism} threads. Each replication's
+ * {@code EntityController} is limited to {@code threadsPerReplication} threads, one by
+ * default, since the parallelism comes from running replications side by side. Only
+ * the replications that are running hold a simulation in memory. Results are passed
+ * to the consumer on the calling thread, in the order the replications finish. See
+ * {@link BatchExecutor}.
+ */
+@Getter
+public final class ReplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicationRunner.class);
+
+    private final Path scenarioFile;
+    private final int replications;
+    private final long masterSeed;
+    private final int parallelism;
+    private final int threadsPerReplication;
+    private final SessionConfiguration sessionConfiguration;
+    private final boolean shareModuleLayers;
+
+    /**
+     * Constructor
+     *
+     * @param scenarioFile          the scenario to replicate
+     * @param replications          the number of replications
+     * @param masterSeed            the seed from which the replication seeds are derived
+     * @param parallelism           the number of replications to run at once, or zero for one per processor
+     * @param threadsPerReplication the executor threads for each {@code EntityController}, or zero to
+     *                              use the value in the scenario
+     * @param sessionConfiguration  the configuration for each {@code Session}, or null for the default
+     * @param shareModuleLayers     whether the replications of a run share their module layers
+     */
+    @Builder
+    private ReplicationRunner(final Path scenarioFile, final int replications, final long masterSeed,
+                              final Integer parallelism, final Integer threadsPerReplication,
+                              final SessionConfiguration sessionConfiguration,
+                              final boolean shareModuleLayers) {
+        this.scenarioFile = Objects.requireNonNull(scenarioFile, "scenarioFile");
+        if (replications < 1) {
+            throw new IllegalArgumentException("replications must be at least 1");
+        }
+        this.replications = replications;
+        this.masterSeed = masterSeed;
+        this.parallelism = parallelism == null || parallelism < 1
+                ? Runtime.getRuntime().availableProcessors() : parallelism;
+        this.threadsPerReplication = threadsPerReplication == null ? 1 : Math.max(0, threadsPerReplication);
+        this.sessionConfiguration = sessionConfiguration == null
+                ? SessionConfiguration.builder().build() : sessionConfiguration;
+        this.shareModuleLayers = shareModuleLayers;
+    }
+
+    /**
+     * Derives the seeds for a set of replications from a master seed.
+     *
+     * @param masterSeed the master seed
+     * @param count      the number of seeds
+     * @return the seeds, in replication order
+     */
+    public static long[] deriveSeeds(final long masterSeed, final int count) {
+        RandomGenerator master = new MersenneTwister(masterSeed);
+        long[] seeds = new long[count];
+        for (int i = 0; i < count; ++i) {
+            seeds[i] = RNGUtilities.generateSubSeed(master);
+        }
+        return seeds;
+    }
+
+    /**
+     * Runs the replications.
+     * <p>
+     * The {@code Session} passed to {@code replication} is closed when the function
+     * returns. A replication that throws is reported to the consumer with its exception
+     * and does not stop the others.
+     *
+     * @param replication drives one replication and extracts its result
+     * @param consumer    receives the result of each replication as it finishes
+     * @param <R>         the type of the result
+     * @return the number of replications that failed
+     */
+    public <R> int run(final Function<Session, R> replication, final Consumer<ReplicationResult<R>> consumer) {
+        Objects.requireNonNull(replication, "replication");
+        Objects.requireNonNull(consumer, "consumer");
+
+        long start_ns = System.nanoTime();
+        ScenarioLoader.Scenario scenario = ScenarioLoader.read(scenarioFile);
+        ScenarioLoader.Scenario base = threadsPerReplication > 0
+                ? scenario.withProperty("executorThreads", IntNode.valueOf(threadsPerReplication))
+                : scenario;
+        long[] seeds = deriveSeeds(masterSeed, replications);
+        ModuleLayerCache layers = shareModuleLayers ? new ModuleLayerCache() : null;
+
+        AtomicInteger failures = new AtomicInteger();
+        BatchExecutor.run(replications, parallelism,
+                index -> runReplication(index, seeds[index],
+                        base.withProperty("randomSeed", LongNode.valueOf(seeds[index])), layers, replication),
+                result -> {
+                    if (!result.isSuccessful()) {
+                        failures.incrementAndGet();
+                    }
+                    consumer.accept(result);
+                });
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Ran {} replications of {} in {} ms, {} failed", replications, scenarioFile,
+                    (System.nanoTime() - start_ns) / 1_000_000, failures.get());
+        }
+        return failures.get();
+    }
+
+    /**
+     * Builds and runs one replication.
+     *
+     * @param index       the position of the replication
+     * @param seed        the seed for the {@code EntityController}
+     * @param scenario    the scenario, with the seed applied
+     * @param layers      the module layers shared by the run, or null
+     * @param replication drives the replication
+     * @param <R>         the type of the result
+     * @return the result
+     */
+    private <R> ReplicationResult<R> runReplication(final int index, final long seed,
+                                                    final ScenarioLoader.Scenario scenario,
+                                                    final ModuleLayerCache layers,
+                                                    final Function<Session, R> replication) {
+        long start_ns = System.nanoTime();
+        ReplicationResult.ReplicationResultBuilder<R> builder = ReplicationResult.<R>builder()
+                .index(index)
+                .randomSeed(seed);
+        try (Session session = Session.of(sessionConfiguration,
+                ModuleLayerSupport.withCache(layers, () -> ScenarioLoader.build(scenario, 0)))) {
+            builder.value(replication.apply(session));
+        } catch (RuntimeException e) {
+            logger.warn("Replication {} with seed {} failed", index, seed, e);
+            builder.error(e);
+        }
+        return builder.elapsedTime_ns(System.nanoTime() - start_ns).build();
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import jdk.jfr.*;
+
+/**
+ * JDK Flight Recorder event for one pass of the {@code MessageRouter}.
+ */
+@Name("mil.sstaf.RoutePass")
+@Label("Route Pass")
+@Category({"SSTAF", "Controller"})
+@Description("Delivery of every message waiting in an outbound queue")
+@StackTrace(false)
+final class RoutePassEvent extends Event {
+
+    @Label("Messages")
+    @Description("Number of messages routed")
+    long messageCount;
+
+    @Label("Dropped")
+    @Description("Number of messages without a valid destination")
+    long droppedCount;
+
+    @Label("Parallel")
+    boolean parallel;
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Message routing statistics for one tick.
+ */
+@Builder
+@Getter
+@ToString
+public final class RoutingStatistics {
+
+    /**
+     * Number of messages taken from outbound queues.
+     */
+    private final long messageCount;
+
+    /**
+     * Number of messages that were discarded, either because they were addressed to
+     * {@code NOWHERE} or because the destination could not be resolved.
+     */
+    private final long droppedCount;
+
+    /**
+     * Number of messages delivered to the client.
+     */
+    private final long clientCount;
+
+    /**
+     * Total time spent routing, in nanoseconds.
+     */
+    private final long routingTime_ns;
+
+    /**
+     * Number of routing passes made during the tick.
+     */
+    private final int passes;
+
+    /**
+     * Number of routing passes that were spread across the executor.
+     */
+    private final int parallelPasses;
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import mil.sstaf.core.entity.Entity;
+import mil.sstaf.core.entity.EntityRegistry;
+import mil.sstaf.core.entity.InboundQueue;
+import mil.sstaf.core.entity.Message;
+import mil.sstaf.core.util.SSTAFException;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Base for the schedulers that advance groups of entities through the events booked
+ * before a tick, instead of ticking at each of them in turn.
+ * <p>
+ * A run must produce the results of advancing the simulation from event to event: every
+ * {@code Entity} processes the same messages at the same times, and the client receives
+ * the same messages in the same order.
+ */
+abstract class RunAheadScheduler {
+
+    /**
+     * Name of the partition that holds the entities not listed in any {@code LookaheadPartition}.
+     */
+    static final String DEFAULT_PARTITION = "default";
+
+    protected final EntityRegistry registry;
+
+    /**
+     * Constructor
+     *
+     * @param registry the registry used to find the destinations of messages
+     */
+    protected RunAheadScheduler(final EntityRegistry registry) {
+        this.registry = Objects.requireNonNull(registry, "registry");
+    }
+
+    /**
+     * Executes every step before the end time.
+     * <p>
+     * The pending work of the entities is moved out of the calendar for the duration of
+     * the run and returned to it afterwards, whether or not the run succeeds.
+     *
+     * @param calendar the calendar of the {@code EntityController}
+     * @param from_ms  the time of the last tick
+     * @param end_ms   the time before which steps are executed
+     * @param executor the executor that runs the partitions
+     * @return the time of the last step and the messages to the client
+     */
+    abstract Outcome run(EventCalendar calendar, long from_ms, long end_ms, ExecutorService executor);
+
+    /**
+     * Reports whether a run can start from the current state of the calendar.
+     *
+     * @param calendar the calendar of the {@code EntityController}
+     * @param from_ms  the time of the last tick
+     * @return true if the run can start
+     */
+    boolean canRun(final EventCalendar calendar, final long from_ms) {
+        return true;
+    }
+
+    /**
+     * Checks a {@code Message} that the {@code EntityController} delivers in one of its own
+     * ticks, so that the rules of the scheduler hold whether or not the entities run ahead.
+     *
+     * @param destination    the receiving {@code Entity}
+     * @param message        the message
+     * @param currentTime_ms the time of the tick
+     * @throws SSTAFException if the message could not be delivered by a run
+     */
+    void checkDelivery(final Entity destination, final Message message, final long currentTime_ms) {
+    }
+
+    /**
+     * Provides the number of partitions that have members.
+     *
+     * @return the number of partitions
+     */
+    abstract int getPartitionCount();
+
+    /**
+     * Places each {@code Entity} in the first partition that lists it, or in a default
+     * partition with no lookahead. Partitions without members are left out.
+     *
+     * @param entities the simulation entities
+     * @param specs    the partitions, may be null
+     * @return the members of each partition, in the order of the specifications
+     */
+    static Map<LookaheadPartition, List<Entity>> assign(final Collection<? extends Entity> entities,
+                                                        final List<LookaheadPartition> specs) {
+        List<Entity> ordered = new ArrayList<>(entities);
+        ordered.sort(Comparator.comparingLong(Entity::getId));
+        LookaheadPartition fallback = LookaheadPartition.builder().name(DEFAULT_PARTITION).build();
+
+        Map<LookaheadPartition, List<Entity>> members = new LinkedHashMap<>();
+        for (Entity entity : ordered) {
+            LookaheadPartition spec = fallback;
+            if (specs != null) {
+                for (LookaheadPartition candidate : specs) {
+                    if (candidate.contains(entity)) {
+                        spec = candidate;
+                        break;
+                    }
+                }
+            }
+            members.computeIfAbsent(spec, s -> new ArrayList<>()).add(entity);
+        }
+        return members;
+    }
+
+    /**
+     * Puts the messages to the client in the order in which they would have been taken
+     * from the client's inbound queue at the end of each step.
+     *
+     * @param byStep the messages to the client, keyed by the time of the step that sent them
+     * @return the messages in order
+     */
+    static List<Message> orderForClient(final SortedMap<Long, List<Message>> byStep) {
+        List<Message> messages = new ArrayList<>();
+        for (List<Message> step : byStep.values()) {
+            InboundQueue queue = new InboundQueue();
+            queue.addAll(step);
+            messages.addAll(queue);
+        }
+        return messages;
+    }
+
+    /**
+     * Runs the tasks and waits for all of them. A single task runs on the calling thread.
+     *
+     * @param tasks    the tasks
+     * @param executor the executor
+     */
+    static void runAll(final List<Callable<Void>> tasks, final ExecutorService executor) {
+        if (tasks.size() == 1 || executor == null) {
+            for (Callable<Void> task : tasks) {
+                try {
+                    task.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new SSTAFException("Partition failed", e);
+                }
+            }
+            return;
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SSTAFException("Interrupted while advancing partitions", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SSTAFException("Partition failed", e.getCause());
+        }
+    }
+
+    static long saturatedAdd(final long a, final long b) {
+        long sum = a + b;
+        return ((a ^ sum) & (b ^ sum)) < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * The outcome of a run.
+     */
+    static final class Outcome {
+        final long lastStep_ms;
+        final int steps;
+        final List<Message> messagesToClient;
+
+        Outcome(final long lastStep_ms, final int steps, final List<Message> messagesToClient) {
+            this.lastStep_ms = lastStep_ms;
+            this.steps = steps;
+            this.messagesToClient = messagesToClient;
+        }
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMethod;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import mil.sstaf.core.entity.BaseEntity;
+import mil.sstaf.core.entity.Force;
+import mil.sstaf.core.entity.MessageDriven;
+import mil.sstaf.core.json.JsonLoader;
+import mil.sstaf.core.module.ModuleLayerCache;
+import mil.sstaf.core.module.ModuleLayerSupport;
+import mil.sstaf.core.util.SSTAFException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Builds an {@code EntityController} from a scenario file, constructing the top-level
+ * entities of each force concurrently.
+ * <p>
+ * The file is read and its references resolved on the calling thread. Each entry in the
+ * {@code entities} lists, typically a {@code Unit} and everything beneath it, is then
+ * deserialized as a separate task. Before the tasks start, every subtree is given a block
+ * of entity IDs sized by the number of entities it contains, in document order. Each
+ * entity therefore receives the ID, and the default random seed derived from it, that it
+ * would receive if the whole file were deserialized on one thread.
+ * <p>
+ * The controller properties are read through the same builder metadata that Jackson uses
+ * to deserialize an {@code EntityController}. Scenarios that set properties the builder
+ * does not accept are loaded in a single pass by {@code JsonLoader}, which reports them.
+ */
+final class ScenarioLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScenarioLoader.class);
+
+    //
+    // The type property written by @JsonTypeInfo, which is not a builder property.
+    //
+    private static final String CLASS_PROPERTY = "class";
+
+    private static final String ENTITIES_PROPERTY = "entities";
+
+    private ScenarioLoader() {
+    }
+
+    /**
+     * Loads the scenario.
+     *
+     * @param path the scenario file
+     * @return the {@code EntityController}
+     */
+    static EntityController load(final Path path) {
+        long start_ns = System.nanoTime();
+        Scenario scenario = read(path);
+        return build(scenario, System.nanoTime() - start_ns);
+    }
+
+    /**
+     * Reads a scenario file and resolves its references without building anything.
+     *
+     * @param path the scenario file
+     * @return the {@code Scenario}
+     */
+    static Scenario read(final Path path) {
+        return new Scenario(path, new JsonLoader().loadTree(path));
+    }
+
+    /**
+     * Builds a new {@code EntityController} from a scenario that has already been read.
+     * <p>
+     * The resolved tree is not modified, so one {@code Scenario} can be built any number
+     * of times, including concurrently.
+     *
+     * @param scenario     the scenario
+     * @param parseTime_ns the time spent reading the scenario, for the startup timings
+     * @return the {@code EntityController}
+     */
+    static EntityController build(final Scenario scenario, final long parseTime_ns) {
+        long parsed_ns = System.nanoTime();
+        JsonLoader jsonLoader = new JsonLoader();
+        Path path = scenario.path;
+        ObjectNode root = scenario.root;
+
+        ObjectMapper objectMapper = jsonLoader.getObjectMapper();
+        Map<String, BeanPropertyDefinition> properties = findControllerProperties(objectMapper);
+        List<Subtree> subtrees = findSubtrees(objectMapper, properties, root);
+        int constructionTasks = 0;
+        EntityController entityController;
+        long constructTime_ns;
+        if (subtrees == null) {
+            if (logger.isInfoEnabled()) {
+                logger.info("Building scenario {} in a single pass", path);
+            }
+            entityController = jsonLoader.load(root.deepCopy(), EntityController.class, path);
+            StartupTimings timings = entityController.getStartupTimings();
+            constructTime_ns = System.nanoTime() - parsed_ns
+                    - timings.getRegisterTime_ns() - timings.getPrepareTime_ns() - timings.getFinishTime_ns();
+        } else {
+            for (Subtree subtree : subtrees) {
+                if (subtree.node != null) {
+                    ++constructionTasks;
+                }
+            }
+            Map<Force, List<BaseEntity>> entities = buildEntities(objectMapper, subtrees,
+                    root.path("executorThreads").asInt(0));
+            constructTime_ns = System.nanoTime() - parsed_ns;
+            entityController = buildController(objectMapper, properties, root, entities);
+        }
+
+        entityController.setScenario(scenario);
+        entityController.setStartupTimings(entityController.getStartupTimings().toBuilder()
+                .parseTime_ns(parseTime_ns)
+                .constructTime_ns(constructTime_ns)
+                .constructionTasks(constructionTasks)
+                .build());
+        if (logger.isInfoEnabled()) {
+            logger.info("Loaded scenario {}: {}", path, entityController.getStartupTimings());
+        }
+        return entityController;
+    }
+
+    /**
+     * Finds the properties that Jackson sets through the {@code EntityController} builder.
+     *
+     * @param objectMapper the mapper
+     * @return the builder properties, keyed by name
+     */
+    private static Map<String, BeanPropertyDefinition> findControllerProperties(final ObjectMapper objectMapper) {
+        DeserializationConfig config = objectMapper.getDeserializationConfig();
+        BeanDescription controller = config.introspect(objectMapper.constructType(EntityController.class));
+        Class<?> builderClass = controller.findPOJOBuilder();
+        if (builderClass == null) {
+            throw new SSTAFException("EntityController does not declare a Jackson builder");
+        }
+        BeanDescription builder = config.introspectForBuilder(objectMapper.constructType(builderClass), controller);
+        Map<String, BeanPropertyDefinition> properties = new HashMap<>();
+        for (BeanPropertyDefinition property : builder.findProperties()) {
+            if (property.hasSetter()) {
+                properties.put(property.getName(), property);
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Splits the scenario into independently buildable subtrees.
+     *
+     * @param objectMapper the mapper used to resolve entity classes
+     * @param properties   the {@code EntityController} builder properties
+     * @param root         the resolved scenario
+     * @return the subtrees in document order, or null if the scenario must be built in one pass
+     */
+    private static List<Subtree> findSubtrees(final ObjectMapper objectMapper,
+                                              final Map<String, BeanPropertyDefinition> properties,
+                                              final ObjectNode root) {
+        Iterator<String> names = root.fieldNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            if (!name.equals(CLASS_PROPERTY) && !properties.containsKey(name)) {
+                logger.debug("Unrecognized EntityController property '{}'", name);
+                return null;
+            }
+        }
+        JsonNode entitiesNode = root.get(ENTITIES_PROPERTY);
+        if (entitiesNode == null || !entitiesNode.isObject()) {
+            return null;
+        }
+
+        Map<String, Boolean> entityClasses = new HashMap<>();
+        List<Subtree> subtrees = new ArrayList<>();
+        Iterator<Map.Entry<String, JsonNode>> forces = entitiesNode.fields();
+        while (forces.hasNext()) {
+            Map.Entry<String, JsonNode> entry = forces.next();
+            Force force;
+            try {
+                force = Force.valueOf(entry.getKey());
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            if (!entry.getValue().isArray()) {
+                return null;
+            }
+            if (entry.getValue().isEmpty()) {
+                subtrees.add(new Subtree(force, null, 0));
+            }
+            for (JsonNode node : entry.getValue()) {
+                if (!node.isObject()) {
+                    return null;
+                }
+                subtrees.add(new Subtree(force, node, countEntities(objectMapper, node, entityClasses)));
+            }
+        }
+        return subtrees;
+    }
+
+    /**
+     * Counts the objects in a subtree that will be deserialized as entities.
+     *
+     * @param objectMapper  the mapper used to resolve entity classes
+     * @param node          the subtree
+     * @param entityClasses cache of class names already examined
+     * @return the number of entities
+     */
+    private static int countEntities(final ObjectMapper objectMapper, final JsonNode node,
+                                     final Map<String, Boolean> entityClasses) {
+        int count = 0;
+        if (node.isObject()) {
+            JsonNode className = node.get(CLASS_PROPERTY);
+            if (className != null && className.isTextual()
+                    && entityClasses.computeIfAbsent(className.asText(),
+                    name -> isEntityClass(objectMapper, name))) {
+                ++count;
+            }
+        }
+        for (JsonNode child : node) {
+            count += countEntities(objectMapper, child, entityClasses);
+        }
+        return count;
+    }
+
+    /**
+     * Determines whether a type id names an entity class. The class is resolved by the
+     * mapper's {@code TypeFactory}, so it is found in the same loader, and hence the same
+     * layer, that Jackson uses when it deserializes the entity.
+     *
+     * @param objectMapper the mapper
+     * @param className    the type id
+     * @return true if the class is an entity
+     */
+    private static boolean isEntityClass(final ObjectMapper objectMapper, final String className) {
+        try {
+            return BaseEntity.class.isAssignableFrom(objectMapper.getTypeFactory().findClass(className));
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Deserializes the subtrees concurrently.
+     *
+     * @param objectMapper the mapper
+     * @param subtrees     the subtrees
+     * @param threads      the requested number of threads, or zero for one per processor
+     * @return the entities for each force, in document order
+     */
+    private static Map<Force, List<BaseEntity>> buildEntities(final ObjectMapper objectMapper,
+                                                             final List<Subtree> subtrees,
+                                                             final int threads) {
+        long total = 0;
+        for (Subtree subtree : subtrees) {
+            total += subtree.entityCount;
+        }
+        long nextId = MessageDriven.BlockCounter.userCounter.reserve(total);
+        //
+        // The construction threads share the module layers of the calling thread, if it shares any.
+        //
+        ModuleLayerCache layers = ModuleLayerSupport.getCache();
+
+        List<Callable<BaseEntity>> tasks = new ArrayList<>(subtrees.size());
+        for (Subtree subtree : subtrees) {
+            final long firstId = nextId;
+            nextId += subtree.entityCount;
+            tasks.add(() -> subtree.node == null ? null
+                    : ModuleLayerSupport.withCache(layers,
+                    () -> MessageDriven.BlockCounter.userCounter.withReservation(firstId, subtree.entityCount,
+                            () -> deserialize(objectMapper, subtree.node))));
+        }
+
+        int poolSize = Math.max(1, Math.min(tasks.size(),
+                threads > 0 ? threads : Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        Map<Force, List<BaseEntity>> entities = new LinkedHashMap<>();
+        try {
+            List<Future<BaseEntity>> futures = executor.invokeAll(tasks);
+            for (int i = 0; i < futures.size(); ++i) {
+                List<BaseEntity> forceEntities = entities.computeIfAbsent(subtrees.get(i).force,
+                        f -> new ArrayList<>());
+                BaseEntity entity = futures.get(i).get();
+                if (entity != null) {
+                    forceEntities.add(entity);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SSTAFException("Interrupted while building entities", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SSTAFException("Could not build entities", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        return entities;
+    }
+
+    private static BaseEntity deserialize(final ObjectMapper objectMapper, final JsonNode node) {
+        try {
+            return objectMapper.treeToValue(node, BaseEntity.class);
+        } catch (Exception e) {
+            throw new SSTAFException("Could not read object '" + node.toPrettyString() + "'", e);
+        }
+    }
+
+    /**
+     * Builds the controller around the prebuilt entities. Every other property in the
+     * scenario is deserialized to the type of its builder method and applied through it.
+     *
+     * @param objectMapper the mapper
+     * @param properties   the {@code EntityController} builder properties
+     * @param root         the resolved scenario
+     * @param entities     the entities
+     * @return the {@code EntityController}
+     */
+    private static EntityController buildController(final ObjectMapper objectMapper,
+                                                    final Map<String, BeanPropertyDefinition> properties,
+                                                    final ObjectNode root,
+                                                    final Map<Force, List<BaseEntity>> entities) {
+        var builder = EntityController.builder().entities(entities);
+        Iterator<Map.Entry<String, JsonNode>> fields = root.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            String name = field.getKey();
+            if (name.equals(CLASS_PROPERTY) || name.equals(ENTITIES_PROPERTY) || field.getValue().isNull()) {
+                continue;
+            }
+            BeanPropertyDefinition property = properties.get(name);
+            AnnotatedMethod setter = property.getSetter();
+            try {
+                Object value = objectMapper.readerFor(property.getPrimaryType()).readValue(field.getValue());
+                setter.fixAccess(true);
+                setter.callOnWith(builder, value);
+            } catch (Exception e) {
+                throw new SSTAFException("Could not read EntityController property '" + name + "'", e);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * A scenario file after its references have been resolved.
+     */
+    static final class Scenario {
+        final Path path;
+        final ObjectNode root;
+
+        Scenario(final Path path, final ObjectNode root) {
+            this.path = path;
+            this.root = root;
+        }
+
+        /**
+         * Provides a copy of this scenario with one {@code EntityController} property
+         * replaced. Only the top level of the tree is copied; the entities and
+         * configurations are shared.
+         *
+         * @param name  the property
+         * @param value the new value
+         * @return the modified {@code Scenario}
+         */
+        Scenario withProperty(final String name, final JsonNode value) {
+            ObjectNode copy = root.objectNode();
+            copy.setAll(root);
+            copy.set(name, value);
+            return new Scenario(path, copy);
+        }
+    }
+
+    /**
+     * An entry in one of the {@code entities} lists.
+     */
+    private static final class Subtree {
+        final Force force;
+        final JsonNode node;
+        final int entityCount;
+
+        Subtree(final Force force, final JsonNode node, final int entityCount) {
+            this.force = force;
+            this.node = node;
+            this.entityCount = entityCount;
+        }
+    }
+}
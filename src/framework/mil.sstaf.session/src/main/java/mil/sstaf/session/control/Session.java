@@ -19,16 +19,25 @@ package mil.sstaf.session.control;
 
 import mil.sstaf.core.entity.EntityHandle;
 import mil.sstaf.session.messages.BaseSessionCommand;
+import mil.sstaf.session.messages.BaseSessionResult;
 import mil.sstaf.session.messages.Command;
 import mil.sstaf.session.messages.Event;
+import mil.sstaf.core.util.SSTAFException;
+import mil.sstaf.session.messages.SessionRunResult;
 import mil.sstaf.session.messages.SessionTickResult;
 
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.SortedSet;
-import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.function.Predicate;
 
 /**
  * Client interface to the Soldier and Squad Trade-space Analysis Framework
@@ -43,15 +52,29 @@ public final class Session implements AutoCloseable {
     private final boolean asynch;
     private final EntityController entityController;
     private final ExecutorService executorService;
-
-    private long currentTime_ms;
+    private final ExecutorService deliveryService;
+    //
+    // Records the requests of the client, if enabled
+    //
+    private volatile SessionJournal.Writer journal = null;
 
     private Session(SessionConfiguration sessionConfiguration, EntityController entityController) {
         Objects.requireNonNull(sessionConfiguration, "sessionConfiguration");
         Objects.requireNonNull(entityController, "entityController");
         this.entityController = entityController;
+        if (sessionConfiguration.getExecutorStrategy() != null) {
+            this.entityController.setExecutorStrategy(sessionConfiguration.getExecutorStrategy());
+        }
         this.asynch = sessionConfiguration.isAsync();
         this.executorService = this.asynch ? Executors.newSingleThreadExecutor() : null;
+        this.deliveryService = this.asynch ? Executors.newSingleThreadExecutor() : null;
+    }
+
+    private Session(final boolean asynch, final EntityController entityController) {
+        this.entityController = entityController;
+        this.asynch = asynch;
+        this.executorService = this.asynch ? Executors.newSingleThreadExecutor() : null;
+        this.deliveryService = this.asynch ? Executors.newSingleThreadExecutor() : null;
     }
 
     public static Session of(SessionConfiguration sessionConfiguration, EntityController entityConfig) {
@@ -63,10 +86,26 @@ public final class Session implements AutoCloseable {
      * <p>
      * When submitted, the BaseSessionCommand or SSTAFEvent is routed to the Entity specified
      * by the EntityHandle within the commend.
+     * <p>
+     * In an asynchronous {@code Session} the command is queued behind the ticks that
+     * have already been requested with {@link #asyncTick(long)}, so it is processed by
+     * the first tick requested after it was submitted.
      *
      * @param command The command to process.
      */
     public void submit(final BaseSessionCommand command) {
+        SessionJournal.Writer j = journal;
+        if (j != null) {
+            j.submit(command);
+        }
+        if (asynch) {
+            executorService.execute(() -> route(command));
+        } else {
+            route(command);
+        }
+    }
+
+    private void route(final BaseSessionCommand command) {
         if (command instanceof Event) {
             Event event = (Event) command;
             entityController.submitEvent(event);
@@ -79,12 +118,62 @@ public final class Session implements AutoCloseable {
      * {@inheritDoc}
      */
     public void close() {
-        if (entityController != null) {
+        if (asynch) {
+            //
+            // Let the ticks that have been requested finish and deliver their results
+            // before the executors go away.
+            //
+            executorService.execute(() -> {
+                entityController.shutdown();
+                deliveryService.execute(this::stopJournal);
+                deliveryService.shutdown();
+            });
+            executorService.shutdown();
+        } else if (entityController != null) {
             entityController.shutdown();
+            stopJournal();
+        }
+    }
+
+    /**
+     * Starts recording the commands, events and ticks submitted to this {@code Session}
+     * in a {@code SessionJournal}, replacing any journal already being recorded.
+     * <p>
+     * Recording the results as well lets {@link SessionReplay} verify that a replay
+     * reproduces the recorded run, at the cost of serializing the results of every tick.
+     *
+     * @param file          the journal file
+     * @param recordResults whether to record a digest of the result of every tick
+     */
+    public void startJournal(final Path file, final boolean recordResults) {
+        Objects.requireNonNull(file, "file");
+        SessionJournal.Writer previous = journal;
+        journal = new SessionJournal.Writer(file, recordResults);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Stops recording the journal, if one is being recorded.
+     */
+    public void stopJournal() {
+        SessionJournal.Writer j = journal;
+        journal = null;
+        if (j != null) {
+            j.close();
         }
-        if (executorService != null) {
-            this.executorService.shutdown();
+    }
+
+    private SessionTickResult journaledTick(final long currentTime_ms) {
+        SessionJournal.Writer j = journal;
+        if (j == null) {
+            return entityController.tick(currentTime_ms);
         }
+        int ordinal = j.tick(currentTime_ms);
+        SessionTickResult result = entityController.tick(currentTime_ms);
+        j.result(ordinal, result);
+        return result;
     }
 
     /**
@@ -104,7 +193,7 @@ public final class Session implements AutoCloseable {
         if (asynch) {
             throw new IllegalStateException("Session was configured for asynchronous use");
         }
-        return entityController.tick(currentTime_ms);
+        return journaledTick(currentTime_ms);
     }
 
     /**
@@ -120,22 +209,169 @@ public final class Session implements AutoCloseable {
         if (asynch) {
             throw new IllegalStateException("Session was configured for asynchronous use");
         }
-        return entityController.tickAgain();
+        SessionJournal.Writer j = journal;
+        if (j == null) {
+            return entityController.tickAgain();
+        }
+        int ordinal = j.tickAgain();
+        SessionTickResult result = entityController.tickAgain();
+        j.result(ordinal, result);
+        return result;
     }
 
 
     /**
-     * Processes a tick asynchronously using an ExecutorService.
+     * Advances the simulation through a series of ticks, ending at the specified time.
+     * <p>
+     * If {@code step_ms} is positive, ticks are executed every {@code step_ms} milliseconds
+     * after the last tick time. Otherwise the simulation jumps from event to event, ticking
+     * at the next event time reported by the previous tick. In both cases the last tick is
+     * executed at {@code endTime_ms}, so pending commands are always processed at least once.
+     * <p>
+     * The messages to the client from every tick are passed through {@code resultFilter}
+     * and only those that are accepted are returned. This avoids a round trip through the
+     * client for every step of a long run.
+     *
+     * @param endTime_ms   the simulation time of the last tick
+     * @param step_ms      the interval between ticks, or zero to advance from event to event
+     * @param resultFilter selects the messages to the client to return, or null to return all
+     * @return a {@code SessionRunResult} that contains the accepted messages to the client
+     */
+    public SessionRunResult runUntil(final long endTime_ms, final long step_ms,
+                                     final Predicate<BaseSessionResult> resultFilter) {
+        if (asynch) {
+            throw new IllegalStateException("Session was configured for asynchronous use");
+        }
+        long time_ms = entityController.getLastTickTime_ms();
+        if (endTime_ms < time_ms) {
+            throw new IllegalArgumentException("End time " + endTime_ms
+                    + " is before the last tick time " + time_ms);
+        }
+
+        List<BaseSessionResult> accepted = new ArrayList<>();
+        int tickCount = 0;
+        int messageCount = 0;
+        SessionTickResult tickResult;
+        do {
+            long next_ms;
+            if (step_ms > 0) {
+                next_ms = step_ms < endTime_ms - time_ms ? time_ms + step_ms : endTime_ms;
+            } else {
+                next_ms = entityController.getNextEventTime_ms();
+                if (next_ms <= time_ms || next_ms > endTime_ms) {
+                    next_ms = endTime_ms;
+                }
+            }
+            tickResult = journaledTick(next_ms);
+            ++tickCount;
+            time_ms = next_ms;
+
+            List<BaseSessionResult> messages = tickResult.getMessagesToClient();
+            messageCount += messages.size();
+            for (BaseSessionResult message : messages) {
+                if (resultFilter == null || resultFilter.test(message)) {
+                    accepted.add(message);
+                }
+            }
+        } while (time_ms < endTime_ms);
+
+        return SessionRunResult.builder()
+                .time_ms(time_ms)
+                .tickCount(tickCount)
+                .messageCount(messageCount)
+                .nextEventTime_ms(tickResult.getNextEventTime_ms())
+                .messagesToClient(accepted)
+                .build();
+    }
+
+    /**
+     * Queues a tick for asynchronous processing.
+     * <p>
+     * Ticks and commands are executed one at a time in the order they were requested,
+     * so any number of future ticks can be queued without waiting for results. Converting
+     * the messages to the client of a tick is handed to a second thread, which lets the
+     * next tick start while the results of the previous one are being produced. The
+     * returned futures complete in the order the ticks were requested; if a tick fails,
+     * its future completes exceptionally and later ticks still run.
      *
      * @param currentTime_ms the new current simulation time.
-     * @return A Future for the results of the tick();
+     * @return a {@code CompletableFuture} for the results of the tick
      */
-    @SuppressWarnings("unused")
-    public Future<SessionTickResult> asyncTick(final long currentTime_ms) {
+    public CompletableFuture<SessionTickResult> asyncTick(final long currentTime_ms) {
         if (!asynch) {
             throw new IllegalStateException("Attempted to use asyncTick() when Session was not configured for asynchronous use");
         }
-        return executorService.submit(new TickCallable(currentTime_ms));
+        SessionJournal.Writer j = journal;
+        int ordinal = j == null ? -1 : j.tick(currentTime_ms);
+        return CompletableFuture.supplyAsync(() -> entityController.advance(currentTime_ms), executorService)
+                .handleAsync((output, throwable) -> {
+                    if (throwable != null) {
+                        throw throwable instanceof CompletionException
+                                ? (CompletionException) throwable : new CompletionException(throwable);
+                    }
+                    SessionTickResult result = entityController.toSessionTickResult(output);
+                    if (j != null) {
+                        j.result(ordinal, result);
+                    }
+                    return result;
+                }, deliveryService);
+    }
+
+    /**
+     * Saves the state of the simulation to a file.
+     * <p>
+     * The checkpoint holds the simulation clock, every queued message, the random number
+     * generator state of each {@code Entity} and the state of every feature that implements
+     * {@code Snapshottable}. It must not be taken while an asynchronous tick is in progress.
+     *
+     * @param file the checkpoint file
+     */
+    public void checkpoint(final Path file) {
+        Objects.requireNonNull(file, "file");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            entityController.writeCheckpoint(out);
+        } catch (IOException e) {
+            throw new SSTAFException("Could not write checkpoint to " + file, e);
+        }
+    }
+
+    /**
+     * Replaces the state of the simulation with a checkpoint.
+     * <p>
+     * The {@code Session} must have been built from the same scenario as the one that
+     * wrote the checkpoint. Building the scenario still loads, resolves and initializes
+     * the entities, but the ticks that led up to the checkpoint are not repeated.
+     *
+     * @param file the checkpoint file
+     */
+    public void restore(final Path file) {
+        Objects.requireNonNull(file, "file");
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            entityController.readCheckpoint(in);
+        } catch (IOException e) {
+            throw new SSTAFException("Could not read checkpoint from " + file, e);
+        }
+    }
+
+    /**
+     * Creates an independent copy of the simulation, for exploring alternatives that
+     * share a common history.
+     * <p>
+     * The copy starts with the same clock, queued messages, random number generator
+     * state and {@code Snapshottable} feature state as this {@code Session}, and from
+     * then on evolves separately. The scenario is rebuilt from the resolved scenario
+     * file held in memory, so the {@code Session} must have been created around an
+     * {@code EntityController} loaded from a file.
+     * <p>
+     * The copy dispatches its entities on the executors of this {@code Session}, so any
+     * number of copies can tick concurrently, each from its own thread, without adding
+     * thread pools. The executors are shut down when the last {@code Session} using them
+     * is closed. A {@code Session} must not be forked while a tick is in progress.
+     *
+     * @return the new {@code Session}
+     */
+    public Session fork() {
+        return new Session(asynch, entityController.fork());
     }
 
     /**
@@ -162,22 +398,5 @@ public final class Session implements AutoCloseable {
     public EntityController getEntityController() {
         return entityController;
     }
-
-    /**
-     * Callable for executing a tick (duh!)
-     */
-    private class TickCallable implements Callable<SessionTickResult> {
-
-        public TickCallable(long currentTime_ms) {
-            Session.this.currentTime_ms = currentTime_ms;
-        }
-
-        @Override
-        public SessionTickResult call() {
-            return tick(currentTime_ms);
-        }
-
-
-    }
 }
 
@@ -33,5 +33,12 @@ public class SessionConfiguration extends SSTAFConfiguration {
 
     @Getter
     private final boolean async;
+
+    /**
+     * The executor strategy for the {@code EntityController}. If not set, the
+     * strategy configured on the {@code EntityController} is used.
+     */
+    @Getter
+    private final ExecutorStrategy executorStrategy;
 }
 
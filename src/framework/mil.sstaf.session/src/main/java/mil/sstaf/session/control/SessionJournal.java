@@ -0,0 +1,428 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.Getter;
+import mil.sstaf.core.features.HandlerContent;
+import mil.sstaf.core.util.SSTAFException;
+import mil.sstaf.session.messages.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * A record of everything a client asked of a {@code Session}: the commands and events it
+ * submitted and the ticks it requested, in order.
+ * <p>
+ * A journal is written by {@link Session#startJournal(Path, boolean)} and re-executed by
+ * {@link SessionReplay}. It is a binary file. Recipient paths and message contents are
+ * each written once, the first time they are used, and referred to by number after that,
+ * so a client that repeats the same queries produces a small journal. Contents are
+ * written as JSON, which is parsed once per distinct content when the journal is read,
+ * never during a replay. Commands with the same content therefore share a single content
+ * object when replayed, which is harmless as long as handlers do not modify the content
+ * they receive.
+ * <p>
+ * The journal can also hold a digest of the result of every tick, which lets a replay
+ * detect the first tick at which it diverged from the recorded run. The digest covers the
+ * next event time and the messages to the client, but not the ids of the results, which
+ * depend on message sequence numbers. Reproducing a run exactly requires the same
+ * scenario and, if it used more than one executor thread, deterministic mode.
+ */
+public final class SessionJournal {
+
+    static final int MAGIC = 0x53534a31; // "SSJ1"
+    static final int VERSION = 1;
+
+    private static final byte PATH = 1;
+    private static final byte CONTENT = 2;
+    private static final byte COMMAND = 3;
+    private static final byte EVENT = 4;
+    private static final byte TICK = 5;
+    private static final byte TICK_AGAIN = 6;
+    private static final byte RESULT = 7;
+
+    /**
+     * The kinds of requests recorded in a journal.
+     */
+    public enum Kind {
+        /**
+         * A {@code Command} or {@code Event} was submitted.
+         */
+        SUBMIT,
+        /**
+         * A tick was requested.
+         */
+        TICK,
+        /**
+         * A tick at the last tick time was requested.
+         */
+        TICK_AGAIN
+    }
+
+    @Getter
+    private final boolean resultsRecorded;
+    private final List<Entry> entries;
+
+    private SessionJournal(final boolean resultsRecorded, final List<Entry> entries) {
+        this.resultsRecorded = resultsRecorded;
+        this.entries = entries;
+    }
+
+    /**
+     * Provides the recorded requests, in order.
+     *
+     * @return the entries
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Reads a journal. All contents are decoded and all commands are built here, so a
+     * replay only has to hand them to the {@code Session}.
+     *
+     * @param file the journal file
+     * @return the journal
+     */
+    public static SessionJournal read(final Path file) {
+        Objects.requireNonNull(file, "file");
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<String> paths = new ArrayList<>();
+        List<HandlerContent> contents = new ArrayList<>();
+        List<Entry> entries = new ArrayList<>();
+        List<Entry> ticks = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new SSTAFException(file + " is not a session journal");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new SSTAFException("Unsupported session journal version " + version + " in " + file);
+            }
+            boolean resultsRecorded = in.readBoolean();
+            int tag;
+            while ((tag = in.read()) >= 0) {
+                switch ((byte) tag) {
+                    case PATH:
+                        paths.add(in.readUTF());
+                        break;
+                    case CONTENT:
+                        byte[] bytes = new byte[in.readInt()];
+                        in.readFully(bytes);
+                        contents.add(objectMapper.readValue(bytes, HandlerContent.class));
+                        break;
+                    case COMMAND:
+                        entries.add(new Entry(Kind.SUBMIT, Command.builder()
+                                .recipientPath(paths.get(in.readInt()))
+                                .content(contents.get(in.readInt()))
+                                .build(), 0));
+                        break;
+                    case EVENT:
+                        entries.add(new Entry(Kind.SUBMIT, Event.builder()
+                                .recipientPath(paths.get(in.readInt()))
+                                .content(contents.get(in.readInt()))
+                                .eventTime_ms(in.readLong())
+                                .build(), 0));
+                        break;
+                    case TICK:
+                        Entry tick = new Entry(Kind.TICK, null, in.readLong());
+                        entries.add(tick);
+                        ticks.add(tick);
+                        break;
+                    case TICK_AGAIN:
+                        Entry again = new Entry(Kind.TICK_AGAIN, null, 0);
+                        entries.add(again);
+                        ticks.add(again);
+                        break;
+                    case RESULT:
+                        int ordinal = in.readInt();
+                        long nextEventTime_ms = in.readLong();
+                        int messageCount = in.readInt();
+                        byte[] digest = new byte[in.readUnsignedByte()];
+                        in.readFully(digest);
+                        if (ordinal < 0 || ordinal >= ticks.size()) {
+                            throw new SSTAFException("Session journal " + file + " has a result for unknown tick "
+                                    + ordinal);
+                        }
+                        ticks.get(ordinal).expected = new TickDigest(nextEventTime_ms, messageCount, digest);
+                        break;
+                    default:
+                        throw new SSTAFException("Session journal " + file + " is corrupt, unknown entry " + tag);
+                }
+            }
+            return new SessionJournal(resultsRecorded, entries);
+        } catch (EOFException e) {
+            throw new SSTAFException("Session journal " + file + " is truncated", e);
+        } catch (IOException | IndexOutOfBoundsException e) {
+            throw new SSTAFException("Could not read session journal " + file, e);
+        }
+    }
+
+    /**
+     * One recorded request.
+     */
+    @Getter
+    public static final class Entry {
+        private final Kind kind;
+        /**
+         * The submitted {@code Command} or {@code Event}, null for a tick.
+         */
+        private final Command command;
+        /**
+         * The requested tick time, zero for anything but a {@code TICK}.
+         */
+        private final long time_ms;
+        /**
+         * The digest of the recorded result of a tick, or null if results were not recorded.
+         */
+        private TickDigest expected;
+
+        private Entry(final Kind kind, final Command command, final long time_ms) {
+            this.kind = kind;
+            this.command = command;
+            this.time_ms = time_ms;
+        }
+    }
+
+    /**
+     * A summary of the result of a tick that is small enough to keep for every tick.
+     */
+    @Getter
+    public static final class TickDigest {
+        private static final ObjectWriter WRITER = new ObjectMapper()
+                .addMixIn(BaseSessionResult.class, IgnoreId.class)
+                .writer();
+
+        private final long nextEventTime_ms;
+        private final int messageCount;
+        private final byte[] digest;
+
+        private TickDigest(final long nextEventTime_ms, final int messageCount, final byte[] digest) {
+            this.nextEventTime_ms = nextEventTime_ms;
+            this.messageCount = messageCount;
+            this.digest = digest;
+        }
+
+        /**
+         * Summarizes the result of a tick.
+         *
+         * @param result the result
+         * @return the digest
+         */
+        public static TickDigest of(final SessionTickResult result) {
+            List<BaseSessionResult> messages = result.getMessagesToClient() == null
+                    ? List.of() : result.getMessagesToClient();
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(ByteBuffer.allocate(Long.BYTES).putLong(0, result.getNextEventTime_ms()));
+                for (BaseSessionResult message : messages) {
+                    digest.update(WRITER.writeValueAsBytes(message));
+                    digest.update((byte) '\n');
+                }
+                return new TickDigest(result.getNextEventTime_ms(), messages.size(), digest.digest());
+            } catch (NoSuchAlgorithmException | IOException e) {
+                throw new SSTAFException("Could not summarize tick result", e);
+            }
+        }
+
+        /**
+         * Reports whether another digest describes the same result.
+         *
+         * @param other the other digest
+         * @return true if the results match
+         */
+        public boolean matches(final TickDigest other) {
+            return other != null && nextEventTime_ms == other.nextEventTime_ms
+                    && messageCount == other.messageCount && Arrays.equals(digest, other.digest);
+        }
+
+        @Override
+        public String toString() {
+            return "nextEventTime_ms=" + nextEventTime_ms + ", messageCount=" + messageCount
+                    + ", digest=" + HexFormat.of().formatHex(digest, 0, 8);
+        }
+    }
+
+    /**
+     * Leaves the ids out of the results that are digested.
+     */
+    @JsonIgnoreProperties("id")
+    private abstract static class IgnoreId {
+    }
+
+    /**
+     * Appends requests to a journal file. The methods may be invoked from the client
+     * thread and from the thread that delivers asynchronous results.
+     */
+    static final class Writer implements AutoCloseable {
+        private final Path file;
+        private final boolean recordResults;
+        private final DataOutputStream out;
+        private final ObjectWriter contentWriter = new ObjectMapper().writerFor(HandlerContent.class);
+        private final Map<String, Integer> paths = new HashMap<>();
+        private final Map<ByteBuffer, Integer> contents = new HashMap<>();
+        private int ticks = 0;
+        private boolean closed = false;
+
+        /**
+         * Constructor
+         *
+         * @param file          the journal file, replaced if it exists
+         * @param recordResults whether to record a digest of the result of every tick
+         */
+        Writer(final Path file, final boolean recordResults) {
+            this.file = file;
+            this.recordResults = recordResults;
+            try {
+                this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeBoolean(recordResults);
+            } catch (IOException e) {
+                throw new SSTAFException("Could not create session journal " + file, e);
+            }
+        }
+
+        /**
+         * Records a submitted {@code Command} or {@code Event}.
+         *
+         * @param command the command
+         */
+        synchronized void submit(final BaseSessionCommand command) {
+            if (!(command instanceof Command)) {
+                throw new SSTAFException("Cannot journal " + command.getClass().getName());
+            }
+            Command c = (Command) command;
+            try {
+                Integer path = paths.get(c.getRecipientPath());
+                if (path == null) {
+                    path = paths.size();
+                    paths.put(c.getRecipientPath(), path);
+                    out.writeByte(PATH);
+                    out.writeUTF(c.getRecipientPath());
+                }
+                byte[] bytes = contentWriter.writeValueAsBytes(c.getContent());
+                Integer content = contents.get(ByteBuffer.wrap(bytes));
+                if (content == null) {
+                    content = contents.size();
+                    contents.put(ByteBuffer.wrap(bytes), content);
+                    out.writeByte(CONTENT);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                if (c instanceof Event) {
+                    out.writeByte(EVENT);
+                    out.writeInt(path);
+                    out.writeInt(content);
+                    out.writeLong(((Event) c).getEventTime_ms());
+                } else {
+                    out.writeByte(COMMAND);
+                    out.writeInt(path);
+                    out.writeInt(content);
+                }
+            } catch (IOException e) {
+                throw new SSTAFException("Could not write to session journal " + file, e);
+            }
+        }
+
+        /**
+         * Records a requested tick.
+         *
+         * @param time_ms the tick time
+         * @return the ordinal of the tick, for recording its result
+         */
+        synchronized int tick(final long time_ms) {
+            try {
+                out.writeByte(TICK);
+                out.writeLong(time_ms);
+                out.flush();
+            } catch (IOException e) {
+                throw new SSTAFException("Could not write to session journal " + file, e);
+            }
+            return ticks++;
+        }
+
+        /**
+         * Records a requested tick at the last tick time.
+         *
+         * @return the ordinal of the tick, for recording its result
+         */
+        synchronized int tickAgain() {
+            try {
+                out.writeByte(TICK_AGAIN);
+                out.flush();
+            } catch (IOException e) {
+                throw new SSTAFException("Could not write to session journal " + file, e);
+            }
+            return ticks++;
+        }
+
+        /**
+         * Records the result of a tick, if results are being recorded.
+         *
+         * @param ordinal the ordinal of the tick
+         * @param result  the result
+         */
+        void result(final int ordinal, final SessionTickResult result) {
+            if (!recordResults) {
+                return;
+            }
+            TickDigest digest = TickDigest.of(result);
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                try {
+                    out.writeByte(RESULT);
+                    out.writeInt(ordinal);
+                    out.writeLong(digest.nextEventTime_ms);
+                    out.writeInt(digest.messageCount);
+                    out.writeByte(digest.digest.length);
+                    out.write(digest.digest);
+                } catch (IOException e) {
+                    throw new SSTAFException("Could not write to session journal " + file, e);
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new SSTAFException("Could not close session journal " + file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import mil.sstaf.session.messages.SessionTickResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Re-executes a {@code SessionJournal} against a {@code Session}.
+ * <p>
+ * The recorded commands, events and ticks are handed to the {@code Session} directly, in
+ * the order they were recorded, with no client in the loop and no decoding, so a replay
+ * runs as fast as the simulation itself. If the journal holds the results of the recorded
+ * run, each tick can be checked against them.
+ */
+public final class SessionReplay {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionReplay.class);
+
+    private SessionReplay() {
+    }
+
+    /**
+     * Replays a journal.
+     * <p>
+     * The {@code Session} must be synchronous and should have been built from the scenario
+     * used for the recording.
+     *
+     * @param session the {@code Session}
+     * @param journal the journal
+     * @param verify  whether to compare the result of each tick with the recorded result
+     * @return the outcome of the replay
+     */
+    public static Outcome replay(final Session session, final SessionJournal journal, final boolean verify) {
+        Objects.requireNonNull(session, "session");
+        Objects.requireNonNull(journal, "journal");
+        if (verify && !journal.isResultsRecorded()) {
+            throw new IllegalArgumentException("The journal does not hold any results to verify");
+        }
+
+        int tickCount = 0;
+        int submissionCount = 0;
+        int divergenceCount = 0;
+        String firstDivergence = null;
+        long start_ns = System.nanoTime();
+        for (SessionJournal.Entry entry : journal.getEntries()) {
+            SessionTickResult result;
+            switch (entry.getKind()) {
+                case SUBMIT:
+                    session.submit(entry.getCommand());
+                    ++submissionCount;
+                    continue;
+                case TICK:
+                    result = session.tick(entry.getTime_ms());
+                    break;
+                default:
+                    result = session.tickAgain();
+                    break;
+            }
+            if (verify && entry.getExpected() != null) {
+                SessionJournal.TickDigest actual = SessionJournal.TickDigest.of(result);
+                if (!actual.matches(entry.getExpected())) {
+                    ++divergenceCount;
+                    if (firstDivergence == null) {
+                        firstDivergence = "Tick " + tickCount + " at "
+                                + session.getEntityController().getLastTickTime_ms()
+                                + " ms: expected " + entry.getExpected() + ", got " + actual;
+                        logger.warn("Replay diverged. {}", firstDivergence);
+                    }
+                }
+            }
+            ++tickCount;
+        }
+
+        return Outcome.builder()
+                .tickCount(tickCount)
+                .submissionCount(submissionCount)
+                .elapsedTime_ns(System.nanoTime() - start_ns)
+                .verified(verify)
+                .divergenceCount(divergenceCount)
+                .firstDivergence(firstDivergence)
+                .build();
+    }
+
+    /**
+     * Replays a journal in its own process.
+     * <p>
+     * Usage: {@code SessionReplay <scenario file> <journal file> [--verify]}
+     * <p>
+     * The process exits with status 1 if the replay diverged from the recorded run.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(final String[] args) {
+        if (args.length < 2 || args.length > 3 || (args.length == 3 && !args[2].equals("--verify"))) {
+            System.err.println("Usage: SessionReplay <scenario file> <journal file> [--verify]");
+            System.exit(1);
+        }
+        SessionJournal journal = SessionJournal.read(Path.of(args[1]));
+        EntityController controller = EntityController.from(new File(args[0]));
+        Outcome outcome;
+        try (Session session = Session.of(SessionConfiguration.builder().async(false).build(), controller)) {
+            outcome = replay(session, journal, args.length == 3);
+        }
+        System.out.println(outcome);
+        if (outcome.getDivergenceCount() > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * The outcome of a replay.
+     */
+    @Builder
+    @Getter
+    @ToString
+    public static final class Outcome {
+
+        /**
+         * Number of ticks executed.
+         */
+        private final int tickCount;
+
+        /**
+         * Number of commands and events submitted.
+         */
+        private final int submissionCount;
+
+        /**
+         * Time spent replaying, in nanoseconds.
+         */
+        private final long elapsedTime_ns;
+
+        /**
+         * Whether the results were compared with the recorded results.
+         */
+        private final boolean verified;
+
+        /**
+         * Number of ticks whose result did not match the recorded result.
+         */
+        private final int divergenceCount;
+
+        /**
+         * Description of the first tick whose result did not match, or null.
+         */
+        private final String firstDivergence;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Time spent in each phase of building an {@code EntityController}.
+ * <p>
+ * The parse and construct phases are only measured when the controller is loaded
+ * from a file.
+ */
+@Builder(toBuilder = true)
+@Getter
+@ToString
+public final class StartupTimings {
+
+    /**
+     * Time spent reading the scenario and resolving its references, in nanoseconds.
+     */
+    private final long parseTime_ns;
+
+    /**
+     * Time spent building the {@code Entity} objects and their features, in nanoseconds.
+     */
+    private final long constructTime_ns;
+
+    /**
+     * Time spent registering the entities and compiling the registry, in nanoseconds.
+     */
+    private final long registerTime_ns;
+
+    /**
+     * Time spent seeding, injecting and initializing the entities, in nanoseconds.
+     */
+    private final long prepareTime_ns;
+
+    /**
+     * Time spent creating the executors and initializing the controller, in nanoseconds.
+     */
+    private final long finishTime_ns;
+
+    /**
+     * Number of simulation entities.
+     */
+    private final int entityCount;
+
+    /**
+     * Number of subtrees of the scenario that were built concurrently, or zero if the
+     * scenario was built by a single pass of the JSON loader.
+     */
+    private final int constructionTasks;
+
+    /**
+     * Whether the entities were prepared concurrently.
+     */
+    private final boolean parallelPrepare;
+
+    /**
+     * Provides the total time spent starting up.
+     *
+     * @return the total time in nanoseconds
+     */
+    public long getTotalTime_ns() {
+        return parseTime_ns + constructTime_ns + registerTime_ns + prepareTime_ns + finishTime_ns;
+    }
+}
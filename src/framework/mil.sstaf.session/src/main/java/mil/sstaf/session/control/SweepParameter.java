@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A factor in a parameter sweep: one field of a {@code FeatureConfiguration} and the
+ * values it may take.
+ * <p>
+ * The field is located by the name of the feature, as it appears in the
+ * {@code configurations} map of an entity or of the {@code EntityController}, and a JSON
+ * Pointer into that configuration, such as {@code /constraints/1/lowerBound} for an
+ * {@code ANSURConfiguration} or {@code /stateKeys} for a {@code TelemetryConfiguration}.
+ * An empty pointer replaces the whole configuration, which is how one {@code Kit} is
+ * exchanged for another. The value is applied to every matching configuration in the
+ * scenario, or only to those of entities with the given name.
+ * <p>
+ * A parameter either has a list of discrete levels, which may be any values that
+ * Jackson can convert to JSON, or a numeric range. Ranges can only be sampled, by a
+ * Latin hypercube for example; a grid needs levels.
+ */
+@Getter
+@ToString
+public final class SweepParameter {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final String name;
+    private final String featureName;
+    private final String pointer;
+    private final String entityName;
+    private final List<JsonNode> levels;
+    private final Double lower;
+    private final Double upper;
+    private final boolean integral;
+
+    /**
+     * Constructor
+     *
+     * @param name        the name of the parameter in results, defaults to the feature name and pointer
+     * @param featureName the name of the configured feature
+     * @param pointer     the JSON Pointer to the field within the configuration, empty for the whole configuration
+     * @param entityName  the name of the entities to change, or null for all
+     * @param levels      the discrete values of the parameter
+     * @param lower       the lower bound of a numeric range
+     * @param upper       the upper bound of a numeric range
+     * @param integral    whether values drawn from the range are whole numbers
+     */
+    @Builder
+    private SweepParameter(final String name, final String featureName, final String pointer,
+                           final String entityName, final List<?> levels,
+                           final Double lower, final Double upper, final boolean integral) {
+        this.featureName = Objects.requireNonNull(featureName, "featureName");
+        this.pointer = pointer == null ? "" : pointer;
+        JsonPointer.compile(this.pointer); // rejects a malformed pointer now rather than mid-sweep
+        this.name = name == null ? featureName + this.pointer : name;
+        this.entityName = entityName;
+        if (levels != null) {
+            if (levels.isEmpty()) {
+                throw new IllegalArgumentException("Parameter " + this.name + " has no levels");
+            }
+            List<JsonNode> converted = new ArrayList<>(levels.size());
+            for (Object level : levels) {
+                converted.add(objectMapper.valueToTree(level));
+            }
+            this.levels = Collections.unmodifiableList(converted);
+        } else if (lower == null || upper == null || upper < lower) {
+            throw new IllegalArgumentException("Parameter " + this.name + " needs levels or a range");
+        } else {
+            this.levels = null;
+        }
+        this.lower = lower;
+        this.upper = upper;
+        this.integral = integral;
+    }
+
+    /**
+     * Reports whether the parameter has discrete levels.
+     *
+     * @return true if the parameter has levels
+     */
+    public boolean isDiscrete() {
+        return levels != null;
+    }
+
+    /**
+     * Provides the value at a position within the parameter's levels or range.
+     *
+     * @param u the position, in [0, 1)
+     * @return the value
+     */
+    JsonNode valueAt(final double u) {
+        if (levels != null) {
+            return levels.get(Math.min((int) (u * levels.size()), levels.size() - 1));
+        } else if (integral) {
+            long low = (long) Math.ceil(lower);
+            long high = (long) Math.floor(upper);
+            return LongNode.valueOf(Math.min(low + (long) (u * (high - low + 1)), high));
+        } else {
+            return DoubleNode.valueOf(lower + u * (upper - lower));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Map;
+
+/**
+ * The outputs of one run in a {@code ParameterSweep}.
+ */
+@Builder
+@Getter
+@ToString
+public final class SweepResult {
+
+    /**
+     * The design point that was run.
+     */
+    private final DesignPoint point;
+
+    /**
+     * The replication of the design point, from zero.
+     */
+    private final int replication;
+
+    /**
+     * The random seed given to the {@code EntityController}, or null if the scenario's
+     * own seed was used.
+     */
+    private final Long randomSeed;
+
+    /**
+     * The outputs of the run, by name, or null if the run failed.
+     */
+    private final Map<String, ?> outputs;
+
+    /**
+     * The exception that ended the run, or null if it succeeded.
+     */
+    private final Throwable error;
+
+    /**
+     * Time spent building and running the design point, in nanoseconds.
+     */
+    private final long elapsedTime_ns;
+
+    /**
+     * Reports whether the run completed.
+     *
+     * @return true if the run produced outputs
+     */
+    public boolean isSuccessful() {
+        return error == null;
+    }
+}
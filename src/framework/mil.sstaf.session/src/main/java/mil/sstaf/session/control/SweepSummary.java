@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * The results of a {@code ParameterSweep}, one row per run, written as a CSV table.
+ * <p>
+ * The columns are the design point, replication and seed, then each parameter, then
+ * each output in the order outputs were first reported, then the run time and any
+ * error. Parameter values that are not scalars, such as a kit, are written as JSON.
+ */
+public final class SweepSummary {
+
+    private final List<String> parameterNames;
+    private final List<SweepResult> results = new ArrayList<>();
+    private final Set<String> outputNames = new LinkedHashSet<>();
+
+    /**
+     * Constructor
+     *
+     * @param design the design that is being run
+     */
+    SweepSummary(final ExperimentDesign design) {
+        List<String> names = new ArrayList<>();
+        design.getParameters().forEach(p -> names.add(p.getName()));
+        this.parameterNames = Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Adds the result of a run.
+     *
+     * @param result the result
+     */
+    void add(final SweepResult result) {
+        results.add(result);
+        if (result.getOutputs() != null) {
+            outputNames.addAll(result.getOutputs().keySet());
+        }
+    }
+
+    /**
+     * Provides the results ordered by design point and replication.
+     *
+     * @return the results
+     */
+    public List<SweepResult> getResults() {
+        List<SweepResult> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingInt((SweepResult r) -> r.getPoint().getIndex())
+                .thenComparingInt(SweepResult::getReplication));
+        return sorted;
+    }
+
+    /**
+     * Provides the number of runs that failed.
+     *
+     * @return the number of failures
+     */
+    public int getFailureCount() {
+        int failures = 0;
+        for (SweepResult result : results) {
+            if (!result.isSuccessful()) {
+                ++failures;
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Writes the table.
+     *
+     * @param writer the destination
+     * @throws IOException if the table cannot be written
+     */
+    public void write(final Writer writer) throws IOException {
+        List<String> header = new ArrayList<>(List.of("point", "replication", "seed"));
+        header.addAll(parameterNames);
+        header.addAll(outputNames);
+        header.add("elapsed_ms");
+        header.add("error");
+        writeRow(writer, header);
+
+        for (SweepResult result : getResults()) {
+            List<String> row = new ArrayList<>(header.size());
+            row.add(Integer.toString(result.getPoint().getIndex()));
+            row.add(Integer.toString(result.getReplication()));
+            row.add(result.getRandomSeed() == null ? "" : result.getRandomSeed().toString());
+            for (String name : parameterNames) {
+                row.add(format(result.getPoint().getValues().get(name)));
+            }
+            for (String name : outputNames) {
+                row.add(result.getOutputs() == null ? "" : format(result.getOutputs().get(name)));
+            }
+            row.add(Long.toString(result.getElapsedTime_ns() / 1_000_000));
+            row.add(result.getError() == null ? "" : String.valueOf(result.getError().getMessage()));
+            writeRow(writer, row);
+        }
+        writer.flush();
+    }
+
+    @Override
+    public String toString() {
+        StringWriter writer = new StringWriter();
+        try {
+            write(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    private static String format(final Object value) {
+        if (value == null) {
+            return "";
+        } else if (value instanceof JsonNode) {
+            JsonNode node = (JsonNode) value;
+            return node.isValueNode() ? node.asText() : node.toString();
+        }
+        return value.toString();
+    }
+
+    private static void writeRow(final Writer writer, final List<String> fields) throws IOException {
+        for (int i = 0; i < fields.size(); ++i) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String field = fields.get(i);
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0) {
+                writer.write('"');
+                writer.write(field.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(field);
+            }
+        }
+        writer.write('\n');
+    }
+}
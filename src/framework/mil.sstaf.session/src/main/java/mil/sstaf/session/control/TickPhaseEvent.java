@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import jdk.jfr.*;
+
+/**
+ * JDK Flight Recorder event for one phase of a tick of an {@code EntityController}.
+ * <p>
+ * The phases are {@code agents}, in which the agents of the entities run,
+ * {@code controller}, in which the controller handles its own messages and agents, and
+ * {@code events}, in which the entities with work due process their messages. The
+ * routing passes between the phases are recorded as {@link RoutePassEvent}s.
+ */
+@Name("mil.sstaf.TickPhase")
+@Label("Tick Phase")
+@Category({"SSTAF", "Controller"})
+@Description("One phase of a tick of an EntityController")
+@StackTrace(false)
+final class TickPhaseEvent extends Event {
+
+    @Label("Entity Path")
+    @Description("Path of the EntityController")
+    String entityPath;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Simulation Time (ms)")
+    long simulationTime_ms;
+
+    @Label("Entity Count")
+    @Description("Number of entities run in the phase")
+    int entityCount;
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.messages;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.experimental.SuperBuilder;
+import lombok.extern.jackson.Jacksonized;
+
+import java.util.List;
+
+/**
+ * The outcome of advancing a {@code Session} through several ticks at once.
+ */
+@SuperBuilder
+@Jacksonized
+@JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, property = "class")
+@EqualsAndHashCode(callSuper = true)
+public class SessionRunResult extends BaseSessionResult {
+
+    /**
+     * The simulation time of the last tick.
+     */
+    @Getter
+    private final long time_ms;
+
+    /**
+     * The number of ticks that were executed.
+     */
+    @Getter
+    private final int tickCount;
+
+    /**
+     * The number of messages to the client that were produced, including those
+     * that were discarded by the filter.
+     */
+    @Getter
+    private final int messageCount;
+
+    /**
+     * The time of the next scheduled event after the last tick.
+     */
+    @Getter
+    private final long nextEventTime_ms;
+
+    /**
+     * The messages to the client that passed the filter, in the order they were produced.
+     */
+    @Getter
+    private final List<BaseSessionResult> messagesToClient;
+
+}
@@ -4,6 +4,7 @@ module mil.sstaf.session {
 
     requires transitive mil.sstaf.core;
     requires org.slf4j;
+    requires jdk.jfr;
     
     requires mil.sstaf.blackboard.api;
     opens mil.sstaf.session.control to com.fasterxml.jackson.databind;
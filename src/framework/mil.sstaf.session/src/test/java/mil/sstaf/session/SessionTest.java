@@ -18,15 +18,28 @@
 package mil.sstaf.session;
 
 import mil.sstaf.core.entity.*;
+import mil.sstaf.core.features.StringContent;
+import mil.sstaf.core.util.SSTAFException;
 import mil.sstaf.session.control.EntityController;
 import mil.sstaf.session.control.Session;
 import mil.sstaf.session.control.SessionConfiguration;
+import mil.sstaf.session.control.SessionJournal;
+import mil.sstaf.session.control.SessionReplay;
+import mil.sstaf.session.messages.Event;
+import mil.sstaf.session.messages.SessionRunResult;
+import mil.sstaf.session.messages.SessionTickResult;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -55,6 +68,208 @@ class SessionTest {
         });
     }
 
+    @Test
+    void checkpointAndRestore(@TempDir Path tempDir) {
+        SessionConfiguration config = SessionConfiguration.builder().build();
+        Path checkpoint = tempDir.resolve("checkpoint.json.gz");
+        try (Session original = Session.of(config, entityController)) {
+            String path = original.getEntities().first().getPath();
+            original.submit(Event.builder()
+                    .recipientPath(path)
+                    .content(StringContent.of("Later"))
+                    .eventTime_ms(10000)
+                    .build());
+            original.tick(5000);
+            assertEquals(10000, original.getEmptyTickResult().getNextEventTime_ms());
+            original.checkpoint(checkpoint);
+        }
+
+        Unit bob = Unit.builder().name("Bob").build();
+        EntityController rebuilt = EntityController.builder().entities(Map.of(Force.BLUE, List.of(bob))).build();
+        try (Session restored = Session.of(config, rebuilt)) {
+            assertEquals(Long.MAX_VALUE, restored.getEmptyTickResult().getNextEventTime_ms());
+            restored.restore(checkpoint);
+            assertEquals(5000, rebuilt.getLastTickTime_ms());
+            assertEquals(10000, restored.getEmptyTickResult().getNextEventTime_ms());
+            assertEquals(1, bob.getInboundQueueDepth());
+            assertEquals(Long.MAX_VALUE, restored.tick(10000).getNextEventTime_ms());
+            assertEquals(0, bob.getInboundQueueDepth());
+        }
+    }
+
+    @Test
+    void restoreRejectsDifferentScenario(@TempDir Path tempDir) {
+        SessionConfiguration config = SessionConfiguration.builder().build();
+        Path checkpoint = tempDir.resolve("checkpoint.json.gz");
+        try (Session original = Session.of(config, entityController)) {
+            original.checkpoint(checkpoint);
+        }
+        Unit alice = Unit.builder().name("Alice").build();
+        EntityController other = EntityController.builder().entities(Map.of(Force.BLUE, List.of(alice))).build();
+        try (Session restored = Session.of(config, other)) {
+            assertThrows(SSTAFException.class, () -> restored.restore(checkpoint));
+        }
+    }
+
+    @Test
+    void forkEvolvesIndependently() {
+        SessionConfiguration config = SessionConfiguration.builder().build();
+        EntityController loaded = EntityController.from(
+                new File("src/test/resources/EntityControllerFactoryTest/EntityConfig1FireTeam.json"));
+        try (Session original = Session.of(config, loaded)) {
+            String path = original.getEntities().first().getPath();
+            original.submit(Event.builder()
+                    .recipientPath(path)
+                    .content(StringContent.of("Later"))
+                    .eventTime_ms(10000)
+                    .build());
+            original.tick(5000);
+
+            try (Session branch = original.fork()) {
+                assertNotSame(loaded, branch.getEntityController());
+                assertEquals(original.getEntityController().getEntityPaths(),
+                        branch.getEntityController().getEntityPaths());
+                assertEquals(5000, branch.getEntityController().getLastTickTime_ms());
+                assertEquals(10000, branch.getEmptyTickResult().getNextEventTime_ms());
+
+                assertEquals(Long.MAX_VALUE, branch.tick(10000).getNextEventTime_ms());
+                assertEquals(10000, original.getEmptyTickResult().getNextEventTime_ms());
+            }
+
+            assertEquals(Long.MAX_VALUE, original.tick(10000).getNextEventTime_ms());
+        }
+    }
+
+    @Test
+    void runUntilAdvancesFromEventToEvent() {
+        SessionConfiguration config = SessionConfiguration.builder().build();
+        try (Session session = Session.of(config, entityController)) {
+            String path = session.getEntities().first().getPath();
+            for (long eventTime_ms : new long[]{3000, 7000}) {
+                session.submit(Event.builder()
+                        .recipientPath(path)
+                        .content(StringContent.of("At " + eventTime_ms))
+                        .eventTime_ms(eventTime_ms)
+                        .build());
+            }
+            SessionRunResult result = session.runUntil(20000, 0, null);
+            assertEquals(3, result.getTickCount());
+            assertEquals(20000, result.getTime_ms());
+            assertEquals(20000, entityController.getLastTickTime_ms());
+            assertEquals(Long.MAX_VALUE, result.getNextEventTime_ms());
+        }
+    }
+
+    @Test
+    void runUntilAdvancesInSteps() {
+        SessionConfiguration config = SessionConfiguration.builder().build();
+        try (Session session = Session.of(config, entityController)) {
+            session.tick(500);
+            SessionRunResult result = session.runUntil(10000, 1000, r -> false);
+            assertEquals(10, result.getTickCount());
+            assertEquals(10000, entityController.getLastTickTime_ms());
+            assertTrue(result.getMessagesToClient().isEmpty());
+
+            assertEquals(1, session.runUntil(10000, 1000, null).getTickCount());
+            assertThrows(IllegalArgumentException.class, () -> session.runUntil(5000, 1000, null));
+        }
+    }
+
+    @Test
+    void asyncTicksAreDeliveredInOrder() {
+        SessionConfiguration config = SessionConfiguration.builder().async(true).build();
+        List<Long> delivered = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<SessionTickResult>> futures = new ArrayList<>();
+        try (Session session = Session.of(config, entityController)) {
+            assertThrows(IllegalStateException.class, () -> session.tick(1000));
+            String path = session.getEntities().first().getPath();
+            session.submit(Event.builder()
+                    .recipientPath(path)
+                    .content(StringContent.of("Later"))
+                    .eventTime_ms(3000)
+                    .build());
+            for (long time_ms = 1000; time_ms <= 5000; time_ms += 1000) {
+                final long tickTime_ms = time_ms;
+                futures.add(session.asyncTick(time_ms)
+                        .whenComplete((result, e) -> delivered.add(tickTime_ms)));
+            }
+            assertEquals(3000, futures.get(0).join().getNextEventTime_ms());
+            assertEquals(3000, futures.get(1).join().getNextEventTime_ms());
+            assertEquals(Long.MAX_VALUE, futures.get(2).join().getNextEventTime_ms());
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        }
+        assertEquals(List.of(1000L, 2000L, 3000L, 4000L, 5000L), delivered);
+        assertEquals(5000, entityController.getLastTickTime_ms());
+    }
+
+    @Test
+    void journalReplaysRecordedRun(@TempDir Path tempDir) {
+        SessionConfiguration config = SessionConfiguration.builder().build();
+        Path file = tempDir.resolve("session.journal");
+        try (Session original = Session.of(config, entityController)) {
+            original.startJournal(file, true);
+            String path = original.getEntities().first().getPath();
+            for (long eventTime_ms : new long[]{3000, 7000}) {
+                original.submit(Event.builder()
+                        .recipientPath(path)
+                        .content(StringContent.of("Status"))
+                        .eventTime_ms(eventTime_ms)
+                        .build());
+            }
+            original.tick(1000);
+            original.tickAgain();
+            original.runUntil(10000, 0, null);
+        }
+
+        SessionJournal journal = SessionJournal.read(file);
+        assertTrue(journal.isResultsRecorded());
+        assertEquals(7, journal.getEntries().size());
+        assertSame(journal.getEntries().get(0).getCommand().getContent(),
+                journal.getEntries().get(1).getCommand().getContent());
+
+        Unit bob = Unit.builder().name("Bob").build();
+        EntityController rebuilt = EntityController.builder().entities(Map.of(Force.BLUE, List.of(bob))).build();
+        try (Session replayed = Session.of(config, rebuilt)) {
+            SessionReplay.Outcome outcome = SessionReplay.replay(replayed, journal, true);
+            assertEquals(2, outcome.getSubmissionCount());
+            assertEquals(5, outcome.getTickCount());
+            assertEquals(0, outcome.getDivergenceCount(), outcome.getFirstDivergence());
+            assertEquals(10000, rebuilt.getLastTickTime_ms());
+        }
+    }
+
+    @Test
+    void replayDetectsDivergence(@TempDir Path tempDir) {
+        SessionConfiguration config = SessionConfiguration.builder().build();
+        Path file = tempDir.resolve("session.journal");
+        try (Session original = Session.of(config, entityController)) {
+            original.startJournal(file, true);
+            original.tick(1000);
+            original.tick(2000);
+        }
+
+        Unit bob = Unit.builder().name("Bob").build();
+        EntityController rebuilt = EntityController.builder().entities(Map.of(Force.BLUE, List.of(bob))).build();
+        try (Session replayed = Session.of(config, rebuilt)) {
+            replayed.submit(Event.builder()
+                    .recipientPath(replayed.getEntities().first().getPath())
+                    .content(StringContent.of("Extra"))
+                    .eventTime_ms(5000)
+                    .build());
+            SessionReplay.Outcome outcome = SessionReplay.replay(replayed, SessionJournal.read(file), true);
+            assertEquals(2, outcome.getDivergenceCount());
+            assertTrue(outcome.getFirstDivergence().startsWith("Tick 0"));
+        }
+    }
+
+    @Test
+    void forkRequiresScenarioFile() {
+        SessionConfiguration config = SessionConfiguration.builder().build();
+        try (Session session = Session.of(config, entityController)) {
+            assertThrows(SSTAFException.class, session::fork);
+        }
+    }
+
 //    @Test
 //    void submit() {
 //        Session.ofBuilder bldr = Session.builder();
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import lombok.experimental.SuperBuilder;
+import mil.sstaf.core.entity.*;
+import mil.sstaf.core.features.StringContent;
+import mil.sstaf.core.util.SSTAFException;
+import mil.sstaf.session.messages.BaseSessionResult;
+import mil.sstaf.session.messages.CommandResult;
+import mil.sstaf.session.messages.Event;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConservativeSchedulerTest {
+
+    private static final Map<String, Long> LOOKAHEADS = Map.of("east", 25L, "west", 25L,
+            ConservativeScheduler.DEFAULT_PARTITION, 0L);
+
+    /**
+     * Passes a countdown to randomly chosen relays. Within a partition, or from a partition
+     * without lookahead, the countdown travels as an immediate message or as an event with
+     * up to two milliseconds of delay; between partitions it respects the lookahead.
+     */
+    @SuperBuilder
+    static class Relay extends Unit {
+        private final List<String> log = new ArrayList<>();
+        private List<Relay> peers;
+        private String group;
+        private boolean cheat;
+
+        @Override
+        public long processMessages(final long currentTime_ms) {
+            Message message;
+            while ((message = inboundQueue.peek()) != null && (!(message instanceof EntityEvent)
+                    || ((EntityEvent) message).getEventTime_ms() <= currentTime_ms)) {
+                inboundQueue.poll();
+                relay(message, currentTime_ms);
+            }
+            return getNextEventTime();
+        }
+
+        private void relay(final Message message, final long currentTime_ms) {
+            String value = ((StringContent) message.getContent()).getValue();
+            log.add(currentTime_ms + " " + value + " from " + message.getSource().entityHandle.getName());
+            outboundQueue.offer(MessageResponse.builder()
+                    .source(Address.makeExternalAddress(getHandle()))
+                    .destination(Address.CLIENT)
+                    .respondTo(Address.NOWHERE)
+                    .messageID(currentTime_ms)
+                    .sequenceNumber(generateSequenceNumber())
+                    .content(StringContent.builder().value(currentTime_ms + " " + value).build())
+                    .build());
+
+            int hops = Integer.parseInt(value);
+            if (hops == 0) {
+                return;
+            }
+            Relay target = peers.get(randomGenerator.nextInt(peers.size()));
+            long lookahead_ms = LOOKAHEADS.get(group);
+            boolean near = target.group.equals(group) || lookahead_ms == 0;
+            long delay_ms = near ? randomGenerator.nextInt(3) - 1 : lookahead_ms + randomGenerator.nextInt(40);
+            if (cheat && !near) {
+                delay_ms = 1;
+            }
+            StringContent content = StringContent.builder().value(Integer.toString(hops - 1)).build();
+            if (delay_ms < 0) {
+                outboundQueue.offer(EntityAction.builder()
+                        .source(Address.makeExternalAddress(getHandle()))
+                        .destination(Address.makeExternalAddress(target.getHandle()))
+                        .respondTo(Address.NOWHERE)
+                        .sequenceNumber(generateSequenceNumber())
+                        .content(content)
+                        .build());
+            } else {
+                outboundQueue.offer(EntityEvent.builder()
+                        .source(Address.makeExternalAddress(getHandle()))
+                        .destination(Address.makeExternalAddress(target.getHandle()))
+                        .respondTo(Address.NOWHERE)
+                        .sequenceNumber(generateSequenceNumber())
+                        .eventTime_ms(currentTime_ms + delay_ms)
+                        .content(content)
+                        .build());
+            }
+        }
+    }
+
+    private List<Relay> relays;
+
+    private EntityController build(final DispatchMode dispatchMode, final boolean cheat) {
+        relays = new ArrayList<>();
+        List<BaseEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 9; ++i) {
+            Relay relay = Relay.builder().name("R" + i).randomSeed(1000 + i).build();
+            relay.group = i < 4 ? "east" : i < 8 ? "west" : ConservativeScheduler.DEFAULT_PARTITION;
+            relay.cheat = cheat;
+            relays.add(relay);
+            entities.add(relay);
+        }
+        relays.forEach(relay -> relay.peers = relays);
+
+        EntityController controller = EntityController.builder()
+                .entities(Map.of(Force.BLUE, entities))
+                .randomSeed(8675309)
+                .executorThreads(4)
+                .dispatchMode(dispatchMode)
+                .partitions(List.of(
+                        LookaheadPartition.builder().name("east").lookahead_ms(25)
+                                .members(List.of("BLUE:R0", "BLUE:R1", "BLUE:R2", "BLUE:R3")).build(),
+                        LookaheadPartition.builder().name("west").lookahead_ms(25)
+                                .members(List.of("BLUE:R4", "BLUE:R5", "BLUE:R6", "BLUE:R7")).build()))
+                .build();
+
+        for (int i = 0; i < relays.size(); ++i) {
+            controller.submitEvent(Event.builder()
+                    .recipientPath(relays.get(i).getPath())
+                    .content(StringContent.builder().value("12").build())
+                    .eventTime_ms(100 + 37L * i)
+                    .build());
+        }
+        return controller;
+    }
+
+    private static List<String> advance(final EntityController controller, final long end_ms) {
+        List<BaseSessionResult> results = new ArrayList<>();
+        if (controller.getDispatchMode() == DispatchMode.CONSERVATIVE) {
+            results.addAll(controller.tick(end_ms).getMessagesToClient());
+        } else {
+            long next_ms;
+            while ((next_ms = controller.getNextEventTime_ms()) > controller.getLastTickTime_ms() && next_ms < end_ms) {
+                results.addAll(controller.tick(next_ms).getMessagesToClient());
+            }
+            results.addAll(controller.tick(end_ms).getMessagesToClient());
+        }
+        List<String> lines = new ArrayList<>();
+        for (BaseSessionResult result : results) {
+            CommandResult commandResult = (CommandResult) result;
+            lines.add(commandResult.getEntityPath() + " " + ((StringContent) commandResult.getContent()).getValue());
+        }
+        return lines;
+    }
+
+    @Test
+    @DisplayName("Confirm that the partitions are built from the force paths")
+    void testPartitionsAreBuilt() {
+        EntityController controller = build(DispatchMode.CONSERVATIVE, false);
+        try {
+            assertEquals(2, controller.getPartitions().size());
+            LookaheadPartition east = controller.getPartitions().get(0);
+            assertTrue(east.contains(relays.get(3)));
+            assertFalse(east.contains(relays.get(4)));
+            ConservativeScheduler scheduler = new ConservativeScheduler(new EntityRegistry(),
+                    relays, controller.getPartitions());
+            assertEquals(3, scheduler.getPartitionCount());
+        } finally {
+            controller.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Confirm that running ahead gives the same results as ticking from event to event")
+    void testSameAsEventToEvent() {
+        EntityController reference = build(DispatchMode.INVOKE_ALL, false);
+        List<Relay> referenceRelays = relays;
+        EntityController conservative = build(DispatchMode.CONSERVATIVE, false);
+        try {
+            for (long end_ms : new long[]{1000, 1000, 1500, 5000}) {
+                List<String> expected = advance(reference, end_ms);
+                List<String> actual = advance(conservative, end_ms);
+                assertEquals(expected, actual, "Messages to the client up to " + end_ms);
+                assertEquals(reference.getLastTickTime_ms(), conservative.getLastTickTime_ms());
+                assertEquals(reference.getNextEventTime_ms(), conservative.getNextEventTime_ms());
+            }
+            for (int i = 0; i < relays.size(); ++i) {
+                assertFalse(referenceRelays.get(i).log.isEmpty());
+                assertEquals(referenceRelays.get(i).log, relays.get(i).log, "Log of " + relays.get(i).getName());
+            }
+        } finally {
+            reference.shutdown();
+            conservative.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Confirm that a message inside the lookahead is reported")
+    void testLookaheadViolation() {
+        EntityController conservative = build(DispatchMode.CONSERVATIVE, true);
+        try {
+            assertThrows(SSTAFException.class, () -> conservative.tick(5000));
+        } finally {
+            conservative.shutdown();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import lombok.experimental.SuperBuilder;
+import mil.sstaf.core.entity.*;
+import mil.sstaf.core.features.*;
+import mil.sstaf.session.messages.BaseSessionResult;
+import mil.sstaf.session.messages.CommandResult;
+import mil.sstaf.session.messages.SessionTickResult;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeterministicExecutionTest {
+
+    private static final int ENTITY_COUNT = 300;
+
+    /**
+     * Carries two agents that send events to randomly chosen peers on every tick, and
+     * reports every event it receives to the client together with the sequence number
+     * of the event.
+     */
+    @SuperBuilder
+    static class Gossip extends Unit {
+        private List<Gossip> peers;
+
+        protected Gossip(GossipBuilder<?, ?> builder) {
+            super(builder);
+            featureManager.register(new Chatter("Alpha", this));
+            featureManager.register(new Chatter("Beta", this));
+        }
+
+        @Override
+        public long processMessages(final long currentTime_ms) {
+            Message message;
+            while ((message = inboundQueue.peek()) != null && (!(message instanceof EntityEvent)
+                    || ((EntityEvent) message).getEventTime_ms() <= currentTime_ms)) {
+                inboundQueue.poll();
+                outboundQueue.offer(MessageResponse.builder()
+                        .source(Address.makeExternalAddress(getHandle()))
+                        .destination(Address.CLIENT)
+                        .respondTo(Address.NOWHERE)
+                        .messageID(message.getSequenceNumber())
+                        .content(StringContent.builder().value(currentTime_ms + " "
+                                + ((StringContent) message.getContent()).getValue() + " from "
+                                + message.getSource().entityHandle.getName()).build())
+                        .build());
+            }
+            return getNextEventTime();
+        }
+
+        int pick(final int bound) {
+            return randomGenerator.nextInt(bound);
+        }
+    }
+
+    /**
+     * An {@code Agent} that sends one event per tick.
+     */
+    static class Chatter extends BaseAgent {
+        private final Gossip owner;
+        private int count = 0;
+
+        Chatter(final String name, final Gossip owner) {
+            super(name, 1, 0, 0, false, "Sends an event to a random peer on every tick");
+            this.owner = owner;
+        }
+
+        @Override
+        public ProcessingResult tick(final long currentTime_ms) {
+            Gossip target = owner.peers.get(owner.pick(owner.peers.size()));
+            return ProcessingResult.of(EntityEvent.builder()
+                    .source(Address.makeExternalAddress(owner.getHandle()))
+                    .destination(Address.makeExternalAddress(target.getHandle()))
+                    .respondTo(Address.NOWHERE)
+                    .eventTime_ms(currentTime_ms + 1 + owner.pick(20))
+                    .content(StringContent.builder().value(featureName + "-" + count++).build())
+                    .build());
+        }
+
+        @Override
+        public List<Class<? extends HandlerContent>> contentHandled() {
+            return List.of();
+        }
+
+        @Override
+        public ProcessingResult process(HandlerContent arg, long scheduledTime_ms, long currentTime_ms,
+                                        Address from, long id, Address respondTo) {
+            return ProcessingResult.empty();
+        }
+    }
+
+    private static EntityController build(final int executorThreads) {
+        List<Gossip> units = new ArrayList<>();
+        //
+        // Seed each entity explicitly. The default seed is the entity ID, which is
+        // drawn from a process-wide counter and so differs between the controllers
+        // built by one test.
+        //
+        for (int i = 0; i < ENTITY_COUNT; ++i) {
+            units.add(Gossip.builder().name("G" + i).randomSeed(1000 + i).build());
+        }
+        units.forEach(unit -> unit.peers = units);
+        return EntityController.builder()
+                .entities(Map.of(Force.BLUE, new ArrayList<BaseEntity>(units)))
+                .randomSeed(8675309)
+                .executorThreads(executorThreads)
+                .deterministic(true)
+                .build();
+    }
+
+    /**
+     * Ticks the controller every five milliseconds and hashes the output of each tick.
+     */
+    private static List<String> hashTicks(final EntityController controller) throws NoSuchAlgorithmException {
+        List<String> hashes = new ArrayList<>();
+        int messages = 0;
+        for (long time_ms = 5; time_ms <= 200; time_ms += 5) {
+            SessionTickResult result = controller.tick(time_ms);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(Long.toString(result.getNextEventTime_ms()).getBytes(StandardCharsets.UTF_8));
+            for (BaseSessionResult message : result.getMessagesToClient()) {
+                CommandResult commandResult = (CommandResult) message;
+                String line = commandResult.getId() + " " + commandResult.getEntityPath() + " "
+                        + ((StringContent) commandResult.getContent()).getValue() + "\n";
+                digest.update(line.getBytes(StandardCharsets.UTF_8));
+                ++messages;
+            }
+            hashes.add(time_ms + " " + HexFormat.of().formatHex(digest.digest()));
+        }
+        assertTrue(messages > ENTITY_COUNT, "Expected traffic to the client");
+        return hashes;
+    }
+
+    @Test
+    @DisplayName("Confirm that deterministic mode gives identical output for any number of executor threads")
+    void testSameOutputForAnyThreadCount() throws Exception {
+        List<String> expected = null;
+        for (int executorThreads : new int[]{1, 4, 16}) {
+            EntityController controller = build(executorThreads);
+            try {
+                assertTrue(controller.isDeterministic());
+                List<String> hashes = hashTicks(controller);
+                if (expected == null) {
+                    expected = hashes;
+                } else {
+                    assertEquals(expected, hashes, "Tick hashes with " + executorThreads + " threads");
+                }
+            } finally {
+                controller.shutdown();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Confirm that in deterministic mode each entity numbers its own messages")
+    void testOwnMessageSequence() {
+        EntityController controller = build(2);
+        try {
+            EntityHandle handle = controller.getHandleFromPath("G7").orElseThrow();
+            assertTrue(handle.hasOwnMessageSequence());
+            long first = EntityAction.builder().source(Address.makeExternalAddress(handle))
+                    .destination(Address.NOWHERE).build().getSequenceNumber();
+            long second = EntityAction.builder().source(Address.makeExternalAddress(handle))
+                    .destination(Address.NOWHERE).build().getSequenceNumber();
+            assertEquals(first + 1, second);
+        } finally {
+            controller.shutdown();
+        }
+    }
+}
@@ -21,13 +21,23 @@ import mil.sstaf.core.entity.*;
 import mil.sstaf.core.features.ExceptionContent;
 import mil.sstaf.core.features.HandlerContent;
 import mil.sstaf.core.features.StringContent;
+import mil.sstaf.core.json.JsonLoader;
+import mil.sstaf.core.metrics.MetricsRegistry;
 import mil.sstaf.session.messages.*;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -105,6 +115,28 @@ class EntityControllerTest {
             assertEquals(Long.MAX_VALUE, result.getNextEventTime_ms());
         }
 
+        @Test
+        @DisplayName("Confirm that events are processed under every executor strategy")
+        void testExecutorStrategies() {
+            assertEquals(ExecutorStrategy.PLATFORM, entityController.getExecutorStrategy());
+            String path = entityController.getSimulationEntityHandles().iterator().next().getPath();
+            long time_ms = 1000;
+            for (ExecutorStrategy strategy : ExecutorStrategy.values()) {
+                entityController.setExecutorStrategy(strategy);
+                assertEquals(strategy, entityController.getExecutorStrategy());
+                entityController.submitEvent(Event.builder()
+                        .recipientPath(path)
+                        .content(StringContent.builder().value("This is a test").build())
+                        .eventTime_ms(time_ms + 500)
+                        .build());
+                entityController.tick(time_ms);
+                assertEquals(time_ms + 500, entityController.getNextEventTime_ms());
+                entityController.tick(time_ms + 500);
+                assertEquals(Long.MAX_VALUE, entityController.getNextEventTime_ms());
+                time_ms += 1000;
+            }
+        }
+
         @Test
         @DisplayName("Confirm that getSimulationEntityHandles() works as expected")
         void getAllEntityHandles() {
@@ -238,5 +270,133 @@ class EntityControllerTest {
             Assertions.assertEquals(390, entityController.getSimulationEntityHandles().size());
 
         }
+
+        @Test
+        @DisplayName("Confirm that concurrent construction assigns the same IDs as a single pass")
+        void testParallelLoadMatchesSinglePass() {
+            File file = new File(
+                    "src/test/resources/EntityControllerFactoryTest/EntityConfig10Platoons.json");
+            EntityController parallel = EntityController.from(file);
+            StartupTimings timings = parallel.getStartupTimings();
+            Assertions.assertEquals(390, timings.getEntityCount());
+            Assertions.assertEquals(10, timings.getConstructionTasks());
+            Assertions.assertTrue(timings.getParseTime_ns() > 0);
+            Assertions.assertTrue(timings.getConstructTime_ns() > 0);
+
+            EntityController singlePass = new JsonLoader().load(file.toPath(), EntityController.class);
+            Assertions.assertEquals(relativeIds(singlePass), relativeIds(parallel));
+            parallel.shutdown();
+            singlePass.shutdown();
+        }
+
+        private List<String> relativeIds(EntityController entityController) {
+            Collection<EntityHandle> handles = entityController.getSimulationEntityHandles();
+            long first = handles.stream().mapToLong(EntityHandle::getId).min().orElse(0);
+            return handles.stream()
+                    .sorted(Comparator.comparingLong(EntityHandle::getId))
+                    .map(handle -> (handle.getId() - first) + " " + handle.getForcePath())
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Nested
+    @DisplayName("Metrics")
+    class Metrics {
+
+        @BeforeEach
+        void setupMetrics() {
+            entityController.shutdown();
+            unit = Unit.builder().name("Bob").build();
+            unit.init();
+            entityController = EntityController.builder()
+                    .entities(Map.of(Force.BLUE, List.of(unit)))
+                    .collectMetrics(true)
+                    .build();
+        }
+
+        @Test
+        @DisplayName("Confirm that metrics are only collected when requested")
+        void testMetricsAreOptIn() {
+            EntityController plain = EntityController.builder()
+                    .entities(Map.of(Force.BLUE, List.of(Unit.builder().name("Carol").build())))
+                    .build();
+            try {
+                assertFalse(plain.isCollectMetrics());
+                assertNull(plain.getMetrics());
+                assertDoesNotThrow(() -> plain.tick(1000));
+            } finally {
+                plain.shutdown();
+            }
+            assertTrue(entityController.isCollectMetrics());
+            assertNotNull(entityController.getMetrics());
+        }
+
+        @Test
+        @DisplayName("Confirm that ticks feed the controller and entity metrics")
+        void testTickFeedsMetrics() {
+            entityController.submitEvent(Event.builder()
+                    .recipientPath(unit.getPath())
+                    .content(StringContent.of("Now"))
+                    .eventTime_ms(1000)
+                    .build());
+            entityController.tick(1000);
+            entityController.tick(2000);
+
+            MetricsRegistry metrics = entityController.getMetrics();
+            assertEquals(2, metrics.counter("tick.count").get());
+            assertEquals(2, metrics.histogram("tick.time").getCount());
+            assertEquals(2, metrics.histogram("tick.events").getCount());
+            assertTrue(metrics.counter("messages.routed").get() >= 2);
+            assertTrue(metrics.counter("messages.toClient").get() >= 1);
+
+            String forcePath = unit.getHandle().getForcePath();
+            assertTrue(metrics.histogram("entity.processTime." + forcePath).getCount() >= 1);
+            assertEquals(1, metrics.gauge("entity.inboundDepth." + forcePath).getMax());
+            assertFalse(metrics.snapshot("entity.").isEmpty());
+        }
+    }
+
+    @Nested
+    @DisplayName("JDK Flight Recorder events")
+    class FlightRecorderEvents {
+
+        @Test
+        @DisplayName("Confirm that every tick phase and routing pass is recorded")
+        void testTickEventsRecorded(@TempDir Path tempDir) throws IOException {
+            Path file = tempDir.resolve("tick.jfr");
+            try (Recording recording = new Recording()) {
+                recording.enable("mil.sstaf.TickPhase");
+                recording.enable("mil.sstaf.RoutePass");
+                recording.start();
+                entityController.submitEvent(Event.builder()
+                        .recipientPath(unit.getPath())
+                        .content(StringContent.of("Now"))
+                        .eventTime_ms(1000)
+                        .build());
+                entityController.tick(1000);
+                recording.stop();
+                recording.dump(file);
+            }
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+                    .collect(Collectors.toList());
+            List<RecordedEvent> phases = events.stream()
+                    .filter(e -> e.getEventType().getName().equals("mil.sstaf.TickPhase"))
+                    .collect(Collectors.toList());
+            assertEquals(List.of("agents", "controller", "events"),
+                    phases.stream().map(e -> e.getString("phase")).collect(Collectors.toList()));
+            for (RecordedEvent phase : phases) {
+                assertEquals(1000, phase.getLong("simulationTime_ms"));
+                assertEquals(entityController.getPath(), phase.getString("entityPath"));
+            }
+            assertTrue(phases.get(2).getInt("entityCount") >= 1);
+
+            List<RecordedEvent> passes = events.stream()
+                    .filter(e -> e.getEventType().getName().equals("mil.sstaf.RoutePass"))
+                    .collect(Collectors.toList());
+            assertEquals(3, passes.size());
+            assertTrue(passes.stream().mapToLong(e -> e.getLong("messageCount")).sum() >= 2);
+        }
     }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import mil.sstaf.core.entity.*;
+import mil.sstaf.core.features.StringContent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventCalendarTest {
+
+    private EventCalendar calendar;
+    private Unit alpha;
+    private Unit bravo;
+
+    @BeforeEach
+    void setup() {
+        alpha = Unit.builder().name("Alpha").build();
+        alpha.init();
+        bravo = Unit.builder().name("Bravo").build();
+        bravo.init();
+        calendar = new EventCalendar();
+        calendar.register(alpha);
+        calendar.register(bravo);
+    }
+
+    private EntityEvent makeEvent(Entity destination, long time_ms) {
+        return EntityEvent.builder()
+                .destination(Address.makeExternalAddress(destination.getHandle()))
+                .source(Address.makeExternalAddress(destination.getHandle()))
+                .respondTo(Address.NOWHERE)
+                .eventTime_ms(time_ms)
+                .content(StringContent.builder().value("event").build())
+                .build();
+    }
+
+    private EntityAction makeAction(Entity destination) {
+        return EntityAction.builder()
+                .destination(Address.makeExternalAddress(destination.getHandle()))
+                .source(Address.makeExternalAddress(destination.getHandle()))
+                .respondTo(Address.NOWHERE)
+                .content(StringContent.builder().value("action").build())
+                .build();
+    }
+
+    @Test
+    @DisplayName("Confirm that idle entities are not due")
+    void testIdleEntitiesNotDue() {
+        assertEquals(2, calendar.size());
+        assertTrue(calendar.takeDue(1000).isEmpty());
+        assertEquals(Long.MAX_VALUE, calendar.getNextEventTime(1000));
+    }
+
+    @Test
+    @DisplayName("Confirm that actions make an entity due immediately and only once")
+    void testActionIsImmediate() {
+        calendar.onDelivered(bravo, makeAction(bravo));
+        assertEquals(List.of(bravo), calendar.takeDue(0));
+        assertTrue(calendar.takeDue(0).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Confirm that events make an entity due at the event time")
+    void testEventBecomesDue() {
+        calendar.onDelivered(alpha, makeEvent(alpha, 5000));
+        assertEquals(5000, calendar.getNextEventTime(0));
+        assertTrue(calendar.takeDue(4999).isEmpty());
+        assertEquals(List.of(alpha), calendar.takeDue(5000));
+        assertEquals(Long.MAX_VALUE, calendar.getNextEventTime(5000));
+    }
+
+    @Test
+    @DisplayName("Confirm that an earlier booking supersedes a later one and rescheduling works")
+    void testEarlierBookingSupersedes() {
+        calendar.onDelivered(alpha, makeEvent(alpha, 8000));
+        calendar.onDelivered(alpha, makeEvent(alpha, 3000));
+        calendar.onDelivered(bravo, makeEvent(bravo, 6000));
+        assertEquals(3000, calendar.getNextEventTime(0));
+
+        assertEquals(List.of(alpha), calendar.takeDue(3000));
+        // Alpha reports its remaining event after processing
+        calendar.schedule(alpha, 8000);
+        assertEquals(6000, calendar.getNextEventTime(3000));
+
+        assertEquals(List.of(bravo), calendar.takeDue(6000));
+        calendar.schedule(bravo, Long.MAX_VALUE);
+        assertEquals(8000, calendar.getNextEventTime(6000));
+
+        List<Entity> due = calendar.takeDue(10000);
+        assertEquals(List.of(alpha), due);
+    }
+
+    @Test
+    @DisplayName("Confirm that due entities are ordered by id")
+    void testDueOrder() {
+        calendar.onDelivered(bravo, makeAction(bravo));
+        calendar.onDelivered(alpha, makeAction(alpha));
+        List<Entity> due = calendar.takeDue(0);
+        assertEquals(2, due.size());
+        assertTrue(due.get(0).getId() < due.get(1).getId());
+    }
+
+    @Test
+    @DisplayName("Confirm that deliveries to unregistered entities are ignored")
+    void testUnregisteredIgnored() {
+        Unit charlie = Unit.builder().name("Charlie").build();
+        charlie.init();
+        calendar.onDelivered(charlie, makeAction(charlie));
+        calendar.schedule(charlie, 100);
+        assertTrue(calendar.takeDue(1000).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Confirm that work already queued at registration is booked")
+    void testRegisterBooksQueuedWork() {
+        Unit delta = Unit.builder().name("Delta").build();
+        delta.init();
+        delta.receive(makeEvent(delta, 2500));
+        calendar.register(delta);
+        assertEquals(2500, calendar.getNextEventTime(0));
+        assertEquals(List.of(delta), calendar.takeDue(2500));
+    }
+
+    @Test
+    @DisplayName("Confirm that extracted entities take their work with them and merge back")
+    void testExtractAndMerge() {
+        calendar.onDelivered(alpha, makeEvent(alpha, 3000));
+        calendar.onDelivered(bravo, makeEvent(bravo, 6000));
+        calendar.onDelivered(bravo, makeAction(bravo));
+
+        EventCalendar part = calendar.extract(List.of(bravo));
+        assertEquals(1, calendar.size());
+        assertEquals(1, part.size());
+        assertFalse(calendar.hasImmediate());
+        assertTrue(part.hasImmediate());
+        assertEquals(3000, calendar.getEarliestBooking());
+        assertEquals(6000, part.getEarliestBooking());
+
+        calendar.merge(part);
+        assertEquals(2, calendar.size());
+        assertEquals(0, part.size());
+        assertEquals(List.of(bravo), calendar.takeDue(0));
+        assertEquals(List.of(alpha), calendar.takeDue(3000));
+        assertEquals(List.of(bravo), calendar.takeDue(6000));
+        assertEquals(Long.MAX_VALUE, calendar.getEarliestBooking());
+    }
+}
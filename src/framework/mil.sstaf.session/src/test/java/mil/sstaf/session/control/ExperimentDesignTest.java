@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExperimentDesignTest {
+
+    private static final SweepParameter STATURE = SweepParameter.builder()
+            .featureName("ANSUR Anthropometry")
+            .pointer("/constraints/1/lowerBound")
+            .levels(List.of(1600, 1700, 1800))
+            .build();
+
+    private static final SweepParameter MOS = SweepParameter.builder()
+            .name("MOS")
+            .featureName("ANSUR Anthropometry")
+            .pointer("/constraints/0/matches")
+            .levels(List.of("11B", "11C"))
+            .build();
+
+    @Test
+    @DisplayName("A grid holds every combination, with the last parameter varying fastest")
+    void gridEnumeratesCombinations() {
+        ExperimentDesign grid = ExperimentDesign.grid(List.of(STATURE, MOS));
+        assertEquals(6, grid.size());
+        assertEquals(1600, grid.get(0).getValues().get("ANSUR Anthropometry/constraints/1/lowerBound").asInt());
+        assertEquals("11B", grid.get(0).getValues().get("MOS").asText());
+        assertEquals("11C", grid.get(1).getValues().get("MOS").asText());
+        assertEquals(1700, grid.get(2).getValues().get("ANSUR Anthropometry/constraints/1/lowerBound").asInt());
+        assertEquals(1800, grid.get(5).getValues().get("ANSUR Anthropometry/constraints/1/lowerBound").asInt());
+        assertEquals("11C", grid.get(5).getValues().get("MOS").asText());
+    }
+
+    @Test
+    @DisplayName("A grid cannot use a parameter that only has a range")
+    void gridNeedsLevels() {
+        SweepParameter range = SweepParameter.builder().featureName("Test Feature").pointer("/seed")
+                .lower(0.0).upper(10.0).build();
+        assertThrows(IllegalArgumentException.class, () -> ExperimentDesign.grid(List.of(range)));
+    }
+
+    @Test
+    @DisplayName("A Latin hypercube samples each stratum of each parameter exactly once")
+    void latinHypercubeIsStratified() {
+        int samples = 10;
+        SweepParameter weight = SweepParameter.builder().name("weight").featureName("Test Feature")
+                .pointer("/weight").lower(50.0).upper(100.0).build();
+        SweepParameter count = SweepParameter.builder().name("count").featureName("Test Feature")
+                .pointer("/count").lower(0.0).upper(9.0).integral(true).build();
+        ExperimentDesign design = ExperimentDesign.latinHypercube(List.of(weight, count), samples, 7);
+        assertEquals(samples, design.size());
+
+        boolean[] weightStrata = new boolean[samples];
+        boolean[] counts = new boolean[samples];
+        for (int i = 0; i < samples; ++i) {
+            double w = design.get(i).getValues().get("weight").asDouble();
+            assertTrue(w >= 50.0 && w < 100.0);
+            int stratum = (int) ((w - 50.0) / 5.0);
+            assertFalse(weightStrata[stratum]);
+            weightStrata[stratum] = true;
+
+            assertTrue(design.get(i).getValues().get("count").isIntegralNumber());
+            int c = design.get(i).getValues().get("count").asInt();
+            assertFalse(counts[c]);
+            counts[c] = true;
+        }
+
+        ExperimentDesign again = ExperimentDesign.latinHypercube(List.of(weight, count), samples, 7);
+        for (int i = 0; i < samples; ++i) {
+            assertEquals(design.get(i).getValues(), again.get(i).getValues());
+        }
+    }
+}
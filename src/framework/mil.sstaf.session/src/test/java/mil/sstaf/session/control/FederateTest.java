@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import lombok.experimental.SuperBuilder;
+import mil.sstaf.core.entity.*;
+import mil.sstaf.core.features.StringContent;
+import mil.sstaf.core.util.SSTAFException;
+import mil.sstaf.session.messages.BaseSessionResult;
+import mil.sstaf.session.messages.CommandResult;
+import mil.sstaf.session.messages.Event;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ByteArrayInputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FederateTest {
+
+    private static final int RELAYS = 9;
+    private static final int FEDERATES = 3;
+
+    /**
+     * Passes a countdown around a ring of relays as events. The next relay and the delay
+     * depend only on the position of the relay and the count, so the results do not
+     * depend on which process hosts which relay.
+     */
+    @SuperBuilder
+    static class Relay extends Unit {
+        private final List<String> log = new ArrayList<>();
+        private int index;
+        private EntityHandle next;
+        private boolean broken;
+
+        @Override
+        public void receive(final Message message) {
+            if (broken) {
+                throw new IllegalStateException(getName() + " cannot receive messages");
+            }
+            super.receive(message);
+        }
+
+        @Override
+        public long processMessages(final long currentTime_ms) {
+            Message message;
+            while ((message = inboundQueue.peek()) != null && (!(message instanceof EntityEvent)
+                    || ((EntityEvent) message).getEventTime_ms() <= currentTime_ms)) {
+                inboundQueue.poll();
+                relay(message, currentTime_ms);
+            }
+            return getNextEventTime();
+        }
+
+        private void relay(final Message message, final long currentTime_ms) {
+            String value = ((StringContent) message.getContent()).getValue();
+            log.add(currentTime_ms + " " + value + " from " + message.getSource().entityHandle.getPath());
+            outboundQueue.offer(MessageResponse.builder()
+                    .source(Address.makeExternalAddress(getHandle()))
+                    .destination(Address.CLIENT)
+                    .respondTo(Address.NOWHERE)
+                    .messageID(currentTime_ms)
+                    .sequenceNumber(generateSequenceNumber())
+                    .content(StringContent.builder().value(currentTime_ms + " " + value).build())
+                    .build());
+
+            int hops = Integer.parseInt(value);
+            if (hops > 0) {
+                outboundQueue.offer(EntityEvent.builder()
+                        .source(Address.makeExternalAddress(getHandle()))
+                        .destination(Address.makeExternalAddress(next))
+                        .respondTo(Address.NOWHERE)
+                        .sequenceNumber(generateSequenceNumber())
+                        .eventTime_ms(currentTime_ms + 1 + (index + hops) % 5)
+                        .content(StringContent.builder().value(Integer.toString(hops - 1)).build())
+                        .build());
+            }
+        }
+    }
+
+    private final Map<String, Relay> relays = new TreeMap<>();
+
+    private EntityController build(final String name, final int rank) {
+        List<BaseEntity> entities = new ArrayList<>();
+        for (int i = 0; i < RELAYS; ++i) {
+            if (rank < 0 || i % FEDERATES == rank) {
+                Relay relay = Relay.builder().name("R" + i).build();
+                relay.index = i;
+                relays.put(relay.getName(), relay);
+                entities.add(relay);
+            }
+        }
+        return EntityController.builder()
+                .name(name)
+                .entities(Map.of(Force.BLUE, entities))
+                .randomSeed(8675309)
+                .executorThreads(2)
+                .build();
+    }
+
+    private void connect(final EntityController controller, final int rank) {
+        for (int i = rank < 0 ? 0 : rank; i < RELAYS; i += rank < 0 ? 1 : FEDERATES) {
+            String next = "R" + (i + 1) % RELAYS;
+            relays.get("R" + i).next = controller.getHandleFromPath(next).orElseThrow();
+        }
+    }
+
+    private static void submit(final EntityController controller) {
+        for (int i = 0; i < RELAYS; ++i) {
+            controller.submitEvent(Event.builder()
+                    .recipientPath("R" + i)
+                    .content(StringContent.builder().value("12").build())
+                    .eventTime_ms(100 + 7L * i)
+                    .build());
+        }
+    }
+
+    private static List<String> advance(final EntityController controller, final long end_ms) {
+        List<BaseSessionResult> results = new ArrayList<>();
+        long next_ms;
+        while ((next_ms = controller.getNextEventTime_ms()) > controller.getLastTickTime_ms() && next_ms < end_ms) {
+            results.addAll(controller.tick(next_ms).getMessagesToClient());
+        }
+        results.addAll(controller.tick(end_ms).getMessagesToClient());
+        List<String> lines = new ArrayList<>();
+        for (BaseSessionResult result : results) {
+            CommandResult commandResult = (CommandResult) result;
+            lines.add(commandResult.getEntityPath() + " " + ((StringContent) commandResult.getContent()).getValue());
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+
+    @Test
+    @DisplayName("Confirm that a federation gives the same results as a single controller")
+    void testSameAsSingleController() throws Exception {
+        EntityController reference = build("Reference", -1);
+        connect(reference, -1);
+        Map<String, Relay> referenceRelays = new TreeMap<>(relays);
+        relays.clear();
+        submit(reference);
+
+        ExecutorService threads = Executors.newFixedThreadPool(FEDERATES - 1);
+        List<EntityController> controllers = new ArrayList<>();
+        List<Future<?>> followers = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(0, FEDERATES, InetAddress.getLoopbackAddress())) {
+            EntityController lead = build("Lead", 0);
+            controllers.add(lead);
+            for (int rank = 1; rank < FEDERATES; ++rank) {
+                final int r = rank;
+                EntityController follower = build("Follower" + rank, rank);
+                controllers.add(follower);
+                followers.add(threads.submit(() -> {
+                    Federate federate = Federate.join(follower, server.getInetAddress().getHostAddress(),
+                            server.getLocalPort());
+                    connect(follower, r);
+                    assertEquals(FEDERATES, federate.getFederateCount());
+                    federate.serve();
+                    return null;
+                }));
+            }
+            Federate federate = Federate.lead(lead, server, FEDERATES - 1);
+            assertTrue(federate.isLead());
+            assertEquals(FEDERATES, federate.getFederateCount());
+            connect(lead, 0);
+            submit(lead);
+
+            for (long end_ms : new long[]{150, 150, 400, 2000}) {
+                assertEquals(advance(reference, end_ms), advance(lead, end_ms), "Messages to the client up to " + end_ms);
+                assertEquals(reference.getLastTickTime_ms(), lead.getLastTickTime_ms());
+                assertEquals(reference.getNextEventTime_ms(), lead.getNextEventTime_ms());
+            }
+            lead.shutdown();
+            for (Future<?> follower : followers) {
+                follower.get(10, TimeUnit.SECONDS);
+            }
+
+            for (Map.Entry<String, Relay> entry : referenceRelays.entrySet()) {
+                assertFalse(entry.getValue().log.isEmpty());
+                assertEquals(entry.getValue().log, relays.get(entry.getKey()).log, "Log of " + entry.getKey());
+            }
+        } finally {
+            threads.shutdownNow();
+            reference.shutdown();
+            controllers.forEach(EntityController::shutdown);
+        }
+    }
+
+    @Test
+    @DisplayName("Confirm that a failed follower tick fails the federation tick and closes the federation")
+    void testFollowerFailure() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(FEDERATES - 1);
+        List<EntityController> controllers = new ArrayList<>();
+        List<Future<?>> followers = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(0, FEDERATES, InetAddress.getLoopbackAddress())) {
+            EntityController lead = build("Lead", 0);
+            controllers.add(lead);
+            for (int rank = 1; rank < FEDERATES; ++rank) {
+                final int r = rank;
+                EntityController follower = build("Follower" + rank, rank);
+                controllers.add(follower);
+                followers.add(threads.submit(() -> {
+                    Federate federate = Federate.join(follower, server.getInetAddress().getHostAddress(),
+                            server.getLocalPort());
+                    connect(follower, r);
+                    federate.serve();
+                    return null;
+                }));
+            }
+            Federate.lead(lead, server, FEDERATES - 1);
+            connect(lead, 0);
+            relays.get("R1").broken = true;
+            submit(lead);
+
+            SSTAFException failure = assertThrows(SSTAFException.class, () -> lead.tick(100));
+            assertTrue(failure.getMessage().contains("Follower1"), failure.getMessage());
+            assertThrows(IllegalStateException.class, () -> lead.tick(200));
+
+            ExecutionException broken = assertThrows(ExecutionException.class,
+                    () -> followers.get(0).get(10, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, broken.getCause());
+            try {
+                followers.get(1).get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                //
+                // The healthy follower may see the lead hang up before the shutdown arrives.
+                //
+                assertInstanceOf(SSTAFException.class, e.getCause());
+            }
+        } finally {
+            threads.shutdownNow();
+            controllers.forEach(EntityController::shutdown);
+        }
+    }
+
+    @Test
+    @DisplayName("Confirm that messages survive the trip between federates")
+    void testMessageRoundTrip() throws Exception {
+        EntityController controller = build("Controller", -1);
+        try {
+            FederationProtocol protocol = new FederationProtocol(controller.getRegistry());
+            EntityHandle r1 = controller.getHandleFromPath("R1").orElseThrow();
+            EntityHandle r2 = controller.getHandleFromPath("R2").orElseThrow();
+            List<Message> messages = List.of(
+                    EntityEvent.builder()
+                            .source(Address.makeExternalAddress(r1))
+                            .destination(Address.makeExternalAddress(r2))
+                            .respondTo(Address.NOWHERE)
+                            .eventTime_ms(1234)
+                            .content(StringContent.builder().value("event").build())
+                            .build(),
+                    MessageResponse.builder()
+                            .source(Address.makeExternalAddress(r2))
+                            .destination(Address.CLIENT)
+                            .respondTo(Address.NOWHERE)
+                            .messageID(99)
+                            .content(StringContent.builder().value("response").build())
+                            .build());
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                protocol.writeMessages(out, messages);
+            }
+            List<Message> copies = protocol.readMessages(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+            assertEquals(2, copies.size());
+            EntityEvent event = assertInstanceOf(EntityEvent.class, copies.get(0));
+            assertEquals(1234, event.getEventTime_ms());
+            assertEquals(r1, event.getSource().entityHandle);
+            assertEquals(r2, event.getDestination().entityHandle);
+            assertEquals(Address.NOWHERE, event.getRespondTo());
+            assertEquals("event", ((StringContent) event.getContent()).getValue());
+
+            MessageResponse response = assertInstanceOf(MessageResponse.class, copies.get(1));
+            assertEquals(99, response.getMessageID());
+            assertEquals(controller.getRegistry().getClientAddress(), response.getDestination());
+            assertEquals("response", ((StringContent) response.getContent()).getValue());
+        } finally {
+            controller.shutdown();
+        }
+    }
+}
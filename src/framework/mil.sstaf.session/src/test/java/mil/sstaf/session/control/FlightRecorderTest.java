@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import lombok.experimental.SuperBuilder;
+import mil.sstaf.core.entity.*;
+import mil.sstaf.core.features.StringContent;
+import mil.sstaf.session.messages.Event;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlightRecorderTest {
+
+    /**
+     * Passes a countdown to the next unit in a ring as an event, and reports each
+     * step to the client.
+     */
+    @SuperBuilder
+    static class Echo extends Unit {
+        private EntityHandle next;
+
+        @Override
+        public long processMessages(final long currentTime_ms) {
+            Message message;
+            while ((message = inboundQueue.peek()) != null && (!(message instanceof EntityEvent)
+                    || ((EntityEvent) message).getEventTime_ms() <= currentTime_ms)) {
+                inboundQueue.poll();
+                int hops = Integer.parseInt(((StringContent) message.getContent()).getValue());
+                outboundQueue.offer(MessageResponse.builder()
+                        .source(Address.makeExternalAddress(getHandle()))
+                        .destination(Address.CLIENT)
+                        .respondTo(Address.NOWHERE)
+                        .messageID(message.getSequenceNumber())
+                        .content(StringContent.builder().value(Integer.toString(hops)).build())
+                        .build());
+                if (hops > 0) {
+                    outboundQueue.offer(EntityEvent.builder()
+                            .source(Address.makeExternalAddress(getHandle()))
+                            .destination(Address.makeExternalAddress(next))
+                            .respondTo(Address.NOWHERE)
+                            .eventTime_ms(currentTime_ms + 10)
+                            .content(StringContent.builder().value(Integer.toString(hops - 1)).build())
+                            .build());
+                }
+            }
+            return getNextEventTime();
+        }
+    }
+
+    private static EntityController build(final int count, final int executorThreads) {
+        List<Echo> units = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            units.add(Echo.builder().name("E" + i).build());
+        }
+        EntityController controller = EntityController.builder()
+                .entities(Map.of(Force.BLUE, new ArrayList<BaseEntity>(units)))
+                .randomSeed(8675309)
+                .executorThreads(executorThreads)
+                .build();
+        for (int i = 0; i < count; ++i) {
+            units.get(i).next = units.get((i + 1) % count).getHandle();
+            controller.submitEvent(Event.builder()
+                    .recipientPath("E" + i)
+                    .content(StringContent.builder().value("3").build())
+                    .eventTime_ms(10)
+                    .build());
+        }
+        return controller;
+    }
+
+    private static long run(final EntityController controller) {
+        long routed = 0;
+        for (long time_ms = 10; time_ms <= 50; time_ms += 10) {
+            controller.tick(time_ms);
+            routed += controller.getRoutingStatistics().getMessageCount();
+        }
+        return routed;
+    }
+
+    @Test
+    @DisplayName("Confirm that every routed message is recorded and decoded")
+    void testRecordsEveryMessage(@TempDir Path dir) {
+        Path file = dir.resolve("flight.log");
+        EntityController controller = build(4, 2);
+        long routed;
+        try {
+            controller.startFlightRecorder(file, 1000);
+            routed = run(controller);
+        } finally {
+            controller.shutdown();
+        }
+
+        FlightLogReader reader = FlightLogReader.open(file);
+        assertEquals(routed, reader.getWrittenCount());
+        assertEquals(routed, reader.getRecords().size());
+
+        List<FlightLogReader.Record> submitted = reader.read(FlightLogReader.ticks(10, 10)
+                .and(record -> record.getSource().endsWith("ClientProxy")));
+        assertEquals(4, submitted.size());
+        for (FlightLogReader.Record record : submitted) {
+            assertEquals("EVENT", record.getKind());
+            assertEquals("DELIVERED", record.getOutcome());
+            assertEquals(10, record.getEventTime_ms());
+            assertEquals(StringContent.class.getName(), record.getContentType());
+        }
+
+        List<FlightLogReader.Record> e2 = reader.read(FlightLogReader.entity("E2"));
+        assertFalse(e2.isEmpty());
+        for (FlightLogReader.Record record : e2) {
+            assertTrue(record.getSource().equals("BLUE:E2") || record.getDestination().equals("BLUE:E2"), record.toString());
+            if (record.getDestination().equals("CLIENT")) {
+                assertEquals("RESPONSE", record.getKind());
+                assertEquals("TO_CLIENT", record.getOutcome());
+                assertFalse(record.isEvent());
+            }
+        }
+        List<FlightLogReader.Record> forwarded = reader.read(FlightLogReader.entity("BLUE:E1")
+                .and(record -> record.getDestination().equals("BLUE:E2")));
+        assertEquals(3, forwarded.size());
+        assertEquals(List.of(20L, 30L, 40L), forwarded.stream().map(FlightLogReader.Record::getEventTime_ms).toList());
+        assertEquals(forwarded, reader.read(FlightLogReader.contentType("StringContent")
+                .and(record -> record.getSource().equals("BLUE:E1") && record.isEvent())));
+    }
+
+    @Test
+    @DisplayName("Confirm that the log keeps the most recent messages")
+    void testKeepsMostRecent(@TempDir Path dir) {
+        Path file = dir.resolve("flight.log");
+        EntityController controller = build(4, 2);
+        try {
+            controller.startFlightRecorder(file, 4);
+            long routed = run(controller);
+            FlightLogReader reader = FlightLogReader.open(file);
+            assertTrue(routed > 4);
+            assertEquals(routed, reader.getWrittenCount());
+            assertEquals(4, reader.getRecords().size());
+            for (FlightLogReader.Record record : reader.getRecords()) {
+                assertEquals(40, record.getTick_ms());
+                assertEquals("TO_CLIENT", record.getOutcome());
+            }
+        } finally {
+            controller.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Confirm that records from parallel routing are returned in routing order")
+    void testParallelRoutingOrder(@TempDir Path dir) {
+        Path file = dir.resolve("flight.log");
+        int count = MessageRouter.PARALLEL_THRESHOLD + 44;
+        EntityController controller = build(count, 4);
+        long routed;
+        try {
+            controller.startFlightRecorder(file, FlightRecorder.RING_SIZE * 4L);
+            routed = run(controller);
+        } finally {
+            controller.shutdown();
+        }
+
+        FlightLogReader reader = FlightLogReader.open(file);
+        assertEquals(routed, reader.getRecords().size());
+        FlightLogReader.Record previous = null;
+        for (FlightLogReader.Record record : reader.getRecords()) {
+            if (previous != null && previous.getTick_ms() == record.getTick_ms()) {
+                assertTrue(previous.getPass() < record.getPass()
+                        || (previous.getPass() == record.getPass() && previous.getOrder() < record.getOrder()), record.toString());
+            }
+            previous = record;
+        }
+    }
+}
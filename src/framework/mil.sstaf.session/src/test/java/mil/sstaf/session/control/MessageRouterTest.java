@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import mil.sstaf.core.entity.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageRouterTest {
+
+    private ExecutorService executorService;
+
+    @BeforeEach
+    void setup() {
+        executorService = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void teardown() {
+        executorService.shutdown();
+    }
+
+    /**
+     * Builds a registry of initialized units, each of which sends messages to its
+     * neighbours, the client and NOWHERE. Each unit numbers its own messages, so the
+     * sequence numbers are the same in every world that is built.
+     */
+    private EntityRegistry makeWorld(int numEntities) {
+        List<BaseEntity> units = new ArrayList<>();
+        for (int i = 0; i < numEntities; ++i) {
+            Unit unit = Unit.builder().name("U" + i).build();
+            unit.setOwnMessageSequence(true);
+            unit.init();
+            units.add(unit);
+        }
+        EntityRegistry registry = new EntityRegistry();
+        registry.registerEntities(Map.of(Force.BLUE, units));
+        registry.compileEntityMaps();
+        for (int i = 0; i < numEntities; ++i) {
+            BaseEntity source = units.get(i);
+            for (int j = 1; j <= 3; ++j) {
+                BaseEntity destination = units.get((i + j * 7) % numEntities);
+                source.sendErrorResponse(j, "test", null, Address.makeExternalAddress(destination.getHandle()));
+                source.sendErrorResponse(j, "test", null, Address.makeExternalAddress(destination.getHandle()));
+            }
+            source.sendErrorResponse(0, "client", null, Address.CLIENT);
+            source.sendErrorResponse(0, "nowhere", null, Address.NOWHERE);
+        }
+        return registry;
+    }
+
+    private Map<String, List<String>> collectInbound(Collection<Entity> entities) {
+        Map<String, List<String>> inbound = new TreeMap<>();
+        for (Entity entity : entities) {
+            List<String> received = new ArrayList<>();
+            for (Message message : entity.takeInbound()) {
+                received.add(message.getSource().entityHandle.getName() + ":"
+                        + message.getSequenceNumber() + ":" + ((MessageResponse) message).getMessageID());
+            }
+            inbound.put(entity.getName(), received);
+        }
+        return inbound;
+    }
+
+    private Unit makeClient() {
+        Unit client = Unit.builder().name("Client").build();
+        client.init();
+        return client;
+    }
+
+    @Test
+    @DisplayName("Confirm that messages reach their destinations and statistics are gathered")
+    void testSerialRouting() {
+        EntityRegistry registry = makeWorld(10);
+        Unit client = makeClient();
+        MessageRouter router = new MessageRouter(registry, client, 4);
+        List<Entity> delivered = new ArrayList<>();
+        router.route(executorService, (entity, message) -> delivered.add(entity));
+
+        RoutingStatistics stats = router.getStatistics();
+        assertEquals(80, stats.getMessageCount());
+        assertEquals(10, stats.getDroppedCount());
+        assertEquals(10, stats.getClientCount());
+        assertEquals(1, stats.getPasses());
+        assertEquals(0, stats.getParallelPasses());
+        assertEquals(60, delivered.size());
+        assertEquals(10, client.getInboundQueueDepth());
+
+        int total = 0;
+        for (Entity entity : registry.getAllEntities()) {
+            total += entity.getInboundQueueDepth();
+        }
+        assertEquals(60, total);
+
+        router.resetStatistics();
+        router.route(executorService, (entity, message) -> delivered.add(entity));
+        assertEquals(0, router.getStatistics().getMessageCount());
+        assertEquals(1, router.getStatistics().getPasses());
+    }
+
+    @Test
+    @DisplayName("Confirm that parallel routing delivers in the same order as serial routing")
+    void testParallelMatchesSerial() {
+        int numEntities = MessageRouter.PARALLEL_THRESHOLD + 44;
+
+        EntityRegistry serialWorld = makeWorld(numEntities);
+        Unit serialClient = makeClient();
+        MessageRouter serialRouter = new MessageRouter(serialWorld, serialClient, 1);
+        serialRouter.route(null, (entity, message) -> {});
+        assertEquals(0, serialRouter.getStatistics().getParallelPasses());
+
+        EntityRegistry parallelWorld = makeWorld(numEntities);
+        Unit parallelClient = makeClient();
+        MessageRouter parallelRouter = new MessageRouter(parallelWorld, parallelClient, 4);
+        parallelRouter.route(executorService, (entity, message) -> {});
+        assertEquals(1, parallelRouter.getStatistics().getParallelPasses());
+
+        assertEquals(collectInbound(serialWorld.getAllEntities()),
+                collectInbound(parallelWorld.getAllEntities()));
+        assertEquals(collectInbound(List.of(serialClient)).get("Client"),
+                collectInbound(List.of(parallelClient)).get("Client"));
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.experimental.SuperBuilder;
+import mil.sstaf.core.entity.*;
+import mil.sstaf.core.features.SnapshotContext;
+import mil.sstaf.core.features.StringContent;
+import mil.sstaf.core.util.SSTAFException;
+import mil.sstaf.session.messages.BaseSessionResult;
+import mil.sstaf.session.messages.CommandResult;
+import mil.sstaf.session.messages.Event;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptimisticSchedulerTest {
+
+    /**
+     * Passes a countdown to randomly chosen couriers as events, with up to three
+     * milliseconds of delay within a group and up to forty between groups. The log is
+     * saved in the checkpoints so that it is rolled back with the rest of the state.
+     */
+    @SuperBuilder
+    static class Courier extends Unit {
+        private final List<String> log = new ArrayList<>();
+        private List<Courier> peers;
+        private String group;
+        private boolean eager;
+
+        @Override
+        public long processMessages(final long currentTime_ms) {
+            Message message;
+            while ((message = inboundQueue.peek()) != null && (!(message instanceof EntityEvent)
+                    || ((EntityEvent) message).getEventTime_ms() <= currentTime_ms)) {
+                inboundQueue.poll();
+                relay(message, currentTime_ms);
+            }
+            return getNextEventTime();
+        }
+
+        @Override
+        public ObjectNode snapshot(final SnapshotContext context) {
+            ObjectNode node = super.snapshot(context);
+            ArrayNode lines = node.putArray("log");
+            log.forEach(lines::add);
+            return node;
+        }
+
+        @Override
+        public void restore(final JsonNode state, final SnapshotContext context) {
+            super.restore(state, context);
+            log.clear();
+            state.path("log").forEach(line -> log.add(line.asText()));
+        }
+
+        private void relay(final Message message, final long currentTime_ms) {
+            String value = ((StringContent) message.getContent()).getValue();
+            log.add(currentTime_ms + " " + value + " from " + message.getSource().entityHandle.getName());
+            outboundQueue.offer(MessageResponse.builder()
+                    .source(Address.makeExternalAddress(getHandle()))
+                    .destination(Address.CLIENT)
+                    .respondTo(Address.NOWHERE)
+                    .messageID(currentTime_ms)
+                    .sequenceNumber(generateSequenceNumber())
+                    .content(StringContent.builder().value(currentTime_ms + " " + value).build())
+                    .build());
+
+            int hops = Integer.parseInt(value);
+            if (hops == 0) {
+                return;
+            }
+            Courier target = peers.get(randomGenerator.nextInt(peers.size()));
+            long delay_ms = 1 + randomGenerator.nextInt(target.group.equals(group) ? 3 : 40);
+            StringContent content = StringContent.builder().value(Integer.toString(hops - 1)).build();
+            if (eager) {
+                outboundQueue.offer(EntityAction.builder()
+                        .source(Address.makeExternalAddress(getHandle()))
+                        .destination(Address.makeExternalAddress(target.getHandle()))
+                        .respondTo(Address.NOWHERE)
+                        .sequenceNumber(generateSequenceNumber())
+                        .content(content)
+                        .build());
+            } else {
+                outboundQueue.offer(EntityEvent.builder()
+                        .source(Address.makeExternalAddress(getHandle()))
+                        .destination(Address.makeExternalAddress(target.getHandle()))
+                        .respondTo(Address.NOWHERE)
+                        .sequenceNumber(generateSequenceNumber())
+                        .eventTime_ms(currentTime_ms + delay_ms)
+                        .content(content)
+                        .build());
+            }
+        }
+    }
+
+    private List<Courier> couriers;
+
+    private EntityController build(final DispatchMode dispatchMode, final long window_ms, final boolean eager) {
+        couriers = new ArrayList<>();
+        List<BaseEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 9; ++i) {
+            Courier courier = Courier.builder().name("R" + i).randomSeed(1000 + i).build();
+            courier.group = i < 4 ? "east" : i < 8 ? "west" : RunAheadScheduler.DEFAULT_PARTITION;
+            courier.eager = eager;
+            couriers.add(courier);
+            entities.add(courier);
+        }
+        couriers.forEach(courier -> courier.peers = couriers);
+
+        EntityController controller = EntityController.builder()
+                .entities(Map.of(Force.BLUE, entities))
+                .randomSeed(8675309)
+                .executorThreads(4)
+                .dispatchMode(dispatchMode)
+                .optimismWindow_ms(window_ms)
+                .partitions(List.of(
+                        LookaheadPartition.builder().name("east")
+                                .members(List.of("BLUE:R0", "BLUE:R1", "BLUE:R2", "BLUE:R3")).build(),
+                        LookaheadPartition.builder().name("west")
+                                .members(List.of("BLUE:R4", "BLUE:R5", "BLUE:R6", "BLUE:R7")).build()))
+                .build();
+
+        for (int i = 0; i < couriers.size(); ++i) {
+            controller.submitEvent(Event.builder()
+                    .recipientPath(couriers.get(i).getPath())
+                    .content(StringContent.builder().value("20").build())
+                    .eventTime_ms(100 + 37L * i)
+                    .build());
+        }
+        return controller;
+    }
+
+    private static List<String> advance(final EntityController controller, final long end_ms) {
+        List<BaseSessionResult> results = new ArrayList<>();
+        if (controller.getDispatchMode() == DispatchMode.OPTIMISTIC) {
+            results.addAll(controller.tick(end_ms).getMessagesToClient());
+        } else {
+            long next_ms;
+            while ((next_ms = controller.getNextEventTime_ms()) > controller.getLastTickTime_ms() && next_ms < end_ms) {
+                results.addAll(controller.tick(next_ms).getMessagesToClient());
+            }
+            results.addAll(controller.tick(end_ms).getMessagesToClient());
+        }
+        List<String> lines = new ArrayList<>();
+        for (BaseSessionResult result : results) {
+            CommandResult commandResult = (CommandResult) result;
+            lines.add(commandResult.getEntityPath() + " " + ((StringContent) commandResult.getContent()).getValue());
+        }
+        return lines;
+    }
+
+    private void assertSameAsEventToEvent(final long window_ms) {
+        EntityController reference = build(DispatchMode.INVOKE_ALL, 0, false);
+        List<Courier> referenceCouriers = couriers;
+        EntityController optimistic = build(DispatchMode.OPTIMISTIC, window_ms, false);
+        try {
+            for (long end_ms : new long[]{400, 400, 1000, 5000}) {
+                List<String> expected = advance(reference, end_ms);
+                List<String> actual = advance(optimistic, end_ms);
+                assertEquals(expected, actual, "Messages to the client up to " + end_ms);
+                assertEquals(reference.getLastTickTime_ms(), optimistic.getLastTickTime_ms());
+                assertEquals(reference.getNextEventTime_ms(), optimistic.getNextEventTime_ms());
+            }
+            for (int i = 0; i < couriers.size(); ++i) {
+                assertFalse(referenceCouriers.get(i).log.isEmpty());
+                assertEquals(referenceCouriers.get(i).log, couriers.get(i).log, "Log of " + couriers.get(i).getName());
+            }
+            OptimisticScheduler scheduler = (OptimisticScheduler) optimistic.getRunAheadScheduler();
+            assertEquals(3, scheduler.getPartitionCount());
+            if (window_ms == 0) {
+                assertTrue(scheduler.getRollbackCount() > 0);
+            }
+        } finally {
+            reference.shutdown();
+            optimistic.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Confirm that running ahead optimistically gives the same results as ticking from event to event")
+    void testSameAsEventToEvent() {
+        assertSameAsEventToEvent(0);
+    }
+
+    @Test
+    @DisplayName("Confirm that an optimism window gives the same results as ticking from event to event")
+    void testSameAsEventToEventWithWindow() {
+        assertSameAsEventToEvent(30);
+    }
+
+    @Test
+    @DisplayName("Confirm that an immediate message between entities is reported")
+    void testImmediateMessageRejected() {
+        EntityController optimistic = build(DispatchMode.OPTIMISTIC, 0, true);
+        try {
+            assertThrows(SSTAFException.class, () -> optimistic.tick(5000));
+        } finally {
+            optimistic.shutdown();
+        }
+    }
+}
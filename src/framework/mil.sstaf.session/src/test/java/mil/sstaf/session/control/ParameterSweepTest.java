@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import mil.sstaf.core.util.SSTAFException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParameterSweepTest {
+
+    private static final Path SCENARIO = Path.of("src/test/resources/SweepTest/SweepScenario.json");
+
+    private static final SweepParameter SEED = SweepParameter.builder()
+            .name("featureSeed")
+            .featureName("Test Feature")
+            .pointer("/seed")
+            .levels(List.of(10, 20))
+            .build();
+
+    @Test
+    @DisplayName("A variant changes every matching configuration and leaves the base scenario alone")
+    void variantsAreBuiltInMemory() {
+        ExperimentDesign design = ExperimentDesign.grid(List.of(SEED));
+        ParameterSweep sweep = ParameterSweep.builder().scenarioFile(SCENARIO).design(design).build();
+        ScenarioLoader.Scenario scenario = ScenarioLoader.read(SCENARIO);
+
+        ScenarioLoader.Scenario variant = sweep.makeVariant(scenario, design.get(1), 99L);
+        JsonNode soldiers = variant.root.path("entities").path("BLUE");
+        assertEquals(2, soldiers.size());
+        for (JsonNode soldier : soldiers) {
+            assertEquals(20, soldier.path("configurations").path("Test Feature").path("seed").asInt());
+        }
+        assertEquals(99, variant.root.path("randomSeed").asLong());
+
+        for (JsonNode soldier : scenario.root.path("entities").path("BLUE")) {
+            assertEquals(1, soldier.path("configurations").path("Test Feature").path("seed").asInt());
+        }
+        assertEquals(3, scenario.root.path("randomSeed").asLong());
+    }
+
+    @Test
+    @DisplayName("A parameter that matches nothing is reported")
+    void unmatchedParameterFails() {
+        SweepParameter missing = SweepParameter.builder().featureName("No Such Feature").pointer("/seed")
+                .levels(List.of(1)).build();
+        ExperimentDesign design = ExperimentDesign.grid(List.of(missing));
+        ParameterSweep sweep = ParameterSweep.builder().scenarioFile(SCENARIO).design(design).build();
+        assertThrows(SSTAFException.class,
+                () -> sweep.makeVariant(ScenarioLoader.read(SCENARIO), design.get(0), null));
+    }
+
+    @Test
+    @DisplayName("Each point and replication produces one row of the summary")
+    void sweepWritesSummary() throws IOException {
+        ParameterSweep sweep = ParameterSweep.builder()
+                .scenarioFile(SCENARIO)
+                .design(ExperimentDesign.grid(List.of(SEED)))
+                .replications(2)
+                .masterSeed(5L)
+                .parallelism(2)
+                .build();
+        SweepSummary summary = sweep.run(session -> {
+            session.tick(1000);
+            return Map.of("entities", session.getEntities().size());
+        });
+
+        assertEquals(0, summary.getFailureCount());
+        List<SweepResult> results = summary.getResults();
+        assertEquals(4, results.size());
+        long[] seeds = ReplicationRunner.deriveSeeds(5L, 2);
+        for (int i = 0; i < 4; ++i) {
+            assertEquals(i / 2, results.get(i).getPoint().getIndex());
+            assertEquals(seeds[i % 2], results.get(i).getRandomSeed());
+            assertEquals(2, results.get(i).getOutputs().get("entities"));
+        }
+
+        StringWriter table = new StringWriter();
+        summary.write(table);
+        String[] lines = table.toString().split("\n");
+        assertEquals(5, lines.length);
+        assertEquals("point,replication,seed,featureSeed,entities,elapsed_ms,error", lines[0]);
+        assertTrue(lines[3].startsWith("1,0," + seeds[0] + ",20,2,"));
+    }
+}
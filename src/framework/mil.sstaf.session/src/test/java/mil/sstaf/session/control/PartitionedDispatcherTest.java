@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import mil.sstaf.core.entity.Entity;
+import mil.sstaf.core.entity.Unit;
+import mil.sstaf.core.util.SSTAFException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionedDispatcherTest {
+
+    private ExecutorService executorService;
+    private List<Entity> entities;
+
+    @BeforeEach
+    void setup() {
+        executorService = Executors.newFixedThreadPool(4);
+        entities = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            Unit unit = Unit.builder().name("U" + i).build();
+            unit.init();
+            entities.add(unit);
+        }
+    }
+
+    @AfterEach
+    void teardown() {
+        executorService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Confirm that every entity is processed once and results line up with the input")
+    void testDispatchResults() {
+        PartitionedDispatcher dispatcher = new PartitionedDispatcher(executorService, 4);
+        long[] results = new long[entities.size()];
+        long min = dispatcher.dispatch(entities, (entity, time) -> time + entity.getId(),
+                1000, 1000, results);
+        for (int i = 0; i < entities.size(); ++i) {
+            assertEquals(1000 + entities.get(i).getId(), results[i]);
+        }
+        assertEquals(1000 + entities.get(0).getId(), min);
+    }
+
+    @Test
+    @DisplayName("Confirm that results at or before the filter time do not contribute to the minimum")
+    void testMinimumFilter() {
+        PartitionedDispatcher dispatcher = new PartitionedDispatcher(executorService, 4);
+        long min = dispatcher.dispatch(entities, (entity, time) -> time, 1000, 1000, null);
+        assertEquals(Long.MAX_VALUE, min);
+    }
+
+    @Test
+    @DisplayName("Confirm that failures are reported and do not stop the chunk")
+    void testFailure() {
+        PartitionedDispatcher dispatcher = new PartitionedDispatcher(executorService, 4);
+        Entity broken = entities.get(10);
+        long[] results = new long[entities.size()];
+        dispatcher.dispatch(entities, (entity, time) -> {
+            if (entity == broken) {
+                throw new IllegalStateException("Broken");
+            }
+            return Long.MAX_VALUE;
+        }, 0, 0, results);
+        assertEquals(PartitionedDispatcher.FAILED, results[10]);
+        assertEquals(Long.MAX_VALUE, results[11]);
+    }
+
+    @Test
+    @DisplayName("Confirm that an interrupted wait fails the phase and keeps the interrupt")
+    void testInterrupted() {
+        PartitionedDispatcher dispatcher = new PartitionedDispatcher(executorService, 4);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(SSTAFException.class, () -> dispatcher.dispatch(entities, (entity, time) -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return time;
+            }, 0, 0, new long[entities.size()]));
+            assertTrue(Thread.interrupted());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    @DisplayName("Confirm that partitions cover the list without gaps or overlaps")
+    void testPartitionCoverage() {
+        PartitionedDispatcher dispatcher = new PartitionedDispatcher(executorService, 4);
+        PartitionedDispatcher.CostEstimate[] estimates = new PartitionedDispatcher.CostEstimate[entities.size()];
+        List<int[]> chunks = dispatcher.partition(entities, estimates);
+        assertTrue(chunks.size() > 1);
+        assertTrue(chunks.size() <= 16);
+        int expectedBegin = 0;
+        for (int[] chunk : chunks) {
+            assertEquals(expectedBegin, chunk[0]);
+            assertTrue(chunk[1] > chunk[0]);
+            expectedBegin = chunk[1];
+        }
+        assertEquals(entities.size(), expectedBegin);
+    }
+
+    @Test
+    @DisplayName("Confirm that an expensive entity gets a chunk of its own")
+    void testCostBalancing() {
+        PartitionedDispatcher dispatcher = new PartitionedDispatcher(executorService, 4);
+        PartitionedDispatcher.CostEstimate[] estimates = new PartitionedDispatcher.CostEstimate[entities.size()];
+        dispatcher.partition(entities, estimates);
+        for (PartitionedDispatcher.CostEstimate estimate : estimates) {
+            estimate.update(100);
+        }
+        estimates[0].cost_ns = 1_000_000;
+
+        List<int[]> chunks = dispatcher.partition(entities, estimates);
+        assertArrayEquals(new int[]{0, 1}, chunks.get(0));
+    }
+
+    @Test
+    @DisplayName("Confirm that blocking entities run on the blocking executor and are left out of chunks")
+    void testBlockingOffload() {
+        ExecutorService virtualExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            Set<Entity> blocking = Set.of(entities.get(0), entities.get(50), entities.get(99));
+            PartitionedDispatcher dispatcher = new PartitionedDispatcher(executorService, 4,
+                    virtualExecutor, blocking::contains);
+            long[] results = new long[entities.size()];
+            long min = dispatcher.dispatch(entities,
+                    (entity, time) -> Thread.currentThread().isVirtual() ? time + 1 : time + 2,
+                    1000, 1000, results);
+            for (int i = 0; i < entities.size(); ++i) {
+                long expected = blocking.contains(entities.get(i)) ? 1001 : 1002;
+                assertEquals(expected, results[i]);
+            }
+            assertEquals(1001, min);
+        } finally {
+            virtualExecutor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Confirm that no chunks are made when every entity is blocking")
+    void testAllBlocking() {
+        ExecutorService virtualExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            PartitionedDispatcher dispatcher = new PartitionedDispatcher(executorService, 4,
+                    virtualExecutor, entity -> true);
+            PartitionedDispatcher.CostEstimate[] estimates = new PartitionedDispatcher.CostEstimate[entities.size()];
+            assertTrue(dispatcher.partition(entities, estimates).isEmpty());
+            long[] results = new long[entities.size()];
+            dispatcher.dispatch(entities, (entity, time) -> time + 7, 0, 0, results);
+            for (long result : results) {
+                assertEquals(7, result);
+            }
+        } finally {
+            virtualExecutor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Confirm that a single worker runs everything as one chunk")
+    void testSingleWorker() {
+        PartitionedDispatcher dispatcher = new PartitionedDispatcher(executorService, 1);
+        PartitionedDispatcher.CostEstimate[] estimates = new PartitionedDispatcher.CostEstimate[entities.size()];
+        assertEquals(1, dispatcher.partition(entities, estimates).size());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2022
+ * United States Government as represented by the U.S. Army DEVCOM Analysis Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mil.sstaf.session.control;
+
+import mil.sstaf.core.util.SSTAFException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationRunnerTest {
+
+    private static final Path SCENARIO =
+            Path.of("src/test/resources/EntityControllerFactoryTest/EntityConfig1FireTeam.json");
+
+    @Test
+    @DisplayName("Each replication reports once, with the seed derived for its index")
+    void runsEveryReplication() {
+        ReplicationRunner runner = ReplicationRunner.builder()
+                .scenarioFile(SCENARIO)
+                .replications(6)
+                .masterSeed(42)
+                .parallelism(3)
+                .build();
+        Map<Integer, ReplicationResult<Integer>> results = new HashMap<>();
+        int failures = runner.run(session -> {
+            session.tick(1000);
+            return session.getEntities().size();
+        }, result -> assertNull(results.put(result.getIndex(), result)));
+
+        assertEquals(0, failures);
+        assertEquals(6, results.size());
+        long[] seeds = ReplicationRunner.deriveSeeds(42, 6);
+        for (int i = 0; i < 6; ++i) {
+            ReplicationResult<Integer> result = results.get(i);
+            assertTrue(result.isSuccessful());
+            assertEquals(seeds[i], result.getRandomSeed());
+            assertEquals(5, result.getValue());
+        }
+    }
+
+    @Test
+    @DisplayName("Replications that share module layers give the same results")
+    void sharedModuleLayers() {
+        ReplicationRunner runner = ReplicationRunner.builder()
+                .scenarioFile(SCENARIO)
+                .replications(4)
+                .masterSeed(42)
+                .parallelism(2)
+                .shareModuleLayers(true)
+                .build();
+        assertTrue(runner.isShareModuleLayers());
+        Map<Integer, ReplicationResult<Integer>> results = new HashMap<>();
+        int failures = runner.run(session -> {
+            session.tick(1000);
+            return session.getEntities().size();
+        }, result -> results.put(result.getIndex(), result));
+
+        assertEquals(0, failures);
+        assertEquals(4, results.size());
+        results.values().forEach(result -> assertEquals(5, result.getValue()));
+    }
+
+    @Test
+    @DisplayName("Seeds depend only on the master seed and the replication index")
+    void seedsAreStable() {
+        long[] six = ReplicationRunner.deriveSeeds(42, 6);
+        assertArrayEquals(Arrays.copyOf(six, 3), ReplicationRunner.deriveSeeds(42, 3));
+        assertFalse(Arrays.equals(Arrays.copyOf(six, 3), ReplicationRunner.deriveSeeds(43, 3)));
+        assertEquals(6, Arrays.stream(six).distinct().count());
+    }
+
+    @Test
+    @DisplayName("A failed replication is reported without stopping the others")
+    void failuresAreReported() {
+        ReplicationRunner runner = ReplicationRunner.builder()
+                .scenarioFile(SCENARIO)
+                .replications(3)
+                .parallelism(2)
+                .build();
+        Map<Integer, ReplicationResult<Object>> results = new HashMap<>();
+        int failures = runner.run(session -> {
+            throw new SSTAFException("Replication failed");
+        }, result -> results.put(result.getIndex(), result));
+
+        assertEquals(3, failures);
+        assertEquals(3, results.size());
+        results.values().forEach(result -> {
+            assertFalse(result.isSuccessful());
+            assertInstanceOf(SSTAFException.class, result.getError());
+        });
+    }
+}
@@ -24,6 +24,7 @@ import mil.sstaf.core.entity.EntityHandle;
 import mil.sstaf.core.entity.Message;
 import mil.sstaf.core.features.BaseAgent;
 import mil.sstaf.core.features.HandlerContent;
+import mil.sstaf.core.features.Handles;
 import mil.sstaf.core.features.ProcessingResult;
 import mil.sstaf.core.features.Requires;
 import mil.sstaf.core.util.SSTAFException;
@@ -31,7 +32,6 @@ import mil.sstaftest.maneuver.api.*;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 
-import java.util.List;
 import java.util.Optional;
 
 /**
@@ -116,57 +116,64 @@ public class ManeuverEntityAgent extends BaseAgent {
         }
     }
 
-    @Override
-    public List<Class<? extends HandlerContent>> contentHandled() {
-        return List.of(Heading.class, Position.class, Speed.class, ManeuverStateQuery.class,
-                ManeuverState.class, ManeuverStateMap.class);
+    @Handles(ManeuverState.class)
+    private ProcessingResult setState(ManeuverState maneuverState, long scheduledTime_ms, long currentTime_ms,
+                                      Address from, long id, Address respondTo) {
+        logger.trace("{} updating with {}", getInfoString(), maneuverState);
+        this.position = maneuverState.position;
+        this.heading = maneuverState.heading;
+        this.speed = maneuverState.speed;
+        return respondWithState(currentTime_ms, id, respondTo);
+    }
+
+    @Handles(Position.class)
+    private ProcessingResult setPosition(Position position, long scheduledTime_ms, long currentTime_ms,
+                                         Address from, long id, Address respondTo) {
+        this.position = position;
+        return respondWithState(currentTime_ms, id, respondTo);
+    }
+
+    @Handles(Heading.class)
+    private ProcessingResult setHeading(Heading heading, long scheduledTime_ms, long currentTime_ms,
+                                        Address from, long id, Address respondTo) {
+        this.heading = heading;
+        return respondWithState(currentTime_ms, id, respondTo);
+    }
+
+    @Handles(Speed.class)
+    private ProcessingResult setSpeed(Speed speed, long scheduledTime_ms, long currentTime_ms,
+                                      Address from, long id, Address respondTo) {
+        this.speed = speed;
+        return respondWithState(currentTime_ms, id, respondTo);
+    }
+
+    @Handles(ManeuverStateQuery.class)
+    private ProcessingResult queryState(ManeuverStateQuery query, long scheduledTime_ms, long currentTime_ms,
+                                        Address from, long id, Address respondTo) {
+        double deltaT = currentTime_ms - lastTimeStamp_ms;
+        updatePosition(position, heading, speed, deltaT);
+        return respondWithState(currentTime_ms, id, respondTo);
+    }
+
+    @Handles(ManeuverStateMap.class)
+    private ProcessingResult postStateMap(ManeuverStateMap stateMap, long scheduledTime_ms, long currentTime_ms,
+                                          Address from, long id, Address respondTo) {
+        blackboard.addEntry("ManeuverStateMap", stateMap, currentTime_ms);
+        return ProcessingResult.empty();
     }
 
     @Override
-    public ProcessingResult process(HandlerContent arg, long scheduledTime_ms, long currentTime_ms, Address from, long id, Address respondTo) {
-
-        logger.debug("{} processing {} value = '{}'",
-                getInfoString(), arg.getClass(), arg);
-
-        boolean update = true;
-        if (arg instanceof ManeuverState) {
-            ManeuverState maneuverState = (ManeuverState) arg;
-            logger.trace("{} updating with {}", getInfoString(), maneuverState);
-            this.position = maneuverState.position;
-            this.heading = maneuverState.heading;
-            this.speed = maneuverState.speed;
-            logger.trace("{} state = {} {} {}", getInfoString(),
-                    this.position, this.heading, this.speed);
-        } else if (arg instanceof Position) {
-            this.position = (Position) arg;
-            logger.trace("{} state = {} {} {}", getInfoString(),
-                    this.position, this.heading, this.speed);
-        } else if (arg instanceof Heading) {
-            this.heading = (Heading) arg;
-            logger.trace("{}, state = {} {} {}", getInfoString(),
-                    this.position, this.heading, this.speed);
-        } else if (arg instanceof Speed) {
-            this.speed = (Speed) arg;
-            logger.trace("{} state = {} {} {}", getInfoString(),
-                    this.position, this.heading, this.speed);
-        } else if (arg instanceof ManeuverStateQuery) {
-            double deltaT = currentTime_ms - lastTimeStamp_ms;
-            updatePosition(position, heading, speed, deltaT);
-        } else if (arg instanceof ManeuverStateMap) {
-            update = false;
-            blackboard.addEntry("ManeuverStateMap", arg, currentTime_ms);
-        } else {
-            throw new SSTAFException("Can't process " + arg.getClass().getSimpleName());
-        }
+    protected ProcessingResult processUnsupported(HandlerContent arg, long id, Address respondTo) {
+        throw new SSTAFException("Can't process " + arg.getClass().getSimpleName());
+    }
 
-        if (update) {
-            ManeuverState ms = updateManeuverState(currentTime_ms);
-            logger.trace("{} returning current state {}", getInfoString(), ms);
-            Message response = this.buildNormalResponse(ms, id, respondTo);
-            return ProcessingResult.of(response);
-        } else {
-            return ProcessingResult.empty();
-        }
+    private ProcessingResult respondWithState(long currentTime_ms, long id, Address respondTo) {
+        logger.trace("{} state = {} {} {}", getInfoString(),
+                this.position, this.heading, this.speed);
+        ManeuverState ms = updateManeuverState(currentTime_ms);
+        logger.trace("{} returning current state {}", getInfoString(), ms);
+        Message response = this.buildNormalResponse(ms, id, respondTo);
+        return ProcessingResult.of(response);
     }
 
 }